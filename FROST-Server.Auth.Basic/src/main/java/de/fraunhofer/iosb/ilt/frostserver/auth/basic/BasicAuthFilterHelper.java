@@ -65,6 +65,7 @@ public class BasicAuthFilterHelper {
 
         String filterName = "AuthFilterSta";
         FilterRegistration.Dynamic authFilterSta = servletContext.addFilter(filterName, filterClass);
+        authFilterSta.setAsyncSupported(true);
         boolean anonRead = authSettings.getBoolean(TAG_AUTH_ALLOW_ANON_READ, CoreSettings.class);
         authFilterSta.setInitParameter(TAG_AUTH_ALLOW_ANON_READ, anonRead ? "T" : "F");
         authFilterSta.setInitParameter(TAG_ROLE_GET, roleMapping.get(Role.READ));
@@ -78,6 +79,7 @@ public class BasicAuthFilterHelper {
 
         filterName = "AuthFilterAdmin";
         FilterRegistration.Dynamic authFilterAdmin = servletContext.addFilter(filterName, filterClass);
+        authFilterAdmin.setAsyncSupported(true);
         authFilterSta.setInitParameter(TAG_AUTH_ALLOW_ANON_READ, "F");
         String adminRoleString = roleMapping.get(Role.ADMIN);
         authFilterAdmin.setInitParameter(TAG_ROLE_GET, adminRoleString);
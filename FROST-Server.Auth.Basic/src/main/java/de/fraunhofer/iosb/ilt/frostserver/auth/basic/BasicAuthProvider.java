@@ -21,6 +21,7 @@ import de.fraunhofer.iosb.ilt.frostserver.settings.ConfigDefaults;
 import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
 import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValue;
 import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValueBoolean;
+import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValueInt;
 import de.fraunhofer.iosb.ilt.frostserver.util.AuthProvider;
 import de.fraunhofer.iosb.ilt.frostserver.util.LiquibaseUser;
 import de.fraunhofer.iosb.ilt.frostserver.util.exception.UpgradeFailedException;
@@ -54,6 +55,11 @@ public class BasicAuthProvider implements AuthProvider, LiquibaseUser, ConfigDef
     @DefaultValue("admin")
     public static final String TAG_ROLE_ADMIN = "roleAdmin";
 
+    @DefaultValueInt(0)
+    public static final String TAG_CACHE_LIFETIME = "cacheLifetime";
+    @DefaultValueInt(1000)
+    public static final String TAG_CACHE_SIZE = "cacheSize";
+
     @Override
     public void init(CoreSettings coreSettings) {
         DatabaseHandler.init(coreSettings);
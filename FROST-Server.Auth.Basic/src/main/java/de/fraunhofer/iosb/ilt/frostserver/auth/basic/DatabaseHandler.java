@@ -19,6 +19,8 @@ package de.fraunhofer.iosb.ilt.frostserver.auth.basic;
 
 import static de.fraunhofer.iosb.ilt.frostserver.auth.basic.BasicAuthProvider.LIQUIBASE_CHANGELOG_FILENAME;
 import static de.fraunhofer.iosb.ilt.frostserver.auth.basic.BasicAuthProvider.TAG_AUTO_UPDATE_DATABASE;
+import static de.fraunhofer.iosb.ilt.frostserver.auth.basic.BasicAuthProvider.TAG_CACHE_LIFETIME;
+import static de.fraunhofer.iosb.ilt.frostserver.auth.basic.BasicAuthProvider.TAG_CACHE_SIZE;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils.ConnectionUtils;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils.ConnectionUtils.ConnectionWrapper;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils.LiquibaseHelper;
@@ -31,8 +33,12 @@ import java.io.Writer;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
 import org.jooq.DSLContext;
 import org.jooq.Record1;
+import org.jooq.Result;
 import org.jooq.SQLDialect;
 import org.jooq.impl.DSL;
 import org.slf4j.Logger;
@@ -55,6 +61,7 @@ public class DatabaseHandler {
 
     private final CoreSettings coreSettings;
     private final Settings authSettings;
+    private final UserCache userCache;
     private boolean maybeUpdateDatabase;
 
     public static void init(CoreSettings coreSettings) {
@@ -81,9 +88,15 @@ public class DatabaseHandler {
         this.coreSettings = coreSettings;
         authSettings = coreSettings.getAuthSettings();
         maybeUpdateDatabase = authSettings.getBoolean(TAG_AUTO_UPDATE_DATABASE, BasicAuthProvider.class);
+        userCache = new UserCache(
+                authSettings.getInt(TAG_CACHE_LIFETIME, BasicAuthProvider.class),
+                authSettings.getInt(TAG_CACHE_SIZE, BasicAuthProvider.class));
     }
 
     public boolean isValidUser(String userName, String password) {
+        if (userCache.isEnabled()) {
+            return getRoles(userName, password) != null;
+        }
         maybeUpdateDatabase();
         try (final ConnectionWrapper connectionProvider = new ConnectionWrapper(authSettings, CONNECTION_NAME)) {
             final DSLContext dslContext = DSL.using(connectionProvider.get(), SQLDialect.POSTGRES);
@@ -101,6 +114,51 @@ public class DatabaseHandler {
         }
     }
 
+    private Set<String> getRoles(String userName, String password) {
+        final Set<String> roles = userCache.getRoles(userName, password);
+        if (roles != null) {
+            return roles;
+        }
+        return loadUser(userName, password);
+    }
+
+    /**
+     * Loads the roles of the given user, with a single query, and caches the
+     * user if the credentials are valid. Failed logins are not cached.
+     *
+     * @param userName The username of the user to load.
+     * @param password The password of the user to load.
+     * @return The roles of the user, or null if the credentials are invalid.
+     */
+    private Set<String> loadUser(String userName, String password) {
+        maybeUpdateDatabase();
+        try (final ConnectionWrapper connectionProvider = new ConnectionWrapper(authSettings, CONNECTION_NAME)) {
+            final DSLContext dslContext = DSL.using(connectionProvider.get(), SQLDialect.POSTGRES);
+            Result<Record1<String>> result = dslContext
+                    .select(TableUsersRoles.USER_ROLES.roleName)
+                    .from(TableUsers.USERS)
+                    .leftJoin(TableUsersRoles.USER_ROLES)
+                    .on(TableUsers.USERS.userName.eq(TableUsersRoles.USER_ROLES.userName))
+                    .where(
+                            TableUsers.USERS.userName.eq(userName)
+                                    .and(TableUsers.USERS.userPass.eq(password))
+                    ).fetch();
+            if (result.isEmpty()) {
+                return null;
+            }
+            Set<String> roles = new HashSet<>();
+            result.getValues(TableUsersRoles.USER_ROLES.roleName)
+                    .stream()
+                    .filter(Objects::nonNull)
+                    .forEach(roles::add);
+            userCache.put(userName, password, roles);
+            return roles;
+        } catch (SQLException | RuntimeException exc) {
+            LOGGER.error("Failed to check user credentials.", exc);
+            return null;
+        }
+    }
+
     /**
      * This method checks if the given user exists with the given password and
      * has the given role.
@@ -112,6 +170,10 @@ public class DatabaseHandler {
      * given role.
      */
     public boolean userHasRole(String userName, String userPass, String roleName) {
+        if (userCache.isEnabled()) {
+            final Set<String> roles = getRoles(userName, userPass);
+            return roles != null && roles.contains(roleName);
+        }
         maybeUpdateDatabase();
         try (final ConnectionWrapper connectionProvider = new ConnectionWrapper(authSettings, CONNECTION_NAME)) {
             final DSLContext dslContext = DSL.using(connectionProvider.get(), SQLDialect.POSTGRES);
@@ -144,6 +206,10 @@ public class DatabaseHandler {
         if (userName == null) {
             return false;
         }
+        Set<String> roles = userCache.getRoles(userName);
+        if (roles != null) {
+            return roles.contains(roleName);
+        }
         maybeUpdateDatabase();
         try (final ConnectionWrapper connectionProvider = new ConnectionWrapper(authSettings, CONNECTION_NAME)) {
             final DSLContext dslContext = DSL.using(connectionProvider.get(), SQLDialect.POSTGRES);
@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.auth.basic;
+
+import static de.fraunhofer.iosb.ilt.frostserver.util.Constants.JMX_DOMAIN;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded, time-limited cache of successfully verified users and their
+ * roles. Passwords are never stored; only a salted hash of the password is
+ * kept, to check later logins against. When enabled, the statistics are
+ * registered with JMX, where the cache can also be cleared, for instance after
+ * a password or role was changed in the database.
+ *
+ * @author scf
+ */
+public class UserCache implements UserCacheMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserCache.class.getName());
+
+    /**
+     * Log the hit and miss counts once every this many lookups.
+     */
+    private static final long LOG_INTERVAL = 10_000;
+    private static final int SALT_LENGTH = 16;
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private final long lifetimeNanos;
+    private final int maxSize;
+    private final Map<String, CachedUser> usersByName;
+    private final SecureRandom random = new SecureRandom();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create a new cache.
+     *
+     * @param lifetimeSeconds The time, in seconds, an entry stays valid. If 0
+     * or less, nothing is cached.
+     * @param maxSize The maximum number of users to cache. If 0 or less,
+     * nothing is cached.
+     */
+    public UserCache(int lifetimeSeconds, int maxSize) {
+        this.lifetimeNanos = TimeUnit.SECONDS.toNanos(Math.max(0, lifetimeSeconds));
+        this.maxSize = maxSize;
+        this.usersByName = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+                return size() > UserCache.this.maxSize;
+            }
+        };
+        if (isEnabled()) {
+            registerMBean();
+        }
+    }
+
+    public boolean isEnabled() {
+        return lifetimeNanos > 0 && maxSize > 0;
+    }
+
+    /**
+     * Check if the given user is cached, with the given password.
+     *
+     * @param userName The name of the user.
+     * @param password The password to check.
+     * @return The roles of the user, or null if the user is not cached, the
+     * entry expired, or the password does not match the cached one.
+     */
+    public Set<String> getRoles(String userName, String password) {
+        if (!isEnabled() || userName == null || password == null) {
+            return null;
+        }
+        final CachedUser user = getFresh(userName);
+        if (user == null || !MessageDigest.isEqual(user.passHash, hash(user.salt, password))) {
+            countLookup(false);
+            return null;
+        }
+        countLookup(true);
+        return user.roles;
+    }
+
+    /**
+     * Get the roles of the given user, if the user has recently been verified.
+     *
+     * @param userName The name of the user.
+     * @return The roles of the user, or null if the user is not cached.
+     */
+    public Set<String> getRoles(String userName) {
+        if (!isEnabled() || userName == null) {
+            return null;
+        }
+        final CachedUser user = getFresh(userName);
+        countLookup(user != null);
+        return user == null ? null : user.roles;
+    }
+
+    /**
+     * Cache the given, verified, user.
+     *
+     * @param userName The name of the user.
+     * @param password The password that was verified against the database.
+     * @param roles The roles of the user.
+     */
+    public void put(String userName, String password, Set<String> roles) {
+        if (!isEnabled() || userName == null || password == null) {
+            return;
+        }
+        final byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        final CachedUser user = new CachedUser(salt, hash(salt, password), Collections.unmodifiableSet(roles), System.nanoTime() + lifetimeNanos);
+        synchronized (usersByName) {
+            usersByName.put(userName, user);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        synchronized (usersByName) {
+            return usersByName.size();
+        }
+    }
+
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public long getLifetimeSeconds() {
+        return TimeUnit.NANOSECONDS.toSeconds(lifetimeNanos);
+    }
+
+    @Override
+    public void clear() {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (usersByName) {
+            usersByName.clear();
+        }
+        LOGGER.debug("User cache cleared. Hits: {}, misses: {}.", hits.get(), misses.get());
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_DOMAIN, "type", "UserCache");
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(this, objectName);
+        } catch (JMException | RuntimeException exc) {
+            LOGGER.warn("Failed to register user cache statistics with JMX.", exc);
+        }
+    }
+
+    private CachedUser getFresh(String userName) {
+        synchronized (usersByName) {
+            final CachedUser user = usersByName.get(userName);
+            if (user == null) {
+                return null;
+            }
+            if (System.nanoTime() - user.expires > 0) {
+                usersByName.remove(userName);
+                return null;
+            }
+            return user;
+        }
+    }
+
+    private void countLookup(boolean hit) {
+        final long count;
+        if (hit) {
+            count = hits.incrementAndGet() + misses.get();
+        } else {
+            count = misses.incrementAndGet() + hits.get();
+        }
+        if (count % LOG_INTERVAL == 0) {
+            LOGGER.debug("User cache: hits: {}, misses: {}.", hits.get(), misses.get());
+        }
+    }
+
+    private static byte[] hash(byte[] salt, String password) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+            digest.update(salt);
+            return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException exc) {
+            throw new IllegalStateException("Every JVM must support " + HASH_ALGORITHM, exc);
+        }
+    }
+
+    private static class CachedUser {
+
+        private final byte[] salt;
+        private final byte[] passHash;
+        private final Set<String> roles;
+        private final long expires;
+
+        public CachedUser(byte[] salt, byte[] passHash, Set<String> roles, long expires) {
+            this.salt = salt;
+            this.passHash = passHash;
+            this.roles = roles;
+            this.expires = expires;
+        }
+    }
+
+}
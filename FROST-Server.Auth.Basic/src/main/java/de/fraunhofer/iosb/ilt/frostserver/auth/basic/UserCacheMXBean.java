@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.auth.basic;
+
+/**
+ * The statistics of the cache of verified users, as exposed through JMX.
+ *
+ * @author scf
+ */
+public interface UserCacheMXBean {
+
+    /**
+     * @return The number of users currently in the cache.
+     */
+    public int getSize();
+
+    /**
+     * @return The maximum number of users in the cache.
+     */
+    public int getMaxSize();
+
+    /**
+     * @return The time, in seconds, a cached user stays valid.
+     */
+    public long getLifetimeSeconds();
+
+    /**
+     * @return The number of lookups that found a valid cached user, since the
+     * last reset.
+     */
+    public long getHits();
+
+    /**
+     * @return The number of lookups that did not find a valid cached user,
+     * since the last reset.
+     */
+    public long getMisses();
+
+    /**
+     * Remove all cached users. Changes to passwords or roles in the database
+     * are only picked up after the cache lifetime, or after clearing the
+     * cache.
+     */
+    public void clear();
+
+    /**
+     * Reset the hit and miss statistics.
+     */
+    public void resetStatistics();
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2024 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.auth.basic;
+
+import static de.fraunhofer.iosb.ilt.frostserver.util.Constants.JMX_DOMAIN;
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the cache of verified users.
+ *
+ * @author scf
+ */
+class UserCacheTest {
+
+    private static final String USER = "read";
+    private static final String PASS = "read";
+    private static final Set<String> ROLES = Set.of("read", "create");
+
+    @Test
+    void testHits() {
+        UserCache cache = new UserCache(60, 10);
+        assertTrue(cache.isEnabled());
+
+        assertNull(cache.getRoles(USER, PASS));
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        cache.put(USER, PASS, ROLES);
+        assertEquals(ROLES, cache.getRoles(USER, PASS));
+        assertEquals(ROLES, cache.getRoles(USER, PASS));
+        assertEquals(ROLES, cache.getRoles(USER));
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getSize());
+
+        cache.resetStatistics();
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    void testWrongPassword() {
+        UserCache cache = new UserCache(60, 10);
+        cache.put(USER, PASS, ROLES);
+
+        assertNull(cache.getRoles(USER, "wrong"));
+        assertNull(cache.getRoles(USER, ""));
+        assertNull(cache.getRoles(USER, null));
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        // A wrong password must not evict or replace the cached user.
+        assertEquals(ROLES, cache.getRoles(USER, PASS));
+        assertNull(cache.getRoles("other", PASS));
+    }
+
+    @Test
+    void testExpiry() throws InterruptedException {
+        UserCache cache = new UserCache(1, 10);
+        cache.put(USER, PASS, ROLES);
+        assertEquals(ROLES, cache.getRoles(USER, PASS));
+
+        Thread.sleep(1100);
+        assertNull(cache.getRoles(USER, PASS));
+        assertNull(cache.getRoles(USER));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void testMaxSize() {
+        UserCache cache = new UserCache(60, 2);
+        cache.put("a", PASS, ROLES);
+        cache.put("b", PASS, ROLES);
+        cache.put("c", PASS, ROLES);
+        assertEquals(2, cache.getSize());
+        assertNull(cache.getRoles("a", PASS));
+        assertEquals(ROLES, cache.getRoles("c", PASS));
+    }
+
+    @Test
+    void testDisabled() {
+        UserCache cache = new UserCache(0, 10);
+        assertFalse(cache.isEnabled());
+        cache.put(USER, PASS, ROLES);
+        assertNull(cache.getRoles(USER, PASS));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void testJmxClear() throws MalformedObjectNameException {
+        UserCache cache = new UserCache(60, 10);
+        cache.put(USER, PASS, ROLES);
+
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=UserCache");
+        assertTrue(mBeanServer.isRegistered(objectName));
+        final UserCacheMXBean proxy = JMX.newMXBeanProxy(mBeanServer, objectName, UserCacheMXBean.class);
+        assertEquals(1, proxy.getSize());
+        assertEquals(60, proxy.getLifetimeSeconds());
+
+        proxy.clear();
+        assertEquals(0, cache.getSize());
+        assertNull(cache.getRoles(USER, PASS));
+    }
+
+}
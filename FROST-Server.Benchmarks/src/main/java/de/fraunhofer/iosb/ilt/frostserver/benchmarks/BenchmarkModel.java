@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.benchmarks;
+
+import de.fraunhofer.iosb.ilt.frostserver.model.DefaultEntity;
+import de.fraunhofer.iosb.ilt.frostserver.model.ModelRegistry;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.EntitySet;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.EntitySetImpl;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.IdLong;
+import de.fraunhofer.iosb.ilt.frostserver.model.ext.TimeInstant;
+import de.fraunhofer.iosb.ilt.frostserver.model.ext.TimeValue;
+import de.fraunhofer.iosb.ilt.frostserver.parser.path.PathParser;
+import de.fraunhofer.iosb.ilt.frostserver.parser.query.QueryParser;
+import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
+import de.fraunhofer.iosb.ilt.frostserver.path.Version;
+import de.fraunhofer.iosb.ilt.frostserver.plugin.coremodel.PluginCoreModel;
+import de.fraunhofer.iosb.ilt.frostserver.plugin.format.dataarray.PluginResultFormatDataArray;
+import de.fraunhofer.iosb.ilt.frostserver.query.Query;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import net.time4j.Moment;
+import net.time4j.SI;
+
+/**
+ * The shared, in-memory set-up of the benchmarks: the core data model,
+ * registered on a persistence manager without a database, and a set of
+ * generated Observations.
+ *
+ * @author scf
+ */
+public class BenchmarkModel {
+
+    public static final String SERVICE_ROOT_URL = "http://localhost:8080/FROST-Server";
+    public static final Version VERSION = Version.V_1_1;
+
+    private final CoreSettings coreSettings;
+    private final ModelRegistry modelRegistry;
+    private final PluginCoreModel pluginCoreModel;
+    private final BenchmarkPersistenceManager persistenceManager;
+
+    public BenchmarkModel() {
+        coreSettings = new CoreSettings();
+        coreSettings.getQueryDefaults().setServiceRootUrl(SERVICE_ROOT_URL);
+        modelRegistry = coreSettings.getModelRegistry();
+        pluginCoreModel = new PluginCoreModel();
+        pluginCoreModel.init(coreSettings);
+        persistenceManager = new BenchmarkPersistenceManager();
+        persistenceManager.init(coreSettings);
+        coreSettings.getPluginManager().initPlugins(persistenceManager);
+        persistenceManager.getTableCollection().init(persistenceManager.getEntityFactories());
+        PluginResultFormatDataArray.modifyEntityFormatter();
+    }
+
+    public CoreSettings getCoreSettings() {
+        return coreSettings;
+    }
+
+    public ModelRegistry getModelRegistry() {
+        return modelRegistry;
+    }
+
+    public PluginCoreModel getPluginCoreModel() {
+        return pluginCoreModel;
+    }
+
+    public BenchmarkPersistenceManager getPersistenceManager() {
+        return persistenceManager;
+    }
+
+    public ResourcePath parsePath(String path) {
+        return PathParser.parsePath(modelRegistry, SERVICE_ROOT_URL, VERSION, path);
+    }
+
+    /**
+     * Parse and validate the given query for the given path.
+     *
+     * @param path The path the query is for.
+     * @param query The query string, without the leading question mark.
+     * @return the validated query.
+     */
+    public Query parseQuery(ResourcePath path, String query) {
+        return QueryParser.parseQuery(query, coreSettings, path)
+                .validate();
+    }
+
+    /**
+     * Generate a set of Observations, all in the same Datastream, as they
+     * would be loaded from the database.
+     *
+     * @param query The query that the Observations are the result of.
+     * @param count The number of Observations to generate.
+     * @return the generated Observations.
+     */
+    public EntitySet createObservations(Query query, int count) {
+        final Entity datastream = new DefaultEntity(pluginCoreModel.etDatastream, new IdLong(1));
+        final Moment start = TimeInstant.now().getDateTime();
+        final EntitySet result = new EntitySetImpl(pluginCoreModel.etObservation);
+        for (long i = 1; i <= count; i++) {
+            final TimeInstant time = new TimeInstant(start.plus(i, SI.SECONDS));
+            result.add(new DefaultEntity(pluginCoreModel.etObservation, new IdLong(i))
+                    .setProperty(pluginCoreModel.epPhenomenonTime, new TimeValue(time))
+                    .setProperty(pluginCoreModel.epResultTime, time)
+                    .setProperty(pluginCoreModel.epResult, i * 0.5)
+                    .setProperty(pluginCoreModel.npDatastreamObservation, datastream)
+                    .setQuery(query));
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.benchmarks;
+
+import de.fraunhofer.iosb.ilt.frostserver.model.core.EntitySet;
+import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
+import de.fraunhofer.iosb.ilt.frostserver.plugin.format.csv.ResultFormatterCsv;
+import de.fraunhofer.iosb.ilt.frostserver.plugin.format.dataarray.ResultFormatterDataArray;
+import de.fraunhofer.iosb.ilt.frostserver.query.Query;
+import de.fraunhofer.iosb.ilt.frostserver.util.exception.IncorrectRequestException;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the dataArray and CSV result formatters.
+ *
+ * @author scf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatterBenchmark {
+
+    @Param({"100", "1000"})
+    public int count;
+
+    private ResultFormatterDataArray formatterDataArray;
+    private ResultFormatterCsv formatterCsv;
+    private ResourcePath path;
+    private Query queryDataArray;
+    private Query queryCsv;
+    private EntitySet observationsDataArray;
+    private EntitySet observationsCsv;
+
+    @Setup
+    public void setup() throws IncorrectRequestException {
+        final BenchmarkModel model = new BenchmarkModel();
+        path = model.parsePath("/Observations");
+
+        formatterDataArray = new ResultFormatterDataArray(model.getCoreSettings());
+        queryDataArray = model.parseQuery(path, "$top=" + count + "&$resultFormat=dataArray");
+        formatterDataArray.preProcessRequest(path, queryDataArray);
+        observationsDataArray = model.createObservations(queryDataArray, count);
+
+        formatterCsv = new ResultFormatterCsv();
+        queryCsv = model.parseQuery(path, "$top=" + count + "&$resultFormat=csv");
+        formatterCsv.preProcessRequest(path, queryCsv);
+        observationsCsv = model.createObservations(queryCsv, count);
+    }
+
+    @Benchmark
+    public void formatDataArray() throws IOException {
+        formatterDataArray.format(path, queryDataArray, observationsDataArray, true)
+                .writeFormatted(Writer.nullWriter());
+    }
+
+    @Benchmark
+    public void formatCsv() throws IOException {
+        formatterCsv.format(path, queryCsv, observationsCsv, true)
+                .writeFormatted(Writer.nullWriter());
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.benchmarks;
+
+import de.fraunhofer.iosb.ilt.frostserver.json.deserialize.JsonReader;
+import de.fraunhofer.iosb.ilt.frostserver.json.serialize.JsonWriter;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.EntitySet;
+import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
+import de.fraunhofer.iosb.ilt.frostserver.query.Query;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for reading entities from, and writing entity sets to JSON.
+ *
+ * @author scf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    private static final String OBSERVATION_JSON = "{"
+            + "\"phenomenonTime\": \"2022-01-01T12:00:00.000Z\","
+            + "\"resultTime\": \"2022-01-01T12:00:01.000Z\","
+            + "\"result\": 21.5,"
+            + "\"parameters\": {\"quality\": \"good\", \"depth\": [1, 2, 3]},"
+            + "\"Datastream\": {\"@iot.id\": 1},"
+            + "\"FeatureOfInterest\": {\"@iot.id\": 2}"
+            + "}";
+
+    @Param({"100", "1000"})
+    public int count;
+
+    private BenchmarkModel model;
+    private JsonReader reader;
+    private EntitySet observations;
+
+    @Setup
+    public void setup() {
+        model = new BenchmarkModel();
+        reader = new JsonReader(model.getModelRegistry());
+        final ResourcePath path = model.parsePath("/Observations");
+        final Query query = model.parseQuery(path, "$top=" + count);
+        observations = model.createObservations(query, count);
+    }
+
+    @Benchmark
+    public Entity parseEntity() throws IOException {
+        return reader.parseEntity(model.getPluginCoreModel().etObservation, OBSERVATION_JSON);
+    }
+
+    @Benchmark
+    public void writeEntityCollection() throws IOException {
+        JsonWriter.writeEntityCollection(Writer.nullWriter(), observations);
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.benchmarks;
+
+import de.fraunhofer.iosb.ilt.frostserver.parser.path.PathParser;
+import de.fraunhofer.iosb.ilt.frostserver.parser.query.QueryParser;
+import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
+import de.fraunhofer.iosb.ilt.frostserver.query.Query;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for parsing the resource path and the query options of a
+ * request.
+ *
+ * @author scf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({
+        "/Things",
+        "/Things(1)/Datastreams(2)/Observations",
+        "/Datastreams(1)/Thing/Locations(3)/properties/owner"
+    })
+    public String path;
+
+    @Param({
+        "$top=100&$orderby=phenomenonTime desc",
+        "$filter=result gt 5 and phenomenonTime ge 2022-01-01T00:00:00Z&$select=id,result,phenomenonTime",
+        "$expand=Datastream($select=id,name;$expand=Thing($select=name)),FeatureOfInterest&$filter=Datastream/Thing/name eq 'Oven' and substringof('a', Datastream/name)&$count=true"
+    })
+    public String query;
+
+    private BenchmarkModel model;
+    private ResourcePath observationsPath;
+
+    @Setup
+    public void setup() {
+        model = new BenchmarkModel();
+        observationsPath = model.parsePath("/Observations");
+    }
+
+    @Benchmark
+    public ResourcePath parsePath() {
+        return PathParser.parsePath(model.getModelRegistry(), BenchmarkModel.SERVICE_ROOT_URL, BenchmarkModel.VERSION, path);
+    }
+
+    @Benchmark
+    public Query parseQuery() {
+        return QueryParser.parseQuery(query, model.getCoreSettings(), observationsPath);
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.benchmarks;
+
+import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
+import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.QueryBuilder;
+import de.fraunhofer.iosb.ilt.frostserver.query.Query;
+import java.util.concurrent.TimeUnit;
+import org.jooq.conf.ParamType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for turning a parsed request into SQL. No database is needed,
+ * the generated SQL is only rendered, not executed.
+ *
+ * @author scf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBuilderBenchmark {
+
+    @Param({
+        "/Observations?$top=100&$orderby=phenomenonTime desc",
+        "/Datastreams(1)/Observations?$filter=result gt 5 and phenomenonTime ge 2022-01-01T00:00:00Z&$select=id,result,phenomenonTime",
+        "/Things?$filter=Datastreams/Observations/result gt 5 and substringof('a', name)&$orderby=name,id"
+    })
+    public String request;
+
+    private BenchmarkModel model;
+    private ResourcePath path;
+    private Query query;
+
+    @Setup
+    public void setup() {
+        model = new BenchmarkModel();
+        final int split = request.indexOf('?');
+        path = model.parsePath(request.substring(0, split));
+        query = model.parseQuery(path, request.substring(split + 1));
+    }
+
+    @Benchmark
+    public String buildSelect() {
+        final BenchmarkPersistenceManager pm = model.getPersistenceManager();
+        return new QueryBuilder(pm, model.getCoreSettings(), pm.getTableCollection())
+                .forPath(path)
+                .usingQuery(query)
+                .buildSelect()
+                .getSQL(ParamType.INDEXED);
+    }
+
+}
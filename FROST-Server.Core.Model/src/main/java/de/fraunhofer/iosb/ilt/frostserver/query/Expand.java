@@ -74,6 +74,24 @@ public class Expand {
         setSubQuery(subQuery);
     }
 
+    /**
+     * Creates a copy of this Expand, with a copy of the sub-query. The parent
+     * query of the copy is set when it is added to a Query.
+     *
+     * @return A copy of this Expand.
+     */
+    public Expand copy() {
+        final Expand copy = new Expand(modelRegistry);
+        if (rawPath != null) {
+            copy.rawPath = new ArrayList<>(rawPath);
+        }
+        copy.validatedPath = validatedPath;
+        if (subQuery != null) {
+            copy.setSubQuery(subQuery.copy());
+        }
+        return copy;
+    }
+
     public NavigationProperty getPath() {
         return validatedPath;
     }
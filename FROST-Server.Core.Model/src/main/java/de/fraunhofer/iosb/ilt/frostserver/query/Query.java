@@ -76,6 +76,11 @@ public class Query {
     private boolean pkOrder = false;
     private String format;
     private Metadata metadata = Metadata.DEFAULT;
+    /**
+     * Flag indicating all matching entities should be returned, ignoring $top
+     * and the maximum data size. Used for exports, never set from the url.
+     */
+    private boolean unbounded = false;
 
     public Query(ModelRegistry modelRegistry, QueryDefaults settings, ResourcePath path) {
         this.modelRegistry = modelRegistry;
@@ -90,6 +95,37 @@ public class Query {
         this.select = new LinkedHashSet<>();
     }
 
+    /**
+     * Creates a copy of this Query, that can be changed without affecting this
+     * Query. Expands are copied recursively. The path and the expressions are
+     * shared, since they are not changed after validation.
+     *
+     * @return A copy of this Query.
+     */
+    public Query copy() {
+        final Query copy = new Query(modelRegistry, settings, path);
+        copy.entityType = entityType;
+        copy.top = top;
+        copy.skip = skip;
+        copy.count = count;
+        copy.rawSelect.addAll(rawSelect);
+        copy.select.addAll(select);
+        copy.selectDistinct = selectDistinct;
+        copy.filter = filter;
+        copy.skipFilter = skipFilter;
+        for (Expand e : expand) {
+            copy.addExpand(e.copy());
+        }
+        if (orderBy != null) {
+            copy.orderBy.addAll(orderBy);
+        }
+        copy.pkOrder = pkOrder;
+        copy.format = format;
+        copy.metadata = metadata;
+        copy.unbounded = unbounded;
+        return copy;
+    }
+
     public boolean isEmpty() {
         return top.isEmpty() && skip.isEmpty() && count.isEmpty() && select.isEmpty() && expand.isEmpty() && filter == null;
     }
@@ -150,13 +186,49 @@ public class Query {
                 pkOrder = true;
             }
         }
-        if (settings.isAlwaysOrder() && !pkOrder && !selectDistinct) {
+        final int skipMax = settings.getSkipMax();
+        if ((settings.isAlwaysOrder() || skipMax > 0) && !pkOrder && !selectDistinct) {
             orderBy.add(new OrderBy(new Path(primaryKey), OrderBy.OrderType.ASCENDING));
             pkOrder = true;
         }
+        if (skipMax > 0 && skipFilter == null && getSkip(0) > skipMax && isKeysetPageable(primaryKey)) {
+            throw new IllegalArgumentException("A $skip larger than " + skipMax + " is not allowed. Follow the nextLink, using an $orderby on properties without null values, to page through large results.");
+        }
         return this;
     }
 
+    /**
+     * Checks if the nextLinks for this query can always use a skipFilter. This
+     * is only the case if all orderby expressions are direct, selected
+     * properties that can not be null. For other queries the nextLink may fall
+     * back to a plain $skip, so a large $skip can not be rejected.
+     *
+     * @param primaryKey The primary key of the entity type of the query.
+     * @return true if all nextLinks for this query use a skipFilter.
+     */
+    private boolean isKeysetPageable(EntityPropertyMain<Id> primaryKey) {
+        for (OrderBy order : orderBy) {
+            if (!(order.getExpression() instanceof Path)) {
+                return false;
+            }
+            final List<Property> elements = ((Path) order.getExpression()).getElements();
+            if (elements.size() != 1) {
+                return false;
+            }
+            final Property property = elements.get(0);
+            if (!(property instanceof EntityPropertyMain)) {
+                return false;
+            }
+            if (!property.equals(primaryKey) && property.isNullable()) {
+                return false;
+            }
+            if (!select.isEmpty() && !select.contains(property)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public Version getVersion() {
         return path.getVersion();
     }
@@ -368,6 +440,29 @@ public class Query {
         return pkOrder;
     }
 
+    /**
+     * Check if all matching entities should be returned, ignoring $top and
+     * the maximum data size, without a nextLink.
+     *
+     * @return true if all matching entities should be returned.
+     */
+    public boolean isUnbounded() {
+        return unbounded;
+    }
+
+    /**
+     * Set if all matching entities should be returned, ignoring $top and the
+     * maximum data size, without a nextLink. Only applies to the main entity
+     * set of the request, not to expanded sets.
+     *
+     * @param unbounded true if all matching entities should be returned.
+     * @return this.
+     */
+    public Query setUnbounded(boolean unbounded) {
+        this.unbounded = unbounded;
+        return this;
+    }
+
     public Query setTop(int top) {
         if (top <= settings.getTopMax()) {
             this.top = Optional.of(top);
@@ -53,6 +53,11 @@ public class QueryDefaults {
      */
     private boolean alwaysOrder = false;
 
+    /**
+     * The maximum allowed skip, when no skipFilter is used. 0 means no limit.
+     */
+    private int skipMax = 0;
+
     public QueryDefaults(boolean absNavLinks, boolean countDefault, int topDefault, int topMax) {
         this(absNavLinks, countDefault, topDefault, topMax, false);
     }
@@ -162,4 +167,26 @@ public class QueryDefaults {
         return this;
     }
 
+    /**
+     * The maximum allowed $skip, for queries that do not use a skipFilter. If
+     * set, the primary key is always added to the orderby, so that nextLinks
+     * can use a skipFilter instead of $skip.
+     *
+     * @return the maximum allowed $skip, or 0 if there is no limit.
+     */
+    public int getSkipMax() {
+        return skipMax;
+    }
+
+    /**
+     * The maximum allowed $skip, for queries that do not use a skipFilter.
+     *
+     * @param skipMax the maximum allowed $skip, 0 for no limit.
+     * @return this.
+     */
+    public QueryDefaults setSkipMax(int skipMax) {
+        this.skipMax = skipMax;
+        return this;
+    }
+
 }
@@ -17,7 +17,10 @@
  */
 package de.fraunhofer.iosb.ilt.frostserver.formatter;
 
+import de.fraunhofer.iosb.ilt.frostserver.util.StringHelper;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
 import java.io.Writer;
 
@@ -53,4 +56,20 @@ public interface FormatWriter {
      */
     public void writeFormatted(Writer target) throws IOException;
 
+    /**
+     * Write the formatted data, UTF-8 encoded, to the target OutputStream. The
+     * stream is flushed, but not closed. Only one of the write methods can be
+     * called. Implementations that can write bytes directly should override
+     * this method.
+     *
+     * @param target the OutputStream to write the formatted data to.
+     *
+     * @throws java.io.IOException when Writing fails.
+     */
+    public default void writeFormatted(OutputStream target) throws IOException {
+        Writer writer = new OutputStreamWriter(target, StringHelper.UTF8);
+        writeFormatted(writer);
+        writer.flush();
+    }
+
 }
@@ -17,7 +17,9 @@
  */
 package de.fraunhofer.iosb.ilt.frostserver.formatter;
 
+import de.fraunhofer.iosb.ilt.frostserver.util.StringHelper;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 
 /**
@@ -40,4 +42,10 @@ public class FormatWriterGeneric implements FormatWriter {
     public void writeFormatted(Writer target) throws IOException {
         target.write(data);
     }
+
+    @Override
+    public void writeFormatted(OutputStream target) throws IOException {
+        target.write(data.getBytes(StringHelper.UTF8));
+        target.flush();
+    }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2021 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.formatter;
+
+import de.fraunhofer.iosb.ilt.frostserver.json.serialize.JsonWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A FormatWriter that serialises an object as JSON while writing, without
+ * building the formatted String first. When writing to an OutputStream, the
+ * JSON is generated directly as UTF-8.
+ */
+public class FormatWriterJson implements FormatWriter {
+
+    private final Object data;
+    private final int flushInterval;
+
+    /**
+     * Create a new FormatWriterJson.
+     *
+     * @param data The object to serialise.
+     * @param flushInterval The number of entities of an EntitySet after which
+     * the target is flushed, 0 or less for no intermediate flushing.
+     */
+    public FormatWriterJson(Object data, int flushInterval) {
+        this.data = data;
+        this.flushInterval = flushInterval;
+    }
+
+    @Override
+    public void writeFormatted(Writer target) throws IOException {
+        JsonWriter.writeObject(target, data, flushInterval);
+    }
+
+    @Override
+    public void writeFormatted(OutputStream target) throws IOException {
+        JsonWriter.writeObject(target, data, flushInterval);
+    }
+
+}
@@ -29,8 +29,11 @@ import java.util.Collection;
  */
 public class PluginResultFormatDefault implements PluginResultFormat {
 
+    private int flushInterval;
+
     @Override
     public void init(CoreSettings settings) {
+        flushInterval = settings.getHttpSettings().getInt(CoreSettings.TAG_RESPONSE_FLUSH_INTERVAL, CoreSettings.class);
         settings.getPluginManager().registerPlugin(this);
     }
 
@@ -54,7 +57,7 @@ public class PluginResultFormatDefault implements PluginResultFormat {
         if (FORMAT_NAME_EMPTY.equalsIgnoreCase(format)) {
             return new ResultFormatterEmpty();
         }
-        return new ResultFormatterDefault();
+        return new ResultFormatterDefault(flushInterval);
     }
 
 }
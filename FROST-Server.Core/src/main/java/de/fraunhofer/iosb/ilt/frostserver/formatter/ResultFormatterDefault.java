@@ -17,14 +17,12 @@
  */
 package de.fraunhofer.iosb.ilt.frostserver.formatter;
 
-import de.fraunhofer.iosb.ilt.frostserver.json.serialize.JsonWriter;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.EntitySet;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.Id;
 import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
 import de.fraunhofer.iosb.ilt.frostserver.query.Query;
 import static de.fraunhofer.iosb.ilt.frostserver.util.Constants.CONTENT_TYPE_APPLICATION_JSON;
-import java.io.IOException;
 import java.util.Map;
 import org.geojson.GeoJsonObject;
 import org.slf4j.Logger;
@@ -40,43 +38,50 @@ public class ResultFormatterDefault implements ResultFormatter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ResultFormatterDefault.class);
 
+    /**
+     * The number of entities of an EntitySet after which the output is
+     * flushed.
+     */
+    private final int flushInterval;
+
     public ResultFormatterDefault() {
+        this(0);
+    }
+
+    /**
+     * Create a new ResultFormatterDefault.
+     *
+     * @param flushInterval The number of entities of an EntitySet after which
+     * the output is flushed, 0 or less for no intermediate flushing.
+     */
+    public ResultFormatterDefault(int flushInterval) {
         LOGGER.trace("Creating a new resultFormatter.");
+        this.flushInterval = flushInterval;
     }
 
     @Override
     public FormatWriter format(ResourcePath path, Query query, Object result, boolean useAbsoluteNavigationLinks) {
-        try {
-            if (Entity.class.isAssignableFrom(result.getClass())) {
-                final Entity entity = (Entity) result;
-                LOGGER.trace("Formatting as Entity.");
-                return target -> JsonWriter.writeEntity(target, entity);
-            }
-            if (EntitySet.class.isAssignableFrom(result.getClass())) {
-                EntitySet entitySet = (EntitySet) result;
-                LOGGER.trace("Formatting as EntitySet.");
-                return target -> JsonWriter.writeEntityCollection(target, entitySet);
-            }
-            // Not an Entity nor an EntitySet.
-            String entityJsonString = "";
-            if (path != null && path.isValue()) {
-                LOGGER.trace("Formatting as $Value.");
-                if (result instanceof Map || result instanceof GeoJsonObject) {
-                    entityJsonString = JsonWriter.writeObject(result);
-                } else if (result instanceof Id) {
-                    entityJsonString = ((Id) result).getValue().toString();
-                } else {
-                    entityJsonString = result.toString();
-                }
+        if (Entity.class.isAssignableFrom(result.getClass())) {
+            LOGGER.trace("Formatting as Entity.");
+            return new FormatWriterJson(result, flushInterval);
+        }
+        if (EntitySet.class.isAssignableFrom(result.getClass())) {
+            LOGGER.trace("Formatting as EntitySet.");
+            return new FormatWriterJson(result, flushInterval);
+        }
+        // Not an Entity nor an EntitySet.
+        if (path != null && path.isValue()) {
+            LOGGER.trace("Formatting as $Value.");
+            if (result instanceof Map || result instanceof GeoJsonObject) {
+                return new FormatWriterJson(result, flushInterval);
+            } else if (result instanceof Id) {
+                return new FormatWriterGeneric(((Id) result).getValue().toString());
             } else {
-                LOGGER.trace("Formatting as Object.");
-                entityJsonString = JsonWriter.writeObject(result);
+                return new FormatWriterGeneric(result.toString());
             }
-            return new FormatWriterGeneric(entityJsonString);
-        } catch (IOException ex) {
-            LOGGER.error("Failed to format response.", ex);
         }
-        return null;
+        LOGGER.trace("Formatting as Object.");
+        return new FormatWriterJson(result, flushInterval);
     }
 
     @Override
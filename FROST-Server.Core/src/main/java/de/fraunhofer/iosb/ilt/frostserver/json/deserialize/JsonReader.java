@@ -17,6 +17,7 @@
  */
 package de.fraunhofer.iosb.ilt.frostserver.json.deserialize;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
@@ -72,13 +73,27 @@ public class JsonReader {
      * @return The created object mapper.
      */
     private static ObjectMapper createObjectMapper(ModelRegistry modelRegistry) {
+        return createObjectMapper(modelRegistry, new JsonFactory());
+    }
+
+    /**
+     * Create a new object mapper for the given model Registry, that reads
+     * using the given factory. This allows reading entities from other data
+     * formats than JSON, like Smile.
+     *
+     * @param modelRegistry The modelRegistry holding the data model to create a
+     * mapper for.
+     * @param jsonFactory The factory to create parsers with.
+     * @return The created object mapper.
+     */
+    private static ObjectMapper createObjectMapper(ModelRegistry modelRegistry, JsonFactory jsonFactory) {
         // ToDo: Allow extensions to add deserializers
 
         GeoJsonDeserializier geoJsonDeserializier = new GeoJsonDeserializier();
         for (String encodingType : GeoJsonDeserializier.ENCODINGS) {
             CustomDeserializationManager.getInstance().registerDeserializer(encodingType, geoJsonDeserializier);
         }
-        ObjectMapper mapper = new ObjectMapper()
+        ObjectMapper mapper = new ObjectMapper(jsonFactory)
                 .enable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
                 .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
 
@@ -109,6 +124,19 @@ public class JsonReader {
         mapper = getObjectMapper(modelRegistry);
     }
 
+    /**
+     * Create a reader that uses the given factory to create parsers. The
+     * mapper of this reader is not cached.
+     *
+     * @param modelRegistry The modelRegistry holding the data model.
+     * @param jsonFactory The factory to create parsers with, for instance a
+     * SmileFactory.
+     */
+    public JsonReader(ModelRegistry modelRegistry, JsonFactory jsonFactory) {
+        this.modelRegistry = modelRegistry;
+        mapper = createObjectMapper(modelRegistry, jsonFactory);
+    }
+
     public ObjectMapper getMapper() {
         return mapper;
     }
@@ -151,4 +179,12 @@ public class JsonReader {
         return mapper.readValue(value, typeReference);
     }
 
+    public <T> T parseObject(Class<T> clazz, byte[] value) throws IOException {
+        return mapper.readValue(value, clazz);
+    }
+
+    public <T> T parseObject(TypeReference<T> typeReference, byte[] value) throws IOException {
+        return mapper.readValue(value, typeReference);
+    }
+
 }
@@ -112,6 +112,10 @@ public class CustomEntityChangedMessageDeserializer extends JsonDeserializer<Ent
         if (type == null) {
             throw new IllegalArgumentException(TYPE_NOT_KNOW_YET);
         }
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            // The list is null, reading on would consume the next field.
+            return;
+        }
         JsonToken currentToken = parser.nextToken();
         while (currentToken == JsonToken.VALUE_STRING) {
             fieldName = parser.getValueAsString();
@@ -125,6 +129,10 @@ public class CustomEntityChangedMessageDeserializer extends JsonDeserializer<Ent
         if (type == null) {
             throw new IllegalArgumentException(TYPE_NOT_KNOW_YET);
         }
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            // The list is null, reading on would consume the next field.
+            return;
+        }
         JsonToken currentToken = parser.nextToken();
         while (currentToken == JsonToken.VALUE_STRING) {
             fieldName = parser.getValueAsString();
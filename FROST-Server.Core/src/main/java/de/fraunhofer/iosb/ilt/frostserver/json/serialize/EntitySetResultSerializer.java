@@ -32,8 +32,17 @@ import java.io.IOException;
  */
 public class EntitySetResultSerializer extends JsonSerializer<EntitySetResult> {
 
+    /**
+     * The name of the serialisation attribute that holds the number of
+     * entities after which the generator is flushed. If not set, or 0 or less,
+     * the generator is not flushed while writing the entities.
+     */
+    public static final String ATTRIBUTE_FLUSH_INTERVAL = "flushInterval";
+
     @Override
     public void serialize(EntitySetResult value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        final Object flushAttribute = serializers.getAttribute(ATTRIBUTE_FLUSH_INTERVAL);
+        final int flushInterval = flushAttribute instanceof Integer ? (Integer) flushAttribute : 0;
         gen.writeStartObject();
         long count = value.getValues().getCount();
         if (count >= 0) {
@@ -41,8 +50,13 @@ public class EntitySetResultSerializer extends JsonSerializer<EntitySetResult> {
         }
 
         gen.writeArrayFieldStart("value");
+        int written = 0;
         for (Entity child : value.getValues()) {
             gen.writeObject(child);
+            written++;
+            if (flushInterval > 0 && written % flushInterval == 0) {
+                gen.flush();
+            }
         }
         gen.writeEndArray();
 
@@ -18,7 +18,10 @@
 package de.fraunhofer.iosb.ilt.frostserver.json.serialize;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import de.fraunhofer.iosb.ilt.frostserver.json.mixin.MixinUtils;
@@ -30,6 +33,7 @@ import de.fraunhofer.iosb.ilt.frostserver.model.ext.EntitySetResult;
 import de.fraunhofer.iosb.ilt.frostserver.model.ext.TimeObject;
 import de.fraunhofer.iosb.ilt.frostserver.property.Property;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.time.OffsetDateTime;
 import java.util.Date;
@@ -59,7 +63,19 @@ public class JsonWriter {
     }
 
     private static ObjectMapper createObjectMapper() {
-        ObjectMapper mapper = new ObjectMapper();
+        return createObjectMapper(new JsonFactory());
+    }
+
+    /**
+     * Create a new object mapper that serialises entities in the same way as
+     * the default mapper, using the given factory. This allows serialising
+     * entities to other data formats than JSON, like Smile.
+     *
+     * @param jsonFactory The factory to create generators with.
+     * @return A new object mapper.
+     */
+    public static ObjectMapper createObjectMapper(JsonFactory jsonFactory) {
+        ObjectMapper mapper = new ObjectMapper(jsonFactory);
         mapper.setSerializationInclusion(JsonInclude.Include.ALWAYS);
         mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
         mapper.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
@@ -106,4 +122,51 @@ public class JsonWriter {
     public static String writeObject(Object object) throws IOException {
         return getObjectMapper().writeValueAsString(object);
     }
+
+    /**
+     * Write the given object as UTF-8 encoded JSON to the given stream. The
+     * stream is not closed. Entities are written directly, EntitySets are
+     * wrapped in an EntitySetResult.
+     *
+     * @param out The stream to write to.
+     * @param object The object to write.
+     * @param flushInterval The number of entities of an EntitySet after which
+     * the output is flushed, 0 or less for no intermediate flushing.
+     * @throws IOException If writing fails.
+     */
+    public static void writeObject(OutputStream out, Object object, int flushInterval) throws IOException {
+        getObjectWriter(flushInterval).writeValue(out, wrapEntitySet(object));
+    }
+
+    /**
+     * Write the given object as JSON to the given writer. The writer is not
+     * closed. Entities are written directly, EntitySets are wrapped in an
+     * EntitySetResult.
+     *
+     * @param writer The writer to write to.
+     * @param object The object to write.
+     * @param flushInterval The number of entities of an EntitySet after which
+     * the output is flushed, 0 or less for no intermediate flushing.
+     * @throws IOException If writing fails.
+     */
+    public static void writeObject(Writer writer, Object object, int flushInterval) throws IOException {
+        getObjectWriter(flushInterval).writeValue(writer, wrapEntitySet(object));
+    }
+
+    private static ObjectWriter getObjectWriter(int flushInterval) {
+        final ObjectWriter writer = getObjectMapper()
+                .writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (flushInterval > 0) {
+            return writer.withAttribute(EntitySetResultSerializer.ATTRIBUTE_FLUSH_INTERVAL, flushInterval);
+        }
+        return writer;
+    }
+
+    private static Object wrapEntitySet(Object object) {
+        if (object instanceof EntitySet) {
+            return new EntitySetResult((EntitySet) object);
+        }
+        return object;
+    }
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.messagebus;
+
+import de.fraunhofer.iosb.ilt.frostserver.json.deserialize.JsonReader;
+import de.fraunhofer.iosb.ilt.frostserver.json.serialize.JsonWriter;
+import de.fraunhofer.iosb.ilt.frostserver.model.EntityChangedMessage;
+import de.fraunhofer.iosb.ilt.frostserver.model.ModelRegistry;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Id;
+import de.fraunhofer.iosb.ilt.frostserver.property.Property;
+import de.fraunhofer.iosb.ilt.frostserver.util.MessageQueue;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A MessageQueue for EntityChangedMessages. Updates of the same entity are
+ * coalesced into one message, and messages are spilled to disk as JSON.
+ *
+ * Coalescing changes the messages waiting in the queue. A message offered to
+ * the queue is owned by the queue until it is taken, and must not be in
+ * another queue, or be changed by the sender, in that time.
+ *
+ * @author scf
+ */
+public class EntityChangedMessageQueue extends MessageQueue<EntityChangedMessage> {
+
+    /**
+     * Create a new queue.
+     *
+     * @param name The name of the queue, used for the worker threads and for
+     * the statistics in JMX.
+     * @param capacity The maximum number of messages in the queue.
+     * @param policy What to do with messages that arrive when the queue is
+     * full.
+     * @param offerTimeout The maximum number of milliseconds to wait for space
+     * in the queue.
+     */
+    public EntityChangedMessageQueue(String name, int capacity, OverflowPolicy policy, long offerTimeout) {
+        super(name, capacity, policy, offerTimeout);
+        setCoalescing(EntityChangedMessageQueue::coalesceKey, EntityChangedMessageQueue::merge);
+    }
+
+    /**
+     * Set where messages are spilled to, for the SPILL policy.
+     *
+     * @param modelRegistry The model registry used to read back the messages.
+     * @param spillDirectory The directory to create the spill file in, or
+     * null to use the temporary directory of the system.
+     * @param spillMaxSize The maximum number of messages in the spill file.
+     * @return this.
+     */
+    public EntityChangedMessageQueue setSpilling(ModelRegistry modelRegistry, File spillDirectory, int spillMaxSize) {
+        setSpilling(new JsonCodec(modelRegistry), spillDirectory, spillMaxSize);
+        return this;
+    }
+
+    private static Object coalesceKey(EntityChangedMessage message) {
+        final Entity entity = message.getEntity();
+        if (entity == null || message.getEventType() == EntityChangedMessage.Type.DELETE) {
+            return null;
+        }
+        final Id id = entity.getId();
+        if (id == null) {
+            return null;
+        }
+        return Arrays.asList(message.getEntityType(), id);
+    }
+
+    /**
+     * Merges an update into a create or update of the same entity, that is
+     * still waiting in the queue. The waiting message gets the newest version
+     * of the entity, and the fields changed by both messages. The waiting
+     * message is changed in place, not copied, so it must not be shared.
+     */
+    private static boolean merge(EntityChangedMessage waiting, EntityChangedMessage newer) {
+        if (newer.getEventType() != EntityChangedMessage.Type.UPDATE
+                || waiting.getEventType() == EntityChangedMessage.Type.DELETE) {
+            return false;
+        }
+        waiting.setEntity(newer.getEntity());
+        if (waiting.getEventType() == EntityChangedMessage.Type.UPDATE) {
+            for (Property field : newer.getFields()) {
+                waiting.addField(field);
+            }
+        }
+        return true;
+    }
+
+    private static class JsonCodec implements Codec<EntityChangedMessage> {
+
+        private final JsonReader parser;
+
+        public JsonCodec(ModelRegistry modelRegistry) {
+            parser = new JsonReader(modelRegistry);
+        }
+
+        @Override
+        public byte[] encode(EntityChangedMessage item) throws IOException {
+            return JsonWriter.getObjectMapper().writeValueAsBytes(item);
+        }
+
+        @Override
+        public EntityChangedMessage decode(byte[] data) throws IOException {
+            return parser.parseObject(EntityChangedMessage.class, data);
+        }
+    }
+}
@@ -18,17 +18,15 @@
 package de.fraunhofer.iosb.ilt.frostserver.messagebus;
 
 import de.fraunhofer.iosb.ilt.frostserver.model.EntityChangedMessage;
+import de.fraunhofer.iosb.ilt.frostserver.model.EntityType;
 import de.fraunhofer.iosb.ilt.frostserver.settings.BusSettings;
 import de.fraunhofer.iosb.ilt.frostserver.settings.ConfigDefaults;
 import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
 import de.fraunhofer.iosb.ilt.frostserver.settings.Settings;
 import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValueInt;
-import de.fraunhofer.iosb.ilt.frostserver.util.ProcessorHelper;
+import de.fraunhofer.iosb.ilt.frostserver.util.MessageQueue;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,8 +48,7 @@ public class InternalMessageBus implements MessageBus, ConfigDefaults {
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(InternalMessageBus.class);
 
-    private BlockingQueue<EntityChangedMessage> entityChangedMessageQueue;
-    private ExecutorService entityChangedExecutorService;
+    private MessageQueue<EntityChangedMessage> entityChangedMessageQueue;
     private final List<MessageListener> listeners = new CopyOnWriteArrayList<>();
 
     @Override
@@ -61,33 +58,24 @@ public class InternalMessageBus implements MessageBus, ConfigDefaults {
         int poolSize = customSettings.getInt(TAG_WORKER_COUNT, defaultValueInt(TAG_WORKER_COUNT));
         int queueSize = customSettings.getInt(TAG_QUEUE_SIZE, defaultValueInt(TAG_QUEUE_SIZE));
 
-        entityChangedMessageQueue = new ArrayBlockingQueue<>(queueSize);
-        entityChangedExecutorService = ProcessorHelper.createProcessors(
-                poolSize,
-                entityChangedMessageQueue,
-                this::handleMessage,
-                "IntBusPrc");
+        entityChangedMessageQueue = new EntityChangedMessageQueue("IntBusPrc", queueSize, busSettings.getQueueOverflowPolicy(), busSettings.getQueueOfferTimeout())
+                .setSpilling(settings.getModelRegistry(), busSettings.getQueueSpillDirectory(), busSettings.getQueueSpillMaxSize())
+                .startProcessors(poolSize, this::handleMessage);
     }
 
     @Override
     public void stop() {
-        entityChangedExecutorService.shutdown();
-        try {
-            if (entityChangedExecutorService.awaitTermination(2, TimeUnit.SECONDS)) {
-                return;
-            }
-        } catch (InterruptedException ex) {
-            LOGGER.error("Interrupted while waiting for shutdown.", ex);
-            Thread.currentThread().interrupt();
+        entityChangedMessageQueue.stop(2, TimeUnit.SECONDS);
+        final int left = entityChangedMessageQueue.getDepth();
+        if (left > 0) {
+            LOGGER.warn("There were {} messages left on the queue.", left);
         }
-        List<Runnable> list = entityChangedExecutorService.shutdownNow();
-        LOGGER.warn("There were {} messages left on the queue.", list.size());
     }
 
     @Override
     public void sendMessage(EntityChangedMessage message) {
         if (!entityChangedMessageQueue.offer(message)) {
-            LOGGER.error("Failed to add message to queue. Increase the queue size to allow a bigger buffer, or increase the worker pool size to empty the buffer quicker.");
+            LOGGER.error("Failed to add message to queue. Increase the queue size to allow a bigger buffer, increase the worker pool size to empty the buffer quicker, or change the queue overflow policy.");
         }
     }
 
@@ -101,6 +89,16 @@ public class InternalMessageBus implements MessageBus, ConfigDefaults {
         listeners.remove(listener);
     }
 
+    @Override
+    public boolean hasListenersFor(EntityType entityType) {
+        for (MessageListener listener : listeners) {
+            if (listener.isInterestedIn(entityType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void handleMessage(EntityChangedMessage message) {
         for (MessageListener listener : listeners) {
             try {
@@ -18,6 +18,7 @@
 package de.fraunhofer.iosb.ilt.frostserver.messagebus;
 
 import de.fraunhofer.iosb.ilt.frostserver.model.EntityChangedMessage;
+import de.fraunhofer.iosb.ilt.frostserver.model.EntityType;
 import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
 
 /**
@@ -44,4 +45,18 @@ public interface MessageBus {
     public void addMessageListener(MessageListener listener);
 
     public void removeMessageListener(MessageListener listener);
+
+    /**
+     * Checks if there is anyone listening for messages about entities of the
+     * given type. If this returns false, the persistence manager does not need
+     * to create messages for changes to entities of this type. Bus
+     * implementations that can not know if there are listeners, for instance
+     * because the listeners are on a different node, must return true.
+     *
+     * @param entityType The type of entity to check.
+     * @return true if messages for the given type may be consumed.
+     */
+    public default boolean hasListenersFor(EntityType entityType) {
+        return true;
+    }
 }
@@ -18,6 +18,7 @@
 package de.fraunhofer.iosb.ilt.frostserver.messagebus;
 
 import de.fraunhofer.iosb.ilt.frostserver.model.EntityChangedMessage;
+import de.fraunhofer.iosb.ilt.frostserver.model.EntityType;
 
 /**
  *
@@ -32,4 +33,16 @@ public interface MessageListener {
      * @param message The message that was received.
      */
     public void messageReceived(EntityChangedMessage message);
+
+    /**
+     * Checks if the listener currently wants to receive messages about
+     * entities of the given type. Used to avoid the work of creating messages
+     * that no-one will use. Listeners that can not tell should return true.
+     *
+     * @param entityType The type of entity to check.
+     * @return true if messages for the given type should be delivered.
+     */
+    public default boolean isInterestedIn(EntityType entityType) {
+        return true;
+    }
 }
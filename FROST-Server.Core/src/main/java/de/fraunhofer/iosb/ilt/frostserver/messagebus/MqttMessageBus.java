@@ -18,7 +18,9 @@
 package de.fraunhofer.iosb.ilt.frostserver.messagebus;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import de.fraunhofer.iosb.ilt.frostserver.json.deserialize.JsonReader;
 import de.fraunhofer.iosb.ilt.frostserver.json.serialize.JsonWriter;
 import de.fraunhofer.iosb.ilt.frostserver.model.EntityChangedMessage;
@@ -31,20 +33,18 @@ import de.fraunhofer.iosb.ilt.frostserver.settings.Settings;
 import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValue;
 import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValueInt;
 import de.fraunhofer.iosb.ilt.frostserver.util.ChangingStatusLogger;
-import de.fraunhofer.iosb.ilt.frostserver.util.ProcessorHelper;
+import de.fraunhofer.iosb.ilt.frostserver.util.MessageQueue;
 import de.fraunhofer.iosb.ilt.frostserver.util.StringHelper;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 import org.eclipse.paho.client.mqttv3.IMqttActionListener;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
 import org.eclipse.paho.client.mqttv3.IMqttToken;
@@ -80,25 +80,38 @@ public class MqttMessageBus implements MessageBus, MqttCallback, ConfigDefaults
     public static final String TAG_QOS_LEVEL = "qosLevel";
     @DefaultValueInt(50)
     public static final String TAG_MAX_IN_FLIGHT = "maxInFlight";
+    @DefaultValueInt(1)
+    public static final String TAG_MAX_FRAME_SIZE = "maxFrameSize";
+    @DefaultValueInt(0)
+    public static final String TAG_MAX_FRAME_DELAY = "maxFrameDelay";
+    @DefaultValue("JSON")
+    public static final String TAG_FRAME_FORMAT = "frameFormat";
+
+    public static final String FRAME_FORMAT_SMILE = "SMILE";
 
     /**
      * The logger for this class.
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(MqttMessageBus.class);
 
+    /**
+     * The header that starts each Smile encoded frame.
+     */
+    private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+    private static final TypeReference<List<EntityChangedMessage>> TYPE_LIST_MESSAGES = new TypeReference<List<EntityChangedMessage>>() {
+        // Empty on purpose.
+    };
+
     private int sendPoolSize;
     private int sendQueueSize;
     private int recvPoolSize;
     private int recvQueueSize;
-    private BlockingQueue<EntityChangedMessage> sendQueue;
-    private ExecutorService sendService;
-    private BlockingQueue<EntityChangedMessage> recvQueue;
-    private ExecutorService recvService;
+    private MessageQueue<EntityChangedMessage> sendQueue;
+    private MessageQueue<EntityChangedMessage> recvQueue;
     private ScheduledExecutorService maintenanceTimer;
     private final List<MessageListener> listeners = new CopyOnWriteArrayList<>();
 
     private final ChangingStatusLogger statusLogger = new ChangingStatusLogger(LOGGER);
-    private final AtomicInteger sendQueueCount = new AtomicInteger();
     private final LoggingStatus logStatus = new LoggingStatus();
 
     private String broker;
@@ -107,10 +120,14 @@ public class MqttMessageBus implements MessageBus, MqttCallback, ConfigDefaults
     private String topicName;
     private int qosLevel;
     private int maxInFlight;
+    private int maxFrameSize;
+    private long maxFrameDelay;
+    private boolean smileFrames;
     private boolean listening = false;
 
     private ObjectMapper formatter;
     private JsonReader parser;
+    private JsonReader smileParser;
 
     @Override
     public void init(CoreSettings settings) {
@@ -121,31 +138,25 @@ public class MqttMessageBus implements MessageBus, MqttCallback, ConfigDefaults
         recvPoolSize = customSettings.getInt(TAG_RECV_WORKER_COUNT, getClass());
         recvQueueSize = customSettings.getInt(TAG_RECV_QUEUE_SIZE, getClass());
 
-        sendQueue = new ArrayBlockingQueue<>(sendQueueSize);
-        sendService = ProcessorHelper.createProcessors(
-                sendPoolSize,
-                sendQueue,
-                this::handleMessageSent,
-                "mqtt-BusS");
+        final ModelRegistry modelRegistry = settings.getModelRegistry();
+        sendQueue = new EntityChangedMessageQueue("mqtt-BusS", sendQueueSize, busSettings.getQueueOverflowPolicy(), busSettings.getQueueOfferTimeout())
+                .setSpilling(modelRegistry, busSettings.getQueueSpillDirectory(), busSettings.getQueueSpillMaxSize())
+                .startProcessors(sendPoolSize, this::handleMessageSent);
         logStatus.setSendQueueSize(sendQueueSize);
 
-        recvQueue = new ArrayBlockingQueue<>(recvQueueSize);
-        recvService = ProcessorHelper.createProcessors(
-                recvPoolSize,
-                recvQueue,
-                this::handleMessageReceived,
-                "mqtt-BusR");
+        recvQueue = new EntityChangedMessageQueue("mqtt-BusR", recvQueueSize, busSettings.getQueueOverflowPolicy(), busSettings.getQueueOfferTimeout())
+                .setSpilling(modelRegistry, busSettings.getQueueSpillDirectory(), busSettings.getQueueSpillMaxSize())
+                .startProcessors(recvPoolSize, this::handleMessageReceived);
 
         broker = customSettings.get(TAG_MQTT_BROKER, getClass());
         topicName = customSettings.get(TAG_TOPIC_NAME, getClass());
         qosLevel = customSettings.getInt(TAG_QOS_LEVEL, getClass());
         maxInFlight = customSettings.getInt(TAG_MAX_IN_FLIGHT, getClass());
+        maxFrameSize = Math.max(1, customSettings.getInt(TAG_MAX_FRAME_SIZE, getClass()));
+        maxFrameDelay = customSettings.getInt(TAG_MAX_FRAME_DELAY, getClass());
+        initFrameFormat(modelRegistry, FRAME_FORMAT_SMILE.equalsIgnoreCase(customSettings.get(TAG_FRAME_FORMAT, getClass())));
         connect();
 
-        formatter = JsonWriter.getObjectMapper();
-        final ModelRegistry modelRegistry = settings.getModelRegistry();
-        parser = new JsonReader(modelRegistry);
-
         long queueLoggingInterval = settings.getSettings().getInt(CoreSettings.TAG_QUEUE_LOGGING_INTERVAL, CoreSettings.class);
         if (queueLoggingInterval > 0) {
             statusLogger
@@ -157,6 +168,24 @@ public class MqttMessageBus implements MessageBus, MqttCallback, ConfigDefaults
         maintenanceTimer.scheduleWithFixedDelay(this::connect, 1, 1, TimeUnit.MINUTES);
     }
 
+    /**
+     * Sets up the encoding of outgoing frames, and the decoders for incoming
+     * frames.
+     *
+     * @param modelRegistry The model registry to use for decoding messages.
+     * @param smileFrames Flag indicating outgoing frames are Smile encoded.
+     */
+    void initFrameFormat(ModelRegistry modelRegistry, boolean smileFrames) {
+        this.smileFrames = smileFrames;
+        if (smileFrames) {
+            formatter = JsonWriter.createObjectMapper(new SmileFactory());
+        } else {
+            formatter = JsonWriter.getObjectMapper();
+        }
+        parser = new JsonReader(modelRegistry);
+        smileParser = new JsonReader(modelRegistry, new SmileFactory());
+    }
+
     private synchronized void connect() {
         if (client == null) {
             try {
@@ -258,8 +287,8 @@ public class MqttMessageBus implements MessageBus, MqttCallback, ConfigDefaults
         if (maintenanceTimer != null) {
             maintenanceTimer.shutdownNow();
         }
-        ProcessorHelper.shutdownProcessors(sendService, sendQueue, 10, TimeUnit.SECONDS);
-        ProcessorHelper.shutdownProcessors(recvService, recvQueue, 10, TimeUnit.SECONDS);
+        sendQueue.stop(10, TimeUnit.SECONDS);
+        recvQueue.stop(10, TimeUnit.SECONDS);
         statusLogger.stop();
         LOGGER.info("Message bus closed.");
     }
@@ -267,10 +296,10 @@ public class MqttMessageBus implements MessageBus, MqttCallback, ConfigDefaults
     @Override
     public void sendMessage(EntityChangedMessage message) {
         if (sendQueue.offer(message)) {
-            logStatus.setSendQueueCount(sendQueueCount.incrementAndGet());
+            logStatus.setSendQueueCount(sendQueue.getDepth());
         } else {
-            LOGGER.error("Failed to add message to send-queue. Increase {}{} (currently {}) to allow a bigger buffer, or increase {}{} (currently {}) to empty the buffer quicker.",
-                    PREFIX_BUS, TAG_SEND_QUEUE_SIZE, sendQueueSize, PREFIX_BUS, TAG_SEND_WORKER_COUNT, sendPoolSize);
+            LOGGER.error("Failed to add message to send-queue. Increase {}{} (currently {}) to allow a bigger buffer, increase {}{} (currently {}) to empty the buffer quicker, or change {}{}.",
+                    PREFIX_BUS, TAG_SEND_QUEUE_SIZE, sendQueueSize, PREFIX_BUS, TAG_SEND_WORKER_COUNT, sendPoolSize, PREFIX_BUS, BusSettings.TAG_QUEUE_OVERFLOW_POLICY);
         }
     }
 
@@ -291,19 +320,74 @@ public class MqttMessageBus implements MessageBus, MqttCallback, ConfigDefaults
     }
 
     private void handleMessageSent(EntityChangedMessage message) {
-        logStatus.setSendQueueCount(sendQueueCount.decrementAndGet());
+        final List<EntityChangedMessage> frame = collectFrame(message);
+        logStatus.setSendQueueCount(sendQueue.getDepth());
         try {
-            String serialisedMessage = formatter.writeValueAsString(message);
-            byte[] bytes = serialisedMessage.getBytes(StringHelper.UTF8);
+            final byte[] bytes = encodeFrame(frame);
             if (!client.isConnected()) {
                 connect();
             }
             client.publish(topicName, bytes, qosLevel, false);
         } catch (MqttException | JsonProcessingException ex) {
-            LOGGER.error("Failed to publish message to bus.", ex);
+            LOGGER.error("Failed to publish {} messages to bus.", frame.size(), ex);
         }
     }
 
+    /**
+     * Encodes the messages of a frame. A frame with a single message is, when
+     * using JSON, sent as just that message, so nodes of older versions can
+     * read it. Larger JSON frames, and all Smile frames, are lists of
+     * messages that older nodes can not read.
+     *
+     * Raw JSON values loaded from the database, like jsonb properties and
+     * GeoJSON locations, are written verbatim only to JSON frames. For Smile
+     * frames they have to be parsed first, and re-encoded.
+     *
+     * @param frame The messages to encode.
+     * @return The encoded frame.
+     * @throws JsonProcessingException If the messages can not be encoded.
+     */
+    byte[] encodeFrame(List<EntityChangedMessage> frame) throws JsonProcessingException {
+        if (frame.size() == 1 && !smileFrames) {
+            return formatter.writeValueAsBytes(frame.get(0));
+        }
+        return formatter.writeValueAsBytes(frame);
+    }
+
+    /**
+     * Collects messages from the send queue into a frame, until the frame
+     * holds maxFrameSize messages, or maxFrameDelay milliseconds have passed.
+     *
+     * @param first The first message of the frame.
+     * @return The messages to send in one frame.
+     */
+    private List<EntityChangedMessage> collectFrame(EntityChangedMessage first) {
+        final List<EntityChangedMessage> frame = new ArrayList<>();
+        frame.add(first);
+        if (maxFrameSize <= 1) {
+            return frame;
+        }
+        sendQueue.drainTo(frame, maxFrameSize - frame.size());
+        final long deadline = System.currentTimeMillis() + maxFrameDelay;
+        try {
+            while (frame.size() < maxFrameSize) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                final EntityChangedMessage next = sendQueue.poll(remaining, TimeUnit.MILLISECONDS);
+                if (next == null) {
+                    break;
+                }
+                frame.add(next);
+                sendQueue.drainTo(frame, maxFrameSize - frame.size());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return frame;
+    }
+
     @Override
     public void connectionLost(Throwable cause) {
         if (listening) {
@@ -315,20 +399,61 @@ public class MqttMessageBus implements MessageBus, MqttCallback, ConfigDefaults
 
     @Override
     public void messageArrived(String topic, MqttMessage mqttMessage) throws IOException {
-        String serialisedEcMessage = new String(mqttMessage.getPayload(), StringHelper.UTF8);
-        LOGGER.trace("Received: {}", serialisedEcMessage);
-        EntityChangedMessage ecMessage;
+        final byte[] payload = mqttMessage.getPayload();
+        final List<EntityChangedMessage> ecMessages;
         try {
-            ecMessage = parser.parseObject(EntityChangedMessage.class, serialisedEcMessage);
-        } catch (IllegalArgumentException ex) {
+            ecMessages = decodeFrame(payload);
+        } catch (IOException | IllegalArgumentException ex) {
             LOGGER.error("Failed to decode message from bus. Details in DEBUG.");
-            LOGGER.debug("Failed to decode message: {}", serialisedEcMessage, ex);
+            LOGGER.debug("Failed to decode message: {}", new String(payload, StringHelper.UTF8), ex);
             return;
         }
-        if (!recvQueue.offer(ecMessage)) {
-            LOGGER.error("Failed to add message to receive-queue. Increase {}{} (currently {}) to allow a bigger buffer, or increase {}{} (currently {}) to empty the buffer quicker.",
-                    PREFIX_BUS, TAG_RECV_QUEUE_SIZE, recvQueueSize, PREFIX_BUS, TAG_RECV_WORKER_COUNT, recvPoolSize);
+        for (EntityChangedMessage ecMessage : ecMessages) {
+            if (!recvQueue.offer(ecMessage)) {
+                LOGGER.error("Failed to add message to receive-queue. Increase {}{} (currently {}) to allow a bigger buffer, increase {}{} (currently {}) to empty the buffer quicker, or change {}{}.",
+                        PREFIX_BUS, TAG_RECV_QUEUE_SIZE, recvQueueSize, PREFIX_BUS, TAG_RECV_WORKER_COUNT, recvPoolSize, PREFIX_BUS, BusSettings.TAG_QUEUE_OVERFLOW_POLICY);
+            }
+        }
+    }
+
+    /**
+     * Decodes a frame into messages. A frame is either a Smile encoded list of
+     * messages, a JSON list of messages, or a single JSON message. The format
+     * is detected from the content, so nodes with different frame settings can
+     * share a bus.
+     *
+     * @param payload The frame to decode.
+     * @return The messages in the frame.
+     * @throws IOException If the frame can not be decoded.
+     */
+    List<EntityChangedMessage> decodeFrame(byte[] payload) throws IOException {
+        if (isSmile(payload)) {
+            return smileParser.parseObject(TYPE_LIST_MESSAGES, payload);
+        }
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("Received: {}", new String(payload, StringHelper.UTF8));
+        }
+        for (byte b : payload) {
+            if (b == '[') {
+                return parser.parseObject(TYPE_LIST_MESSAGES, payload);
+            }
+            if (!Character.isWhitespace(b)) {
+                break;
+            }
+        }
+        return Collections.singletonList(parser.parseObject(EntityChangedMessage.class, payload));
+    }
+
+    private static boolean isSmile(byte[] payload) {
+        if (payload.length < SMILE_HEADER.length) {
+            return false;
+        }
+        for (int i = 0; i < SMILE_HEADER.length; i++) {
+            if (payload[i] != SMILE_HEADER[i]) {
+                return false;
+            }
         }
+        return true;
     }
 
     @Override
@@ -17,6 +17,7 @@
  */
 package de.fraunhofer.iosb.ilt.frostserver.mqtt;
 
+import de.fraunhofer.iosb.ilt.frostserver.messagebus.EntityChangedMessageQueue;
 import de.fraunhofer.iosb.ilt.frostserver.messagebus.MessageListener;
 import de.fraunhofer.iosb.ilt.frostserver.model.EntityChangedMessage;
 import de.fraunhofer.iosb.ilt.frostserver.model.EntityType;
@@ -41,15 +42,18 @@ import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
 import de.fraunhofer.iosb.ilt.frostserver.settings.MqttSettings;
 import de.fraunhofer.iosb.ilt.frostserver.settings.UnknownVersionException;
 import de.fraunhofer.iosb.ilt.frostserver.util.ChangingStatusLogger;
-import de.fraunhofer.iosb.ilt.frostserver.util.ProcessorHelper;
+import de.fraunhofer.iosb.ilt.frostserver.util.MessageQueue;
+import de.fraunhofer.iosb.ilt.frostserver.util.MessageQueue.OverflowPolicy;
+import de.fraunhofer.iosb.ilt.frostserver.util.StringHelper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
@@ -69,15 +73,11 @@ public class MqttManager implements SubscriptionListener, MessageListener, Entit
     private final SubscriptionFactory subscriptionFactory;
 
     private MqttServer server;
-    private BlockingQueue<EntityChangedMessage> entityChangedEventQueue;
-    private ExecutorService entityChangedExecutorService;
-    private BlockingQueue<EntityCreateEvent> entityCreateEventQueue;
-    private ExecutorService entityCreateExecutorService;
+    private MessageQueue<EntityChangedMessage> entityChangedEventQueue;
+    private MessageQueue<EntityCreateEvent> entityCreateEventQueue;
 
     private final ChangingStatusLogger statusLogger = new ChangingStatusLogger(LOGGER);
     private final AtomicInteger topicCount = new AtomicInteger();
-    private final AtomicInteger entityChangedQueueSize = new AtomicInteger();
-    private final AtomicInteger entityCreateQueueSize = new AtomicInteger();
     private final LoggingStatus logStatus = new LoggingStatus();
 
     private boolean enabledMqtt = false;
@@ -103,20 +103,22 @@ public class MqttManager implements SubscriptionListener, MessageListener, Entit
         if (mqttSettings.isEnableMqtt()) {
             enabledMqtt = true;
             shutdown = false;
-            entityChangedEventQueue = new ArrayBlockingQueue<>(mqttSettings.getSubscribeMessageQueueSize());
             // start watching for EntityChangedEvents
-            entityChangedExecutorService = ProcessorHelper.createProcessors(
-                    mqttSettings.getSubscribeThreadPoolSize(),
-                    entityChangedEventQueue,
-                    this::handleEntityChangedEvent,
-                    "Mqtt-EntityChangedProcessor");
+            entityChangedEventQueue = new EntityChangedMessageQueue(
+                    "Mqtt-EntityChangedProcessor",
+                    mqttSettings.getSubscribeMessageQueueSize(),
+                    mqttSettings.getQueueOverflowPolicy(),
+                    mqttSettings.getQueueOfferTimeout())
+                    .setSpilling(modelRegistry, mqttSettings.getQueueSpillDirectory(), mqttSettings.getQueueSpillMaxSize())
+                    .startProcessors(mqttSettings.getSubscribeThreadPoolSize(), this::handleEntityChangedEvent);
             // start watching for EntityCreateEvents
-            entityCreateEventQueue = new ArrayBlockingQueue<>(mqttSettings.getCreateMessageQueueSize());
-            entityCreateExecutorService = ProcessorHelper.createProcessors(
-                    mqttSettings.getCreateThreadPoolSize(),
-                    entityCreateEventQueue,
-                    this::handleEntityCreateEvent,
-                    "Mqtt-EntityCreateProcessor");
+            entityCreateEventQueue = new MessageQueue<EntityCreateEvent>(
+                    "Mqtt-EntityCreateProcessor",
+                    mqttSettings.getCreateMessageQueueSize(),
+                    mqttSettings.getQueueOverflowPolicy(),
+                    mqttSettings.getQueueOfferTimeout())
+                    .setSpilling(new EntityCreateEventCodec(), mqttSettings.getQueueSpillDirectory(), mqttSettings.getQueueSpillMaxSize())
+                    .startProcessors(mqttSettings.getCreateThreadPoolSize(), this::handleEntityCreateEvent);
             // start MQTT server
             server = MqttServerFactory.getInstance().get(settings);
             server.addSubscriptionListener(this);
@@ -131,10 +133,8 @@ public class MqttManager implements SubscriptionListener, MessageListener, Entit
             }
         } else {
             enabledMqtt = false;
-            entityChangedExecutorService = null;
-            entityChangedEventQueue = new ArrayBlockingQueue<>(1);
-            entityCreateExecutorService = null;
-            entityCreateEventQueue = new ArrayBlockingQueue<>(1);
+            entityChangedEventQueue = new MessageQueue<>("Mqtt-EntityChangedProcessor", 1, OverflowPolicy.DROP, 0);
+            entityCreateEventQueue = new MessageQueue<>("Mqtt-EntityCreateProcessor", 1, OverflowPolicy.DROP, 0);
             server = null;
         }
     }
@@ -142,15 +142,15 @@ public class MqttManager implements SubscriptionListener, MessageListener, Entit
     public void shutdown() {
         shutdown = true;
         statusLogger.stop();
-        ProcessorHelper.shutdownProcessors(entityChangedExecutorService, entityChangedEventQueue, 10, TimeUnit.SECONDS);
-        ProcessorHelper.shutdownProcessors(entityCreateExecutorService, entityCreateEventQueue, 10, TimeUnit.SECONDS);
+        entityChangedEventQueue.stop(10, TimeUnit.SECONDS);
+        entityCreateEventQueue.stop(10, TimeUnit.SECONDS);
         if (server != null) {
             server.stop();
         }
     }
 
     private void handleEntityChangedEvent(EntityChangedMessage message) {
-        logStatus.setEntityChangedQueueSize(entityChangedQueueSize.decrementAndGet());
+        logStatus.setEntityChangedQueueSize(entityChangedEventQueue.getDepth());
         final EntityChangedMessage.Type eventType = message.getEventType();
         EntityType entityType = message.getEntityType();
         LOGGER.trace("Received a {} message for a {}.", eventType, entityType);
@@ -166,16 +166,29 @@ public class MqttManager implements SubscriptionListener, MessageListener, Entit
         Entity entity = message.getEntity();
         Set<Property> fields = message.getFields();
         try (PersistenceManager persistenceManager = PersistenceManagerFactory.getInstance(settings).create()) {
-            subscriptions.get(entityType).handleEntityChanged(persistenceManager, entity, fields);
+            subscriptions.get(entityType).handleEntityChanged(persistenceManager, entity, fields, new HashMap<>());
         } catch (Exception ex) {
             LOGGER.error("error handling MQTT subscriptions", ex);
         }
     }
 
-    public void notifySubscription(Subscription subscription, Entity entity) {
+    /**
+     * Publish the given entity on the topic of the given subscription.
+     *
+     * @param subscription The subscription to publish for.
+     * @param entity The entity to publish.
+     * @param payloads The payloads already generated for the entity, by the
+     * format key of the subscriptions that generated them.
+     */
+    public void notifySubscription(Subscription subscription, Entity entity, Map<Object, byte[]> payloads) {
         final String topic = subscription.getTopic();
         try {
-            String payload = subscription.formatMessage(entity);
+            final Object formatKey = subscription.getFormatKey();
+            byte[] payload = payloads.get(formatKey);
+            if (payload == null) {
+                payload = subscription.formatMessage(entity).getBytes(StringHelper.UTF8);
+                payloads.put(formatKey, payload);
+            }
             server.publish(topic, payload, settings.getMqttSettings().getQosLevel());
         } catch (IOException ex) {
             LOGGER.error("publishing to MQTT on topic '{}' failed", topic, ex);
@@ -183,7 +196,7 @@ public class MqttManager implements SubscriptionListener, MessageListener, Entit
     }
 
     private void handleEntityCreateEvent(EntityCreateEvent e) {
-        logStatus.setEntityCreateQueueSize(entityCreateQueueSize.decrementAndGet());
+        logStatus.setEntityCreateQueueSize(entityCreateEventQueue.getDepth());
         final String topic = e.getTopic();
         final Version version;
         try {
@@ -216,9 +229,9 @@ public class MqttManager implements SubscriptionListener, MessageListener, Entit
             return;
         }
         if (entityChangedEventQueue.offer(e)) {
-            logStatus.setEntityChangedQueueSize(entityChangedQueueSize.incrementAndGet());
+            logStatus.setEntityChangedQueueSize(entityChangedEventQueue.getDepth());
         } else {
-            LOGGER.warn("EntityChangedevent discarded because message queue is full {}! Increase mqtt.SubscribeMessageQueueSize and/or mqtt.SubscribeThreadPoolSize.", entityChangedEventQueue.size());
+            LOGGER.warn("EntityChangedevent discarded because message queue is full {}! Increase mqtt.SubscribeMessageQueueSize and/or mqtt.SubscribeThreadPoolSize, or change mqtt.queueOverflowPolicy.", entityChangedEventQueue.getDepth());
         }
     }
 
@@ -252,15 +265,24 @@ public class MqttManager implements SubscriptionListener, MessageListener, Entit
         entityChanged(message);
     }
 
+    @Override
+    public boolean isInterestedIn(EntityType entityType) {
+        if (shutdown || !enabledMqtt) {
+            return false;
+        }
+        final SubscriptionManager subscriptionManager = subscriptions.get(entityType);
+        return subscriptionManager != null && subscriptionManager.hasSubscriptions();
+    }
+
     @Override
     public void onEntityCreate(EntityCreateEvent e) {
         if (shutdown || !enabledMqtt) {
             return;
         }
         if (entityCreateEventQueue.offer(e)) {
-            logStatus.setEntityCreateQueueSize(entityCreateQueueSize.incrementAndGet());
+            logStatus.setEntityCreateQueueSize(entityCreateEventQueue.getDepth());
         } else {
-            LOGGER.warn("EntityCreateEvent discarded because message queue is full {}! Increase mqtt.SubscribeMessageQueueSize and/or mqtt.SubscribeThreadPoolSize", entityCreateEventQueue.size());
+            LOGGER.warn("EntityCreateEvent discarded because message queue is full {}! Increase mqtt.SubscribeMessageQueueSize and/or mqtt.SubscribeThreadPoolSize, or change mqtt.queueOverflowPolicy.", entityCreateEventQueue.getDepth());
         }
     }
 
@@ -277,6 +299,31 @@ public class MqttManager implements SubscriptionListener, MessageListener, Entit
         return version;
     }
 
+    /**
+     * Converts EntityCreateEvents to and from bytes, for spilling them to disk.
+     */
+    private class EntityCreateEventCodec implements MessageQueue.Codec<EntityCreateEvent> {
+
+        @Override
+        public byte[] encode(EntityCreateEvent item) throws IOException {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeUTF(item.getTopic());
+                out.write(item.getPayload().getBytes(StringHelper.UTF8));
+            }
+            return bytes.toByteArray();
+        }
+
+        @Override
+        public EntityCreateEvent decode(byte[] data) throws IOException {
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+                final String topic = in.readUTF();
+                final String payload = new String(in.readAllBytes(), StringHelper.UTF8);
+                return new EntityCreateEvent(MqttManager.this, topic, payload);
+            }
+        }
+    }
+
     private static class LoggingStatus extends ChangingStatusLogger.ChangingStatusDefault {
 
         public static final String MESSAGE = "entityCreateQueue: {}, entityChangedQueue: {}, topics: {}";
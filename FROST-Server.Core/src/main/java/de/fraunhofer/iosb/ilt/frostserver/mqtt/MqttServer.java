@@ -20,6 +20,7 @@ package de.fraunhofer.iosb.ilt.frostserver.mqtt;
 import de.fraunhofer.iosb.ilt.frostserver.mqtt.create.EntityCreateListener;
 import de.fraunhofer.iosb.ilt.frostserver.mqtt.subscription.SubscriptionListener;
 import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import de.fraunhofer.iosb.ilt.frostserver.util.StringHelper;
 
 /**
  *
@@ -35,6 +36,18 @@ public interface MqttServer {
 
     public void publish(String topic, String payload, int qos);
 
+    /**
+     * Publish the given, UTF-8 encoded, payload. Implementations should
+     * override this method if they can use the bytes directly.
+     *
+     * @param topic The topic to publish on.
+     * @param payload The UTF-8 encoded payload.
+     * @param qos The QoS level to publish with.
+     */
+    public default void publish(String topic, byte[] payload, int qos) {
+        publish(topic, new String(payload, StringHelper.UTF8), qos);
+    }
+
     public void addSubscriptionListener(SubscriptionListener listener);
 
     public void removeSubscriptionListener(SubscriptionListener listener);
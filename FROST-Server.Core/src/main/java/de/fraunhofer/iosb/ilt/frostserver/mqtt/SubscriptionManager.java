@@ -45,53 +45,101 @@ class SubscriptionManager {
      * /Datastreams(1)/Observations
      */
     private final Map<NavigationPropertyMain, SubscriptionSetDirectParent> parentedSubscriptions = new HashMap<>();
+    /**
+     * Subscriptions that are keyed to an entity with a fixed ID, that is
+     * related to the changed entity through a path of relations. For example:
+     * /Things(1)/Datastreams/Observations
+     */
+    private final SubscriptionSetIndirectParent indirectSubscriptions;
     /**
      * All other subscriptions.
      */
     private final SubscriptionSet complexSubscriptions;
     private final MqttManager mqttManager;
+    /**
+     * The global topic counter, for all entity types.
+     */
     private final AtomicInteger topicCount;
+    /**
+     * The topic counter for this entity type.
+     */
+    private final AtomicInteger typeTopicCount = new AtomicInteger();
 
     public SubscriptionManager(EntityType entityType, MqttManager mqttManager, AtomicInteger topicCount) {
         this.entityType = entityType;
         this.mqttManager = mqttManager;
         this.topicCount = topicCount;
-        complexSubscriptions = new SubscriptionSet(topicCount);
+        indirectSubscriptions = new SubscriptionSetIndirectParent(mqttManager, entityType, typeTopicCount);
+        complexSubscriptions = new SubscriptionSet(typeTopicCount);
     }
 
     public EntityType getEntityType() {
         return entityType;
     }
 
-    public void handleEntityChanged(PersistenceManager persistenceManager, Entity entity, Set<Property> fields) {
+    /**
+     * Checks if there are any subscriptions for the entity type of this
+     * manager.
+     *
+     * @return true if there are subscriptions.
+     */
+    public boolean hasSubscriptions() {
+        return typeTopicCount.get() > 0;
+    }
+
+    /**
+     * Notify all subscriptions that match the given changed entity.
+     *
+     * @param persistenceManager The PersistenceManager to use for queries.
+     * @param entity The entity that changed.
+     * @param fields The fields of the entity that changed.
+     * @param payloads The payloads generated for the entity, by format key, to
+     * be reused for subscriptions with the same format.
+     */
+    public void handleEntityChanged(PersistenceManager persistenceManager, Entity entity, Set<Property> fields, Map<Object, byte[]> payloads) {
         for (SubscriptionSetDirectParent subSet : parentedSubscriptions.values()) {
-            subSet.handleEntityChanged(persistenceManager, entity, fields);
+            subSet.handleEntityChanged(persistenceManager, entity, fields, payloads);
         }
+        indirectSubscriptions.handleEntityChanged(persistenceManager, entity, fields, payloads);
         for (Subscription subscription : complexSubscriptions.getSubscriptions().keySet()) {
             if (subscription.matches(persistenceManager, entity, fields)) {
-                mqttManager.notifySubscription(subscription, entity);
+                mqttManager.notifySubscription(subscription, entity, payloads);
             }
         }
     }
 
     public synchronized void addSubscription(Subscription subscription) {
+        final int oldCount = typeTopicCount.get();
+        addSubscriptionToSet(subscription);
+        topicCount.addAndGet(typeTopicCount.get() - oldCount);
+    }
+
+    private void addSubscriptionToSet(Subscription subscription) {
         NavigationPropertyMain parentRelation = subscription.getParentRelation();
         if (parentRelation != null) {
-            SubscriptionSetDirectParent parentSet = parentedSubscriptions.computeIfAbsent(parentRelation, t -> new SubscriptionSetDirectParent(mqttManager, parentRelation, topicCount));
+            SubscriptionSetDirectParent parentSet = parentedSubscriptions.computeIfAbsent(parentRelation, t -> new SubscriptionSetDirectParent(mqttManager, parentRelation, typeTopicCount));
             if (parentSet.addSubscription(subscription)) {
                 return;
             }
         }
+        if (subscription.getIndirectParentPath() != null && indirectSubscriptions.addSubscription(subscription)) {
+            return;
+        }
         complexSubscriptions.addSubscription(subscription);
     }
 
     public synchronized void removeSubscription(Subscription subscription) {
+        final int oldCount = typeTopicCount.get();
         NavigationPropertyMain parentRelation = subscription.getParentRelation();
         if (parentRelation != null) {
             SubscriptionSetDirectParent parentSet = parentedSubscriptions.get(parentRelation);
             parentSet.removeSubscription(subscription);
         }
+        if (subscription.getIndirectParentPath() != null) {
+            indirectSubscriptions.removeSubscription(subscription);
+        }
         complexSubscriptions.removeSubscription(subscription);
+        topicCount.addAndGet(typeTopicCount.get() - oldCount);
     }
 
 }
@@ -50,7 +50,7 @@ class SubscriptionSetDirectParent {
         this.topicCount = topicCount;
     }
 
-    public void handleEntityChanged(PersistenceManager persistenceManager, Entity entity, Set<Property> fields) {
+    public void handleEntityChanged(PersistenceManager persistenceManager, Entity entity, Set<Property> fields, Map<Object, byte[]> payloads) {
         Entity parent = (Entity) entity.getProperty(relationToParent);
         if (parent == null) {
             return;
@@ -63,7 +63,7 @@ class SubscriptionSetDirectParent {
         // for each subscription on EntityType check match
         for (Subscription subscription : subsForParent.getSubscriptions().keySet()) {
             if (subscription.matches(persistenceManager, entity, fields)) {
-                mqttManager.notifySubscription(subscription, entity);
+                mqttManager.notifySubscription(subscription, entity, payloads);
             }
         }
     }
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2021 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.mqtt;
+
+import de.fraunhofer.iosb.ilt.frostserver.model.EntityType;
+import de.fraunhofer.iosb.ilt.frostserver.model.ModelRegistry;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.EntitySet;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Id;
+import de.fraunhofer.iosb.ilt.frostserver.mqtt.subscription.Subscription;
+import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
+import de.fraunhofer.iosb.ilt.frostserver.persistence.PersistenceManager;
+import de.fraunhofer.iosb.ilt.frostserver.property.NavigationPropertyMain;
+import de.fraunhofer.iosb.ilt.frostserver.property.Property;
+import de.fraunhofer.iosb.ilt.frostserver.query.Expand;
+import de.fraunhofer.iosb.ilt.frostserver.query.Query;
+import de.fraunhofer.iosb.ilt.frostserver.query.QueryDefaults;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A set of subscriptions that are keyed to an entity with a fixed Id, that is
+ * related to the changed entity through a path of relations. For example:
+ * /Things(1)/Datastreams/Observations. For each change event, the ids of all
+ * related entities are loaded with a single query, after which the matching
+ * subscriptions are looked up by path and id. If one of the expanded sets was
+ * truncated at topMax, the related ids are incomplete, and all subscriptions
+ * for that relation path are checked individually instead.
+ *
+ * @author scf
+ */
+class SubscriptionSetIndirectParent {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SubscriptionSetIndirectParent.class.getName());
+
+    private final MqttManager mqttManager;
+    private final EntityType entityType;
+    private final Map<List<NavigationPropertyMain>, Map<Id, SubscriptionSet>> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger topicCount;
+
+    public SubscriptionSetIndirectParent(MqttManager mqttManager, EntityType entityType, AtomicInteger topicCount) {
+        this.mqttManager = mqttManager;
+        this.entityType = entityType;
+        this.topicCount = topicCount;
+    }
+
+    public void handleEntityChanged(PersistenceManager persistenceManager, Entity entity, Set<Property> fields, Map<Object, byte[]> payloads) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        final Entity related = loadRelatedIds(persistenceManager, entity);
+        if (related == null) {
+            return;
+        }
+        final int topMax = persistenceManager.getCoreSettings().getQueryDefaults().getTopMax();
+        for (Map.Entry<List<NavigationPropertyMain>, Map<Id, SubscriptionSet>> entry : subscriptions.entrySet()) {
+            final Map<Id, SubscriptionSet> subsById = entry.getValue();
+            final Set<Id> parentIds = new HashSet<>();
+            if (!collectIds(related, entry.getKey(), 0, topMax, parentIds)) {
+                LOGGER.debug("Related entities along {} truncated at {}, checking subscriptions individually.", entry.getKey(), topMax);
+                handleEntityChangedIndividually(persistenceManager, subsById, entity, fields, payloads);
+                continue;
+            }
+            for (Id parentId : parentIds) {
+                SubscriptionSet subsForParent = subsById.get(parentId);
+                if (subsForParent == null) {
+                    continue;
+                }
+                for (Subscription subscription : subsForParent.getSubscriptions().keySet()) {
+                    if (subscription.matchesIgnoringIndirectParent(entity, fields)) {
+                        mqttManager.notifySubscription(subscription, entity, payloads);
+                    }
+                }
+            }
+        }
+    }
+
+    private void handleEntityChangedIndividually(PersistenceManager persistenceManager, Map<Id, SubscriptionSet> subsById, Entity entity, Set<Property> fields, Map<Object, byte[]> payloads) {
+        for (SubscriptionSet subsForParent : subsById.values()) {
+            for (Subscription subscription : subsForParent.getSubscriptions().keySet()) {
+                if (subscription.matches(persistenceManager, entity, fields)) {
+                    mqttManager.notifySubscription(subscription, entity, payloads);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the changed entity, with the ids of all entities along all
+     * relation paths that have subscriptions, using one query.
+     */
+    private Entity loadRelatedIds(PersistenceManager persistenceManager, Entity entity) {
+        final CoreSettings settings = persistenceManager.getCoreSettings();
+        final ModelRegistry modelRegistry = settings.getModelRegistry();
+        final QueryDefaults queryDefaults = settings.getQueryDefaults();
+        final ResourcePath path = entity.getPath();
+        final Query query = new Query(modelRegistry, queryDefaults, path)
+                .addSelect(entityType.getPrimaryKey());
+        for (List<NavigationPropertyMain> relationPath : subscriptions.keySet()) {
+            addExpands(modelRegistry, queryDefaults, path, query, relationPath, 0);
+        }
+        query.validate(entityType);
+        Object result = persistenceManager.get(path, query);
+        if (result instanceof Entity) {
+            return (Entity) result;
+        }
+        LOGGER.debug("Changed entity {} not found.", path);
+        return null;
+    }
+
+    private static void addExpands(ModelRegistry modelRegistry, QueryDefaults queryDefaults, ResourcePath path, Query query, List<NavigationPropertyMain> relationPath, int idx) {
+        if (idx >= relationPath.size()) {
+            return;
+        }
+        final NavigationPropertyMain navProp = relationPath.get(idx);
+        Expand expand = null;
+        for (Expand existing : query.getExpand()) {
+            if (navProp.equals(existing.getPath())) {
+                expand = existing;
+                break;
+            }
+        }
+        if (expand == null) {
+            final Query subQuery = new Query(modelRegistry, queryDefaults, path)
+                    .addSelect(navProp.getEntityType().getPrimaryKey());
+            if (navProp.isEntitySet()) {
+                subQuery.setTop(queryDefaults.getTopMax());
+            }
+            expand = new Expand(modelRegistry, subQuery, navProp);
+            query.addExpand(expand);
+        }
+        addExpands(modelRegistry, queryDefaults, path, expand.getSubQuery(), relationPath, idx + 1);
+    }
+
+    /**
+     * Collects the ids of the entities at the end of the given relation path.
+     *
+     * @return false if any of the sets along the path was truncated, in which
+     * case the collected ids are incomplete.
+     */
+    private static boolean collectIds(Entity entity, List<NavigationPropertyMain> relationPath, int idx, int topMax, Set<Id> target) {
+        if (idx >= relationPath.size()) {
+            target.add(entity.getId());
+            return true;
+        }
+        final NavigationPropertyMain navProp = relationPath.get(idx);
+        final Object value = entity.getProperty(navProp);
+        boolean complete = true;
+        if (value instanceof EntitySet) {
+            final EntitySet set = (EntitySet) value;
+            if (set.getNextLink() != null || set.size() >= topMax) {
+                return false;
+            }
+            for (Entity child : set) {
+                complete = collectIds(child, relationPath, idx + 1, topMax, target) && complete;
+            }
+        } else if (value instanceof Entity) {
+            complete = collectIds((Entity) value, relationPath, idx + 1, topMax, target);
+        }
+        return complete;
+    }
+
+    public boolean addSubscription(Subscription subscription) {
+        synchronized (this) {
+            List<NavigationPropertyMain> parentPath = subscription.getIndirectParentPath();
+            Id parentId = subscription.getIndirectParentId();
+            if (parentPath == null || parentId == null) {
+                LOGGER.error("Parent path or ParentId is null! {} / {}", parentPath, parentId);
+                return false;
+            }
+            subscriptions.computeIfAbsent(parentPath, t -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(parentId, t -> new SubscriptionSet(topicCount))
+                    .addSubscription(subscription);
+            return true;
+        }
+    }
+
+    public void removeSubscription(Subscription subscription) {
+        synchronized (this) {
+            List<NavigationPropertyMain> parentPath = subscription.getIndirectParentPath();
+            Id parentId = subscription.getIndirectParentId();
+            if (parentPath == null || parentId == null) {
+                return;
+            }
+            Map<Id, SubscriptionSet> subsById = subscriptions.get(parentPath);
+            if (subsById == null) {
+                return;
+            }
+            SubscriptionSet subsForParent = subsById.get(parentId);
+            if (subsForParent == null) {
+                return;
+            }
+            subsForParent.removeSubscription(subscription);
+            // Clean up, so the relation path is no longer queried.
+            if (subsForParent.getSubscriptions().isEmpty()) {
+                subsById.remove(parentId);
+                if (subsById.isEmpty()) {
+                    subscriptions.remove(parentPath);
+                }
+            }
+        }
+    }
+
+}
@@ -38,6 +38,7 @@ import de.fraunhofer.iosb.ilt.frostserver.query.expression.function.comparison.E
 import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
@@ -63,6 +64,13 @@ public abstract class AbstractSubscription implements Subscription {
     private NavigationPropertyMain parentRelation;
     private Id parentId;
 
+    /**
+     * If the subscription depends on an entity that is not a direct parent,
+     * these have a value.
+     */
+    private List<NavigationPropertyMain> indirectParentPath;
+    private Id indirectParentId;
+
     protected ResourcePath path;
     protected CoreSettings settings;
     protected QueryDefaults queryDefaults;
@@ -78,10 +86,7 @@ public abstract class AbstractSubscription implements Subscription {
 
     @Override
     public boolean matches(PersistenceManager persistenceManager, Entity newEntity, Set<Property> fields) {
-        if (!newEntity.getEntityType().equals(entityType)) {
-            return false;
-        }
-        if (matcher != null && !matcher.test(newEntity)) {
+        if (!matchesIgnoringIndirectParent(newEntity, fields)) {
             return false;
         }
         if (matchExpression != null) {
@@ -91,6 +96,14 @@ public abstract class AbstractSubscription implements Subscription {
         return true;
     }
 
+    @Override
+    public boolean matchesIgnoringIndirectParent(Entity newEntity, Set<Property> fields) {
+        if (!newEntity.getEntityType().equals(entityType)) {
+            return false;
+        }
+        return matcher == null || matcher.test(newEntity);
+    }
+
     protected void generateFilter(int pathElementOffset) {
         EntityType lastType = getEntityType();
         List<Property> properties = new ArrayList<>();
@@ -145,6 +158,12 @@ public abstract class AbstractSubscription implements Subscription {
     }
 
     private void createMatchExpression(List<Property> properties, final PathElementEntity epe) {
+        indirectParentPath = new ArrayList<>();
+        for (Property property : properties) {
+            indirectParentPath.add((NavigationPropertyMain) property);
+        }
+        indirectParentPath = Collections.unmodifiableList(indirectParentPath);
+        indirectParentId = epe.getId();
         properties.add(entityType.getPrimaryKey());
         String epeId = epe.getId().getUrl();
         if (epeId.startsWith("'")) {
@@ -181,6 +200,16 @@ public abstract class AbstractSubscription implements Subscription {
         return parentId;
     }
 
+    @Override
+    public List<NavigationPropertyMain> getIndirectParentPath() {
+        return indirectParentPath;
+    }
+
+    @Override
+    public Id getIndirectParentId() {
+        return indirectParentId;
+    }
+
     public abstract String doFormatMessage(Entity entity) throws IOException;
 
     @Override
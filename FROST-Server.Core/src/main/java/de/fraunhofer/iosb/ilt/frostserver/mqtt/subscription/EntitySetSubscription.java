@@ -29,6 +29,7 @@ import de.fraunhofer.iosb.ilt.frostserver.util.exception.IncorrectRequestExcepti
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.util.Arrays;
 import java.util.Objects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -78,6 +79,14 @@ public class EntitySetSubscription extends AbstractSubscription {
         }
     }
 
+    @Override
+    public Object getFormatKey() {
+        if (query == null) {
+            return this;
+        }
+        return Arrays.asList(EntitySetSubscription.class, query.getVersion(), query.getMetadata(), query.getSelect(), query.isSelectDistinct());
+    }
+
     @Override
     public String doFormatMessage(Entity entity) throws IOException {
         try {
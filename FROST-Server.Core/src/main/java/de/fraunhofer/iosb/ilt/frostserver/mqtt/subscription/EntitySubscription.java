@@ -22,13 +22,13 @@ import de.fraunhofer.iosb.ilt.frostserver.model.core.Id;
 import de.fraunhofer.iosb.ilt.frostserver.path.PathElementEntity;
 import de.fraunhofer.iosb.ilt.frostserver.path.PathElementEntitySet;
 import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
-import de.fraunhofer.iosb.ilt.frostserver.persistence.PersistenceManager;
 import de.fraunhofer.iosb.ilt.frostserver.property.Property;
 import de.fraunhofer.iosb.ilt.frostserver.query.Query;
 import static de.fraunhofer.iosb.ilt.frostserver.service.PluginResultFormat.FORMAT_NAME_DEFAULT;
 import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
 import de.fraunhofer.iosb.ilt.frostserver.util.exception.IncorrectRequestException;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Set;
 import java.util.function.Predicate;
 
@@ -62,11 +62,16 @@ public class EntitySubscription extends AbstractSubscription {
     }
 
     @Override
-    public boolean matches(PersistenceManager persistenceManager, Entity newEntity, Set<Property> fields) {
+    public boolean matchesIgnoringIndirectParent(Entity newEntity, Set<Property> fields) {
         if (matcher != null && !matcher.test(newEntity)) {
             return false;
         }
-        return super.matches(persistenceManager, newEntity, fields);
+        return super.matchesIgnoringIndirectParent(newEntity, fields);
+    }
+
+    @Override
+    public Object getFormatKey() {
+        return Arrays.asList(EntitySubscription.class, emptyQuery.getVersion());
     }
 
     @Override
@@ -23,11 +23,11 @@ import de.fraunhofer.iosb.ilt.frostserver.model.core.Id;
 import de.fraunhofer.iosb.ilt.frostserver.path.PathElementEntity;
 import de.fraunhofer.iosb.ilt.frostserver.path.PathElementProperty;
 import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
-import de.fraunhofer.iosb.ilt.frostserver.persistence.PersistenceManager;
 import de.fraunhofer.iosb.ilt.frostserver.property.Property;
 import de.fraunhofer.iosb.ilt.frostserver.query.Query;
 import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.Predicate;
@@ -64,7 +64,7 @@ public class PropertySubscription extends AbstractSubscription {
     }
 
     @Override
-    public boolean matches(PersistenceManager persistenceManager, Entity newEntity, Set<Property> fields) {
+    public boolean matchesIgnoringIndirectParent(Entity newEntity, Set<Property> fields) {
         if (matcher != null && !matcher.test(newEntity)) {
             return false;
         }
@@ -72,7 +72,12 @@ public class PropertySubscription extends AbstractSubscription {
             return false;
         }
 
-        return super.matches(persistenceManager, newEntity, fields);
+        return super.matchesIgnoringIndirectParent(newEntity, fields);
+    }
+
+    @Override
+    public Object getFormatKey() {
+        return Arrays.asList(PropertySubscription.class, query.getVersion(), property);
     }
 
     @Override
@@ -24,6 +24,7 @@ import de.fraunhofer.iosb.ilt.frostserver.persistence.PersistenceManager;
 import de.fraunhofer.iosb.ilt.frostserver.property.NavigationPropertyMain;
 import de.fraunhofer.iosb.ilt.frostserver.property.Property;
 import java.io.IOException;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -41,6 +42,18 @@ public interface Subscription {
      */
     public String formatMessage(Entity entity) throws IOException;
 
+    /**
+     * Get a key that identifies the message format of this Subscription.
+     * Subscriptions with equal keys generate the same message for the same
+     * entity, so when an entity matches several subscriptions, the message
+     * only needs to be generated once for each distinct key.
+     *
+     * @return The key identifying the message format.
+     */
+    public default Object getFormatKey() {
+        return this;
+    }
+
     /**
      * Get the type of entity that is of interest for this Subscription.
      *
@@ -65,6 +78,18 @@ public interface Subscription {
      */
     public boolean matches(PersistenceManager persistenceManager, Entity newEntity, Set<Property> fields);
 
+    /**
+     * Check of the given entity is of interest to this Subscription, without
+     * checking the relation to the indirect parent, if any. The caller must
+     * have checked that the entity is related to the indirect parent.
+     *
+     * @param newEntity The entity to check.
+     * @param fields The fields of the entity that changed.
+     * @return true if the change is of interest for the Subscription, given
+     * that the entity is related to the indirect parent.
+     */
+    public boolean matchesIgnoringIndirectParent(Entity newEntity, Set<Property> fields);
+
     /**
      * If the subscription is over a one-to-many relation, this has a value.
      *
@@ -80,4 +105,23 @@ public interface Subscription {
      * @return The Id of the determining parent.
      */
     public Id getParentId();
+
+    /**
+     * If the subscription depends on an entity with a fixed Id, that is not a
+     * direct parent, this returns the path of relations from the main entity
+     * type of this subscription to that entity. For example, for
+     * Things(1)/Datastreams/Observations this is [Datastream, Thing].
+     *
+     * @return The path of relations to the determining entity, or null.
+     */
+    public List<NavigationPropertyMain> getIndirectParentPath();
+
+    /**
+     * If the subscription depends on an entity with a fixed Id, that is not a
+     * direct parent, this returns the Id that entity must have for the
+     * subscription to be matched.
+     *
+     * @return The Id of the determining entity, or null.
+     */
+    public Id getIndirectParentId();
 }
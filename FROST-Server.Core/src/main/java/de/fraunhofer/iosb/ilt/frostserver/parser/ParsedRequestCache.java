@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.parser;
+
+import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
+import de.fraunhofer.iosb.ilt.frostserver.path.Version;
+import de.fraunhofer.iosb.ilt.frostserver.query.Query;
+import static de.fraunhofer.iosb.ilt.frostserver.util.Constants.JMX_DOMAIN;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded, least-recently-used cache of parsed and validated requests, keyed
+ * by version, path and query string. The cache holds a template of each Query,
+ * that is never handed out. Each lookup returns a fresh copy of the template,
+ * so the Query can be changed by the caller. The ResourcePath is shared, since
+ * it is not changed while handling a request.
+ *
+ * @author scf
+ */
+public class ParsedRequestCache implements ParsedRequestCacheMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParsedRequestCache.class.getName());
+
+    private final int maxSize;
+    private final Map<Key, ParsedRequest> requests;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong parseCount = new AtomicLong();
+    private final AtomicLong parseNanos = new AtomicLong();
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxSize The maximum number of requests to cache. If 0 or less,
+     * nothing is cached.
+     */
+    public ParsedRequestCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.requests = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, ParsedRequest> eldest) {
+                return size() > ParsedRequestCache.this.maxSize;
+            }
+        };
+        if (isEnabled()) {
+            registerMBean();
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Get a copy of the cached, parsed request.
+     *
+     * @param version The version of the request.
+     * @param urlPath The path of the request.
+     * @param urlQuery The query string of the request.
+     * @return A parsed request with a copy of the cached Query, or null if the
+     * request is not cached.
+     */
+    public ParsedRequest get(Version version, String urlPath, String urlQuery) {
+        if (!isEnabled()) {
+            return null;
+        }
+        final ParsedRequest template;
+        synchronized (requests) {
+            template = requests.get(new Key(version, urlPath, urlQuery));
+        }
+        if (template == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return new ParsedRequest(template.path, template.query.copy());
+    }
+
+    /**
+     * Cache the given parsed request. Must be called before the Query is
+     * changed by any further request handling.
+     *
+     * @param version The version of the request.
+     * @param urlPath The path of the request.
+     * @param urlQuery The query string of the request.
+     * @param path The parsed path.
+     * @param query The parsed and validated query.
+     * @param nanos The time, in nanoseconds, it took to parse and validate the
+     * request.
+     */
+    public void put(Version version, String urlPath, String urlQuery, ResourcePath path, Query query, long nanos) {
+        if (!isEnabled()) {
+            return;
+        }
+        parseCount.incrementAndGet();
+        parseNanos.addAndGet(nanos);
+        final ParsedRequest template = new ParsedRequest(path, query.copy());
+        synchronized (requests) {
+            requests.put(new Key(version, urlPath, urlQuery), template);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        synchronized (requests) {
+            return requests.size();
+        }
+    }
+
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public double getHitRatio() {
+        final long hitCount = hits.get();
+        final long total = hitCount + misses.get();
+        if (total == 0) {
+            return 0;
+        }
+        return (double) hitCount / total;
+    }
+
+    @Override
+    public double getAverageParseMillis() {
+        final long count = parseCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        return parseNanos.get() / 1_000_000.0 / count;
+    }
+
+    @Override
+    public void clear() {
+        synchronized (requests) {
+            requests.clear();
+        }
+    }
+
+    @Override
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        parseCount.set(0);
+        parseNanos.set(0);
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_DOMAIN, "type", "ParsedRequestCache");
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(this, objectName);
+        } catch (JMException | RuntimeException exc) {
+            LOGGER.warn("Failed to register parsed-request cache statistics with JMX.", exc);
+        }
+    }
+
+    /**
+     * A parsed and validated request.
+     */
+    public static class ParsedRequest {
+
+        private final ResourcePath path;
+        private final Query query;
+
+        public ParsedRequest(ResourcePath path, Query query) {
+            this.path = path;
+            this.query = query;
+        }
+
+        public ResourcePath getPath() {
+            return path;
+        }
+
+        public Query getQuery() {
+            return query;
+        }
+    }
+
+    private static class Key {
+
+        private final Version version;
+        private final String urlPath;
+        private final String urlQuery;
+        private final int hash;
+
+        public Key(Version version, String urlPath, String urlQuery) {
+            this.version = version;
+            this.urlPath = urlPath;
+            this.urlQuery = urlQuery;
+            this.hash = Objects.hash(version, urlPath, urlQuery);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return Objects.equals(version, other.version)
+                    && Objects.equals(urlPath, other.urlPath)
+                    && Objects.equals(urlQuery, other.urlQuery);
+        }
+    }
+
+}
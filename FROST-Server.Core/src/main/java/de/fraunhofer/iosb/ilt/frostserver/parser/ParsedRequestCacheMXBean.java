@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.parser;
+
+/**
+ * The statistics of the parsed-request cache, as exposed through JMX.
+ *
+ * @author scf
+ */
+public interface ParsedRequestCacheMXBean {
+
+    /**
+     * @return The number of requests currently in the cache.
+     */
+    public int getSize();
+
+    /**
+     * @return The maximum number of requests in the cache.
+     */
+    public int getMaxSize();
+
+    /**
+     * @return The number of lookups that found a cached request, since the
+     * last reset.
+     */
+    public long getHits();
+
+    /**
+     * @return The number of lookups that did not find a cached request, since
+     * the last reset.
+     */
+    public long getMisses();
+
+    /**
+     * @return The fraction of lookups that found a cached request, since the
+     * last reset.
+     */
+    public double getHitRatio();
+
+    /**
+     * @return The average time, in milliseconds, spent parsing and validating
+     * requests that were not in the cache, since the last reset.
+     */
+    public double getAverageParseMillis();
+
+    /**
+     * Remove all cached requests.
+     */
+    public void clear();
+
+    /**
+     * Reset the hit, miss and parse-time statistics.
+     */
+    public void resetStatistics();
+
+}
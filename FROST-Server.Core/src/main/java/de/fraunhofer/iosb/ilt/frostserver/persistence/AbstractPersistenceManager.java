@@ -57,27 +57,84 @@ public abstract class AbstractPersistenceManager implements PersistenceManager {
         return get(entityType, id);
     }
 
+    /**
+     * Checks if anyone listens for changes to entities of the given type. If
+     * not, there is no need to create EntityChangedMessages, or to fetch the
+     * entities needed for these messages.
+     *
+     * @param entityType The type of entity to check.
+     * @return true if EntityChangedMessages should be created for the type.
+     */
+    public boolean isChangeMessageNeeded(EntityType entityType) {
+        MessageBus messageBus = getCoreSettings().getMessageBus();
+        return messageBus != null && messageBus.hasListenersFor(entityType);
+    }
+
     @Override
     public boolean insert(Entity entity) throws NoSuchEntityException, IncompleteEntityException {
         boolean result = doInsert(entity);
-        if (result) {
-            Entity newEntity = fetchEntity(
-                    entity.getEntityType(),
-                    entity.getId());
-            newEntity.setQuery(getCoreSettings().getModelRegistry().getMessageQueryGenerator().getQueryFor(entity.getEntityType()));
-            changedEntities.add(
-                    new EntityChangedMessage()
-                            .setEventType(EntityChangedMessage.Type.CREATE)
-                            .setEntity(newEntity)
-            );
+        if (result && isChangeMessageNeeded(entity.getEntityType())) {
+            addCreateMessage(entity);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Exception> insertAll(List<Entity> entities) {
+        List<Exception> result = doInsertAll(entities);
+        for (int idx = 0; idx < entities.size(); idx++) {
+            Entity entity = entities.get(idx);
+            if (result.get(idx) == null && isChangeMessageNeeded(entity.getEntityType())) {
+                addCreateMessage(entity);
+            }
         }
         return result;
     }
 
+    private void addCreateMessage(Entity entity) {
+        Entity newEntity = fetchEntity(
+                entity.getEntityType(),
+                entity.getId());
+        newEntity.setQuery(getCoreSettings().getModelRegistry().getMessageQueryGenerator().getQueryFor(entity.getEntityType()));
+        changedEntities.add(
+                new EntityChangedMessage()
+                        .setEventType(EntityChangedMessage.Type.CREATE)
+                        .setEntity(newEntity)
+        );
+    }
+
     public abstract boolean doInsert(Entity entity) throws NoSuchEntityException, IncompleteEntityException;
 
+    /**
+     * Insert the given entities, without generating change messages. The
+     * default implementation inserts the entities one by one. Implementations
+     * can override this method to insert the entities in bulk.
+     *
+     * @param entities The entities to insert.
+     * @return A list with, for each entity, in the same order, null if the
+     * entity was inserted, or the exception that prevented the insert.
+     */
+    public List<Exception> doInsertAll(List<Entity> entities) {
+        List<Exception> result = new ArrayList<>(entities.size());
+        for (Entity entity : entities) {
+            try {
+                if (doInsert(entity)) {
+                    result.add(null);
+                } else {
+                    result.add(new IllegalArgumentException(NOT_INSERTED));
+                }
+            } catch (NoSuchEntityException | IncompleteEntityException | IllegalArgumentException exc) {
+                result.add(exc);
+            }
+        }
+        return result;
+    }
+
     @Override
     public boolean delete(PathElementEntity pathElement) throws NoSuchEntityException {
+        if (!isChangeMessageNeeded(pathElement.getEntityType())) {
+            return doDelete(pathElement);
+        }
         Entity entity = getEntityByEntityPath(pathElement);
         boolean result = doDelete(pathElement);
         if (result) {
@@ -111,9 +168,9 @@ public abstract class AbstractPersistenceManager implements PersistenceManager {
     @Override
     public boolean update(PathElementEntity pathElement, Entity entity) throws NoSuchEntityException, IncompleteEntityException {
         EntityChangedMessage result = doUpdate(pathElement, entity);
-        if (result != null) {
+        final EntityType entityType = entity.getEntityType();
+        if (result != null && isChangeMessageNeeded(entityType)) {
             result.setEventType(EntityChangedMessage.Type.UPDATE);
-            final EntityType entityType = entity.getEntityType();
             Entity newEntity = fetchEntity(entityType, entity.getId());
             newEntity.setQuery(getCoreSettings().getModelRegistry().getMessageQueryGenerator().getQueryFor(entityType));
             result.setEntity(newEntity);
@@ -140,7 +197,7 @@ public abstract class AbstractPersistenceManager implements PersistenceManager {
     @Override
     public boolean update(PathElementEntity pathElement, JsonPatch patch) throws NoSuchEntityException, IncompleteEntityException {
         EntityChangedMessage result = doUpdate(pathElement, patch);
-        if (result != null) {
+        if (result != null && isChangeMessageNeeded(pathElement.getEntityType())) {
             result.setEventType(EntityChangedMessage.Type.UPDATE);
 
             Entity entity = result.getEntity();
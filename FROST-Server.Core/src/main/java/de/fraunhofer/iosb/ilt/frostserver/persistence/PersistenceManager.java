@@ -29,6 +29,7 @@ import de.fraunhofer.iosb.ilt.frostserver.query.Query;
 import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
 import de.fraunhofer.iosb.ilt.frostserver.util.exception.IncompleteEntityException;
 import de.fraunhofer.iosb.ilt.frostserver.util.exception.NoSuchEntityException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -37,6 +38,8 @@ import java.util.List;
  */
 public interface PersistenceManager extends AutoCloseable {
 
+    public static final String NOT_INSERTED = "Entity was not inserted.";
+
     public boolean validatePath(ResourcePath path);
 
     /**
@@ -51,6 +54,32 @@ public interface PersistenceManager extends AutoCloseable {
      */
     public boolean insert(Entity entity) throws NoSuchEntityException, IncompleteEntityException;
 
+    /**
+     * Insert a list of entities. Each entity is handled independently: an
+     * entity that can not be inserted does not stop the others from being
+     * inserted. Implementations may use bulk operations to insert the
+     * entities.
+     *
+     * @param entities The entities to insert.
+     * @return A list with, for each entity, in the same order, null if the
+     * entity was inserted, or the exception that prevented the insert.
+     */
+    public default List<Exception> insertAll(List<Entity> entities) {
+        List<Exception> result = new ArrayList<>(entities.size());
+        for (Entity entity : entities) {
+            try {
+                if (insert(entity)) {
+                    result.add(null);
+                } else {
+                    result.add(new IllegalArgumentException(NOT_INSERTED));
+                }
+            } catch (NoSuchEntityException | IncompleteEntityException | IllegalArgumentException exc) {
+                result.add(exc);
+            }
+        }
+        return result;
+    }
+
     public Entity get(EntityType entityType, Id id);
 
     public Object get(ResourcePath path, Query query);
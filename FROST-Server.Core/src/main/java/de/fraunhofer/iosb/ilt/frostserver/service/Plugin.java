@@ -45,4 +45,12 @@ public interface Plugin {
      */
     public boolean isEnabled();
 
+    /**
+     * Stop any threads or other resources the plugin started. Called when the
+     * server shuts down.
+     */
+    public default void stop() {
+        // Most plugins have nothing to stop.
+    }
+
 }
@@ -238,6 +238,19 @@ public class PluginManager implements ConfigDefaults {
         }
     }
 
+    /**
+     * Stop all registered plugins, releasing any threads they hold.
+     */
+    public void stopPlugins() {
+        for (Object plugin : plugins.values()) {
+            try {
+                ((Plugin) plugin).stop();
+            } catch (RuntimeException ex) {
+                LOGGER.warn("Plugin {} caused an exception while stopping.", plugin.getClass().getName(), ex);
+            }
+        }
+    }
+
     public <P extends Plugin> P getPlugin(Class<P> plugin) {
         return (P) plugins.get(plugin);
     }
@@ -27,6 +27,8 @@ import de.fraunhofer.iosb.ilt.frostserver.json.serialize.JsonWriter;
 import de.fraunhofer.iosb.ilt.frostserver.model.EntityType;
 import de.fraunhofer.iosb.ilt.frostserver.model.ModelRegistry;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.parser.ParsedRequestCache;
+import de.fraunhofer.iosb.ilt.frostserver.parser.ParsedRequestCache.ParsedRequest;
 import de.fraunhofer.iosb.ilt.frostserver.parser.path.PathParser;
 import de.fraunhofer.iosb.ilt.frostserver.parser.query.QueryParser;
 import de.fraunhofer.iosb.ilt.frostserver.path.PathElementEntity;
@@ -320,8 +322,7 @@ public class Service implements AutoCloseable {
     private ServiceResponse formatResponse(ServiceResponse response, ResultFormatter formatter, Query query, ResourcePath path, Object result) {
         response.setContentType(formatter.getContentType());
         try {
-            formatter.format(path, query, result, settings.getQueryDefaults().useAbsoluteNavigationLinks())
-                    .writeFormatted(response.getWriter());
+            response.writeFormatted(formatter.format(path, query, result, settings.getQueryDefaults().useAbsoluteNavigationLinks()));
         } catch (IOException ex) {
             LOGGER.error("Formatter not available.", ex);
             return errorResponse(response, 500, "Failed to format");
@@ -359,19 +360,31 @@ public class Service implements AutoCloseable {
     private ServiceResponse handleGet(PersistenceManager pm, ServiceRequest request, ServiceResponse response) {
         final ResourcePath path;
         final Version version = request.getVersion();
-        try {
-            path = PathParser.parsePath(modelRegistry,
-                    settings.getQueryDefaults().getServiceRootUrl(), version,
-                    request.getUrlPath());
-        } catch (IllegalArgumentException | IllegalStateException e) {
-            return errorResponse(response, 404, NOT_A_VALID_PATH + ": " + e.getMessage());
+        final ParsedRequestCache parseCache = settings.getParsedRequestCache();
+        final ParsedRequest cached = parseCache.get(version, request.getUrlPath(), request.getUrlQuery());
+        final long parseStart = System.nanoTime();
+        if (cached == null) {
+            try {
+                path = PathParser.parsePath(modelRegistry,
+                        settings.getQueryDefaults().getServiceRootUrl(), version,
+                        request.getUrlPath());
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                return errorResponse(response, 404, NOT_A_VALID_PATH + ": " + e.getMessage());
+            }
+        } else {
+            path = cached.getPath();
         }
         Query query;
         ResultFormatter formatter;
         try {
-            query = QueryParser
-                    .parseQuery(request.getUrlQuery(), settings, path)
-                    .validate();
+            if (cached == null) {
+                query = QueryParser
+                        .parseQuery(request.getUrlQuery(), settings, path)
+                        .validate();
+                parseCache.put(version, request.getUrlPath(), request.getUrlQuery(), path, query, System.nanoTime() - parseStart);
+            } else {
+                query = cached.getQuery();
+            }
             settings.getPluginManager().parsedQuery(settings, request, query);
             formatter = settings.getFormatter(version, query.getFormat());
             formatter.preProcessRequest(path, query);
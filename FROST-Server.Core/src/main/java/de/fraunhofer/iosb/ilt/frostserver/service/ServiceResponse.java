@@ -17,6 +17,10 @@
  */
 package de.fraunhofer.iosb.ilt.frostserver.service;
 
+import de.fraunhofer.iosb.ilt.frostserver.formatter.FormatWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.util.Map;
 
@@ -59,9 +63,43 @@ public interface ServiceResponse {
      * Get the writer that the formatted result should be written to.
      *
      * @return the writer that the formatted result should be written to.
+     * @throws UncheckedIOException if the writer can not be opened.
      */
     public Writer getWriter();
 
+    /**
+     * Get the stream that the formatted result should be written to, if this
+     * response supports writing bytes directly. Only one of the writer or the
+     * stream can be used for a response.
+     *
+     * @return the stream that the formatted result should be written to, or
+     * null if the writer must be used.
+     * @throws UncheckedIOException if the stream can not be opened.
+     */
+    public default OutputStream getOutputStream() {
+        return null;
+    }
+
+    /**
+     * Write the formatted result to this response, using the stream if
+     * available, and the writer otherwise.
+     *
+     * @param formatWriter The formatted result to write.
+     * @throws IOException when writing fails.
+     */
+    public default void writeFormatted(FormatWriter formatWriter) throws IOException {
+        try {
+            final OutputStream out = getOutputStream();
+            if (out == null) {
+                formatWriter.writeFormatted(getWriter());
+            } else {
+                formatWriter.writeFormatted(out);
+            }
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
     public boolean isSuccessful();
 
 }
@@ -18,6 +18,9 @@
 package de.fraunhofer.iosb.ilt.frostserver.settings;
 
 import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValue;
+import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValueInt;
+import de.fraunhofer.iosb.ilt.frostserver.util.MessageQueue.OverflowPolicy;
+import java.io.File;
 
 /**
  *
@@ -30,6 +33,14 @@ public class BusSettings implements ConfigDefaults {
      */
     @DefaultValue("de.fraunhofer.iosb.ilt.frostserver.messagebus.InternalMessageBus")
     public static final String TAG_IMPLEMENTATION_CLASS = "busImplementationClass";
+    @DefaultValue("DROP")
+    public static final String TAG_QUEUE_OVERFLOW_POLICY = "queueOverflowPolicy";
+    @DefaultValueInt(1000)
+    public static final String TAG_QUEUE_OFFER_TIMEOUT = "queueOfferTimeout";
+    @DefaultValue("")
+    public static final String TAG_QUEUE_SPILL_DIRECTORY = "queueSpillDirectory";
+    @DefaultValueInt(10000)
+    public static final String TAG_QUEUE_SPILL_MAX_SIZE = "queueSpillMaxSize";
 
     /**
      * Fully-qualified class name of the MqttServer implementation class
@@ -41,6 +52,23 @@ public class BusSettings implements ConfigDefaults {
      */
     private Settings customSettings;
 
+    /**
+     * What to do with messages that arrive when a queue of the bus is full.
+     */
+    private OverflowPolicy queueOverflowPolicy;
+    /**
+     * The maximum time, in milliseconds, to wait for space in a full queue.
+     */
+    private long queueOfferTimeout;
+    /**
+     * The directory to spill messages to, or null for the temp directory.
+     */
+    private File queueSpillDirectory;
+    /**
+     * The maximum number of messages to spill to disk, per queue.
+     */
+    private int queueSpillMaxSize;
+
     public BusSettings(Settings settings) {
         if (settings == null) {
             throw new IllegalArgumentException("settings most be non-null");
@@ -51,6 +79,11 @@ public class BusSettings implements ConfigDefaults {
     private void init(Settings settings) {
         busImplementationClass = settings.get(TAG_IMPLEMENTATION_CLASS, getClass());
         customSettings = settings;
+        queueOverflowPolicy = OverflowPolicy.parse(settings.get(TAG_QUEUE_OVERFLOW_POLICY, getClass()));
+        queueOfferTimeout = settings.getInt(TAG_QUEUE_OFFER_TIMEOUT, getClass());
+        String spillDirectory = settings.get(TAG_QUEUE_SPILL_DIRECTORY, getClass());
+        queueSpillDirectory = spillDirectory.isEmpty() ? null : new File(spillDirectory);
+        queueSpillMaxSize = settings.getInt(TAG_QUEUE_SPILL_MAX_SIZE, getClass());
     }
 
     public String getBusImplementationClass() {
@@ -73,4 +106,20 @@ public class BusSettings implements ConfigDefaults {
         return customSettings;
     }
 
+    public OverflowPolicy getQueueOverflowPolicy() {
+        return queueOverflowPolicy;
+    }
+
+    public long getQueueOfferTimeout() {
+        return queueOfferTimeout;
+    }
+
+    public File getQueueSpillDirectory() {
+        return queueSpillDirectory;
+    }
+
+    public int getQueueSpillMaxSize() {
+        return queueSpillMaxSize;
+    }
+
 }
@@ -21,6 +21,7 @@ import de.fraunhofer.iosb.ilt.frostserver.extensions.Extension;
 import de.fraunhofer.iosb.ilt.frostserver.formatter.ResultFormatter;
 import de.fraunhofer.iosb.ilt.frostserver.messagebus.MessageBus;
 import de.fraunhofer.iosb.ilt.frostserver.model.ModelRegistry;
+import de.fraunhofer.iosb.ilt.frostserver.parser.ParsedRequestCache;
 import de.fraunhofer.iosb.ilt.frostserver.path.CustomLinksHelper;
 import de.fraunhofer.iosb.ilt.frostserver.path.Version;
 import de.fraunhofer.iosb.ilt.frostserver.query.QueryDefaults;
@@ -75,8 +76,12 @@ public class CoreSettings implements ConfigDefaults {
     public static final String TAG_DEFAULT_TOP = "defaultTop";
     @DefaultValueInt(100)
     public static final String TAG_MAX_TOP = "maxTop";
+    @DefaultValueInt(0)
+    public static final String TAG_MAX_SKIP = "maxSkip";
     @DefaultValueInt(25_000_000)
     public static final String TAG_MAX_DATASIZE = "maxDataSize";
+    @DefaultValueInt(0)
+    public static final String TAG_PARSE_CACHE_SIZE = "parseCacheSize";
 
     @DefaultValueBoolean(true)
     public static final String TAG_ALWAYS_ORDERBY_ID = "alwaysOrderbyId";
@@ -112,6 +117,18 @@ public class CoreSettings implements ConfigDefaults {
     public static final String TAG_CORS_PREFLIGHT_MAXAGE = "cors.preflight.maxage";
     @DefaultValueBoolean(true)
     public static final String TAG_CORS_REQUEST_DECORATE = "cors.request.decorate";
+    @DefaultValueInt(0)
+    public static final String TAG_RESPONSE_BUFFER_SIZE = "responseBufferSize";
+    @DefaultValueInt(0)
+    public static final String TAG_RESPONSE_FLUSH_INTERVAL = "responseFlushInterval";
+    @DefaultValueInt(0)
+    public static final String TAG_ASYNC_THREADS = "asyncThreads";
+    @DefaultValueBoolean(false)
+    public static final String TAG_ASYNC_VIRTUAL_THREADS = "asyncVirtualThreads";
+    @DefaultValueInt(100)
+    public static final String TAG_ASYNC_QUEUE_SIZE = "asyncQueueSize";
+    @DefaultValueInt(300_000)
+    public static final String TAG_ASYNC_TIMEOUT = "asyncTimeout";
 
     // Auth Tags
     @DefaultValue("")
@@ -213,6 +230,8 @@ public class CoreSettings implements ConfigDefaults {
 
     private CustomLinksHelper customLinksHelper;
 
+    private ParsedRequestCache parsedRequestCache = new ParsedRequestCache(0);
+
     /**
      * Creates an empty, uninitialised CoreSettings.
      */
@@ -273,8 +292,10 @@ public class CoreSettings implements ConfigDefaults {
         queryDefaults.setTopDefault(settings.getInt(TAG_DEFAULT_TOP, getClass()));
         queryDefaults.setTopMax(settings.getInt(TAG_MAX_TOP, getClass()));
         queryDefaults.setAlwaysOrder(settings.getBoolean(TAG_ALWAYS_ORDERBY_ID, getClass()));
+        queryDefaults.setSkipMax(settings.getInt(TAG_MAX_SKIP, getClass()));
         dataSizeMax = settings.getLong(TAG_MAX_DATASIZE, getClass());
         filterDeleteEnabled = settings.getBoolean(TAG_FILTER_DELETE_ENABLE, getClass());
+        parsedRequestCache = new ParsedRequestCache(settings.getInt(TAG_PARSE_CACHE_SIZE, getClass()));
     }
 
     private void initChildSettings() {
@@ -447,6 +468,10 @@ public class CoreSettings implements ConfigDefaults {
         return formatter;
     }
 
+    public ParsedRequestCache getParsedRequestCache() {
+        return parsedRequestCache;
+    }
+
     public MessageBus getMessageBus() {
         return messageBus;
     }
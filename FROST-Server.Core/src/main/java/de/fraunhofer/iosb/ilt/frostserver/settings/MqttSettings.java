@@ -23,6 +23,8 @@ import static de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings.PREFIX_MQ
 import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValue;
 import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValueBoolean;
 import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValueInt;
+import de.fraunhofer.iosb.ilt.frostserver.util.MessageQueue.OverflowPolicy;
+import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -63,6 +65,14 @@ public class MqttSettings implements ConfigDefaults {
     public static final String TAG_CREATE_MESSAGE_QUEUE_SIZE = "CreateMessageQueueSize";
     @DefaultValueInt(5)
     public static final String TAG_CREATE_THREAD_POOL_SIZE = "CreateThreadPoolSize";
+    @DefaultValue("DROP")
+    public static final String TAG_QUEUE_OVERFLOW_POLICY = "queueOverflowPolicy";
+    @DefaultValueInt(1000)
+    public static final String TAG_QUEUE_OFFER_TIMEOUT = "queueOfferTimeout";
+    @DefaultValue("")
+    public static final String TAG_QUEUE_SPILL_DIRECTORY = "queueSpillDirectory";
+    @DefaultValueInt(10000)
+    public static final String TAG_QUEUE_SPILL_MAX_SIZE = "queueSpillMaxSize";
     @DefaultValue("")
     public static final String TAG_EXPOSED_MQTT_ENDPOINTS = "exposedEndpoints";
 
@@ -139,6 +149,22 @@ public class MqttSettings implements ConfigDefaults {
      * Number of threads used to process EntityCreateEvents.
      */
     private int createThreadPoolSize;
+    /**
+     * What to do with events that arrive when a queue is full.
+     */
+    private OverflowPolicy queueOverflowPolicy;
+    /**
+     * The maximum time, in milliseconds, to wait for space in a full queue.
+     */
+    private long queueOfferTimeout;
+    /**
+     * The directory to spill events to, or null for the temp directory.
+     */
+    private File queueSpillDirectory;
+    /**
+     * The maximum number of events to spill to disk, per queue.
+     */
+    private int queueSpillMaxSize;
     /**
      * Extension point for implementation specific settings.
      */
@@ -164,6 +190,11 @@ public class MqttSettings implements ConfigDefaults {
         setCreateMessageQueueSize(customSettings.getInt(TAG_CREATE_MESSAGE_QUEUE_SIZE, getClass()));
         setCreateThreadPoolSize(customSettings.getInt(TAG_CREATE_THREAD_POOL_SIZE, getClass()));
         setQosLevel(customSettings.getInt(TAG_QOS, getClass()));
+        queueOverflowPolicy = OverflowPolicy.parse(customSettings.get(TAG_QUEUE_OVERFLOW_POLICY, getClass()));
+        queueOfferTimeout = customSettings.getInt(TAG_QUEUE_OFFER_TIMEOUT, getClass());
+        String spillDirectory = customSettings.get(TAG_QUEUE_SPILL_DIRECTORY, getClass());
+        queueSpillDirectory = spillDirectory.isEmpty() ? null : new File(spillDirectory);
+        queueSpillMaxSize = customSettings.getInt(TAG_QUEUE_SPILL_MAX_SIZE, getClass());
 
         if (enableMqtt) {
             coreSettings.getEnabledExtensions().add(Extension.MQTT);
@@ -323,6 +354,22 @@ public class MqttSettings implements ConfigDefaults {
         return createMessageQueueSize;
     }
 
+    public OverflowPolicy getQueueOverflowPolicy() {
+        return queueOverflowPolicy;
+    }
+
+    public long getQueueOfferTimeout() {
+        return queueOfferTimeout;
+    }
+
+    public File getQueueSpillDirectory() {
+        return queueSpillDirectory;
+    }
+
+    public int getQueueSpillMaxSize() {
+        return queueSpillMaxSize;
+    }
+
     public int getCreateThreadPoolSize() {
         return createThreadPoolSize;
     }
@@ -65,6 +65,12 @@ public class PersistenceSettings implements ConfigDefaults {
     public static final String TAG_COUNT_MODE = "countMode";
     @DefaultValueInt(10_000)
     public static final String TAG_ESTIMATE_COUNT_THRESHOLD = "countEstimateThreshold";
+    @DefaultValueBoolean(false)
+    public static final String TAG_BATCH_EXPAND = "batchExpand";
+    @DefaultValueInt(100)
+    public static final String TAG_BATCH_EXPAND_SIZE = "batchExpandSize";
+    @DefaultValueInt(1000)
+    public static final String TAG_EXPORT_FETCH_SIZE = "exportFetchSize";
 
     /**
      * Fully-qualified class name of the PersistenceManager implementation class
@@ -74,6 +80,20 @@ public class PersistenceSettings implements ConfigDefaults {
     private boolean autoUpdateDatabase;
     private CountMode countMode;
     private int estimateCountThreshold;
+    /**
+     * Flag indicating $expand should be loaded for a page of entities at once,
+     * instead of for each entity separately.
+     */
+    private boolean batchExpand;
+    /**
+     * The maximum number of entities to expand at once.
+     */
+    private int batchExpandSize;
+    /**
+     * The number of rows to fetch from the database at a time, for unbounded
+     * export queries.
+     */
+    private int exportFetchSize;
     /**
      * The threshold for queries to be logged as slow, in milliseconds.
      */
@@ -112,6 +132,9 @@ public class PersistenceSettings implements ConfigDefaults {
         timeoutQueries = queryTimeout > 0;
         countMode = CountMode.fromValue(settings.get(TAG_COUNT_MODE, getClass()));
         estimateCountThreshold = settings.getInt(TAG_ESTIMATE_COUNT_THRESHOLD, getClass());
+        batchExpand = settings.getBoolean(TAG_BATCH_EXPAND, getClass());
+        batchExpandSize = settings.getInt(TAG_BATCH_EXPAND_SIZE, getClass());
+        exportFetchSize = settings.getInt(TAG_EXPORT_FETCH_SIZE, getClass());
         customSettings = settings;
     }
 
@@ -175,4 +198,34 @@ public class PersistenceSettings implements ConfigDefaults {
         return estimateCountThreshold;
     }
 
+    /**
+     * Flag indicating $expand should be loaded for a page of entities at once,
+     * instead of for each entity separately.
+     *
+     * @return true if $expand should be loaded in batches.
+     */
+    public boolean isBatchExpand() {
+        return batchExpand;
+    }
+
+    /**
+     * The maximum number of entities to expand at once, when $expand is loaded
+     * in batches.
+     *
+     * @return The maximum number of entities to expand at once.
+     */
+    public int getBatchExpandSize() {
+        return batchExpandSize;
+    }
+
+    /**
+     * The number of rows to fetch from the database at a time, for unbounded
+     * export queries.
+     *
+     * @return The fetch size for export queries.
+     */
+    public int getExportFetchSize() {
+        return exportFetchSize;
+    }
+
 }
@@ -0,0 +1,630 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.util;
+
+import static de.fraunhofer.iosb.ilt.frostserver.util.Constants.JMX_DOMAIN;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded queue, with worker threads that process the items in the queue,
+ * and a configurable policy for what to do with items that arrive when the
+ * queue is full. The depth of the queue and the number of dropped, blocked,
+ * coalesced and spilled items are exposed through JMX.
+ *
+ * @author scf
+ * @param <T> The type of the items in the queue.
+ */
+public class MessageQueue<T> implements MessageQueueMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageQueue.class.getName());
+
+    /**
+     * Used to give each queue a unique JMX name, since several queues, for
+     * instance of several CoreSettings in one JVM, can have the same name.
+     */
+    private static final AtomicLong INSTANCE_COUNTER = new AtomicLong();
+
+    /**
+     * What to do with an item that arrives when the queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Drop the item.
+         */
+        DROP,
+        /**
+         * Wait for space in the queue, at most for the offer timeout, and drop
+         * the item if there is still no space.
+         */
+        BLOCK,
+        /**
+         * Merge the item into an item for the same key that is still waiting
+         * in the queue. If there is no such item, act as BLOCK.
+         */
+        COALESCE,
+        /**
+         * Write the item to a bounded file on disk, from which it is moved
+         * back to the queue when there is space again. Drop the item if the
+         * file is full.
+         */
+        SPILL;
+
+        /**
+         * Parse the given value into an OverflowPolicy, ignoring case.
+         *
+         * @param value The value to parse.
+         * @return The OverflowPolicy, or DROP if the value is not recognised.
+         */
+        public static OverflowPolicy parse(String value) {
+            try {
+                return OverflowPolicy.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException exc) {
+                LOGGER.warn("Unknown queue overflow policy '{}', using {}.", value, DROP);
+                return DROP;
+            }
+        }
+    }
+
+    /**
+     * Merges a newer item into an older item that is still waiting in the
+     * queue.
+     *
+     * @param <T> The type of the items.
+     */
+    @FunctionalInterface
+    public static interface Merger<T> {
+
+        /**
+         * Merge the newer item into the waiting item.
+         *
+         * @param waiting The item that is waiting in the queue, that can be
+         * changed.
+         * @param newer The newer item.
+         * @return true if the newer item was merged, false if the items can
+         * not be merged.
+         */
+        public boolean merge(T waiting, T newer);
+    }
+
+    /**
+     * Converts items to and from bytes, for spilling them to disk.
+     *
+     * @param <T> The type of the items.
+     */
+    public static interface Codec<T> {
+
+        public byte[] encode(T item) throws IOException;
+
+        public T decode(byte[] data) throws IOException;
+    }
+
+    private final String name;
+    private final long instanceId = INSTANCE_COUNTER.incrementAndGet();
+    private final int capacity;
+    private final BlockingQueue<T> queue;
+    private final OverflowPolicy policy;
+    private final long offerTimeout;
+
+    private Function<T, Object> coalesceKey;
+    private Merger<T> merger;
+    private final Map<Object, T> waiting = new HashMap<>();
+
+    private Codec<T> codec;
+    private File spillDirectory;
+    private int spillMaxSize;
+    private final Object spillLock = new Object();
+    private SpillFile spillFile;
+    private boolean spillInFlight;
+    private Thread spillThread;
+
+    private ExecutorService executorService;
+    private ObjectName objectName;
+
+    private final AtomicLong offered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+
+    /**
+     * Create a new queue.
+     *
+     * @param name The name of the queue, used for the worker threads and for
+     * the statistics in JMX.
+     * @param capacity The maximum number of items in the queue.
+     * @param policy What to do with items that arrive when the queue is full.
+     * @param offerTimeout The maximum number of milliseconds to wait for space
+     * in the queue, for the BLOCK and COALESCE policies.
+     */
+    public MessageQueue(String name, int capacity, OverflowPolicy policy, long offerTimeout) {
+        this.name = name;
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.policy = policy;
+        this.offerTimeout = offerTimeout;
+    }
+
+    /**
+     * Set how items are coalesced, for the COALESCE policy. Without these,
+     * COALESCE acts as BLOCK.
+     *
+     * @param coalesceKey The function that returns the key of an item. Only
+     * items with the same key are merged. May return null for items that can
+     * not be merged.
+     * @param merger The function that merges two items with the same key.
+     * @return this.
+     */
+    public MessageQueue<T> setCoalescing(Function<T, Object> coalesceKey, Merger<T> merger) {
+        this.coalesceKey = coalesceKey;
+        this.merger = merger;
+        return this;
+    }
+
+    /**
+     * Set how items are spilled to disk, for the SPILL policy. Without a
+     * codec, SPILL acts as BLOCK.
+     *
+     * @param codec The codec to convert items to and from bytes.
+     * @param spillDirectory The directory to create the spill file in, or
+     * null to use the temporary directory of the system.
+     * @param spillMaxSize The maximum number of items in the spill file.
+     * @return this.
+     */
+    public MessageQueue<T> setSpilling(Codec<T> codec, File spillDirectory, int spillMaxSize) {
+        this.codec = codec;
+        this.spillDirectory = spillDirectory;
+        this.spillMaxSize = spillMaxSize;
+        return this;
+    }
+
+    /**
+     * Start the worker threads that process the items in the queue, and
+     * register the statistics of the queue with JMX.
+     *
+     * @param threadCount The number of worker threads.
+     * @param consumer The consumer that processes the items.
+     * @return this.
+     */
+    public MessageQueue<T> startProcessors(int threadCount, Consumer<T> consumer) {
+        executorService = ProcessorHelper.createProcessors(
+                threadCount,
+                queue,
+                item -> {
+                    taken(item);
+                    consumer.accept(item);
+                },
+                name);
+        registerMBean();
+        return this;
+    }
+
+    /**
+     * Stop the worker threads, after waiting at most the given time for the
+     * queue to empty, and unregister the statistics from JMX.
+     *
+     * @param timeout The maximum time to wait.
+     * @param timeUnit The unit of the timeout.
+     */
+    public void stop(long timeout, TimeUnit timeUnit) {
+        synchronized (spillLock) {
+            if (spillThread != null) {
+                spillThread.interrupt();
+                spillThread = null;
+            }
+            if (spillFile != null) {
+                if (spillFile.count > 0) {
+                    LOGGER.warn("Queue {}: {} spilled items were not processed.", name, spillFile.count);
+                }
+                spillFile.close();
+                spillFile = null;
+            }
+        }
+        ProcessorHelper.shutdownProcessors(executorService, queue, timeout, timeUnit);
+        unregisterMBean();
+    }
+
+    /**
+     * Add the given item to the queue, applying the overflow policy if the
+     * queue is full.
+     *
+     * @param item The item to add.
+     * @return true if the item was added, merged or spilled, false if it was
+     * dropped.
+     */
+    public boolean offer(T item) {
+        offered.incrementAndGet();
+        switch (policy) {
+            case BLOCK:
+                return offerBlocking(item);
+
+            case COALESCE:
+                return offerCoalescing(item);
+
+            case SPILL:
+                return offerSpilling(item);
+
+            case DROP:
+            default:
+                if (queue.offer(item)) {
+                    return true;
+                }
+                dropped.incrementAndGet();
+                return false;
+        }
+    }
+
+    /**
+     * Retrieve and remove the next item, waiting at most the given time for
+     * an item to become available.
+     *
+     * @param timeout The maximum time to wait.
+     * @param timeUnit The unit of the timeout.
+     * @return The next item, or null if the timeout passed.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public T poll(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        final T item = queue.poll(timeout, timeUnit);
+        if (item != null) {
+            taken(item);
+        }
+        return item;
+    }
+
+    /**
+     * Remove all available items, and add them to the given collection.
+     *
+     * @param target The collection to add the items to.
+     * @return The number of items that were removed.
+     */
+    public int drainTo(Collection<T> target) {
+        return drainTo(target, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Remove at most the given number of available items, and add them to the
+     * given collection.
+     *
+     * @param target The collection to add the items to.
+     * @param maxItems The maximum number of items to remove.
+     * @return The number of items that were removed.
+     */
+    public int drainTo(Collection<T> target, int maxItems) {
+        final Collection<T> drained = new ArrayList<>();
+        final int count = queue.drainTo(drained, maxItems);
+        for (T item : drained) {
+            taken(item);
+        }
+        target.addAll(drained);
+        return count;
+    }
+
+    private boolean offerBlocking(T item) {
+        if (queue.offer(item)) {
+            return true;
+        }
+        blocked.incrementAndGet();
+        final long start = System.nanoTime();
+        try {
+            if (queue.offer(item, offerTimeout, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        } finally {
+            blockedNanos.addAndGet(System.nanoTime() - start);
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    private boolean offerCoalescing(T item) {
+        final Object key = coalesceKey == null ? null : coalesceKey.apply(item);
+        if (key == null) {
+            return offerBlocking(item);
+        }
+        synchronized (waiting) {
+            // Only items that are in the queue are registered. Workers
+            // unregister taken items while holding the same lock, so an item
+            // can not be taken between being queued and being registered.
+            if (queue.offer(item)) {
+                waiting.put(key, item);
+                return true;
+            }
+            final T previous = waiting.get(key);
+            if (previous != null && merger.merge(previous, item)) {
+                coalesced.incrementAndGet();
+                return true;
+            }
+        }
+        // An item that has to wait for space is not registered, since it may
+        // still be dropped. Later items for the same key are not merged into
+        // it.
+        return offerBlocking(item);
+    }
+
+    private void taken(T item) {
+        if (policy != OverflowPolicy.COALESCE || coalesceKey == null) {
+            return;
+        }
+        final Object key = coalesceKey.apply(item);
+        if (key != null) {
+            synchronized (waiting) {
+                waiting.remove(key, item);
+            }
+        }
+    }
+
+    private boolean offerSpilling(T item) {
+        if (codec == null) {
+            return offerBlocking(item);
+        }
+        synchronized (spillLock) {
+            final boolean spillEmpty = spillFile == null || spillFile.count == 0;
+            // While items are spilled, new items also go to disk, to keep the order.
+            if (spillEmpty && !spillInFlight && queue.offer(item)) {
+                return true;
+            }
+            if (spillFile != null && spillFile.count >= spillMaxSize) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            try {
+                if (spillFile == null) {
+                    spillFile = new SpillFile(spillDirectory, name);
+                    spillThread = new Thread(this::drainSpill, name + "-spill");
+                    spillThread.setDaemon(true);
+                    spillThread.start();
+                }
+                spillFile.append(codec.encode(item));
+                spilled.incrementAndGet();
+                spillLock.notifyAll();
+                return true;
+            } catch (IOException exc) {
+                LOGGER.error("Queue {}: failed to spill item to disk.", name, exc);
+                dropped.incrementAndGet();
+                return false;
+            }
+        }
+    }
+
+    private void drainSpill() {
+        LOGGER.debug("Queue {}: starting spill drain.", name);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                final byte[] data;
+                synchronized (spillLock) {
+                    while (spillFile == null || spillFile.count == 0) {
+                        spillLock.wait();
+                    }
+                    data = spillFile.poll();
+                    spillInFlight = true;
+                }
+                try {
+                    queue.put(codec.decode(data));
+                } catch (IOException exc) {
+                    LOGGER.error("Queue {}: failed to read spilled item.", name, exc);
+                    dropped.incrementAndGet();
+                } finally {
+                    synchronized (spillLock) {
+                        spillInFlight = false;
+                    }
+                }
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            } catch (IOException exc) {
+                LOGGER.error("Queue {}: failed to read spill file, dropping spilled items.", name, exc);
+                clearSpill();
+            }
+        }
+        LOGGER.debug("Queue {}: exiting spill drain.", name);
+    }
+
+    private void clearSpill() {
+        synchronized (spillLock) {
+            if (spillFile == null) {
+                return;
+            }
+            dropped.addAndGet(spillFile.count);
+            try {
+                spillFile.clear();
+            } catch (IOException exc) {
+                LOGGER.error("Queue {}: failed to truncate spill file.", name, exc);
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getOverflowPolicy() {
+        return policy.name();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public int getDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public int getSpillDepth() {
+        synchronized (spillLock) {
+            return spillFile == null ? 0 : spillFile.count;
+        }
+    }
+
+    @Override
+    public long getOfferedCount() {
+        return offered.get();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public long getBlockedCount() {
+        return blocked.get();
+    }
+
+    @Override
+    public double getBlockedMillis() {
+        return blockedNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    @Override
+    public long getSpilledCount() {
+        return spilled.get();
+    }
+
+    @Override
+    public void resetStatistics() {
+        offered.set(0);
+        dropped.set(0);
+        blocked.set(0);
+        blockedNanos.set(0);
+        coalesced.set(0);
+        spilled.set(0);
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            Hashtable<String, String> properties = new Hashtable<>();
+            properties.put("type", "MessageQueue");
+            properties.put("name", ObjectName.quote(name));
+            properties.put("instance", Long.toString(instanceId));
+            objectName = new ObjectName(JMX_DOMAIN, properties);
+            mBeanServer.registerMBean(this, objectName);
+        } catch (JMException | RuntimeException exc) {
+            LOGGER.warn("Failed to register statistics of queue {} with JMX.", name, exc);
+        }
+    }
+
+    private void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException | RuntimeException exc) {
+            LOGGER.warn("Failed to unregister statistics of queue {} from JMX.", name, exc);
+        }
+        objectName = null;
+    }
+
+    /**
+     * An append-only file of length-prefixed records, that is read from the
+     * start and truncated whenever all records have been read.
+     */
+    private static class SpillFile {
+
+        private final Path path;
+        private final RandomAccessFile file;
+        private long readPos;
+        private long writePos;
+        private int count;
+
+        public SpillFile(File directory, String name) throws IOException {
+            if (directory == null) {
+                path = Files.createTempFile("frost-" + name + "-", ".spill");
+            } else {
+                path = Files.createTempFile(directory.toPath(), "frost-" + name + "-", ".spill");
+            }
+            path.toFile().deleteOnExit();
+            file = new RandomAccessFile(path.toFile(), "rw");
+            file.setLength(0);
+        }
+
+        public void append(byte[] data) throws IOException {
+            file.seek(writePos);
+            file.writeInt(data.length);
+            file.write(data);
+            writePos = file.getFilePointer();
+            count++;
+        }
+
+        public byte[] poll() throws IOException {
+            file.seek(readPos);
+            final byte[] data = new byte[file.readInt()];
+            file.readFully(data);
+            readPos = file.getFilePointer();
+            count--;
+            if (count == 0) {
+                clear();
+            }
+            return data;
+        }
+
+        public void clear() throws IOException {
+            readPos = 0;
+            writePos = 0;
+            count = 0;
+            file.setLength(0);
+        }
+
+        public void close() {
+            try {
+                file.close();
+                Files.deleteIfExists(path);
+            } catch (IOException exc) {
+                LOGGER.warn("Failed to remove spill file {}.", path, exc);
+            }
+        }
+    }
+}
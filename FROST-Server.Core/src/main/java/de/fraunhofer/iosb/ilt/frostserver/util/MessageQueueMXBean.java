@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.util;
+
+/**
+ * The statistics of a message queue, as exposed through JMX.
+ *
+ * @author scf
+ */
+public interface MessageQueueMXBean {
+
+    /**
+     * @return The name of the queue.
+     */
+    public String getName();
+
+    /**
+     * @return What is done with items that arrive when the queue is full.
+     */
+    public String getOverflowPolicy();
+
+    /**
+     * @return The maximum number of items in the queue.
+     */
+    public int getCapacity();
+
+    /**
+     * @return The number of items currently in the queue.
+     */
+    public int getDepth();
+
+    /**
+     * @return The number of items currently spilled to disk.
+     */
+    public int getSpillDepth();
+
+    /**
+     * @return The number of items offered to the queue, since the last reset.
+     */
+    public long getOfferedCount();
+
+    /**
+     * @return The number of items that were dropped because the queue was
+     * full, since the last reset.
+     */
+    public long getDroppedCount();
+
+    /**
+     * @return The number of times an offer had to wait for space in the queue,
+     * since the last reset.
+     */
+    public long getBlockedCount();
+
+    /**
+     * @return The total time, in milliseconds, that offers waited for space in
+     * the queue, since the last reset.
+     */
+    public double getBlockedMillis();
+
+    /**
+     * @return The number of items that were merged into an item already in the
+     * queue, since the last reset.
+     */
+    public long getCoalescedCount();
+
+    /**
+     * @return The number of items that were spilled to disk, since the last
+     * reset.
+     */
+    public long getSpilledCount();
+
+    /**
+     * Reset the counters.
+     */
+    public void resetStatistics();
+
+}
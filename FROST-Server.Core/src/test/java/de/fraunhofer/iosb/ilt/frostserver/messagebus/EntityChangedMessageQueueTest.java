@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.messagebus;
+
+import de.fraunhofer.iosb.ilt.frostserver.model.DefaultEntity;
+import de.fraunhofer.iosb.ilt.frostserver.model.EntityChangedMessage;
+import de.fraunhofer.iosb.ilt.frostserver.model.EntityChangedMessage.Type;
+import de.fraunhofer.iosb.ilt.frostserver.model.ModelRegistry;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.IdLong;
+import de.fraunhofer.iosb.ilt.frostserver.property.Property;
+import de.fraunhofer.iosb.ilt.frostserver.service.PluginManager;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import de.fraunhofer.iosb.ilt.frostserver.settings.PersistenceSettings;
+import de.fraunhofer.iosb.ilt.frostserver.util.Constants;
+import de.fraunhofer.iosb.ilt.frostserver.util.DummyPersistenceManager;
+import de.fraunhofer.iosb.ilt.frostserver.util.MessageQueue.OverflowPolicy;
+import de.fraunhofer.iosb.ilt.frostserver.util.TestModel;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for coalescing and spilling EntityChangedMessages.
+ *
+ * @author scf
+ */
+class EntityChangedMessageQueueTest {
+
+    private static final long TIMEOUT = 1000;
+    /**
+     * The offer timeout, after which messages that can not be merged are
+     * dropped.
+     */
+    private static final long OFFER_TIMEOUT = 10;
+
+    private TestModel testModel;
+    private ModelRegistry modelRegistry;
+
+    @BeforeEach
+    public void init() {
+        Properties properties = new Properties();
+        properties.put(CoreSettings.TAG_SERVICE_ROOT_URL, "http://localhost/");
+        properties.put(CoreSettings.TAG_TEMP_PATH, "/tmp/");
+        properties.put(CoreSettings.PREFIX_PERSISTENCE + PersistenceSettings.TAG_IMPLEMENTATION_CLASS, DummyPersistenceManager.class.getName());
+        properties.put(CoreSettings.PREFIX_PLUGINS + PluginManager.TAG_PROVIDED_PLUGINS, TestModel.class.getName());
+        CoreSettings coreSettings = new CoreSettings(properties);
+        modelRegistry = coreSettings.getModelRegistry();
+        testModel = coreSettings.getPluginManager().getPlugin(TestModel.class);
+        testModel.initModel(modelRegistry, Constants.VALUE_ID_TYPE_LONG);
+        modelRegistry.initFinalise();
+    }
+
+    private EntityChangedMessageQueue createCoalescingQueue() {
+        return new EntityChangedMessageQueue("testCoalesce", 1, OverflowPolicy.COALESCE, OFFER_TIMEOUT);
+    }
+
+    private Entity createRoom(long id, String name, int value) {
+        return new DefaultEntity(testModel.ET_ROOM, new IdLong(id))
+                .setProperty(testModel.EP_NAME, name)
+                .setProperty(testModel.EP_VALUE, value);
+    }
+
+    private static EntityChangedMessage createMessage(Type type, Entity entity, Property... fields) {
+        final EntityChangedMessage message = new EntityChangedMessage()
+                .setEventType(type)
+                .setEntity(entity);
+        for (Property field : fields) {
+            message.addField(field);
+        }
+        return message;
+    }
+
+    @Test
+    void testMergeUpdateIntoCreate() throws InterruptedException {
+        final EntityChangedMessageQueue queue = createCoalescingQueue();
+        final Entity newest = createRoom(1, "Room 1b", 2);
+        assertTrue(queue.offer(createMessage(Type.CREATE, createRoom(1, "Room 1", 1))));
+        assertTrue(queue.offer(createMessage(Type.UPDATE, newest, testModel.EP_NAME)));
+        assertEquals(1, queue.getCoalescedCount());
+
+        final EntityChangedMessage message = queue.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertEquals(Type.CREATE, message.getEventType());
+        assertSame(newest, message.getEntity());
+        assertTrue(message.getFields().isEmpty(), "A create has no changed fields.");
+        assertEquals(0, queue.getDepth());
+    }
+
+    @Test
+    void testMergeUpdateIntoUpdate() throws InterruptedException {
+        final EntityChangedMessageQueue queue = createCoalescingQueue();
+        final Entity newest = createRoom(1, "Room 1b", 2);
+        assertTrue(queue.offer(createMessage(Type.UPDATE, createRoom(1, "Room 1b", 1), testModel.EP_NAME)));
+        assertTrue(queue.offer(createMessage(Type.UPDATE, newest, testModel.EP_VALUE)));
+        assertEquals(1, queue.getCoalescedCount());
+
+        final EntityChangedMessage message = queue.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertEquals(Type.UPDATE, message.getEventType());
+        assertSame(newest, message.getEntity());
+        assertEquals(new HashSet<>(Arrays.asList(testModel.EP_NAME, testModel.EP_VALUE)), message.getFields());
+    }
+
+    @Test
+    void testNoMerge() throws InterruptedException {
+        final EntityChangedMessageQueue queue = createCoalescingQueue();
+        final Entity waiting = createRoom(1, "Room 1", 1);
+        assertTrue(queue.offer(createMessage(Type.CREATE, waiting)));
+        // A delete, a second create, an update of another entity and an
+        // update without entity id are not merged, and are dropped.
+        assertFalse(queue.offer(createMessage(Type.DELETE, createRoom(1, "Room 1", 1))));
+        assertFalse(queue.offer(createMessage(Type.CREATE, createRoom(1, "Room 1b", 2))));
+        assertFalse(queue.offer(createMessage(Type.UPDATE, createRoom(2, "Room 2", 2), testModel.EP_NAME)));
+        assertFalse(queue.offer(createMessage(Type.UPDATE, new DefaultEntity(testModel.ET_ROOM), testModel.EP_NAME)));
+        assertEquals(0, queue.getCoalescedCount());
+        assertEquals(4, queue.getDroppedCount());
+
+        final EntityChangedMessage message = queue.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertSame(waiting, message.getEntity());
+    }
+
+    @Test
+    void testNoMergeIntoDelete() {
+        final EntityChangedMessageQueue queue = createCoalescingQueue();
+        // The first message fills the queue, so the delete is not in the
+        // queue and can not be merged into.
+        assertTrue(queue.offer(createMessage(Type.DELETE, createRoom(1, "Room 1", 1))));
+        assertFalse(queue.offer(createMessage(Type.UPDATE, createRoom(1, "Room 1b", 2), testModel.EP_NAME)));
+        assertEquals(0, queue.getCoalescedCount());
+    }
+
+    @Test
+    void testSpillJson() throws InterruptedException {
+        final EntityChangedMessageQueue queue = new EntityChangedMessageQueue("testSpillJson", 1, OverflowPolicy.SPILL, TIMEOUT);
+        queue.setSpilling(modelRegistry, null, 10);
+        try {
+            assertTrue(queue.offer(createMessage(Type.CREATE, createRoom(1, "Room 1", 1))));
+            assertTrue(queue.offer(createMessage(Type.UPDATE, createRoom(2, "Room 2", 2), testModel.EP_NAME, testModel.EP_VALUE)));
+            assertTrue(queue.offer(createMessage(Type.DELETE, createRoom(3, "Room 3", 3))));
+            assertEquals(2, queue.getSpilledCount());
+
+            assertRoom(1, Type.CREATE, queue.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+            final EntityChangedMessage update = queue.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+            assertRoom(2, Type.UPDATE, update);
+            assertEquals(new HashSet<>(Arrays.asList(testModel.EP_NAME, testModel.EP_VALUE)), update.getFields());
+            assertRoom(3, Type.DELETE, queue.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+            assertEquals(0, queue.getDroppedCount());
+        } finally {
+            queue.stop(0, TimeUnit.SECONDS);
+        }
+    }
+
+    private void assertRoom(long id, Type type, EntityChangedMessage message) {
+        assertNotNull(message, "Spilled message not returned.");
+        assertEquals(type, message.getEventType());
+        final Entity entity = message.getEntity();
+        assertEquals(testModel.ET_ROOM, entity.getEntityType());
+        assertEquals(id, ((Number) entity.getId().getValue()).longValue());
+        assertEquals("Room " + id, entity.getProperty(testModel.EP_NAME));
+        assertEquals(0, new BigDecimal(id).compareTo(new BigDecimal(entity.getProperty(testModel.EP_VALUE).toString())));
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2024 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.messagebus;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fraunhofer.iosb.ilt.frostserver.model.DefaultEntity;
+import de.fraunhofer.iosb.ilt.frostserver.model.EntityChangedMessage;
+import de.fraunhofer.iosb.ilt.frostserver.model.ModelRegistry;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.IdLong;
+import de.fraunhofer.iosb.ilt.frostserver.property.EntityPropertyMain;
+import de.fraunhofer.iosb.ilt.frostserver.property.type.TypeSimpleCustom;
+import de.fraunhofer.iosb.ilt.frostserver.service.PluginManager;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import de.fraunhofer.iosb.ilt.frostserver.settings.PersistenceSettings;
+import de.fraunhofer.iosb.ilt.frostserver.util.Constants;
+import de.fraunhofer.iosb.ilt.frostserver.util.DummyPersistenceManager;
+import de.fraunhofer.iosb.ilt.frostserver.util.RawGeoJsonObject;
+import de.fraunhofer.iosb.ilt.frostserver.util.RawJsonMap;
+import de.fraunhofer.iosb.ilt.frostserver.util.SimpleJsonMapper;
+import de.fraunhofer.iosb.ilt.frostserver.util.StringHelper;
+import de.fraunhofer.iosb.ilt.frostserver.util.TestModel;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for encoding and decoding the frames of the MQTT message bus.
+ *
+ * @author scf
+ */
+class MqttMessageBusTest {
+
+    private static final String RAW_LOCATION = "{\"type\":\"Point\",\"coordinates\":[8.5,49.25]}";
+    private static final String RAW_PROPERTIES = "{\"floor\":3,\"tags\":[\"a\",\"b\"],\"nested\":{\"key\":\"value\"}}";
+
+    private final EntityPropertyMain<Object> epLocation = new EntityPropertyMain<>("location", TypeSimpleCustom.STA_GEOJSON, true, false, true, false);
+
+    private TestModel testModel;
+    private ModelRegistry modelRegistry;
+
+    @BeforeEach
+    public void init() {
+        Properties properties = new Properties();
+        properties.put(CoreSettings.TAG_SERVICE_ROOT_URL, "http://localhost/");
+        properties.put(CoreSettings.TAG_TEMP_PATH, "/tmp/");
+        properties.put(CoreSettings.PREFIX_PERSISTENCE + PersistenceSettings.TAG_IMPLEMENTATION_CLASS, DummyPersistenceManager.class.getName());
+        properties.put(CoreSettings.PREFIX_PLUGINS + PluginManager.TAG_PROVIDED_PLUGINS, TestModel.class.getName());
+        CoreSettings coreSettings = new CoreSettings(properties);
+        modelRegistry = coreSettings.getModelRegistry();
+        testModel = coreSettings.getPluginManager().getPlugin(TestModel.class);
+        testModel.initModel(modelRegistry, Constants.VALUE_ID_TYPE_LONG);
+        testModel.ET_ROOM.registerProperty(epLocation);
+        modelRegistry.initFinalise();
+    }
+
+    @Test
+    void testSmileFrame() throws IOException {
+        final MqttMessageBus sender = createBus(true);
+        final List<EntityChangedMessage> frame = Arrays.asList(createMessage(1), createMessage(2));
+        final byte[] payload = sender.encodeFrame(frame);
+
+        assertEquals(':', payload[0], "Not a Smile frame.");
+        // Smile can not use the stored JSON as is.
+        assertTrue(((RawJsonMap) frame.get(0).getEntity().getProperty(ModelRegistry.EP_PROPERTIES)).isParsed());
+
+        final List<EntityChangedMessage> decoded = createBus(false).decodeFrame(payload);
+        assertEquals(2, decoded.size());
+        assertRoom(1, decoded.get(0));
+        assertRoom(2, decoded.get(1));
+    }
+
+    @Test
+    void testJsonFrame() throws IOException {
+        final MqttMessageBus sender = createBus(false);
+        final List<EntityChangedMessage> frame = Arrays.asList(createMessage(1), createMessage(2), createMessage(3));
+        final byte[] payload = sender.encodeFrame(frame);
+
+        assertEquals('[', payload[0], "Not a JSON list.");
+        // The stored JSON is written verbatim.
+        assertFalse(((RawJsonMap) frame.get(0).getEntity().getProperty(ModelRegistry.EP_PROPERTIES)).isParsed());
+        assertFalse(((RawGeoJsonObject) frame.get(0).getEntity().getProperty(epLocation)).isParsed());
+
+        final List<EntityChangedMessage> decoded = createBus(true).decodeFrame(payload);
+        assertEquals(3, decoded.size());
+        for (int i = 0; i < 3; i++) {
+            assertRoom(i + 1, decoded.get(i));
+        }
+    }
+
+    @Test
+    void testLegacySingleJsonMessage() throws IOException {
+        final MqttMessageBus sender = createBus(false);
+        final byte[] payload = sender.encodeFrame(Arrays.asList(createMessage(1)));
+
+        assertEquals('{', payload[0], "Single message not sent as is.");
+        final List<EntityChangedMessage> decoded = createBus(false).decodeFrame(payload);
+        assertEquals(1, decoded.size());
+        assertRoom(1, decoded.get(0));
+
+        // As sent by nodes of older versions.
+        final String legacy = "{\"eventType\":\"CREATE\",\"entityType\":\"Room\""
+                + ",\"entity\":{\"@iot.id\":7,\"name\":\"Room 7\""
+                + ",\"properties\":" + RAW_PROPERTIES
+                + ",\"location\":" + RAW_LOCATION
+                + "},\"epFields\":null,\"npFields\":null}";
+        final List<EntityChangedMessage> legacyDecoded = createBus(true).decodeFrame(legacy.getBytes(StringHelper.UTF8));
+        assertEquals(1, legacyDecoded.size());
+        assertRoom(7, legacyDecoded.get(0));
+    }
+
+    private MqttMessageBus createBus(boolean smile) {
+        final MqttMessageBus bus = new MqttMessageBus();
+        bus.initFrameFormat(modelRegistry, smile);
+        return bus;
+    }
+
+    /**
+     * Creates a message as it would be sent for an entity loaded from the
+     * database, with the JSON values still in their stored form.
+     */
+    private EntityChangedMessage createMessage(int id) {
+        Entity room = new DefaultEntity(testModel.ET_ROOM, new IdLong(id))
+                .setProperty(testModel.EP_NAME, "Room " + id)
+                .setProperty(epLocation, new RawGeoJsonObject(RAW_LOCATION))
+                .setProperty(ModelRegistry.EP_PROPERTIES, new RawJsonMap(RAW_PROPERTIES));
+        return new EntityChangedMessage()
+                .setEventType(EntityChangedMessage.Type.CREATE)
+                .setEntity(room);
+    }
+
+    private void assertRoom(long id, EntityChangedMessage message) throws IOException {
+        assertEquals(EntityChangedMessage.Type.CREATE, message.getEventType());
+        final Entity entity = message.getEntity();
+        assertEquals(testModel.ET_ROOM, entity.getEntityType());
+        assertEquals(id, ((Number) entity.getId().getValue()).longValue());
+        assertEquals("Room " + id, entity.getProperty(testModel.EP_NAME));
+
+        // Without an encodingType the location is not turned into a GeoJSON
+        // object, so compare the JSON content.
+        final ObjectMapper mapper = SimpleJsonMapper.getSimpleObjectMapper();
+        final JsonNode location = mapper.valueToTree(entity.getProperty(epLocation));
+        assertEquals(mapper.readTree(RAW_LOCATION), location);
+
+        final Map<String, Object> properties = entity.getProperty(ModelRegistry.EP_PROPERTIES);
+        assertEquals(3, properties.get("floor"));
+        assertEquals(Arrays.asList("a", "b"), properties.get("tags"));
+        assertEquals("value", ((Map<String, Object>) properties.get("nested")).get("key"));
+    }
+}
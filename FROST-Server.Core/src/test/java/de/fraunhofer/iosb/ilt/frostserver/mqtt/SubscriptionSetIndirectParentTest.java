@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2024 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.mqtt;
+
+import de.fraunhofer.iosb.ilt.frostserver.model.DefaultEntity;
+import de.fraunhofer.iosb.ilt.frostserver.model.EntityType;
+import de.fraunhofer.iosb.ilt.frostserver.model.ModelRegistry;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.EntitySetImpl;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Id;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.IdLong;
+import de.fraunhofer.iosb.ilt.frostserver.mqtt.subscription.Subscription;
+import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
+import de.fraunhofer.iosb.ilt.frostserver.persistence.PersistenceManager;
+import de.fraunhofer.iosb.ilt.frostserver.property.NavigationPropertyMain;
+import de.fraunhofer.iosb.ilt.frostserver.property.Property;
+import de.fraunhofer.iosb.ilt.frostserver.query.Query;
+import de.fraunhofer.iosb.ilt.frostserver.service.PluginManager;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import de.fraunhofer.iosb.ilt.frostserver.settings.MqttSettings;
+import de.fraunhofer.iosb.ilt.frostserver.settings.PersistenceSettings;
+import de.fraunhofer.iosb.ilt.frostserver.util.Constants;
+import de.fraunhofer.iosb.ilt.frostserver.util.DummyPersistenceManager;
+import de.fraunhofer.iosb.ilt.frostserver.util.TestModel;
+import de.fraunhofer.iosb.ilt.frostserver.util.TestMqttServer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for matching subscriptions on indirect parents, when the related sets
+ * are larger than topMax.
+ *
+ * @author scf
+ */
+class SubscriptionSetIndirectParentTest {
+
+    private static final int TOP_MAX = 5;
+
+    private CoreSettings coreSettings;
+    private TestModel testModel;
+    private List<String> notified;
+    private SubscriptionSetIndirectParent subscriptionSet;
+    private List<NavigationPropertyMain> parentPath;
+
+    @BeforeEach
+    public void init() {
+        Properties properties = new Properties();
+        properties.put(CoreSettings.TAG_SERVICE_ROOT_URL, "http://localhost/");
+        properties.put(CoreSettings.TAG_TEMP_PATH, "/tmp/");
+        properties.put(CoreSettings.TAG_MAX_TOP, Integer.toString(TOP_MAX));
+        properties.put(CoreSettings.TAG_QUEUE_LOGGING_INTERVAL, "0");
+        properties.put(CoreSettings.PREFIX_MQTT + MqttSettings.TAG_IMPLEMENTATION_CLASS, TestMqttServer.class.getName());
+        properties.put(CoreSettings.PREFIX_PERSISTENCE + PersistenceSettings.TAG_IMPLEMENTATION_CLASS, DummyPersistenceManager.class.getName());
+        properties.put(CoreSettings.PREFIX_PLUGINS + PluginManager.TAG_PROVIDED_PLUGINS, TestModel.class.getName() + "," + PluginManager.VALUE_PROVIDED_PLUGINS);
+
+        coreSettings = new CoreSettings(properties);
+        ModelRegistry modelRegistry = coreSettings.getModelRegistry();
+        testModel = coreSettings.getPluginManager().getPlugin(TestModel.class);
+        testModel.initModel(modelRegistry, Constants.VALUE_ID_TYPE_LONG);
+        modelRegistry.initFinalise();
+
+        notified = Collections.synchronizedList(new ArrayList<>());
+        MqttManager mqttManager = new MqttManager(coreSettings) {
+            @Override
+            public void notifySubscription(Subscription subscription, Entity entity, Map<Object, byte[]> payloads) {
+                notified.add(subscription.getTopic());
+            }
+        };
+        subscriptionSet = new SubscriptionSetIndirectParent(mqttManager, testModel.ET_ROOM, new AtomicInteger());
+        parentPath = Arrays.asList(testModel.NP_HOUSE, testModel.NP_ROOMS);
+    }
+
+    @Test
+    void testRelatedSetComplete() {
+        final int parentCount = TOP_MAX - 1;
+        final Set<Long> relatedIds = new HashSet<>();
+        for (long id = 1; id <= parentCount; id++) {
+            relatedIds.add(id);
+        }
+        subscribeAll(parentCount + 3);
+        RelatedPersistenceManager pm = new RelatedPersistenceManager(parentCount, false, relatedIds);
+
+        subscriptionSet.handleEntityChanged(pm, changedRoom(), Collections.emptySet(), new HashMap<>());
+
+        assertEquals(parentCount, notified.size());
+        assertEquals(0, pm.individualChecks);
+        for (long id = 1; id <= parentCount; id++) {
+            assertEquals(true, notified.contains(topic(id)), "Missing notification for " + id);
+        }
+    }
+
+    @Test
+    void testRelatedSetTruncatedWithNextLink() {
+        final int parentCount = TOP_MAX + 3;
+        final Set<Long> relatedIds = new HashSet<>();
+        for (long id = 1; id <= parentCount; id++) {
+            relatedIds.add(id);
+        }
+        subscribeAll(parentCount + 3);
+        RelatedPersistenceManager pm = new RelatedPersistenceManager(TOP_MAX - 1, true, relatedIds);
+
+        subscriptionSet.handleEntityChanged(pm, changedRoom(), Collections.emptySet(), new HashMap<>());
+
+        assertEquals(parentCount, notified.size());
+        assertEquals(parentCount + 3, pm.individualChecks);
+        for (long id = 1; id <= parentCount; id++) {
+            assertEquals(true, notified.contains(topic(id)), "Missing notification for " + id);
+        }
+    }
+
+    @Test
+    void testRelatedSetTruncatedAtTopMax() {
+        final int parentCount = TOP_MAX * 3;
+        final Set<Long> relatedIds = new HashSet<>();
+        for (long id = 1; id <= parentCount; id++) {
+            relatedIds.add(id);
+        }
+        subscribeAll(parentCount + 3);
+        RelatedPersistenceManager pm = new RelatedPersistenceManager(TOP_MAX, false, relatedIds);
+
+        subscriptionSet.handleEntityChanged(pm, changedRoom(), Collections.emptySet(), new HashMap<>());
+
+        assertEquals(parentCount, notified.size());
+        assertEquals(parentCount + 3, pm.individualChecks);
+        assertEquals(true, notified.contains(topic(parentCount)));
+    }
+
+    private void subscribeAll(int count) {
+        for (long id = 1; id <= count; id++) {
+            subscriptionSet.addSubscription(new IndirectSubscription(topic(id), testModel.ET_ROOM, parentPath, new IdLong(id)));
+        }
+    }
+
+    private static String topic(long parentId) {
+        return "v1.1/Rooms(" + parentId + ")/House/Rooms";
+    }
+
+    private Entity changedRoom() {
+        return new DefaultEntity(testModel.ET_ROOM, new IdLong(1000));
+    }
+
+    /**
+     * Returns the changed entity with an expanded House, containing the given
+     * number of Rooms.
+     */
+    private class RelatedPersistenceManager extends DummyPersistenceManager {
+
+        private final int returnedCount;
+        private final boolean withNextLink;
+        private final Set<Long> relatedIds;
+        private int individualChecks = 0;
+
+        public RelatedPersistenceManager(int returnedCount, boolean withNextLink, Set<Long> relatedIds) {
+            this.returnedCount = returnedCount;
+            this.withNextLink = withNextLink;
+            this.relatedIds = relatedIds;
+            init(coreSettings);
+        }
+
+        @Override
+        public Object get(ResourcePath path, Query query) {
+            EntitySetImpl rooms = new EntitySetImpl(testModel.NP_ROOMS);
+            for (long id = 1; id <= returnedCount; id++) {
+                rooms.add(new DefaultEntity(testModel.ET_ROOM, new IdLong(id)));
+            }
+            if (withNextLink) {
+                rooms.setNextLink("http://localhost/v1.1/Houses(1)/Rooms?$skip=" + returnedCount);
+            }
+            Entity house = new DefaultEntity(testModel.ET_HOUSE, new IdLong(1))
+                    .setProperty(testModel.NP_ROOMS, rooms);
+            return new DefaultEntity(testModel.ET_ROOM, new IdLong(1000))
+                    .setProperty(testModel.NP_HOUSE, house);
+        }
+
+        private boolean isRelated(Id parentId) {
+            individualChecks++;
+            return relatedIds.contains(((Number) parentId.getValue()).longValue());
+        }
+    }
+
+    private static class IndirectSubscription implements Subscription {
+
+        private final String topic;
+        private final EntityType entityType;
+        private final List<NavigationPropertyMain> parentPath;
+        private final Id parentId;
+
+        public IndirectSubscription(String topic, EntityType entityType, List<NavigationPropertyMain> parentPath, Id parentId) {
+            this.topic = topic;
+            this.entityType = entityType;
+            this.parentPath = parentPath;
+            this.parentId = parentId;
+        }
+
+        @Override
+        public String formatMessage(Entity entity) {
+            return topic;
+        }
+
+        @Override
+        public EntityType getEntityType() {
+            return entityType;
+        }
+
+        @Override
+        public String getTopic() {
+            return topic;
+        }
+
+        @Override
+        public boolean matches(PersistenceManager persistenceManager, Entity newEntity, Set<Property> fields) {
+            return matchesIgnoringIndirectParent(newEntity, fields)
+                    && ((RelatedPersistenceManager) persistenceManager).isRelated(parentId);
+        }
+
+        @Override
+        public boolean matchesIgnoringIndirectParent(Entity newEntity, Set<Property> fields) {
+            return newEntity.getEntityType().equals(entityType);
+        }
+
+        @Override
+        public NavigationPropertyMain getParentRelation() {
+            return null;
+        }
+
+        @Override
+        public Id getParentId() {
+            return null;
+        }
+
+        @Override
+        public List<NavigationPropertyMain> getIndirectParentPath() {
+            return parentPath;
+        }
+
+        @Override
+        public Id getIndirectParentId() {
+            return parentId;
+        }
+    }
+}
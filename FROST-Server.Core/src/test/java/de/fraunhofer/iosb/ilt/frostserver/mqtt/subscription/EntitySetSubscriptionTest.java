@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.mqtt.subscription;
+
+import de.fraunhofer.iosb.ilt.frostserver.model.DefaultEntity;
+import de.fraunhofer.iosb.ilt.frostserver.model.ModelRegistry;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.IdLong;
+import de.fraunhofer.iosb.ilt.frostserver.mqtt.MqttManager;
+import de.fraunhofer.iosb.ilt.frostserver.path.PathElementEntitySet;
+import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
+import de.fraunhofer.iosb.ilt.frostserver.path.Version;
+import de.fraunhofer.iosb.ilt.frostserver.service.PluginManager;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import de.fraunhofer.iosb.ilt.frostserver.settings.MqttSettings;
+import de.fraunhofer.iosb.ilt.frostserver.settings.PersistenceSettings;
+import de.fraunhofer.iosb.ilt.frostserver.util.Constants;
+import de.fraunhofer.iosb.ilt.frostserver.util.DummyPersistenceManager;
+import de.fraunhofer.iosb.ilt.frostserver.util.TestModel;
+import de.fraunhofer.iosb.ilt.frostserver.util.TestMqttServer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that subscriptions on entity sets only share a serialised message when
+ * their queries format the entity the same way.
+ *
+ * @author scf
+ */
+class EntitySetSubscriptionTest {
+
+    private CoreSettings coreSettings;
+    private TestModel testModel;
+    private MqttManager mqttManager;
+    private Entity room;
+    private int formatCount;
+
+    @BeforeEach
+    public void init() {
+        Properties properties = new Properties();
+        properties.put(CoreSettings.TAG_SERVICE_ROOT_URL, "http://localhost/");
+        properties.put(CoreSettings.TAG_TEMP_PATH, "/tmp/");
+        properties.put(CoreSettings.TAG_QUEUE_LOGGING_INTERVAL, "0");
+        properties.put(CoreSettings.PREFIX_MQTT + MqttSettings.TAG_IMPLEMENTATION_CLASS, TestMqttServer.class.getName());
+        properties.put(CoreSettings.PREFIX_PERSISTENCE + PersistenceSettings.TAG_IMPLEMENTATION_CLASS, DummyPersistenceManager.class.getName());
+        properties.put(CoreSettings.PREFIX_PLUGINS + PluginManager.TAG_PROVIDED_PLUGINS, TestModel.class.getName() + "," + PluginManager.VALUE_PROVIDED_PLUGINS);
+
+        coreSettings = new CoreSettings(properties);
+        ModelRegistry modelRegistry = coreSettings.getModelRegistry();
+        testModel = coreSettings.getPluginManager().getPlugin(TestModel.class);
+        testModel.initModel(modelRegistry, Constants.VALUE_ID_TYPE_LONG);
+        modelRegistry.initFinalise();
+
+        mqttManager = new MqttManager(coreSettings);
+        room = new DefaultEntity(testModel.ET_ROOM, new IdLong(1))
+                .setProperty(testModel.EP_NAME, "Room 1")
+                .setProperty(testModel.EP_VALUE, 1);
+        formatCount = 0;
+    }
+
+    @AfterEach
+    public void shutdown() {
+        mqttManager.shutdown();
+    }
+
+    private Subscription createSubscription(String query) {
+        final ResourcePath path = new ResourcePath(coreSettings.getQueryDefaults().getServiceRootUrl(), Version.V_1_1, "/Rooms");
+        path.addPathElement(new PathElementEntitySet(testModel.ET_ROOM), true, false);
+        return new EntitySetSubscription(coreSettings, "v1.1/Rooms?" + query, path) {
+            @Override
+            public String doFormatMessage(Entity entity) {
+                formatCount++;
+                return getTopic();
+            }
+        };
+    }
+
+    private Map<Object, byte[]> notifyAll(Subscription... subscriptions) {
+        final Map<Object, byte[]> payloads = new HashMap<>();
+        for (Subscription subscription : subscriptions) {
+            mqttManager.notifySubscription(subscription, room, payloads);
+        }
+        return payloads;
+    }
+
+    @Test
+    void testSameSelectShared() {
+        final Subscription sub1 = createSubscription("$select=name");
+        final Subscription sub2 = createSubscription("%24select=name");
+        assertEquals(sub1.getFormatKey(), sub2.getFormatKey());
+
+        final Map<Object, byte[]> payloads = notifyAll(sub1, sub2);
+        assertEquals(1, payloads.size());
+        assertEquals(1, formatCount, "Subscriptions with the same $select must share one serialisation.");
+    }
+
+    @Test
+    void testDifferentSelectNotShared() {
+        final Subscription sub1 = createSubscription("$select=name");
+        final Subscription sub2 = createSubscription("$select=value");
+        assertNotEquals(sub1.getFormatKey(), sub2.getFormatKey());
+
+        final Map<Object, byte[]> payloads = notifyAll(sub1, sub2);
+        assertEquals(2, payloads.size());
+        assertEquals(2, formatCount);
+    }
+
+    @Test
+    void testSelectDistinctNotShared() {
+        final Subscription sub1 = createSubscription("$select=name");
+        final Subscription sub2 = createSubscription("$select=distinct:name");
+        assertNotEquals(sub1.getFormatKey(), sub2.getFormatKey());
+
+        final Map<Object, byte[]> payloads = notifyAll(sub1, sub2);
+        assertEquals(2, payloads.size());
+        assertEquals(2, formatCount);
+    }
+
+}
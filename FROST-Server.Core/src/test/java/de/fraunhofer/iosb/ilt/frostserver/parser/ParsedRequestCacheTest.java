@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.parser;
+
+import de.fraunhofer.iosb.ilt.frostserver.model.ModelRegistry;
+import de.fraunhofer.iosb.ilt.frostserver.parser.ParsedRequestCache.ParsedRequest;
+import de.fraunhofer.iosb.ilt.frostserver.parser.path.PathParser;
+import de.fraunhofer.iosb.ilt.frostserver.parser.query.QueryParser;
+import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
+import de.fraunhofer.iosb.ilt.frostserver.path.Version;
+import de.fraunhofer.iosb.ilt.frostserver.query.Query;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import de.fraunhofer.iosb.ilt.frostserver.util.Constants;
+import de.fraunhofer.iosb.ilt.frostserver.util.TestModel;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the parsed-request cache hands out copies that can be changed
+ * without affecting the cached template.
+ *
+ * @author scf
+ */
+class ParsedRequestCacheTest {
+
+    private static final String URL_PATH = "/Houses";
+    private static final String URL_QUERY = "$select=name,Rooms&$filter=value gt 5&$expand=Rooms($top=2;$expand=House)";
+
+    private static CoreSettings coreSettings;
+    private static ModelRegistry modelRegistry;
+
+    @BeforeAll
+    public static void beforeClass() {
+        coreSettings = new CoreSettings();
+        modelRegistry = coreSettings.getModelRegistry();
+        TestModel testModel = new TestModel();
+        testModel.initModel(modelRegistry, Constants.VALUE_ID_TYPE_LONG);
+        modelRegistry.initFinalise();
+    }
+
+    private static ResourcePath parsePath() {
+        return PathParser.parsePath(modelRegistry, "", Version.V_1_1, URL_PATH);
+    }
+
+    private static Query parseQuery(ResourcePath path) {
+        return QueryParser.parseQuery(URL_QUERY, coreSettings, path).validate();
+    }
+
+    @Test
+    void testDisabled() {
+        ParsedRequestCache cache = new ParsedRequestCache(0);
+        ResourcePath path = parsePath();
+        cache.put(Version.V_1_1, URL_PATH, URL_QUERY, path, parseQuery(path), 1000);
+        assertNull(cache.get(Version.V_1_1, URL_PATH, URL_QUERY));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void testCopyOnGet() {
+        ParsedRequestCache cache = new ParsedRequestCache(10);
+        assertNull(cache.get(Version.V_1_1, URL_PATH, URL_QUERY));
+        ResourcePath path = parsePath();
+        Query query = parseQuery(path);
+        final String expected = query.toString();
+        cache.put(Version.V_1_1, URL_PATH, URL_QUERY, path, query, 1000);
+
+        // Changing the original after caching must not change the cache.
+        query.setSkip(100);
+
+        ParsedRequest first = cache.get(Version.V_1_1, URL_PATH, URL_QUERY);
+        assertNotNull(first);
+        assertEquals(expected, first.getQuery().toString());
+        assertEquals(parseQuery(parsePath()), first.getQuery());
+
+        first.getQuery().clearSelect();
+        first.getQuery().setSkip(50);
+        first.getQuery().getExpand().get(0).getSubQuery().setTop(1);
+        first.getQuery().getExpand().get(0).getSubQuery().getExpand().clear();
+        assertNotEquals(expected, first.getQuery().toString());
+
+        ParsedRequest second = cache.get(Version.V_1_1, URL_PATH, URL_QUERY);
+        assertNotSame(first.getQuery(), second.getQuery());
+        assertEquals(expected, second.getQuery().toString());
+        assertSame(second.getQuery(), second.getQuery().getExpand().get(0).getParentQuery());
+
+        assertNull(cache.get(Version.V_1_0, URL_PATH, URL_QUERY));
+        assertNull(cache.get(Version.V_1_1, URL_PATH, "$top=1"));
+        assertEquals(2, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    void testEviction() {
+        ParsedRequestCache cache = new ParsedRequestCache(1);
+        ResourcePath path = parsePath();
+        cache.put(Version.V_1_1, URL_PATH, URL_QUERY, path, parseQuery(path), 1000);
+        cache.put(Version.V_1_1, URL_PATH, "$top=1", path, QueryParser.parseQuery("$top=1", coreSettings, path).validate(), 1000);
+        assertEquals(1, cache.getSize());
+        assertNull(cache.get(Version.V_1_1, URL_PATH, URL_QUERY));
+        assertNotNull(cache.get(Version.V_1_1, URL_PATH, "$top=1"));
+    }
+
+}
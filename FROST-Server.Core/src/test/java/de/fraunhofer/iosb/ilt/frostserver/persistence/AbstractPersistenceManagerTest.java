@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.persistence;
+
+import com.github.fge.jsonpatch.JsonPatch;
+import de.fraunhofer.iosb.ilt.frostserver.messagebus.InternalMessageBus;
+import de.fraunhofer.iosb.ilt.frostserver.model.DefaultEntity;
+import de.fraunhofer.iosb.ilt.frostserver.model.EntityChangedMessage;
+import de.fraunhofer.iosb.ilt.frostserver.model.EntityType;
+import de.fraunhofer.iosb.ilt.frostserver.model.ModelRegistry;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Id;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.IdLong;
+import de.fraunhofer.iosb.ilt.frostserver.mqtt.MqttManager;
+import de.fraunhofer.iosb.ilt.frostserver.mqtt.subscription.SubscriptionEvent;
+import de.fraunhofer.iosb.ilt.frostserver.path.PathElementEntity;
+import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
+import de.fraunhofer.iosb.ilt.frostserver.query.Query;
+import de.fraunhofer.iosb.ilt.frostserver.service.PluginManager;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import de.fraunhofer.iosb.ilt.frostserver.settings.MqttSettings;
+import de.fraunhofer.iosb.ilt.frostserver.settings.PersistenceSettings;
+import de.fraunhofer.iosb.ilt.frostserver.util.Constants;
+import de.fraunhofer.iosb.ilt.frostserver.util.DummyPersistenceManager;
+import de.fraunhofer.iosb.ilt.frostserver.util.TestModel;
+import de.fraunhofer.iosb.ilt.frostserver.util.TestMqttServer;
+import java.util.Properties;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that change messages are only built for entity types that someone
+ * listens to.
+ *
+ * @author scf
+ */
+class AbstractPersistenceManagerTest {
+
+    private static final String TOPIC_HOUSE_ROOMS = "v1.1/Houses(1)/Rooms";
+
+    private TestModel testModel;
+    private MqttManager mqttManager;
+    private CountingPersistenceManager pm;
+
+    @BeforeEach
+    public void init() {
+        Properties properties = new Properties();
+        properties.put(CoreSettings.TAG_SERVICE_ROOT_URL, "http://localhost/");
+        properties.put(CoreSettings.TAG_TEMP_PATH, "/tmp/");
+        properties.put(CoreSettings.TAG_QUEUE_LOGGING_INTERVAL, "0");
+        properties.put(CoreSettings.PREFIX_MQTT + MqttSettings.TAG_IMPLEMENTATION_CLASS, TestMqttServer.class.getName());
+        properties.put(CoreSettings.PREFIX_PERSISTENCE + PersistenceSettings.TAG_IMPLEMENTATION_CLASS, DummyPersistenceManager.class.getName());
+        properties.put(CoreSettings.PREFIX_PLUGINS + PluginManager.TAG_PROVIDED_PLUGINS, TestModel.class.getName() + "," + PluginManager.VALUE_PROVIDED_PLUGINS);
+
+        CoreSettings coreSettings = new CoreSettings(properties);
+        ModelRegistry modelRegistry = coreSettings.getModelRegistry();
+        testModel = coreSettings.getPluginManager().getPlugin(TestModel.class);
+        testModel.initModel(modelRegistry, Constants.VALUE_ID_TYPE_LONG);
+        modelRegistry.initFinalise();
+
+        InternalMessageBus messageBus = new InternalMessageBus();
+        coreSettings.setMessageBus(messageBus);
+        mqttManager = new MqttManager(coreSettings);
+        messageBus.addMessageListener(mqttManager);
+
+        pm = new CountingPersistenceManager();
+        pm.init(coreSettings);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        mqttManager.shutdown();
+    }
+
+    private Entity createRoom(long id) {
+        return new DefaultEntity(testModel.ET_ROOM, new IdLong(id))
+                .setProperty(testModel.EP_NAME, "Room " + id);
+    }
+
+    @Test
+    void testNoChangeMessageWithoutSubscribers() throws Exception {
+        assertFalse(pm.isChangeMessageNeeded(testModel.ET_ROOM));
+        assertFalse(pm.isChangeMessageNeeded(testModel.ET_HOUSE));
+
+        assertTrue(pm.insert(createRoom(1)));
+        assertEquals(0, pm.fetchCount, "The entity must not be fetched when no one listens.");
+        assertTrue(pm.getEntityChangedMessages().isEmpty());
+    }
+
+    @Test
+    void testChangeMessageAfterRelatedSubscription() throws Exception {
+        assertTrue(pm.insert(createRoom(1)));
+        assertTrue(pm.getEntityChangedMessages().isEmpty());
+
+        mqttManager.onSubscribe(new SubscriptionEvent(TOPIC_HOUSE_ROOMS));
+        assertTrue(pm.isChangeMessageNeeded(testModel.ET_ROOM));
+        assertFalse(pm.isChangeMessageNeeded(testModel.ET_HOUSE), "A subscription on the Rooms of a House needs no House messages.");
+
+        assertTrue(pm.insert(createRoom(2)));
+        assertEquals(1, pm.fetchCount);
+        assertEquals(1, pm.getEntityChangedMessages().size());
+        final EntityChangedMessage message = pm.getEntityChangedMessages().get(0);
+        assertEquals(EntityChangedMessage.Type.CREATE, message.getEventType());
+        assertEquals(new IdLong(2), message.getEntity().getId());
+
+        mqttManager.onUnsubscribe(new SubscriptionEvent(TOPIC_HOUSE_ROOMS));
+        assertFalse(pm.isChangeMessageNeeded(testModel.ET_ROOM));
+        assertTrue(pm.insert(createRoom(3)));
+        assertEquals(1, pm.fetchCount);
+        assertEquals(1, pm.getEntityChangedMessages().size());
+    }
+
+    /**
+     * A PersistenceManager that stores nothing, and counts how often an entity
+     * is fetched to build a change message.
+     */
+    private static class CountingPersistenceManager extends AbstractPersistenceManager {
+
+        private CoreSettings coreSettings;
+        private int fetchCount = 0;
+
+        @Override
+        public void init(CoreSettings settings) {
+            coreSettings = settings;
+        }
+
+        @Override
+        public CoreSettings getCoreSettings() {
+            return coreSettings;
+        }
+
+        @Override
+        public boolean validatePath(ResourcePath path) {
+            return true;
+        }
+
+        @Override
+        public Entity get(EntityType entityType, Id id) {
+            fetchCount++;
+            return new DefaultEntity(entityType, id);
+        }
+
+        @Override
+        public Object get(ResourcePath path, Query query) {
+            return null;
+        }
+
+        @Override
+        public boolean doInsert(Entity entity) {
+            return true;
+        }
+
+        @Override
+        public boolean doDelete(PathElementEntity pathElement) {
+            return true;
+        }
+
+        @Override
+        public void doDelete(ResourcePath path, Query query) {
+            // Nothing to delete.
+        }
+
+        @Override
+        public EntityChangedMessage doUpdate(PathElementEntity pathElement, Entity entity) {
+            return null;
+        }
+
+        @Override
+        public EntityChangedMessage doUpdate(PathElementEntity pathElement, JsonPatch patch) {
+            return null;
+        }
+
+        @Override
+        protected boolean doCommit() {
+            return true;
+        }
+
+        @Override
+        protected boolean doRollback() {
+            return true;
+        }
+
+        @Override
+        protected boolean doClose() {
+            return true;
+        }
+
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2021 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.util;
+
+import com.github.fge.jsonpatch.JsonPatch;
+import de.fraunhofer.iosb.ilt.frostserver.model.EntityChangedMessage;
+import de.fraunhofer.iosb.ilt.frostserver.model.EntityType;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Id;
+import de.fraunhofer.iosb.ilt.frostserver.path.PathElementEntity;
+import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
+import de.fraunhofer.iosb.ilt.frostserver.persistence.PersistenceManager;
+import de.fraunhofer.iosb.ilt.frostserver.query.Query;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import de.fraunhofer.iosb.ilt.frostserver.util.exception.IncompleteEntityException;
+import de.fraunhofer.iosb.ilt.frostserver.util.exception.NoSuchEntityException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A PersistenceManager that does not store anything, for tests that need a
+ * PersistenceManager but no database. Tests can extend it to return what they
+ * need.
+ *
+ * @author scf
+ */
+public class DummyPersistenceManager implements PersistenceManager {
+
+    private CoreSettings coreSettings;
+
+    @Override
+    public boolean validatePath(ResourcePath path) {
+        return true;
+    }
+
+    @Override
+    public boolean insert(Entity entity) throws NoSuchEntityException, IncompleteEntityException {
+        return true;
+    }
+
+    @Override
+    public Entity get(EntityType entityType, Id id) {
+        return null;
+    }
+
+    @Override
+    public Object get(ResourcePath path, Query query) {
+        return null;
+    }
+
+    @Override
+    public boolean delete(PathElementEntity pathElement) throws NoSuchEntityException {
+        return true;
+    }
+
+    @Override
+    public void delete(ResourcePath path, Query query) throws NoSuchEntityException {
+    }
+
+    @Override
+    public boolean update(PathElementEntity pathElement, Entity entity) throws NoSuchEntityException, IncompleteEntityException {
+        return true;
+    }
+
+    @Override
+    public boolean update(PathElementEntity pathElement, JsonPatch patch) throws NoSuchEntityException, IncompleteEntityException {
+        return true;
+    }
+
+    @Override
+    public List<EntityChangedMessage> getEntityChangedMessages() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void init(CoreSettings settings) {
+        coreSettings = settings;
+    }
+
+    @Override
+    public CoreSettings getCoreSettings() {
+        return coreSettings;
+    }
+
+    @Override
+    public void commit() {
+    }
+
+    @Override
+    public void rollback() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
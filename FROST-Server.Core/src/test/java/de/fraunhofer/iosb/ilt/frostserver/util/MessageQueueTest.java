@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.util;
+
+import de.fraunhofer.iosb.ilt.frostserver.util.MessageQueue.OverflowPolicy;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the overflow policies and statistics of the MessageQueue.
+ *
+ * @author scf
+ */
+class MessageQueueTest {
+
+    private static final long TIMEOUT = 1000;
+
+    @Test
+    void testDrop() {
+        MessageQueue<String> queue = new MessageQueue<>("testDrop", 2, OverflowPolicy.DROP, TIMEOUT);
+        assertTrue(queue.offer("a"));
+        assertTrue(queue.offer("b"));
+        assertFalse(queue.offer("c"));
+        assertEquals(2, queue.getDepth());
+        assertEquals(3, queue.getOfferedCount());
+        assertEquals(1, queue.getDroppedCount());
+        assertEquals(0, queue.getBlockedCount());
+    }
+
+    @Test
+    void testBlock() throws InterruptedException {
+        MessageQueue<String> queue = new MessageQueue<>("testBlock", 1, OverflowPolicy.BLOCK, TIMEOUT);
+        assertTrue(queue.offer("a"));
+        Thread consumer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                queue.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        assertTrue(queue.offer("b"));
+        consumer.join();
+        assertEquals(1, queue.getDepth());
+        assertEquals(1, queue.getBlockedCount());
+        assertEquals(0, queue.getDroppedCount());
+    }
+
+    @Test
+    void testBlockTimeout() {
+        MessageQueue<String> queue = new MessageQueue<>("testBlockTimeout", 1, OverflowPolicy.BLOCK, 10);
+        assertTrue(queue.offer("a"));
+        assertFalse(queue.offer("b"));
+        assertEquals(1, queue.getBlockedCount());
+        assertEquals(1, queue.getDroppedCount());
+        assertTrue(queue.getBlockedMillis() >= 10);
+    }
+
+    @Test
+    void testCoalesce() throws InterruptedException {
+        MessageQueue<Item> queue = new MessageQueue<Item>("testCoalesce", 1, OverflowPolicy.COALESCE, 10)
+                .setCoalescing(item -> item.key, MessageQueueTest::merge);
+        assertTrue(queue.offer(new Item("a", "1")));
+        assertTrue(queue.offer(new Item("a", "2")));
+        assertEquals(1, queue.getCoalescedCount());
+        assertFalse(queue.offer(new Item("b", "1")));
+        assertEquals(1, queue.getDroppedCount());
+
+        Item item = queue.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertEquals(Arrays.asList("1", "2"), item.values);
+        // Taken items are no longer merged into.
+        assertTrue(queue.offer(new Item("a", "3")));
+        assertTrue(queue.offer(new Item("a", "4")));
+        assertEquals(Arrays.asList("1", "2"), item.values);
+        assertEquals(Arrays.asList("3", "4"), queue.poll(TIMEOUT, TimeUnit.MILLISECONDS).values);
+    }
+
+    @Test
+    void testCoalesceNotIntoBlocked() throws InterruptedException {
+        MessageQueue<Item> queue = new MessageQueue<Item>("testCoalesceNotIntoBlocked", 1, OverflowPolicy.COALESCE, 200)
+                .setCoalescing(item -> item.key, MessageQueueTest::merge);
+        assertTrue(queue.offer(new Item("x", "1")));
+        // This item waits for space that never comes, and is dropped.
+        final AtomicBoolean blockedResult = new AtomicBoolean(true);
+        Thread blockedOffer = new Thread(() -> blockedResult.set(queue.offer(new Item("a", "1"))));
+        blockedOffer.start();
+        Thread.sleep(50);
+        // Must not be merged into the item that is not in the queue.
+        assertFalse(queue.offer(new Item("a", "2")));
+        blockedOffer.join();
+        assertFalse(blockedResult.get());
+        assertEquals(0, queue.getCoalescedCount());
+        assertEquals(2, queue.getDroppedCount());
+        assertEquals(Arrays.asList("1"), queue.poll(TIMEOUT, TimeUnit.MILLISECONDS).values);
+    }
+
+    @Test
+    void testJmxNames() throws Exception {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName pattern = new ObjectName(Constants.JMX_DOMAIN + ":type=MessageQueue,name=" + ObjectName.quote("testJmxNames") + ",*");
+        MessageQueue<String> queue1 = new MessageQueue<String>("testJmxNames", 1, OverflowPolicy.DROP, TIMEOUT)
+                .startProcessors(1, item -> {
+                });
+        MessageQueue<String> queue2 = new MessageQueue<String>("testJmxNames", 1, OverflowPolicy.DROP, TIMEOUT)
+                .startProcessors(1, item -> {
+                });
+        try {
+            // Queues with the same name must not replace each other.
+            assertEquals(2, mBeanServer.queryNames(pattern, null).size());
+            queue1.stop(0, TimeUnit.SECONDS);
+            assertEquals(1, mBeanServer.queryNames(pattern, null).size());
+        } finally {
+            queue1.stop(0, TimeUnit.SECONDS);
+            queue2.stop(0, TimeUnit.SECONDS);
+        }
+        assertEquals(0, mBeanServer.queryNames(pattern, null).size());
+    }
+
+    @Test
+    void testSpill() throws InterruptedException {
+        MessageQueue<String> queue = new MessageQueue<String>("testSpill", 1, OverflowPolicy.SPILL, TIMEOUT)
+                .setSpilling(new StringCodec(), null, 10);
+        try {
+            for (int i = 0; i < 5; i++) {
+                assertTrue(queue.offer("m" + i));
+            }
+            assertEquals(4, queue.getSpilledCount());
+            assertEquals(0, queue.getDroppedCount());
+            List<String> received = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                received.add(queue.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+            }
+            assertEquals(Arrays.asList("m0", "m1", "m2", "m3", "m4"), received);
+            assertEquals(0, queue.getSpillDepth());
+        } finally {
+            queue.stop(0, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void testProcessors() throws InterruptedException {
+        List<String> received = new ArrayList<>();
+        MessageQueue<String> queue = new MessageQueue<String>("testProcessors", 10, OverflowPolicy.DROP, TIMEOUT)
+                .startProcessors(1, item -> {
+                    synchronized (received) {
+                        received.add(item);
+                        received.notifyAll();
+                    }
+                });
+        try {
+            assertTrue(queue.offer("a"));
+            assertTrue(queue.offer("b"));
+            synchronized (received) {
+                long end = System.currentTimeMillis() + TIMEOUT;
+                while (received.size() < 2 && System.currentTimeMillis() < end) {
+                    received.wait(TIMEOUT);
+                }
+            }
+            assertEquals(Arrays.asList("a", "b"), received);
+        } finally {
+            queue.stop(1, TimeUnit.SECONDS);
+        }
+    }
+
+    private static boolean merge(Item waiting, Item newer) {
+        waiting.values.addAll(newer.values);
+        return true;
+    }
+
+    private static class Item {
+
+        private final String key;
+        private final List<String> values = new ArrayList<>();
+
+        public Item(String key, String value) {
+            this.key = key;
+            values.add(value);
+        }
+    }
+
+    private static class StringCodec implements MessageQueue.Codec<String> {
+
+        @Override
+        public byte[] encode(String item) throws IOException {
+            return item.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] data) throws IOException {
+            return new String(data, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2021 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.util;
+
+import de.fraunhofer.iosb.ilt.frostserver.mqtt.MqttServer;
+import de.fraunhofer.iosb.ilt.frostserver.mqtt.create.EntityCreateListener;
+import de.fraunhofer.iosb.ilt.frostserver.mqtt.subscription.SubscriptionListener;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An MqttServer that does not accept connections, for tests that need an
+ * MqttServer but no broker. Published messages are dropped.
+ *
+ * @author scf
+ */
+public class TestMqttServer implements MqttServer {
+
+    private final List<SubscriptionListener> subscriptionListeners = new CopyOnWriteArrayList<>();
+    private final List<EntityCreateListener> entityCreateListeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void init(CoreSettings settings) {
+        // Nothing to initialise.
+    }
+
+    @Override
+    public void start() {
+        // Nothing to start.
+    }
+
+    @Override
+    public void stop() {
+        // Nothing to stop.
+    }
+
+    @Override
+    public void publish(String topic, String payload, int qos) {
+        // Messages are dropped.
+    }
+
+    @Override
+    public void addSubscriptionListener(SubscriptionListener listener) {
+        subscriptionListeners.add(listener);
+    }
+
+    @Override
+    public void removeSubscriptionListener(SubscriptionListener listener) {
+        subscriptionListeners.remove(listener);
+    }
+
+    @Override
+    public void addEntityCreateListener(EntityCreateListener listener) {
+        entityCreateListeners.add(listener);
+    }
+
+    @Override
+    public void removeEntityCreateListener(EntityCreateListener listener) {
+        entityCreateListeners.remove(listener);
+    }
+
+}
@@ -17,8 +17,10 @@
  */
 package de.fraunhofer.iosb.ilt.frostserver.util;
 
+import de.fraunhofer.iosb.ilt.frostserver.model.DefaultEntity;
 import de.fraunhofer.iosb.ilt.frostserver.model.ModelRegistry;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.IdLong;
 import de.fraunhofer.iosb.ilt.frostserver.parser.path.PathParser;
 import de.fraunhofer.iosb.ilt.frostserver.path.PathElementEntitySet;
 import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
@@ -171,6 +173,38 @@ class UrlHelperTest {
                 "/Houses?$orderby=name desc,value&$top=2&$skip=2&$skipFilter=(name lt 'House 1' or (name eq 'House 1' and (value gt 1.0 or (value eq 1.0 and id gt 1))))");
     }
 
+    @Test
+    void testNextLinkPastSkipMaxNullValue() {
+        final CoreSettings limitedSettings = new CoreSettings();
+        final TestModel limitedModel = new TestModel();
+        limitedModel.initModel(limitedSettings.getModelRegistry(), Constants.VALUE_ID_TYPE_LONG);
+        limitedSettings.getModelRegistry().initFinalise();
+        limitedSettings.getQueryDefaults()
+                .setSkipMax(10)
+                .setUseAbsoluteNavigationLinks(false);
+
+        // The value of both Houses is null, so the nextLink can not use a skipFilter.
+        Entity house11 = new DefaultEntity(limitedModel.ET_HOUSE, new IdLong(11)).setProperty(limitedModel.EP_NAME, "House 11");
+        Entity house12 = new DefaultEntity(limitedModel.ET_HOUSE, new IdLong(12)).setProperty(limitedModel.EP_NAME, "House 12");
+        testNextLink(
+                limitedSettings, house11, house12,
+                "/Houses?$orderby=value&$top=2&$skip=10",
+                "/Houses?$orderby=value&$top=2&$skip=12");
+        testNextLink(
+                limitedSettings, house11, house12,
+                "/Houses?$orderby=value&$top=2&$skip=12",
+                "/Houses?$orderby=value&$top=2&$skip=14");
+
+        // Ordering on non-null properties always gives a skipFilter, so a deep $skip is rejected.
+        testNextLink(
+                limitedSettings, house11, house12,
+                "/Houses?$orderby=name&$top=2&$skip=10",
+                "/Houses?$orderby=name&$top=2&$skip=12&$skipFilter=(name gt 'House 11')");
+        assertThrows(IllegalArgumentException.class, () -> {
+            ParserUtils.parsePathAndQuery(SERVICE_ROOT_URL, Version.V_1_1, "/Houses?$orderby=name&$top=2&$skip=12", limitedSettings);
+        });
+    }
+
     private static void testNextLink(CoreSettings settings, Entity last, Entity next, String baseUrl, String expectedNextUrl) {
 
         Query queryBase = null;
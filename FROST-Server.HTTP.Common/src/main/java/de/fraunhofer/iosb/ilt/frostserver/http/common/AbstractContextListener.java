@@ -105,6 +105,7 @@ public abstract class AbstractContextListener implements ServletContextListener
         if (coreSettings == null) {
             return;
         }
+        coreSettings.getPluginManager().stopPlugins();
         final MessageBus messageBus = coreSettings.getMessageBus();
         if (messageBus != null) {
             messageBus.stop();
@@ -142,6 +143,7 @@ public abstract class AbstractContextListener implements ServletContextListener
     private void setUpCatalinaCorsFilter(ServletContext servletContext, Settings httpSettings) {
         try {
             FilterRegistration.Dynamic corsFilter = servletContext.addFilter(CORS_FILTER_NAME, CATALINA_CORS_FILTER_CLASS);
+            corsFilter.setAsyncSupported(true);
             corsFilter.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST, DispatcherType.FORWARD), true, "/*");
             setInitParameter(corsFilter, "cors.allowed.origins", httpSettings, CoreSettings.TAG_CORS_ALLOWED_ORIGINS);
             setInitParameter(corsFilter, "cors.allowed.methods", httpSettings, CoreSettings.TAG_CORS_ALLOWED_METHODS);
@@ -158,6 +160,7 @@ public abstract class AbstractContextListener implements ServletContextListener
     private void setUpJettyCorsFilter(ServletContext servletContext, Settings httpSettings) {
         try {
             FilterRegistration.Dynamic corsFilter = servletContext.addFilter(CORS_FILTER_NAME, JETTY_CORS_FILTER_CLASS);
+            corsFilter.setAsyncSupported(true);
             corsFilter.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST, DispatcherType.FORWARD), true, "/*");
             setInitParameter(corsFilter, "allowedOrigins", httpSettings, CoreSettings.TAG_CORS_ALLOWED_ORIGINS);
             setInitParameter(corsFilter, "allowedMethods", httpSettings, CoreSettings.TAG_CORS_ALLOWED_METHODS);
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2021 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.http.common;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+/**
+ * A request of which the content can be detached from the request of the
+ * container. Once detached, reading the content fails. The counterpart of
+ * {@link DetachableResponse}: the container recycles its request once the
+ * request is completed, and the thread that processes the request must not
+ * read from it after that.
+ *
+ * @author scf
+ */
+class DetachableRequest extends HttpServletRequestWrapper {
+
+    private static final String DETACHED_MESSAGE = "Request detached, the request timed out.";
+
+    /**
+     * Guards the reads from the request of the container, so the request is
+     * not detached while a read is in progress.
+     */
+    private final Object lock = new Object();
+    private volatile boolean detached;
+    private ServletInputStream inputStream;
+    private BufferedReader reader;
+
+    public DetachableRequest(HttpServletRequest request) {
+        super(request);
+    }
+
+    /**
+     * Detach from the request of the container. Waits for reads that are in
+     * progress.
+     */
+    public void detach() {
+        synchronized (lock) {
+            detached = true;
+        }
+    }
+
+    private void checkAttached() throws IOException {
+        if (detached) {
+            throw new IOException(DETACHED_MESSAGE);
+        }
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        synchronized (lock) {
+            checkAttached();
+            if (inputStream == null) {
+                inputStream = new DetachableInputStream(super.getInputStream());
+            }
+            return inputStream;
+        }
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        synchronized (lock) {
+            checkAttached();
+            if (reader == null) {
+                final String encoding = getCharacterEncoding();
+                final Charset charset = encoding == null ? StandardCharsets.ISO_8859_1 : Charset.forName(encoding);
+                reader = new BufferedReader(new InputStreamReader(getInputStream(), charset));
+            }
+            return reader;
+        }
+    }
+
+    /**
+     * Passes reads on to the stream of the container, until the request is
+     * detached.
+     */
+    private class DetachableInputStream extends ServletInputStream {
+
+        private final ServletInputStream delegate;
+
+        public DetachableInputStream(ServletInputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return detached || delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return !detached && delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            delegate.setReadListener(readListener);
+        }
+
+        @Override
+        public int read() throws IOException {
+            synchronized (lock) {
+                checkAttached();
+                return delegate.read();
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            synchronized (lock) {
+                checkAttached();
+                return delegate.read(b, off, len);
+            }
+        }
+
+        @Override
+        public int available() throws IOException {
+            synchronized (lock) {
+                checkAttached();
+                return delegate.available();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (lock) {
+                if (!detached) {
+                    delegate.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) 2021 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.http.common;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Locale;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * A response that can be detached from the response of the container. Once
+ * detached, all changes and output are dropped. Used for asynchronous
+ * requests that time out while they are still being processed: the container
+ * recycles its response once the request is completed, and the thread that
+ * processes the request must not write into it after that.
+ *
+ * @author scf
+ */
+class DetachableResponse extends HttpServletResponseWrapper {
+
+    private static final String DETACHED_MESSAGE = "Response detached, the request timed out.";
+
+    /**
+     * Guards the writes to the response of the container, so the response is
+     * not detached while a write is in progress.
+     */
+    private final Object lock = new Object();
+    private volatile boolean detached;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    public DetachableResponse(HttpServletResponse response) {
+        super(response);
+    }
+
+    /**
+     * Detach from the response of the container. Waits for writes that are in
+     * progress.
+     */
+    public void detach() {
+        synchronized (lock) {
+            detached = true;
+        }
+    }
+
+    public boolean isDetached() {
+        return detached;
+    }
+
+    private void checkAttached() throws IOException {
+        if (detached) {
+            throw new IOException(DETACHED_MESSAGE);
+        }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        synchronized (lock) {
+            checkAttached();
+            if (outputStream == null) {
+                outputStream = new DetachableOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        synchronized (lock) {
+            checkAttached();
+            if (writer == null) {
+                writer = new PrintWriter(new DetachableWriter(super.getWriter()));
+            }
+            return writer;
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        synchronized (lock) {
+            checkAttached();
+            super.flushBuffer();
+        }
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return detached || super.isCommitted();
+    }
+
+    @Override
+    public void reset() {
+        if (!detached) {
+            super.reset();
+        }
+    }
+
+    @Override
+    public void resetBuffer() {
+        if (!detached) {
+            super.resetBuffer();
+        }
+    }
+
+    @Override
+    public void setBufferSize(int size) {
+        if (!detached) {
+            super.setBufferSize(size);
+        }
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+        if (!detached) {
+            super.setCharacterEncoding(charset);
+        }
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        if (!detached) {
+            super.setContentLength(len);
+        }
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        if (!detached) {
+            super.setContentLengthLong(len);
+        }
+    }
+
+    @Override
+    public void setContentType(String type) {
+        if (!detached) {
+            super.setContentType(type);
+        }
+    }
+
+    @Override
+    public void setLocale(Locale loc) {
+        if (!detached) {
+            super.setLocale(loc);
+        }
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        if (!detached) {
+            super.addCookie(cookie);
+        }
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        checkAttached();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        checkAttached();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        checkAttached();
+        super.sendRedirect(location);
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        if (!detached) {
+            super.setDateHeader(name, date);
+        }
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        if (!detached) {
+            super.addDateHeader(name, date);
+        }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (!detached) {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (!detached) {
+            super.addHeader(name, value);
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        if (!detached) {
+            super.setIntHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        if (!detached) {
+            super.addIntHeader(name, value);
+        }
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        if (!detached) {
+            super.setStatus(sc);
+        }
+    }
+
+    /**
+     * Passes writes on to the stream of the container, until the response is
+     * detached.
+     */
+    private class DetachableOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+
+        public DetachableOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean isReady() {
+            return !detached && delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            synchronized (lock) {
+                checkAttached();
+                delegate.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (lock) {
+                checkAttached();
+                delegate.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (lock) {
+                checkAttached();
+                delegate.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (lock) {
+                if (!detached) {
+                    delegate.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes writes on to the writer of the container, until the response is
+     * detached.
+     */
+    private class DetachableWriter extends Writer {
+
+        private final Writer delegate;
+
+        public DetachableWriter(Writer delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            synchronized (lock) {
+                checkAttached();
+                delegate.write(cbuf, off, len);
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            synchronized (lock) {
+                checkAttached();
+                delegate.write(str, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (lock) {
+                checkAttached();
+                delegate.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (lock) {
+                if (!detached) {
+                    delegate.close();
+                }
+            }
+        }
+    }
+}
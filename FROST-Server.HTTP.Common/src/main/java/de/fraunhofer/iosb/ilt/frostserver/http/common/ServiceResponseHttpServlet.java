@@ -19,13 +19,13 @@ package de.fraunhofer.iosb.ilt.frostserver.http.common;
 
 import de.fraunhofer.iosb.ilt.frostserver.service.ServiceResponse;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import javax.servlet.http.HttpServletResponse;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  *
@@ -33,7 +33,6 @@ import org.slf4j.LoggerFactory;
  */
 public class ServiceResponseHttpServlet implements ServiceResponse {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(ServiceResponseHttpServlet.class.getName());
     private final HttpServletResponse httpResponse;
     private Object result;
     private int code;
@@ -121,8 +120,16 @@ public class ServiceResponseHttpServlet implements ServiceResponse {
         try {
             return httpResponse.getWriter();
         } catch (IOException ex) {
-            LOGGER.error("Failed to get Writer", ex);
-            return null;
+            throw new UncheckedIOException("Failed to get Writer", ex);
+        }
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        try {
+            return httpResponse.getOutputStream();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to get OutputStream", ex);
         }
     }
 
@@ -24,12 +24,28 @@ import de.fraunhofer.iosb.ilt.frostserver.service.ServiceRequest;
 import de.fraunhofer.iosb.ilt.frostserver.service.ServiceResponse;
 import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
 import static de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings.TAG_CORE_SETTINGS;
+import de.fraunhofer.iosb.ilt.frostserver.settings.Settings;
 import static de.fraunhofer.iosb.ilt.frostserver.util.Constants.CONTENT_TYPE_APPLICATION_JSON;
 import static de.fraunhofer.iosb.ilt.frostserver.util.Constants.CONTENT_TYPE_TEXT_HTML;
 import de.fraunhofer.iosb.ilt.frostserver.util.StringHelper;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.annotation.MultipartConfig;
@@ -38,6 +54,7 @@ import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,6 +65,7 @@ import org.slf4j.LoggerFactory;
 @WebServlet(
         name = "CoreServlet",
         urlPatterns = {"/*"},
+        asyncSupported = true,
         initParams = {
             @WebInitParam(name = "readonly", value = "false")
         }
@@ -60,18 +78,136 @@ public class ServletMain extends HttpServlet {
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(ServletMain.class);
     private static final String NOT_FOUND = "Not Found";
+    private static final int STATE_QUEUED = 0;
+    private static final int STATE_RUNNING = 1;
+    private static final int STATE_DONE = 2;
+
+    /**
+     * The executor that requests are handed to, so they do not block container
+     * threads. If null, requests are processed on the container thread.
+     */
+    private ExecutorService asyncExecutor;
+    /**
+     * Limits the number of requests handed to an executor that has no queue
+     * limit of its own, like the virtual thread executor. Null if the executor
+     * limits its queue itself.
+     */
+    private Semaphore asyncPermits;
+    /**
+     * The maximum time, in milliseconds, an asynchronous request may take. 0
+     * means no limit.
+     */
+    private long asyncTimeout;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        final CoreSettings coreSettings = (CoreSettings) getServletContext().getAttribute(TAG_CORE_SETTINGS);
+        if (coreSettings == null) {
+            return;
+        }
+        final Settings httpSettings = coreSettings.getHttpSettings();
+        asyncTimeout = httpSettings.getInt(CoreSettings.TAG_ASYNC_TIMEOUT, CoreSettings.class);
+        final int queueSize = httpSettings.getInt(CoreSettings.TAG_ASYNC_QUEUE_SIZE, CoreSettings.class);
+        if (httpSettings.getBoolean(CoreSettings.TAG_ASYNC_VIRTUAL_THREADS, CoreSettings.class)) {
+            asyncExecutor = createVirtualThreadExecutor();
+            if (asyncExecutor != null) {
+                asyncPermits = new Semaphore(Math.max(1, queueSize));
+            }
+        }
+        final int asyncThreads = httpSettings.getInt(CoreSettings.TAG_ASYNC_THREADS, CoreSettings.class);
+        if (asyncExecutor == null && asyncThreads > 0) {
+            LOGGER.info("Processing requests asynchronously, using {} threads and a queue of {}.", asyncThreads, queueSize);
+            final BlockingQueue<Runnable> queue = queueSize > 0 ? new ArrayBlockingQueue<>(queueSize) : new SynchronousQueue<>();
+            asyncExecutor = new ThreadPoolExecutor(asyncThreads, asyncThreads, 0L, TimeUnit.MILLISECONDS, queue, new BasicThreadFactory.Builder()
+                    .namingPattern("HttpRequest-%d")
+                    .daemon(true)
+                    .build());
+        }
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread for each request, if
+     * the JVM supports virtual threads.
+     *
+     * @return The executor, or null if virtual threads are not available.
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            final ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+            LOGGER.info("Processing requests asynchronously, using virtual threads.");
+            return executor;
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            LOGGER.warn("Virtual threads are not available on this JVM: {}", ex.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdown();
+            asyncExecutor = null;
+        }
+        super.destroy();
+    }
+
+    /**
+     * Processes the request on the async executor, if one is configured and
+     * the request supports async processing, or on the current thread
+     * otherwise. The response is written using blocking writes from the
+     * executor thread, so slow clients do not hold container threads.
+     */
+    private void handleRequest(HttpServletRequest request, HttpServletResponse response) {
+        final ExecutorService executor = asyncExecutor;
+        if (executor == null || !request.isAsyncSupported()) {
+            processRequest(request, response);
+            return;
+        }
+        // The request is decoded while the container still dispatches it, the
+        // executor thread only reads the content of the request.
+        final DetachableRequest asyncRequest = new DetachableRequest(request);
+        final DetachableResponse asyncResponse = new DetachableResponse(response);
+        final ServiceRequest serviceRequest = decodeRequest(asyncRequest, asyncResponse);
+        if (serviceRequest == null) {
+            return;
+        }
+        new AsyncRequest(request.startAsync(asyncRequest, asyncResponse), serviceRequest, asyncRequest, asyncResponse, asyncPermits)
+                .start(executor, asyncTimeout);
+    }
 
     private void processRequest(HttpServletRequest request, HttpServletResponse response) {
+        final ServiceRequest serviceRequest = decodeRequest(request, response);
+        if (serviceRequest != null) {
+            executeService(serviceRequest, response);
+        }
+    }
+
+    /**
+     * Decodes the request into a ServiceRequest. Requests that do not need a
+     * service, or that can not be decoded, are answered directly.
+     *
+     * @param request The request to decode.
+     * @param response The response to answer directly to.
+     * @return The ServiceRequest, or null if the request has been answered.
+     */
+    private ServiceRequest decodeRequest(HttpServletRequest request, HttpServletResponse response) {
         response.setCharacterEncoding(StandardCharsets.UTF_8.name());
         String pathInfo = request.getPathInfo();
         final CoreSettings coreSettings = (CoreSettings) request.getServletContext().getAttribute(TAG_CORE_SETTINGS);
+        final int bufferSize = coreSettings.getHttpSettings().getInt(CoreSettings.TAG_RESPONSE_BUFFER_SIZE, CoreSettings.class);
+        if (bufferSize > 0) {
+            response.setBufferSize(bufferSize);
+        }
         if (StringHelper.isNullOrEmpty(pathInfo)) {
             try {
                 response.sendRedirect(coreSettings.getQueryDefaults().getServiceRootUrl() + "/");
-                return;
+                return null;
             } catch (IOException ex) {
                 sendResponse(Service.errorResponse(null, 500, NOT_FOUND), response);
-                return;
+                return null;
             }
         }
         if (pathInfo.equals("/")) {
@@ -79,10 +215,10 @@ public class ServletMain extends HttpServlet {
                 response.setContentType(CONTENT_TYPE_TEXT_HTML);
                 ServletOutputStream out = response.getOutputStream();
                 in.transferTo(out);
-                return;
+                return null;
             } catch (IOException exc) {
                 sendResponse(Service.errorResponse(null, 500, NOT_FOUND), response);
-                return;
+                return null;
             }
         }
         response.setContentType(CONTENT_TYPE_APPLICATION_JSON);
@@ -90,18 +226,18 @@ public class ServletMain extends HttpServlet {
             ServiceRequest serviceRequest = serviceRequestFromHttpRequest(coreSettings, request);
             if (serviceRequest == null) {
                 sendResponse(new ServiceResponseHttpServlet(response, 404, NOT_FOUND), response);
-                return;
             }
-            executeService(serviceRequest, request, response);
+            return serviceRequest;
         } catch (IllegalArgumentException exc) {
             sendResponse(new ServiceResponseHttpServlet(response, 400, exc.getMessage()), response);
         } catch (IOException exc) {
             sendResponse(new ServiceResponseHttpServlet(response, 500, exc.getMessage()), response);
         }
+        return null;
     }
 
-    private void executeService(final ServiceRequest serviceRequest, HttpServletRequest request, HttpServletResponse response) {
-        CoreSettings coreSettings = (CoreSettings) request.getServletContext().getAttribute(TAG_CORE_SETTINGS);
+    private void executeService(final ServiceRequest serviceRequest, HttpServletResponse response) {
+        CoreSettings coreSettings = (CoreSettings) getServletContext().getAttribute(TAG_CORE_SETTINGS);
         PluginService plugin = coreSettings.getPluginManager().getServiceForRequestType(serviceRequest.getVersion(), serviceRequest.getRequestType());
         if (plugin == null) {
             sendResponse(Service.errorResponse(null, 500, "Illegal request type."), response);
@@ -112,17 +248,24 @@ public class ServletMain extends HttpServlet {
             final ServiceResponseHttpServlet serviceResponse = new ServiceResponseHttpServlet(response);
             plugin.execute(service, serviceRequest, serviceResponse);
             sendResponse(serviceResponse, response);
-            ServiceRequest.LOCAL_REQUEST.remove();
+        } catch (UncheckedIOException exc) {
+            // The response can not be written to, so there is no point in
+            // writing an error message. Usually the client went away.
+            LOGGER.warn("Failed to write response: {}", exc.getCause().getMessage());
+            LOGGER.debug("Exception:", exc);
+            response.setStatus(500);
         } catch (Exception exc) {
             LOGGER.error("", exc);
             sendResponse(new ServiceResponseHttpServlet(response, 500, exc.getMessage()), response);
+        } finally {
+            ServiceRequest.LOCAL_REQUEST.remove();
         }
     }
 
     private void sendResponse(ServiceResponse serviceResponse, HttpServletResponse httpResponse) {
         try {
             if (!serviceResponse.isSuccessful() && !StringHelper.isNullOrEmpty(serviceResponse.getMessage())) {
-                httpResponse.getWriter().write(serviceResponse.getMessage());
+                writeMessage(serviceResponse.getMessage(), httpResponse);
             }
         } catch (IOException ex) {
             LOGGER.error("Error writing HTTP result", ex);
@@ -130,28 +273,172 @@ public class ServletMain extends HttpServlet {
         }
     }
 
+    private static void writeMessage(String message, HttpServletResponse httpResponse) throws IOException {
+        try {
+            httpResponse.getWriter().write(message);
+        } catch (IllegalStateException exc) {
+            // The OutputStream is already in use.
+            httpResponse.getOutputStream().write(message.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * A request that is processed on the async executor. The request is
+     * answered with 503 when the executor can not take it, or when it times
+     * out. When it times out while being processed, the request and response
+     * are detached, so the processing thread can not use them after the
+     * container recycled them.
+     */
+    private class AsyncRequest implements Runnable, AsyncListener {
+
+        private final AsyncContext asyncContext;
+        private final ServiceRequest serviceRequest;
+        private final DetachableRequest request;
+        private final DetachableResponse response;
+        private final Semaphore permits;
+        private final AtomicInteger state = new AtomicInteger(STATE_QUEUED);
+        private volatile ExecutorService executor;
+        private volatile Future<?> future;
+
+        public AsyncRequest(AsyncContext asyncContext, ServiceRequest serviceRequest, DetachableRequest request, DetachableResponse response, Semaphore permits) {
+            this.asyncContext = asyncContext;
+            this.serviceRequest = serviceRequest;
+            this.request = request;
+            this.response = response;
+            this.permits = permits;
+        }
+
+        public void start(ExecutorService executor, long timeout) {
+            asyncContext.addListener(this);
+            asyncContext.setTimeout(timeout);
+            if (permits != null && !permits.tryAcquire()) {
+                reject();
+                return;
+            }
+            try {
+                this.executor = executor;
+                future = executor.submit(this);
+            } catch (RejectedExecutionException exc) {
+                releasePermit();
+                reject();
+            }
+        }
+
+        private void reject() {
+            LOGGER.warn("Request rejected, too many requests waiting or server shutting down.");
+            state.set(STATE_DONE);
+            response.setStatus(503);
+            asyncContext.complete();
+        }
+
+        private void releasePermit() {
+            if (permits != null) {
+                permits.release();
+            }
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(STATE_QUEUED, STATE_RUNNING)) {
+                // Timed out while waiting in the queue.
+                return;
+            }
+            try {
+                executeService(serviceRequest, response);
+            } catch (RuntimeException exc) {
+                // Tasks handed to submit() do not report their exceptions.
+                LOGGER.error("Failed to process request.", exc);
+                response.setStatus(500);
+            } finally {
+                releasePermit();
+                if (state.compareAndSet(STATE_RUNNING, STATE_DONE)) {
+                    asyncContext.complete();
+                }
+            }
+        }
+
+        /**
+         * Marks the request as done, so the executor does not complete it
+         * anymore.
+         *
+         * @return true if the request was not done yet.
+         */
+        private boolean abandon() {
+            final int previous = state.getAndSet(STATE_DONE);
+            if (previous == STATE_QUEUED) {
+                releasePermit();
+                final Future<?> queued = future;
+                if (queued != null) {
+                    queued.cancel(false);
+                    if (executor instanceof ThreadPoolExecutor) {
+                        // Free the place in the queue right away.
+                        ((ThreadPoolExecutor) executor).remove((Runnable) queued);
+                    }
+                }
+            }
+            return previous != STATE_DONE;
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            if (!abandon()) {
+                return;
+            }
+            LOGGER.warn("Request did not finish within {} ms.", asyncContext.getTimeout());
+            request.detach();
+            response.detach();
+            final HttpServletResponse containerResponse = (HttpServletResponse) response.getResponse();
+            try {
+                containerResponse.reset();
+                containerResponse.setStatus(503);
+            } catch (IllegalStateException exc) {
+                LOGGER.debug("Response already committed, can not send timeout status.");
+            }
+            asyncContext.complete();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) throws IOException {
+            if (abandon()) {
+                request.detach();
+                response.detach();
+                asyncContext.complete();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) throws IOException {
+            // Nothing to clean up.
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) throws IOException {
+            // Nothing to register.
+        }
+    }
+
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) {
-        processRequest(request, response);
+        handleRequest(request, response);
     }
 
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response) {
-        processRequest(request, response);
+        handleRequest(request, response);
     }
 
     @Override
     protected void doPut(HttpServletRequest request, HttpServletResponse response) {
-        processRequest(request, response);
+        handleRequest(request, response);
     }
 
     protected void doPatch(HttpServletRequest request, HttpServletResponse response) {
-        processRequest(request, response);
+        handleRequest(request, response);
     }
 
     @Override
     protected void doDelete(HttpServletRequest request, HttpServletResponse response) {
-        processRequest(request, response);
+        handleRequest(request, response);
     }
 
     /**
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2021 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.http.common;
+
+import de.fraunhofer.iosb.ilt.frostserver.formatter.FormatWriterGeneric;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Proxy;
+import javax.servlet.http.HttpServletResponse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for ServiceResponseHttpServlet on a response that can not be written
+ * to.
+ *
+ * @author scf
+ */
+class ServiceResponseHttpServletTest {
+
+    /**
+     * Creates a response of which the Writer and OutputStream can not be
+     * opened, like the response of a request that timed out.
+     */
+    private static ServiceResponseHttpServlet createDetachedResponse() {
+        final HttpServletResponse container = (HttpServletResponse) Proxy.newProxyInstance(
+                HttpServletResponse.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class},
+                (proxy, method, args) -> null);
+        final DetachableResponse response = new DetachableResponse(container);
+        response.detach();
+        return new ServiceResponseHttpServlet(response);
+    }
+
+    @Test
+    void testWriterFails() {
+        final ServiceResponseHttpServlet response = createDetachedResponse();
+        assertThrows(UncheckedIOException.class, response::getWriter);
+    }
+
+    @Test
+    void testOutputStreamFails() {
+        final ServiceResponseHttpServlet response = createDetachedResponse();
+        assertThrows(UncheckedIOException.class, response::getOutputStream);
+    }
+
+    @Test
+    void testWriteFormattedFails() {
+        final ServiceResponseHttpServlet response = createDetachedResponse();
+        assertThrows(IOException.class, () -> response.writeFormatted(new FormatWriterGeneric("{}")));
+    }
+
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2021 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.http.common;
+
+import de.fraunhofer.iosb.ilt.frostserver.formatter.FormatWriterGeneric;
+import de.fraunhofer.iosb.ilt.frostserver.path.Version;
+import de.fraunhofer.iosb.ilt.frostserver.service.PluginManager;
+import de.fraunhofer.iosb.ilt.frostserver.service.PluginService;
+import de.fraunhofer.iosb.ilt.frostserver.service.Service;
+import de.fraunhofer.iosb.ilt.frostserver.service.ServiceRequest;
+import de.fraunhofer.iosb.ilt.frostserver.service.ServiceResponse;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import static de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings.TAG_CORE_SETTINGS;
+import de.fraunhofer.iosb.ilt.frostserver.settings.PersistenceSettings;
+import de.fraunhofer.iosb.ilt.frostserver.util.DummyPersistenceManager;
+import static de.fraunhofer.iosb.ilt.frostserver.util.Constants.CONTENT_TYPE_APPLICATION_JSON;
+import de.fraunhofer.iosb.ilt.frostserver.util.HttpMethod;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the asynchronous processing of requests in ServletMain, and for
+ * how responses are written.
+ *
+ * @author scf
+ */
+class ServletMainTest {
+
+    private static final String REQUEST_TYPE_TEST = "test";
+    /**
+     * Requests on this path are answered directly.
+     */
+    private static final String PATH_FAST = "/fast";
+    /**
+     * Requests on this path wait until the test releases them.
+     */
+    private static final String PATH_BLOCK = "/block";
+    /**
+     * Requests on this path are answered through the OutputStream.
+     */
+    private static final String PATH_STREAM = "/stream";
+    /**
+     * Requests on this path open the OutputStream, and then fail with an
+     * error message.
+     */
+    private static final String PATH_STREAM_ERROR = "/streamError";
+    private static final String STREAM_CONTENT = "{\"streamed\":\"äöü\"}";
+    private static final String STREAM_ERROR = "Failed after opening the stream.";
+
+    private static CountDownLatch blockStarted;
+    private static CountDownLatch blockRelease;
+    private static AtomicInteger fastCount;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private CoreSettings coreSettings;
+    private Server server;
+    private String baseUrl;
+
+    @BeforeEach
+    public void init() {
+        blockStarted = new CountDownLatch(1);
+        blockRelease = new CountDownLatch(1);
+        fastCount = new AtomicInteger();
+    }
+
+    @AfterEach
+    public void stop() throws Exception {
+        blockRelease.countDown();
+        if (server != null) {
+            server.stop();
+        }
+        if (coreSettings != null) {
+            coreSettings.getPluginManager().stopPlugins();
+        }
+    }
+
+    private void startServer(int threads, int queueSize, int timeout) throws Exception {
+        Properties properties = new Properties();
+        properties.put(CoreSettings.TAG_SERVICE_ROOT_URL, "http://localhost/");
+        properties.put(CoreSettings.TAG_TEMP_PATH, "/tmp/");
+        properties.put(CoreSettings.PREFIX_PERSISTENCE + PersistenceSettings.TAG_IMPLEMENTATION_CLASS, DummyPersistenceManager.class.getName());
+        properties.put(CoreSettings.PREFIX_PERSISTENCE + PersistenceSettings.TAG_AUTO_UPDATE_DATABASE, "false");
+        properties.put(CoreSettings.PREFIX_PLUGINS + PluginManager.TAG_PROVIDED_PLUGINS, TestService.class.getName());
+        properties.put(CoreSettings.PREFIX_HTTP + CoreSettings.TAG_ASYNC_THREADS, Integer.toString(threads));
+        properties.put(CoreSettings.PREFIX_HTTP + CoreSettings.TAG_ASYNC_QUEUE_SIZE, Integer.toString(queueSize));
+        properties.put(CoreSettings.PREFIX_HTTP + CoreSettings.TAG_ASYNC_TIMEOUT, Integer.toString(timeout));
+        coreSettings = new CoreSettings(properties);
+
+        server = new Server(0);
+        ServletContextHandler handler = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+        handler.setContextPath("/FROST-Server");
+        handler.setAttribute(TAG_CORE_SETTINGS, coreSettings);
+        handler.addServlet(ServletMain.class, "/*");
+        server.setHandler(handler);
+        server.start();
+        final int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+        baseUrl = "http://localhost:" + port + "/FROST-Server/v1.1";
+    }
+
+    private CompletableFuture<HttpResponse<String>> get(String path) {
+        final HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(10))
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void testAsyncRequest() throws Exception {
+        startServer(2, 10, 10_000);
+        final HttpResponse<String> response = get(PATH_FAST).get(10, TimeUnit.SECONDS);
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("HttpRequest-"), "Request not processed on the async executor: " + response.body());
+    }
+
+    @Test
+    void testQueueFull() throws Exception {
+        startServer(1, 1, 0);
+        final CompletableFuture<HttpResponse<String>> running = get(PATH_BLOCK);
+        assertTrue(blockStarted.await(10, TimeUnit.SECONDS), "Blocking request did not start.");
+
+        // One of these two fits in the queue, the other is rejected.
+        final CompletableFuture<HttpResponse<String>> second = get(PATH_FAST);
+        final CompletableFuture<HttpResponse<String>> third = get(PATH_FAST);
+        CompletableFuture.anyOf(second, third).get(10, TimeUnit.SECONDS);
+        blockRelease.countDown();
+        final int secondStatus = second.get(10, TimeUnit.SECONDS).statusCode();
+        final int thirdStatus = third.get(10, TimeUnit.SECONDS).statusCode();
+
+        assertEquals(200, running.get(10, TimeUnit.SECONDS).statusCode());
+        assertEquals(503 + 200, secondStatus + thirdStatus, "Expected one rejection, got " + secondStatus + " and " + thirdStatus);
+        assertTrue(secondStatus == 503 || thirdStatus == 503, "Expected one rejection, got " + secondStatus + " and " + thirdStatus);
+        assertEquals(1, fastCount.get());
+    }
+
+    @Test
+    void testTimeout() throws Exception {
+        startServer(1, 1, 1000);
+        // The first request initialises the service, which may take longer
+        // than the timeout.
+        get(PATH_FAST).get(10, TimeUnit.SECONDS);
+        final CompletableFuture<HttpResponse<String>> running = get(PATH_BLOCK);
+        assertTrue(blockStarted.await(10, TimeUnit.SECONDS), "Blocking request did not start.");
+        final CompletableFuture<HttpResponse<String>> queued = get(PATH_FAST);
+
+        assertEquals(503, queued.get(10, TimeUnit.SECONDS).statusCode());
+        assertEquals(503, running.get(10, TimeUnit.SECONDS).statusCode());
+
+        // The timed out request must not be executed once the thread is free.
+        blockRelease.countDown();
+        assertEquals(200, get(PATH_FAST).get(10, TimeUnit.SECONDS).statusCode());
+        assertEquals(2, fastCount.get());
+    }
+
+    @Test
+    void testStreamedResponse() throws Exception {
+        startServer(0, 0, 0);
+        final HttpResponse<String> response = get(PATH_STREAM).get(10, TimeUnit.SECONDS);
+        assertEquals(200, response.statusCode());
+        assertEquals(STREAM_CONTENT, response.body());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith(CONTENT_TYPE_APPLICATION_JSON));
+    }
+
+    @Test
+    void testErrorMessageAfterStream() throws Exception {
+        startServer(2, 10, 10_000);
+        // The message can not be written with the Writer, since the
+        // OutputStream is already in use.
+        final HttpResponse<String> response = get(PATH_STREAM_ERROR).get(10, TimeUnit.SECONDS);
+        assertEquals(400, response.statusCode());
+        assertEquals(STREAM_ERROR, response.body());
+    }
+
+    /**
+     * Answers requests with the name of the executing thread.
+     */
+    public static class TestService implements PluginService {
+
+        private boolean enabled;
+
+        @Override
+        public void init(CoreSettings settings) {
+            enabled = true;
+            settings.getPluginManager().registerPlugin(this);
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public Collection<Version> getVersions() {
+            return Arrays.asList(Version.V_1_1);
+        }
+
+        @Override
+        public boolean definesVersions() {
+            return true;
+        }
+
+        @Override
+        public Collection<String> getVersionedUrlPaths() {
+            return Arrays.asList(PluginManager.PATH_WILDCARD);
+        }
+
+        @Override
+        public Collection<String> getRequestTypes() {
+            return Arrays.asList(REQUEST_TYPE_TEST);
+        }
+
+        @Override
+        public String getRequestTypeFor(Version version, String path, HttpMethod method, String contentType) {
+            return REQUEST_TYPE_TEST;
+        }
+
+        @Override
+        public ServiceResponse execute(Service service, ServiceRequest request, ServiceResponse response) {
+            final String path = request.getUrlPath();
+            if (path.startsWith(PATH_STREAM_ERROR)) {
+                response.getOutputStream();
+                return response.setStatus(400, STREAM_ERROR);
+            }
+            if (path.startsWith(PATH_STREAM)) {
+                try {
+                    response.setContentType(CONTENT_TYPE_APPLICATION_JSON);
+                    response.writeFormatted(new FormatWriterGeneric(STREAM_CONTENT));
+                } catch (IOException ex) {
+                    return response.setStatus(500, ex.getMessage());
+                }
+                return response.setCode(200);
+            }
+            if (path.startsWith(PATH_BLOCK)) {
+                blockStarted.countDown();
+                try {
+                    blockRelease.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return response.setStatus(500, "Interrupted");
+                }
+            } else {
+                fastCount.incrementAndGet();
+            }
+            try {
+                response.getWriter().write("{\"thread\":\"" + Thread.currentThread().getName() + "\"}");
+            } catch (IOException ex) {
+                return response.setStatus(500, ex.getMessage());
+            }
+            return response.setCode(200);
+        }
+    }
+}
@@ -42,6 +42,7 @@ import io.moquette.interception.messages.InterceptSubscribeMessage;
 import io.moquette.interception.messages.InterceptUnsubscribeMessage;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.handler.codec.mqtt.MqttFixedHeader;
 import io.netty.handler.codec.mqtt.MqttMessageType;
@@ -121,14 +122,24 @@ public class MoquetteMqttServer implements MqttServer, ConfigDefaults {
     @Override
     public void publish(String topic, String message, int qos) {
         if (mqttBroker != null) {
-            final ByteBuf payload = ByteBufUtil.writeUtf8(UnpooledByteBufAllocator.DEFAULT, message);
-            MqttFixedHeader fixedHeader = new MqttFixedHeader(MqttMessageType.PUBLISH, false, MqttQoS.valueOf(qos), false, 0);
-            MqttPublishVariableHeader varHeader = new MqttPublishVariableHeader(topic, 0);
-            MqttPublishMessage mqttPublishMessage = new MqttPublishMessage(fixedHeader, varHeader, payload);
-            mqttBroker.internalPublish(mqttPublishMessage, frostClientId);
+            publish(topic, ByteBufUtil.writeUtf8(UnpooledByteBufAllocator.DEFAULT, message), qos);
         }
     }
 
+    @Override
+    public void publish(String topic, byte[] message, int qos) {
+        if (mqttBroker != null) {
+            publish(topic, Unpooled.wrappedBuffer(message), qos);
+        }
+    }
+
+    private void publish(String topic, ByteBuf payload, int qos) {
+        MqttFixedHeader fixedHeader = new MqttFixedHeader(MqttMessageType.PUBLISH, false, MqttQoS.valueOf(qos), false, 0);
+        MqttPublishVariableHeader varHeader = new MqttPublishVariableHeader(topic, 0);
+        MqttPublishMessage mqttPublishMessage = new MqttPublishMessage(fixedHeader, varHeader, payload);
+        mqttBroker.internalPublish(mqttPublishMessage, frostClientId);
+    }
+
     @Override
     public void addSubscriptionListener(SubscriptionListener listener) {
         subscriptionListeners.add(SubscriptionListener.class, listener);
@@ -25,7 +25,9 @@ import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils.DataSize;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils.QueryState;
 import de.fraunhofer.iosb.ilt.frostserver.property.NavigationPropertyMain;
 import de.fraunhofer.iosb.ilt.frostserver.query.Query;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import org.jooq.Cursor;
 import org.jooq.Record;
@@ -45,6 +47,10 @@ public class EntitySetJooqCurser implements EntitySet {
     private final Cursor<Record> results;
     private final DataSize size;
     private final ResultBuilder resultBuilder;
+    /**
+     * Flag indicating all rows are returned, without size limit or nextLink.
+     */
+    private final boolean unbounded;
 
     private String nextLink;
     private long count = -1;
@@ -62,7 +68,8 @@ public class EntitySetJooqCurser implements EntitySet {
         this.size = resultBuilder.getDataSize();
         this.queryState = queryState;
         this.resultBuilder = resultBuilder;
-        this.maxFetch = staQuery.getTopOrDefault();
+        this.unbounded = staQuery.isUnbounded();
+        this.maxFetch = unbounded ? Integer.MAX_VALUE : staQuery.getTopOrDefault();
     }
 
     @Override
@@ -87,7 +94,7 @@ public class EntitySetJooqCurser implements EntitySet {
 
     @Override
     public String getNextLink() {
-        if (nextLink == null && results.hasNext() && maxFetch > 0) {
+        if (nextLink == null && !unbounded && results.hasNext() && maxFetch > 0) {
             generateNextLink();
         }
         return nextLink;
@@ -130,13 +137,27 @@ public class EntitySetJooqCurser implements EntitySet {
 
         private final EntitySetJooqCurser parent;
         private int fetchedCount = 0;
+        /**
+         * If the expands are loaded in batches, a chunk of entities is loaded
+         * and expanded before the first Entity of the chunk is returned.
+         */
+        private final boolean batchExpand;
+        private Iterator<Entity> chunk;
 
         public CursorIterator(EntitySetJooqCurser parent) {
             this.parent = parent;
+            this.batchExpand = parent.resultBuilder.isBatchExpand(parent.staQuery);
         }
 
         @Override
         public boolean hasNext() {
+            if (chunk != null && chunk.hasNext()) {
+                return true;
+            }
+            return hasNextInCursor();
+        }
+
+        private boolean hasNextInCursor() {
             return parent.results.hasNext() && parent.maxFetch > fetchedCount;
         }
 
@@ -145,9 +166,31 @@ public class EntitySetJooqCurser implements EntitySet {
             if (!hasNext()) {
                 throw new NoSuchElementException("Cursor is closed or empty.");
             }
+            if (batchExpand) {
+                if (chunk == null || !chunk.hasNext()) {
+                    chunk = fetchChunk();
+                }
+                return chunk.next();
+            }
+            final Entity entity = fetchNextChecked();
+            parent.resultBuilder.expandEntity(entity, parent.staQuery);
+            return entity;
+        }
+
+        private Iterator<Entity> fetchChunk() {
+            final int chunkSize = parent.resultBuilder.getBatchExpandSize();
+            final List<Entity> entities = new ArrayList<>();
+            while (entities.size() < chunkSize && hasNextInCursor()) {
+                entities.add(fetchNextChecked());
+            }
+            parent.resultBuilder.expandEntities(entities, parent.staQuery);
+            return entities.iterator();
+        }
+
+        private Entity fetchNextChecked() {
             fetchedCount++;
             final Entity entity = fetchNext();
-            if (parent.size.isExceeded()) {
+            if (!parent.unbounded && parent.size.isExceeded()) {
                 LOGGER.debug("Size limit reached: {} > {}.", parent.size.getDataSize(), parent.size.getMaxSize());
                 parent.maxFetch = fetchedCount;
                 generateNextAndClose(entity);
@@ -155,7 +198,6 @@ public class EntitySetJooqCurser implements EntitySet {
                 generateNextAndClose(entity);
             }
             entity.setQuery(parent.staQuery);
-            parent.resultBuilder.expandEntity(entity, parent.staQuery);
             return entity;
         }
 
@@ -22,6 +22,7 @@ import com.github.fge.jsonpatch.JsonPatch;
 import com.github.fge.jsonpatch.JsonPatchException;
 import de.fraunhofer.iosb.ilt.frostserver.json.deserialize.JsonReader;
 import de.fraunhofer.iosb.ilt.frostserver.json.serialize.JsonWriter;
+import de.fraunhofer.iosb.ilt.frostserver.messagebus.MessageBus;
 import de.fraunhofer.iosb.ilt.frostserver.model.EntityChangedMessage;
 import de.fraunhofer.iosb.ilt.frostserver.model.EntityType;
 import de.fraunhofer.iosb.ilt.frostserver.model.ModelRegistry;
@@ -38,6 +39,7 @@ import de.fraunhofer.iosb.ilt.frostserver.path.PathElementEntitySet;
 import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.AbstractPersistenceManager;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.factories.EntityFactories;
+import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.messagebus.PostgresMessageBus;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.tables.StaLinkTableDynamic;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.tables.StaMainTable;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.tables.StaTable;
@@ -64,6 +66,7 @@ import java.io.Writer;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -110,6 +113,14 @@ public class PostgresPersistenceManager extends AbstractPersistenceManager imple
     }
 
     private static final String SOURCE_NAME_FROST = "FROST-Source";
+
+    /**
+     * The jOOQ settings. IN-lists are padded to the next power of two, so that
+     * queries for varying numbers of ids render to a few distinct statements,
+     * that the driver can prepare on the server and re-use.
+     */
+    private static final org.jooq.conf.Settings JOOQ_SETTINGS = new org.jooq.conf.Settings()
+            .withInListPadding(true);
     private static final String ID_TYPE = "idType-";
 
     private static final Map<CoreSettings, TableCollection> tableCollections = new HashMap<>();
@@ -129,6 +140,11 @@ public class PostgresPersistenceManager extends AbstractPersistenceManager imple
      */
     private DataSize dataSize;
 
+    /**
+     * The actions to run once the current transaction is committed.
+     */
+    private final List<Runnable> afterCommitActions = new ArrayList<>();
+
     private static TableCollection getTableCollection(CoreSettings settings) {
         return tableCollections.computeIfAbsent(settings, t -> new TableCollection().setModelRegistry(t.getModelRegistry()));
     }
@@ -174,7 +190,7 @@ public class PostgresPersistenceManager extends AbstractPersistenceManager imple
 
     public DSLContext getDslContext() {
         if (dslContext == null) {
-            dslContext = DSL.using(connectionProvider.get(), SQLDialect.POSTGRES);
+            dslContext = DSL.using(connectionProvider.get(), SQLDialect.POSTGRES, JOOQ_SETTINGS);
         }
         return dslContext;
     }
@@ -183,6 +199,16 @@ public class PostgresPersistenceManager extends AbstractPersistenceManager imple
         return connectionProvider;
     }
 
+    /**
+     * Register an action to run once the current transaction is successfully
+     * committed. The action is discarded when the transaction is rolled back.
+     *
+     * @param action The action to run after the commit.
+     */
+    public void runAfterCommit(Runnable action) {
+        afterCommitActions.add(action);
+    }
+
     @Override
     public boolean validatePath(ResourcePath path) {
         init();
@@ -294,6 +320,22 @@ public class PostgresPersistenceManager extends AbstractPersistenceManager imple
         return table.insertIntoDatabase(this, entity);
     }
 
+    @Override
+    public List<Exception> doInsertAll(List<Entity> entities) {
+        if (entities.isEmpty()) {
+            return new ArrayList<>();
+        }
+        final EntityType entityType = entities.get(0).getEntityType();
+        for (Entity entity : entities) {
+            if (entity.getEntityType() != entityType) {
+                return super.doInsertAll(entities);
+            }
+        }
+        init();
+        StaMainTable<?> table = getTableCollection().getTableForType(entityType);
+        return table.insertIntoDatabase(this, entities);
+    }
+
     @Override
     public EntityChangedMessage doUpdate(PathElementEntity pathElement, Entity entity) throws NoSuchEntityException, IncompleteEntityException {
         init();
@@ -385,16 +427,30 @@ public class PostgresPersistenceManager extends AbstractPersistenceManager imple
 
     @Override
     protected boolean doCommit() {
-        return connectionProvider.commit();
+        final MessageBus messageBus = settings.getMessageBus();
+        final List<EntityChangedMessage> messages = getEntityChangedMessages();
+        if (messageBus instanceof PostgresMessageBus && !messages.isEmpty()
+                && ((PostgresMessageBus) messageBus).sendInTransaction(connectionProvider.get(), messages)) {
+            // The messages are delivered by the database when the transaction commits.
+            messages.clear();
+        }
+        final boolean committed = connectionProvider.commit();
+        if (committed) {
+            afterCommitActions.forEach(Runnable::run);
+        }
+        afterCommitActions.clear();
+        return committed;
     }
 
     @Override
     protected boolean doRollback() {
+        afterCommitActions.clear();
         return connectionProvider.rollback();
     }
 
     @Override
     protected boolean doClose() {
+        afterCommitActions.clear();
         try {
             connectionProvider.close();
             return true;
@@ -32,6 +32,7 @@ import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.tables.StaMainTable
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.tables.TableCollection;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils.QueryState;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils.TableRef;
+import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils.Utils;
 import de.fraunhofer.iosb.ilt.frostserver.property.NavigationProperty;
 import de.fraunhofer.iosb.ilt.frostserver.property.NavigationPropertyMain;
 import de.fraunhofer.iosb.ilt.frostserver.property.Property;
@@ -42,8 +43,12 @@ import de.fraunhofer.iosb.ilt.frostserver.query.expression.Expression;
 import de.fraunhofer.iosb.ilt.frostserver.query.expression.function.logical.And;
 import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
 import de.fraunhofer.iosb.ilt.frostserver.settings.PersistenceSettings;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.regex.Pattern;
 import org.apache.commons.lang3.RegExUtils;
 import org.jooq.AggregateFunction;
@@ -56,8 +61,11 @@ import org.jooq.Record;
 import org.jooq.Record1;
 import org.jooq.ResultQuery;
 import org.jooq.SelectConditionStep;
+import org.jooq.SelectForUpdateStep;
 import org.jooq.SelectIntoStep;
 import org.jooq.SelectSelectStep;
+import org.jooq.SortField;
+import org.jooq.Table;
 import org.jooq.conf.ParamType;
 import org.jooq.impl.DSL;
 import org.jooq.impl.SQLDataType;
@@ -88,6 +96,16 @@ public class QueryBuilder implements ResourcePathVisitor {
     public static final String ALIAS_PREFIX = "e";
     public static final String DEFAULT_PREFIX = QueryBuilder.ALIAS_PREFIX + "0";
 
+    /**
+     * The names of the fields returned by the query generated by
+     * {@link #buildSelectExpandIds(Collection, boolean)}.
+     */
+    public static final String EXPAND_PARENT_ID = "expParentId";
+    public static final String EXPAND_CHILD_ID = "expChildId";
+    public static final String EXPAND_ROW_NR = "expRowNr";
+    public static final String EXPAND_COUNT = "expCount";
+    private static final String EXPAND_SORT_PREFIX = "expSort";
+
     private final PostgresPersistenceManager pm;
     private final CoreSettings coreSettings;
     private final PersistenceSettings settings;
@@ -104,6 +122,8 @@ public class QueryBuilder implements ResourcePathVisitor {
     private boolean forTypeAndId = false;
     private EntityType requestedEntityType;
     private Id requestedId;
+    private boolean forTypeAndIds = false;
+    private Collection<Id> requestedIds;
 
     private boolean forUpdate = false;
     private boolean single = false;
@@ -151,17 +171,26 @@ public class QueryBuilder implements ResourcePathVisitor {
 
         int skip = 0;
         int count;
+        boolean unbounded = false;
         if (single) {
             count = 2;
+        } else if (forTypeAndIds) {
+            count = requestedIds.size();
         } else if (staQuery != null) {
             count = staQuery.getTopOrDefault() + 1;
+            unbounded = staQuery.isUnbounded();
             if (staQuery.getSkipFilter() == null) {
                 skip = staQuery.getSkip(0);
             }
         } else {
             count = 1;
         }
-        var limit = orderByStep.limit(skip, count);
+        final SelectForUpdateStep<Record> limit;
+        if (unbounded) {
+            limit = orderByStep.offset(skip);
+        } else {
+            limit = orderByStep.limit(skip, count);
+        }
         if (forUpdate) {
             return limit.forUpdate();
         }
@@ -172,6 +201,88 @@ public class QueryBuilder implements ResourcePathVisitor {
         return limit;
     }
 
+    /**
+     * Build a query that, for each of the given parent entities, selects the
+     * ids of the related entities that fall in the requested page. The path
+     * used must be of the form ParentSet/Parent/Children, where Parent has no
+     * id. The $filter, $orderby, $skip and $top of the query are applied
+     * separately for each parent. One more row than $top is returned for each
+     * parent, to detect if a nextLink is needed.
+     *
+     * @param parentIds The ids of the parent entities.
+     * @param withCount Flag indicating the number of related entities for each
+     * parent should be returned.
+     * @return the query.
+     */
+    public ResultQuery<Record> buildSelectExpandIds(Collection<Id> parentIds, boolean withCount) {
+        gatherData();
+        if (!forPath) {
+            throw new IllegalStateException("Expand id queries must be built for a path.");
+        }
+
+        final Field parentIdField = lastPath.getTable().getId();
+        final Field childIdField = queryState.getSqlMainIdField();
+        final List<Object> ids = parentIds.stream()
+                .map(Id::asBasicPersistenceType)
+                .collect(Collectors.toList());
+        final Utils.SortSelectFields sortFields = queryState.getSqlSortFields();
+        final List<Field> sortSelectFields = sortFields.getSqlSortSelectFields();
+        final List<Field<?>> innerFields = new ArrayList<>();
+        innerFields.add(parentIdField.as(EXPAND_PARENT_ID));
+        innerFields.add(childIdField.as(EXPAND_CHILD_ID));
+        for (int i = 0; i < sortSelectFields.size(); i++) {
+            innerFields.add(sortSelectFields.get(i).as(EXPAND_SORT_PREFIX + i));
+        }
+
+        final DSLContext dslContext = pm.getDslContext();
+        final SelectIntoStep<Record> innerSelect;
+        if (queryState.isDistinctRequired()) {
+            innerSelect = dslContext.select(innerFields).distinctOn(parentIdField, childIdField);
+        } else {
+            innerSelect = dslContext.select(innerFields);
+        }
+        final Table<Record> inner = innerSelect.from(queryState.getSqlFrom())
+                .where(queryState.getSqlWhere().and(parentIdField.in(ids)))
+                .asTable("expInner");
+
+        final Field<?> innerParentId = inner.field(EXPAND_PARENT_ID);
+        final Field<?> innerChildId = inner.field(EXPAND_CHILD_ID);
+        final List<OrderField<?>> rankOrder = new ArrayList<>();
+        final List<OrderField> sqlSortFields = sortFields.getSqlSortFields();
+        for (int i = 0; i < sqlSortFields.size(); i++) {
+            final SortField<?> sortField = (SortField<?>) sqlSortFields.get(i);
+            rankOrder.add(inner.field(EXPAND_SORT_PREFIX + i).sort(sortField.getOrder()));
+        }
+        rankOrder.add(innerChildId.asc());
+
+        final List<Field<?>> rankedFields = new ArrayList<>();
+        rankedFields.add(innerParentId);
+        rankedFields.add(innerChildId);
+        rankedFields.add(DSL.rowNumber().over(DSL.partitionBy(innerParentId).orderBy(rankOrder)).as(EXPAND_ROW_NR));
+        if (withCount) {
+            rankedFields.add(DSL.count().over(DSL.partitionBy(innerParentId)).as(EXPAND_COUNT));
+        }
+        final Table<Record> ranked = dslContext.select(rankedFields)
+                .from(inner)
+                .asTable("expRanked");
+
+        int skip = 0;
+        if (staQuery.getSkipFilter() == null) {
+            skip = staQuery.getSkip(0);
+        }
+        final int top = staQuery.getTopOrDefault();
+        final Field<Integer> rowNr = ranked.field(EXPAND_ROW_NR, Integer.class);
+        final var query = dslContext.select(ranked.fields())
+                .from(ranked)
+                .where(rowNr.between(skip + 1, skip + top + 1))
+                .orderBy(ranked.field(EXPAND_PARENT_ID), rowNr);
+
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace(GENERATED_SQL, query.getSQL(ParamType.INDEXED));
+        }
+        return query;
+    }
+
     /**
      * Build a count query.
      *
@@ -302,7 +413,7 @@ public class QueryBuilder implements ResourcePathVisitor {
     }
 
     public QueryBuilder forTypeAndId(EntityType entityType, Id id) {
-        if (forPath || forTypeAndId) {
+        if (forPath || forTypeAndId || forTypeAndIds) {
             throw new IllegalStateException("QueryBuilder already used.");
         }
         forTypeAndId = true;
@@ -311,8 +422,27 @@ public class QueryBuilder implements ResourcePathVisitor {
         return this;
     }
 
+    /**
+     * Select the entities of the given type with the given ids. The $filter,
+     * $orderby, $skip and $top of the query are ignored, only the $select and
+     * $expand are used. The primary key is always selected.
+     *
+     * @param entityType The type of the entities to fetch.
+     * @param ids The ids of the entities to fetch.
+     * @return this.
+     */
+    public QueryBuilder forTypeAndIds(EntityType entityType, Collection<Id> ids) {
+        if (forPath || forTypeAndId || forTypeAndIds) {
+            throw new IllegalStateException("QueryBuilder already used.");
+        }
+        forTypeAndIds = true;
+        requestedEntityType = entityType;
+        requestedIds = ids;
+        return this;
+    }
+
     public QueryBuilder forPath(ResourcePath path) {
-        if (forPath || forTypeAndId) {
+        if (forPath || forTypeAndId || forTypeAndIds) {
             throw new IllegalStateException("QueryBuilder already used.");
         }
         forPath = true;
@@ -343,6 +473,10 @@ public class QueryBuilder implements ResourcePathVisitor {
             if (forTypeAndId) {
                 parseTypeAndId();
             }
+            if (forTypeAndIds) {
+                parseTypeAndIds();
+                return;
+            }
 
             // Joins created when generating the path should not be merged with
             // joins generated for the filter or orderby.
@@ -366,6 +500,19 @@ public class QueryBuilder implements ResourcePathVisitor {
         single = true;
     }
 
+    private void parseTypeAndIds() {
+        if (!selectedProperties.isEmpty()) {
+            // We need the id to match the entities to the requested ids.
+            selectedProperties.add(requestedEntityType.getPrimaryKey());
+        }
+        lastPath = queryEntityType(new PathElementEntity(requestedEntityType, null), null, lastPath);
+        final List<Object> ids = requestedIds.stream()
+                .map(Id::asBasicPersistenceType)
+                .collect(Collectors.toList());
+        final Field idField = lastPath.getTable().getId();
+        queryState.setSqlWhere(queryState.getSqlWhere().and(idField.in(ids)));
+    }
+
     private void findSelectedProperties(Query query) {
         selectedProperties = new HashSet<>();
         if (query == null) {
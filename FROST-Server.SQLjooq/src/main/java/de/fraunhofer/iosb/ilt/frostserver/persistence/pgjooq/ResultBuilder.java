@@ -22,6 +22,7 @@ import de.fraunhofer.iosb.ilt.frostserver.model.EntityType;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.EntitySet;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.EntitySetImpl;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Id;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.NavigableElement;
 import de.fraunhofer.iosb.ilt.frostserver.path.CustomLinksHelper;
 import de.fraunhofer.iosb.ilt.frostserver.path.PathElement;
@@ -32,10 +33,12 @@ import de.fraunhofer.iosb.ilt.frostserver.path.PathElementEntitySet;
 import de.fraunhofer.iosb.ilt.frostserver.path.PathElementProperty;
 import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
 import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePathVisitor;
+import de.fraunhofer.iosb.ilt.frostserver.path.UrlHelper;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils.DataSize;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils.QueryState;
 import de.fraunhofer.iosb.ilt.frostserver.property.NavigationProperty;
 import de.fraunhofer.iosb.ilt.frostserver.property.NavigationPropertyCustom;
+import de.fraunhofer.iosb.ilt.frostserver.property.NavigationPropertyMain;
 import de.fraunhofer.iosb.ilt.frostserver.property.NavigationPropertyMain.NavigationPropertyEntity;
 import de.fraunhofer.iosb.ilt.frostserver.property.NavigationPropertyMain.NavigationPropertyEntitySet;
 import de.fraunhofer.iosb.ilt.frostserver.query.Expand;
@@ -45,7 +48,10 @@ import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
 import de.fraunhofer.iosb.ilt.frostserver.settings.PersistenceSettings;
 import de.fraunhofer.iosb.ilt.frostserver.settings.PersistenceSettings.CountMode;
 import de.fraunhofer.iosb.ilt.frostserver.util.ParserUtils;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.jooq.Cursor;
@@ -81,6 +87,8 @@ public class ResultBuilder implements ResourcePathVisitor {
     private final DataSize dataSize;
     private final int estimateTreshold;
     private final CountMode countMode;
+    private final boolean batchExpand;
+    private final int batchExpandSize;
 
     private Object resultObject;
     /**
@@ -110,6 +118,8 @@ public class ResultBuilder implements ResourcePathVisitor {
         this.customLinksHelper = coreSettings.getCustomLinksHelper();
         countMode = persistenceSettings.getCountMode();
         estimateTreshold = persistenceSettings.getEstimateCountThreshold();
+        batchExpand = persistenceSettings.isBatchExpand();
+        batchExpandSize = Math.max(1, persistenceSettings.getBatchExpandSize());
     }
 
     public Object getEntity() {
@@ -171,6 +181,165 @@ public class ResultBuilder implements ResourcePathVisitor {
         }
     }
 
+    /**
+     * Checks if the expands of the given query should be loaded for a page of
+     * entities at once, using {@link #expandEntities(List, Query)}.
+     *
+     * @param query The query to check.
+     * @return true if batch-expanding is enabled and the query has expands.
+     */
+    public boolean isBatchExpand(Query query) {
+        return batchExpand && query != null && !query.isUnbounded() && !query.getExpand().isEmpty();
+    }
+
+    /**
+     * The maximum number of entities to pass to
+     * {@link #expandEntities(List, Query)} at once.
+     *
+     * @return The maximum number of entities to expand at once.
+     */
+    public int getBatchExpandSize() {
+        return batchExpandSize;
+    }
+
+    /**
+     * Expand the given entities, which must all be of the same type. Where
+     * possible, each expanded navigation property is loaded for all entities
+     * at once, instead of separately for each entity.
+     *
+     * @param entities The entities to expand.
+     * @param query The query to use for expanding.
+     */
+    public void expandEntities(List<Entity> entities, Query query) {
+        if (query == null || entities.isEmpty()) {
+            return;
+        }
+        if (!batchExpand || entities.size() == 1) {
+            for (Entity entity : entities) {
+                expandEntity(entity, query);
+            }
+            return;
+        }
+        if (query.getMetadata() == Metadata.FULL) {
+            for (Entity entity : entities) {
+                customLinksHelper.expandCustomLinks(query, entity, path);
+            }
+        }
+        for (Expand expand : query.getExpand()) {
+            final NavigationProperty firstNp = expand.getPath();
+            final Query subQuery = expand.getSubQuery();
+            if (!canBatchExpand(firstNp, subQuery)) {
+                for (Entity entity : entities) {
+                    addExpandToEntity(entity, expand);
+                }
+                continue;
+            }
+            final List<Entity> toLoad = new ArrayList<>();
+            for (Entity entity : entities) {
+                final Object existing = entity.getProperty(firstNp);
+                if (existing instanceof NavigableElement && !((NavigableElement) existing).isEmpty()) {
+                    addExpandToEntity(entity, expand);
+                } else {
+                    toLoad.add(entity);
+                }
+            }
+            if (toLoad.size() == 1) {
+                addExpandToEntity(toLoad.get(0), expand);
+            } else if (!toLoad.isEmpty()) {
+                loadExpandBatch(toLoad, (NavigationPropertyMain) firstNp, subQuery);
+            }
+        }
+    }
+
+    private static boolean canBatchExpand(NavigationProperty np, Query subQuery) {
+        return np instanceof NavigationPropertyMain
+                && subQuery != null
+                && !subQuery.isSelectDistinct()
+                && subQuery.getTopOrDefault() > 0;
+    }
+
+    /**
+     * Loads the given navigation property for all given entities, using one
+     * query to find the ids of the related entities for all parents, and one
+     * query to load these related entities.
+     */
+    private void loadExpandBatch(List<Entity> parents, NavigationPropertyMain firstNp, Query subQuery) {
+        final EntityType parentType = parents.get(0).getEntityType();
+        final Map<Id, Entity> parentsById = new LinkedHashMap<>();
+        for (Entity parent : parents) {
+            parentsById.put(parent.getId(), parent);
+        }
+        final boolean withCount = firstNp.isEntitySet() && subQuery.isCountOrDefault();
+
+        final Map<Id, List<Id>> childIdsByParent = new HashMap<>();
+        final Map<Id, Long> countsByParent = new HashMap<>();
+        final Map<Id, Entity> childrenById = new LinkedHashMap<>();
+        final QueryBuilder idQueryBuilder = new QueryBuilder(pm, pm.getCoreSettings(), pm.getTableCollection())
+                .forPath(createExpandPath(parentType, null, firstNp))
+                .usingQuery(subQuery);
+        try (Cursor<Record> cursor = timeQuery(idQueryBuilder.buildSelectExpandIds(parentsById.keySet(), withCount))) {
+            for (Record tuple : cursor) {
+                final Id parentId = ParserUtils.idFromObject(tuple.get(QueryBuilder.EXPAND_PARENT_ID));
+                final Id childId = ParserUtils.idFromObject(tuple.get(QueryBuilder.EXPAND_CHILD_ID));
+                childIdsByParent.computeIfAbsent(parentId, t -> new ArrayList<>()).add(childId);
+                childrenById.put(childId, null);
+                if (withCount) {
+                    countsByParent.put(parentId, tuple.get(QueryBuilder.EXPAND_COUNT, Long.class));
+                }
+            }
+        }
+
+        if (!childrenById.isEmpty()) {
+            final QueryBuilder childQueryBuilder = new QueryBuilder(pm, pm.getCoreSettings(), pm.getTableCollection())
+                    .forTypeAndIds(firstNp.getEntityType(), childrenById.keySet())
+                    .usingQuery(subQuery);
+            try (Cursor<Record> cursor = timeQuery(childQueryBuilder.buildSelect())) {
+                for (Record tuple : cursor) {
+                    final Entity child = childQueryBuilder.getQueryState().entityFromQuery(tuple, dataSize);
+                    child.setQuery(subQuery);
+                    childrenById.put(child.getId(), child);
+                }
+            }
+        }
+
+        final Map<Id, Entity> expandedChildren = new LinkedHashMap<>();
+        for (Entity parent : parentsById.values()) {
+            final List<Id> childIds = childIdsByParent.getOrDefault(parent.getId(), Collections.emptyList());
+            if (firstNp.isEntitySet()) {
+                final int top = subQuery.getTopOrDefault();
+                final EntitySet childSet = new EntitySetImpl((NavigationPropertyEntitySet) firstNp);
+                Entity last = null;
+                for (Id childId : childIds.subList(0, Math.min(top, childIds.size()))) {
+                    final Entity child = childrenById.get(childId);
+                    if (child != null) {
+                        childSet.add(child);
+                        expandedChildren.put(childId, child);
+                        last = child;
+                    }
+                }
+                final Entity next = childIds.size() > top ? childrenById.get(childIds.get(top)) : null;
+                if (last != null && next != null) {
+                    final ResourcePath childPath = createExpandPath(parentType, parent.getId(), firstNp);
+                    childSet.setNextLink(UrlHelper.generateNextLink(childPath, subQuery, top, last, next));
+                }
+                if (withCount) {
+                    childSet.setCount(countsByParent.getOrDefault(parent.getId(), 0L));
+                }
+                parent.setProperty(firstNp, childSet);
+            } else {
+                Entity child = null;
+                if (!childIds.isEmpty()) {
+                    child = childrenById.get(childIds.get(0));
+                }
+                if (child != null) {
+                    expandedChildren.put(child.getId(), child);
+                }
+                parent.setProperty(firstNp, child);
+            }
+        }
+        expandEntities(new ArrayList<>(expandedChildren.values()), subQuery);
+    }
+
     private void addExpandToEntity(Entity entity, Expand expand) {
         NavigationProperty firstNp = expand.getPath();
         NavigableElement existing = null;
@@ -210,8 +379,24 @@ public class ResultBuilder implements ResourcePathVisitor {
     }
 
     private void createExpandedElement(Entity entity, NavigationProperty firstNp, Query subQuery) {
-        PathElement parentCollection = new PathElementEntitySet(entity.getEntityType());
-        PathElement parent = new PathElementEntity(entity.getId(), entity.getEntityType(), parentCollection);
+        ResourcePath ePath = createExpandPath(entity.getEntityType(), entity.getId(), firstNp);
+        Object child = pm.get(ePath, subQuery);
+        entity.setProperty(firstNp, child);
+    }
+
+    /**
+     * Creates the path ParentSet/Parent/Children for the given parent type
+     * and id, and navigation property.
+     *
+     * @param parentType The type of the parent entity.
+     * @param parentId The id of the parent entity, or null for a path used to
+     * load the navigation property of multiple parents.
+     * @param firstNp The navigation property to follow from the parent.
+     * @return The path.
+     */
+    private ResourcePath createExpandPath(EntityType parentType, Id parentId, NavigationProperty firstNp) {
+        PathElement parentCollection = new PathElementEntitySet(parentType);
+        PathElement parent = new PathElementEntity(parentId, parentType, parentCollection);
         ResourcePath ePath = new ResourcePath(path.getServiceRootUrl(), path.getVersion(), null);
         ePath.addPathElement(parentCollection, false, false);
         ePath.addPathElement(parent, false, true);
@@ -228,8 +413,7 @@ public class ResultBuilder implements ResourcePathVisitor {
             }
             ePath.addPathElement(childPe, true, false);
         }
-        Object child = pm.get(ePath, subQuery);
-        entity.setProperty(firstNp, child);
+        return ePath;
     }
 
     private void expandEntitySet(EntitySet entitySet, Query subQuery) {
@@ -282,7 +466,9 @@ public class ResultBuilder implements ResourcePathVisitor {
     @Override
     public void visit(PathElementEntitySet element) {
         final EntitySet entitySet;
-        if (staQuery.getTopOrDefault() > 0) {
+        if (staQuery.isUnbounded()) {
+            entitySet = fetchUnbounded();
+        } else if (staQuery.getTopOrDefault() > 0) {
             final Cursor<Record> results = timeQuery(sqlQuery);
             entitySet = sqlQueryBuilder
                     .getQueryState()
@@ -300,6 +486,22 @@ public class ResultBuilder implements ResourcePathVisitor {
         resultObject = entitySet;
     }
 
+    /**
+     * Runs the query for an unbounded request, like an export, in a read-only
+     * transaction. The rows are fetched in chunks, using a server-side cursor,
+     * so the result can be streamed without holding it all in memory.
+     *
+     * @return The EntitySet backed by the cursor.
+     */
+    private EntitySet fetchUnbounded() {
+        pm.getDslContext().execute("SET TRANSACTION READ ONLY");
+        sqlQuery.fetchSize(persistenceSettings.getExportFetchSize());
+        final Cursor<Record> results = timeQuery(sqlQuery);
+        return sqlQueryBuilder
+                .getQueryState()
+                .createSetFromRecords(results, this);
+    }
+
     private void fetchAndAddCount(EntitySet entitySet) {
         if (LOGGER.isTraceEnabled()) {
             final int estimate = timeCountQuery(sqlQueryBuilder.buildEstimateCountExplain());
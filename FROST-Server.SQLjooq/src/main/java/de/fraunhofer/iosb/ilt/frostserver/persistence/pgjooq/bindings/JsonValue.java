@@ -20,6 +20,7 @@ package de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.bindings;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils.Utils;
+import de.fraunhofer.iosb.ilt.frostserver.util.RawJsonMap;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -63,10 +64,33 @@ public class JsonValue {
         return value;
     }
 
+    /**
+     * Get the value as a Map. If the value has not been parsed yet, and is a
+     * JSON object, the returned Map is a {@link RawJsonMap} that only parses
+     * the JSON when its content is accessed.
+     *
+     * @return The value as a Map.
+     */
     public Map<String, Object> getMapValue() {
+        if (value == null && RawJsonMap.isJsonObject(stringValue)) {
+            return new RawJsonMap(stringValue);
+        }
         return getValue(Utils.TYPE_MAP_STRING_OBJECT);
     }
 
+    /**
+     * Get the value as a lazy {@link RawJsonMap} if it is a JSON object that
+     * has not been parsed yet, or as a parsed tree otherwise.
+     *
+     * @return The value, as RawJsonMap or JsonNode.
+     */
+    public Object getLazyValue() {
+        if (value == null && RawJsonMap.isJsonObject(stringValue)) {
+            return new RawJsonMap(stringValue);
+        }
+        return getValue();
+    }
+
     public <T> T getValue(TypeReference<T> typeReference) {
         if (type != null && !type.equals(typeReference)) {
             LOGGER.warn("Type Switch, from {} to {}", type, typeReference);
@@ -36,6 +36,7 @@ import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.tables.TableCollect
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils.Utils;
 import static de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils.Utils.getFieldOrNull;
 import static de.fraunhofer.iosb.ilt.frostserver.util.ParserUtils.idFromObject;
+import de.fraunhofer.iosb.ilt.frostserver.util.RawGeoJsonObject;
 import de.fraunhofer.iosb.ilt.frostserver.util.SimpleJsonMapper;
 import de.fraunhofer.iosb.ilt.frostserver.util.exception.IncompleteEntityException;
 import de.fraunhofer.iosb.ilt.frostserver.util.exception.NoSuchEntityException;
@@ -219,7 +220,8 @@ public class EntityFactories {
      * @param encodingType The encoding type.
      * @param location The location.
      */
-    public static void insertGeometry(Map<Field, Object> clause, Field<String> locationPath, Field<? extends Object> geomPath, String encodingType, final Object location) {
+    public static void insertGeometry(Map<Field, Object> clause, Field<String> locationPath, Field<? extends Object> geomPath, String encodingType, final Object rawLocation) {
+        final Object location = RawGeoJsonObject.materialise(rawLocation);
         if (encodingType == null && location instanceof GeoJsonObject) {
             encodingType = GeoJsonDeserializier.APPLICATION_GEOJSON;
         }
@@ -0,0 +1,444 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.messagebus;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fraunhofer.iosb.ilt.frostserver.json.deserialize.JsonReader;
+import de.fraunhofer.iosb.ilt.frostserver.json.serialize.JsonWriter;
+import de.fraunhofer.iosb.ilt.frostserver.messagebus.EntityChangedMessageQueue;
+import de.fraunhofer.iosb.ilt.frostserver.messagebus.MessageBus;
+import de.fraunhofer.iosb.ilt.frostserver.messagebus.MessageListener;
+import de.fraunhofer.iosb.ilt.frostserver.model.EntityChangedMessage;
+import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils.ConnectionUtils;
+import de.fraunhofer.iosb.ilt.frostserver.settings.BusSettings;
+import de.fraunhofer.iosb.ilt.frostserver.settings.ConfigDefaults;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import static de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings.PREFIX_BUS;
+import de.fraunhofer.iosb.ilt.frostserver.settings.Settings;
+import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValue;
+import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValueInt;
+import de.fraunhofer.iosb.ilt.frostserver.util.MessageQueue;
+import de.fraunhofer.iosb.ilt.frostserver.util.StringHelper;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A message bus implementation that uses PostgreSQL NOTIFY and LISTEN to
+ * exchange messages between FROST-Server instances that use the same
+ * database. Messages are sent in batches. A batch that is too large for a
+ * notification is stored in an outbox table, and only its id is sent.
+ *
+ * When used together with the PostgresPersistenceManager, the messages of a
+ * transaction are sent from within the transaction, so they are only
+ * delivered when, and if, the transaction is committed.
+ *
+ * @author hylke
+ */
+public class PostgresMessageBus implements MessageBus, ConfigDefaults {
+
+    @DefaultValue("frost_bus")
+    public static final String TAG_CHANNEL = "pgChannel";
+    @DefaultValueInt(7900)
+    public static final String TAG_MAX_NOTIFY_SIZE = "pgMaxNotifySize";
+    @DefaultValueInt(300)
+    public static final String TAG_OUTBOX_RETENTION = "pgOutboxRetention";
+    @DefaultValueInt(500)
+    public static final String TAG_LISTEN_POLL_INTERVAL = "pgListenPollInterval";
+    @DefaultValueInt(1)
+    public static final String TAG_SEND_WORKER_COUNT = "sendWorkerPoolSize";
+    @DefaultValueInt(2)
+    public static final String TAG_RECV_WORKER_COUNT = "recvWorkerPoolSize";
+    @DefaultValueInt(100)
+    public static final String TAG_SEND_QUEUE_SIZE = "sendQueueSize";
+    @DefaultValueInt(100)
+    public static final String TAG_RECV_QUEUE_SIZE = "recvQueueSize";
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PostgresMessageBus.class);
+
+    private static final String SOURCE_NAME_BUS = "FROST-Bus";
+    private static final String OUTBOX_TABLE = "\"FROST_BUS_OUTBOX\"";
+    private static final String OUTBOX_PREFIX = "#";
+    private static final Pattern CHANNEL_PATTERN = Pattern.compile("[a-z_][a-z0-9_]*");
+    private static final long RECONNECT_DELAY_MS = 5000;
+    private static final TypeReference<List<EntityChangedMessage>> TYPE_LIST_MESSAGES = new TypeReference<List<EntityChangedMessage>>() {
+        // Empty on purpose.
+    };
+
+    private int sendPoolSize;
+    private int sendQueueSize;
+    private int recvPoolSize;
+    private int recvQueueSize;
+    private MessageQueue<EntityChangedMessage> sendQueue;
+    private MessageQueue<EntityChangedMessage> recvQueue;
+    private ScheduledExecutorService maintenanceTimer;
+    private Thread listenThread;
+    private final List<MessageListener> listeners = new CopyOnWriteArrayList<>();
+
+    private Settings dbSettings;
+    private String channel;
+    private int maxNotifySize;
+    private int outboxRetention;
+    private int listenPollInterval;
+    private volatile boolean running;
+    private volatile boolean outboxChecked;
+    private Connection sendConnection;
+
+    private ObjectMapper formatter;
+    private JsonReader parser;
+
+    @Override
+    public void init(CoreSettings settings) {
+        BusSettings busSettings = settings.getBusSettings();
+        Settings customSettings = busSettings.getCustomSettings();
+        dbSettings = settings.getPersistenceSettings().getCustomSettings();
+        channel = customSettings.get(TAG_CHANNEL, getClass());
+        if (!CHANNEL_PATTERN.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Invalid value for " + PREFIX_BUS + TAG_CHANNEL + ": " + channel);
+        }
+        maxNotifySize = customSettings.getInt(TAG_MAX_NOTIFY_SIZE, getClass());
+        outboxRetention = customSettings.getInt(TAG_OUTBOX_RETENTION, getClass());
+        listenPollInterval = customSettings.getInt(TAG_LISTEN_POLL_INTERVAL, getClass());
+        sendPoolSize = customSettings.getInt(TAG_SEND_WORKER_COUNT, getClass());
+        sendQueueSize = customSettings.getInt(TAG_SEND_QUEUE_SIZE, getClass());
+        recvPoolSize = customSettings.getInt(TAG_RECV_WORKER_COUNT, getClass());
+        recvQueueSize = customSettings.getInt(TAG_RECV_QUEUE_SIZE, getClass());
+
+        formatter = JsonWriter.getObjectMapper();
+        parser = new JsonReader(settings.getModelRegistry());
+
+        sendQueue = new EntityChangedMessageQueue("pg-BusS", sendQueueSize, busSettings.getQueueOverflowPolicy(), busSettings.getQueueOfferTimeout())
+                .setSpilling(settings.getModelRegistry(), busSettings.getQueueSpillDirectory(), busSettings.getQueueSpillMaxSize())
+                .startProcessors(sendPoolSize, this::handleMessageSent);
+
+        recvQueue = new EntityChangedMessageQueue("pg-BusR", recvQueueSize, busSettings.getQueueOverflowPolicy(), busSettings.getQueueOfferTimeout())
+                .setSpilling(settings.getModelRegistry(), busSettings.getQueueSpillDirectory(), busSettings.getQueueSpillMaxSize())
+                .startProcessors(recvPoolSize, this::handleMessageReceived);
+
+        running = true;
+        listenThread = new Thread(this::listen, "pg-BusL");
+        listenThread.setDaemon(true);
+        listenThread.start();
+
+        maintenanceTimer = Executors.newSingleThreadScheduledExecutor();
+        maintenanceTimer.scheduleWithFixedDelay(this::cleanOutbox, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public void stop() {
+        LOGGER.info("Message bus shutting down.");
+        running = false;
+        if (maintenanceTimer != null) {
+            maintenanceTimer.shutdownNow();
+        }
+        if (listenThread != null) {
+            try {
+                listenThread.join(2L * listenPollInterval + 1000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        sendQueue.stop(10, TimeUnit.SECONDS);
+        recvQueue.stop(10, TimeUnit.SECONDS);
+        synchronized (this) {
+            closeQuietly(sendConnection);
+            sendConnection = null;
+        }
+        LOGGER.info("Message bus closed.");
+    }
+
+    /**
+     * Sends the given messages as notifications from within the transaction
+     * of the given connection. The notifications are delivered by the
+     * database when the transaction commits, and discarded if it rolls back.
+     *
+     * @param connection The connection with the open transaction.
+     * @param messages The messages to send.
+     * @return true if the messages were sent, false if they were not and
+     * should be sent using {@link #sendMessage(EntityChangedMessage)}.
+     */
+    public boolean sendInTransaction(Connection connection, List<EntityChangedMessage> messages) {
+        Savepoint savepoint = null;
+        try {
+            savepoint = connection.setSavepoint();
+            sendBatch(connection, messages);
+            connection.releaseSavepoint(savepoint);
+            return true;
+        } catch (SQLException | JsonProcessingException ex) {
+            LOGGER.error("Failed to send messages in transaction, sending after commit.", ex);
+            if (savepoint != null) {
+                try {
+                    connection.rollback(savepoint);
+                } catch (SQLException exc) {
+                    LOGGER.error("Failed to roll back to savepoint.", exc);
+                }
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public void sendMessage(EntityChangedMessage message) {
+        if (!sendQueue.offer(message)) {
+            LOGGER.error("Failed to add message to send-queue. Increase {}{} (currently {}) to allow a bigger buffer, increase {}{} (currently {}) to empty the buffer quicker, or change {}{}.",
+                    PREFIX_BUS, TAG_SEND_QUEUE_SIZE, sendQueueSize, PREFIX_BUS, TAG_SEND_WORKER_COUNT, sendPoolSize, PREFIX_BUS, BusSettings.TAG_QUEUE_OVERFLOW_POLICY);
+        }
+    }
+
+    @Override
+    public void addMessageListener(MessageListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeMessageListener(MessageListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void handleMessageSent(EntityChangedMessage message) {
+        // Send all messages that are waiting as one batch.
+        final List<EntityChangedMessage> batch = new ArrayList<>();
+        batch.add(message);
+        sendQueue.drainTo(batch);
+        synchronized (this) {
+            try {
+                if (sendConnection == null || sendConnection.isClosed()) {
+                    sendConnection = ConnectionUtils.getPoolingConnection(SOURCE_NAME_BUS, dbSettings);
+                    sendConnection.setAutoCommit(true);
+                    checkOutbox(sendConnection);
+                }
+                sendBatch(sendConnection, batch);
+            } catch (SQLException | JsonProcessingException ex) {
+                LOGGER.error("Failed to publish {} messages to bus.", batch.size(), ex);
+                closeQuietly(sendConnection);
+                sendConnection = null;
+            }
+        }
+    }
+
+    /**
+     * Serialises the messages into as few notifications as possible.
+     * Messages that do not fit in a notification by themselves are stored in
+     * the outbox table.
+     */
+    private void sendBatch(Connection connection, List<EntityChangedMessage> messages) throws SQLException, JsonProcessingException {
+        final StringBuilder payload = new StringBuilder("[");
+        int payloadSize = 1;
+        try (PreparedStatement notify = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            for (EntityChangedMessage message : messages) {
+                final String serialised = formatter.writeValueAsString(message);
+                final int size = serialised.getBytes(StringHelper.UTF8).length;
+                if (payloadSize + size + 2 > maxNotifySize) {
+                    if (payloadSize > 1) {
+                        notify(notify, payload.append(']').toString());
+                        payload.setLength(1);
+                        payloadSize = 1;
+                    }
+                    if (size + 2 > maxNotifySize) {
+                        notify(notify, OUTBOX_PREFIX + storeInOutbox(connection, '[' + serialised + ']'));
+                        continue;
+                    }
+                }
+                if (payloadSize > 1) {
+                    payload.append(',');
+                    payloadSize++;
+                }
+                payload.append(serialised);
+                payloadSize += size;
+            }
+            if (payloadSize > 1) {
+                notify(notify, payload.append(']').toString());
+            }
+        }
+    }
+
+    private void notify(PreparedStatement notify, String payload) throws SQLException {
+        notify.setString(1, channel);
+        notify.setString(2, payload);
+        notify.execute();
+    }
+
+    private long storeInOutbox(Connection connection, String payload) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + OUTBOX_TABLE + " (\"PAYLOAD\") VALUES (?) RETURNING \"ID\"")) {
+            insert.setString(1, payload);
+            try (ResultSet rs = insert.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Creates the outbox table if it does not exist yet. This is done from
+     * the connections of the bus, with auto-commit, and not from within the
+     * transactions of the persistence manager.
+     */
+    private void checkOutbox(Connection connection) throws SQLException {
+        if (outboxChecked) {
+            return;
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE UNLOGGED TABLE IF NOT EXISTS " + OUTBOX_TABLE
+                    + " (\"ID\" BIGSERIAL PRIMARY KEY, \"CREATED\" TIMESTAMPTZ NOT NULL DEFAULT now(), \"PAYLOAD\" TEXT NOT NULL)");
+        }
+        outboxChecked = true;
+    }
+
+    private void cleanOutbox() {
+        if (!outboxChecked) {
+            return;
+        }
+        try (Connection connection = ConnectionUtils.getPoolingConnection(SOURCE_NAME_BUS, dbSettings);
+                PreparedStatement delete = connection.prepareStatement("DELETE FROM " + OUTBOX_TABLE + " WHERE \"CREATED\" < now() - ? * INTERVAL '1 second'")) {
+            connection.setAutoCommit(true);
+            delete.setInt(1, outboxRetention);
+            final int count = delete.executeUpdate();
+            LOGGER.debug("Removed {} messages from the outbox.", count);
+        } catch (SQLException ex) {
+            LOGGER.error("Failed to clean the outbox.", ex);
+        }
+    }
+
+    private void listen() {
+        Connection connection = null;
+        while (running) {
+            try {
+                if (connection == null) {
+                    connection = ConnectionUtils.getPoolingConnection(SOURCE_NAME_BUS, dbSettings);
+                    connection.setAutoCommit(true);
+                    try (Statement stmt = connection.createStatement()) {
+                        stmt.execute("LISTEN " + channel);
+                    }
+                    checkOutbox(connection);
+                    LOGGER.info("Listening for messages on channel {}.", channel);
+                }
+                final PGNotification[] notifications = connection.unwrap(PGConnection.class).getNotifications(listenPollInterval);
+                if (notifications != null) {
+                    for (PGNotification notification : notifications) {
+                        receiveNotification(connection, notification.getParameter());
+                    }
+                }
+            } catch (SQLException ex) {
+                LOGGER.error("Failed to listen for messages, reconnecting in {} ms.", RECONNECT_DELAY_MS, ex);
+                closeQuietly(connection);
+                connection = null;
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                }
+            }
+        }
+        closeQuietly(connection);
+    }
+
+    /**
+     * Handles one notification. A broken notification must not stop the
+     * listen thread, so only database errors are passed on, to reconnect.
+     */
+    private void receiveNotification(Connection connection, String payload) throws SQLException {
+        try {
+            handleNotification(connection, payload);
+        } catch (RuntimeException ex) {
+            LOGGER.error("Failed to handle notification from bus. Details in DEBUG.");
+            LOGGER.debug("Failed to handle notification: {}", payload, ex);
+        }
+    }
+
+    private void handleNotification(Connection connection, String payload) throws SQLException {
+        String serialised = payload;
+        if (payload.startsWith(OUTBOX_PREFIX)) {
+            serialised = loadFromOutbox(connection, Long.parseLong(payload.substring(OUTBOX_PREFIX.length())));
+            if (serialised == null) {
+                LOGGER.warn("Message {} not found in outbox. Increase {}{} (currently {}) to keep messages longer.",
+                        payload, PREFIX_BUS, TAG_OUTBOX_RETENTION, outboxRetention);
+                return;
+            }
+        }
+        LOGGER.trace("Received: {}", serialised);
+        final List<EntityChangedMessage> messages;
+        try {
+            messages = parser.parseObject(TYPE_LIST_MESSAGES, serialised);
+        } catch (IOException | IllegalArgumentException ex) {
+            LOGGER.error("Failed to decode message from bus. Details in DEBUG.");
+            LOGGER.debug("Failed to decode message: {}", serialised, ex);
+            return;
+        }
+        for (EntityChangedMessage message : messages) {
+            if (!recvQueue.offer(message)) {
+                LOGGER.error("Failed to add message to receive-queue. Increase {}{} (currently {}) to allow a bigger buffer, increase {}{} (currently {}) to empty the buffer quicker, or change {}{}.",
+                        PREFIX_BUS, TAG_RECV_QUEUE_SIZE, recvQueueSize, PREFIX_BUS, TAG_RECV_WORKER_COUNT, recvPoolSize, PREFIX_BUS, BusSettings.TAG_QUEUE_OVERFLOW_POLICY);
+            }
+        }
+    }
+
+    private static String loadFromOutbox(Connection connection, long id) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement("SELECT \"PAYLOAD\" FROM " + OUTBOX_TABLE + " WHERE \"ID\" = ?")) {
+            select.setLong(1, id);
+            try (ResultSet rs = select.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getString(1);
+                }
+                return null;
+            }
+        }
+    }
+
+    private void handleMessageReceived(EntityChangedMessage message) {
+        for (MessageListener listener : listeners) {
+            try {
+                listener.messageReceived(message);
+            } catch (Exception ex) {
+                LOGGER.error("Listener threw exception on message reception.", ex);
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException ex) {
+            LOGGER.debug("Exception closing connection.", ex);
+        }
+    }
+
+}
@@ -34,6 +34,7 @@ import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils.TableRef;
 import de.fraunhofer.iosb.ilt.frostserver.property.EntityPropertyCustomSelect;
 import de.fraunhofer.iosb.ilt.frostserver.util.exception.IncompleteEntityException;
 import de.fraunhofer.iosb.ilt.frostserver.util.exception.NoSuchEntityException;
+import java.util.List;
 import org.jooq.Field;
 import org.jooq.Name;
 import org.jooq.Record;
@@ -78,6 +79,17 @@ public interface StaMainTable<T extends StaMainTable<T>> extends StaTable<T> {
 
     public boolean insertIntoDatabase(PostgresPersistenceManager pm, Entity entity) throws NoSuchEntityException, IncompleteEntityException;
 
+    /**
+     * Insert the given entities, all of the type of this table, using
+     * multi-row inserts where possible.
+     *
+     * @param pm The PersistenceManager to use for queries.
+     * @param entities The entities to insert.
+     * @return A list with, for each entity, in the same order, null if the
+     * entity was inserted, or the exception that prevented the insert.
+     */
+    public List<Exception> insertIntoDatabase(PostgresPersistenceManager pm, List<Entity> entities);
+
     public EntityChangedMessage updateInDatabase(PostgresPersistenceManager pm, Entity entity, Object dsId) throws NoSuchEntityException, IncompleteEntityException;
 
     public void delete(PostgresPersistenceManager pm, Object entityId) throws NoSuchEntityException;
@@ -25,6 +25,7 @@ import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.EntitySet;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.EntitySetImpl;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.Id;
+import de.fraunhofer.iosb.ilt.frostserver.persistence.PersistenceManager;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.PostgresPersistenceManager;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.bindings.JsonBinding;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.bindings.JsonValue;
@@ -51,7 +52,9 @@ import de.fraunhofer.iosb.ilt.frostserver.util.ParserUtils;
 import de.fraunhofer.iosb.ilt.frostserver.util.exception.IncompleteEntityException;
 import de.fraunhofer.iosb.ilt.frostserver.util.exception.NoSuchEntityException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -61,8 +64,10 @@ import org.jooq.Binding;
 import org.jooq.DSLContext;
 import org.jooq.DataType;
 import org.jooq.Field;
+import org.jooq.InsertSetMoreStep;
 import org.jooq.Name;
 import org.jooq.Record;
+import org.jooq.Result;
 import org.jooq.TableField;
 import org.jooq.impl.DSL;
 import org.jooq.impl.TableImpl;
@@ -82,6 +87,12 @@ public abstract class StaTableAbstract<T extends StaMainTable<T>> extends TableI
     public static final String TYPE_JSONB = "\"pg_catalog\".\"jsonb\"";
     public static final String TYPE_GEOMETRY = "\"public\".\"geometry\"";
 
+    /**
+     * The maximum number of bind values used in one multi-row insert.
+     * PostgreSQL does not allow more than 32767 parameters per statement.
+     */
+    private static final int MAX_BIND_VALUES_PER_INSERT = 30000;
+
     private transient TableCollection tables;
     private transient ModelRegistry modelRegistry;
     private transient Map<String, Relation<T>> relations;
@@ -215,10 +226,123 @@ public abstract class StaTableAbstract<T extends StaMainTable<T>> extends TableI
 
     @Override
     public boolean insertIntoDatabase(PostgresPersistenceManager pm, Entity entity) throws NoSuchEntityException, IncompleteEntityException {
+        final T thisTable = getThis();
+        Map<Field, Object> insertFields = new HashMap<>();
+        if (!prepareInsert(pm, entity, insertFields, null)) {
+            return false;
+        }
+
+        DSLContext dslContext = pm.getDslContext();
+        Object entityId = dslContext.insertInto(thisTable)
+                .set(insertFields)
+                .returningResult(thisTable.getId())
+                .fetchOne(0);
+        LOGGER.debug("Inserted Entity. Created id = {}.", entityId);
+        entity.setId(ParserUtils.idFromObject(entityId));
+
+        linkNavigationSets(pm, entity);
+        return true;
+    }
+
+    @Override
+    public List<Exception> insertIntoDatabase(PostgresPersistenceManager pm, List<Entity> entities) {
+        final List<Exception> result = new ArrayList<>(Collections.nCopies(entities.size(), null));
+        final Map<EntityType, Set<Id>> verified = new HashMap<>();
+        final List<Integer> batchIndexes = new ArrayList<>();
+        final List<Map<Field, Object>> batchRows = new ArrayList<>();
+        for (int idx = 0; idx < entities.size(); idx++) {
+            final Entity entity = entities.get(idx);
+            final Map<Field, Object> insertFields = new HashMap<>();
+            try {
+                if (!prepareInsert(pm, entity, insertFields, verified)) {
+                    result.set(idx, new IllegalArgumentException(PersistenceManager.NOT_INSERTED));
+                    continue;
+                }
+            } catch (NoSuchEntityException | IncompleteEntityException | IllegalArgumentException exc) {
+                result.set(idx, exc);
+                continue;
+            }
+            // All rows in one statement must set the same columns.
+            if (!batchRows.isEmpty()
+                    && (!batchRows.get(0).keySet().equals(insertFields.keySet())
+                    || (batchRows.size() + 1) * insertFields.size() > MAX_BIND_VALUES_PER_INSERT)) {
+                insertBatch(pm, entities, batchIndexes, batchRows, result);
+            }
+            batchIndexes.add(idx);
+            batchRows.add(insertFields);
+        }
+        if (!batchRows.isEmpty()) {
+            insertBatch(pm, entities, batchIndexes, batchRows, result);
+        }
+        return result;
+    }
+
+    /**
+     * Inserts the given rows using a single multi-row insert, and sets the
+     * returned ids on the corresponding entities. All rows set the same
+     * columns, so either all rows have a client-supplied id, or none. Returned
+     * client-supplied ids are matched to their row by value. Generated ids are
+     * matched by position: PostgreSQL inserts the rows of a multi-row VALUES
+     * list, and returns them, in the order of that list. The given lists are
+     * cleared afterwards.
+     */
+    private void insertBatch(PostgresPersistenceManager pm, List<Entity> entities, List<Integer> batchIndexes, List<Map<Field, Object>> batchRows, List<Exception> result) {
+        final T thisTable = getThis();
+        InsertSetMoreStep<Record> insert = null;
+        for (Map<Field, Object> row : batchRows) {
+            if (insert == null) {
+                insert = pm.getDslContext().insertInto(thisTable).set(row);
+            } else {
+                insert = insert.newRecord().set(row);
+            }
+        }
+        final Field<?> idField = thisTable.getId();
+        final Result<? extends Record> ids = insert.returningResult(idField).fetch();
+        if (ids.size() != batchRows.size()) {
+            throw new IllegalStateException("Inserted " + batchRows.size() + " rows, but got " + ids.size() + " ids.");
+        }
+        LOGGER.debug("Inserted {} Entities in one batch.", ids.size());
+        final List<Object> idByRow = new ArrayList<>(ids.getValues(0));
+        if (batchRows.get(0).containsKey(idField)) {
+            final Set<Object> returned = new HashSet<>(idByRow);
+            for (int i = 0; i < batchRows.size(); i++) {
+                final Object id = idField.getDataType().convert(batchRows.get(i).get(idField));
+                if (!returned.contains(id)) {
+                    throw new IllegalStateException("Inserted a row with id " + id + ", but did not get that id back.");
+                }
+                idByRow.set(i, id);
+            }
+        }
+        for (int i = 0; i < batchIndexes.size(); i++) {
+            final int idx = batchIndexes.get(i);
+            final Entity entity = entities.get(idx);
+            entity.setId(ParserUtils.idFromObject(idByRow.get(i)));
+            try {
+                linkNavigationSets(pm, entity);
+            } catch (NoSuchEntityException | IncompleteEntityException exc) {
+                result.set(idx, exc);
+            }
+        }
+        batchIndexes.clear();
+        batchRows.clear();
+    }
+
+    /**
+     * Runs the pre-insert hooks, checks or creates the linked entities, and
+     * fills the insert fields for the given entity.
+     *
+     * @param pm The PersistenceManager to use for queries.
+     * @param entity The entity to prepare for insertion.
+     * @param insertFields The map to put the fields to insert in.
+     * @param verified The entities that are already known to exist, by type,
+     * or null if no such cache should be used. Entities that are found to
+     * exist are added.
+     * @return false if one of the hooks vetoed the insert.
+     */
+    private boolean prepareInsert(PostgresPersistenceManager pm, Entity entity, Map<Field, Object> insertFields, Map<EntityType, Set<Id>> verified) throws NoSuchEntityException, IncompleteEntityException {
         final T thisTable = getThis();
         EntityFactories entityFactories = pm.getEntityFactories();
         EntityType entityType = entity.getEntityType();
-        Map<Field, Object> insertFields = new HashMap<>();
 
         for (SortingWrapper<Double, HookPreInsert> hookWrapper : hooksPreInsert) {
             if (!hookWrapper.getObject().insertIntoDatabase(pm, entity, insertFields)) {
@@ -229,7 +353,12 @@ public abstract class StaTableAbstract<T extends StaMainTable<T>> extends TableI
         for (NavigationPropertyMain<Entity> np : entityType.getNavigationEntities()) {
             if (entity.isSetProperty(np)) {
                 Entity ne = entity.getProperty(np);
-                entityFactories.entityExistsOrCreate(pm, ne);
+                if (verified == null) {
+                    entityFactories.entityExistsOrCreate(pm, ne);
+                } else if (ne == null || ne.getId() == null || !verified.getOrDefault(ne.getEntityType(), Collections.emptySet()).contains(ne.getId())) {
+                    entityFactories.entityExistsOrCreate(pm, ne);
+                    verified.computeIfAbsent(ne.getEntityType(), t -> new HashSet<>()).add(ne.getId());
+                }
                 PropertyFields<T> registry = pfReg.getSelectFieldsForProperty(np);
                 registry.converter.convert(thisTable, entity, insertFields);
             }
@@ -248,22 +377,15 @@ public abstract class StaTableAbstract<T extends StaMainTable<T>> extends TableI
                 pfReg.getSelectFieldsForProperty(ep).converter.convert(thisTable, entity, insertFields);
             }
         }
+        return true;
+    }
 
-        DSLContext dslContext = pm.getDslContext();
-        Object entityId = dslContext.insertInto(thisTable)
-                .set(insertFields)
-                .returningResult(thisTable.getId())
-                .fetchOne(0);
-        LOGGER.debug("Inserted Entity. Created id = {}.", entityId);
-        entity.setId(ParserUtils.idFromObject(entityId));
-
-        for (NavigationPropertyMain<EntitySet> np : entityType.getNavigationSets()) {
+    private void linkNavigationSets(PostgresPersistenceManager pm, Entity entity) throws NoSuchEntityException, IncompleteEntityException {
+        for (NavigationPropertyMain<EntitySet> np : entity.getEntityType().getNavigationSets()) {
             if (entity.isSetProperty(np)) {
                 updateNavigationPropertySet(entity, entity.getProperty(np), pm, true);
             }
         }
-
-        return true;
     }
 
     /**
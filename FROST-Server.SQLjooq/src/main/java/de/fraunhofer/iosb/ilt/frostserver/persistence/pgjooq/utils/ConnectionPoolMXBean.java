@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2016 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils;
+
+/**
+ * The statistics of a database connection pool, as exposed through JMX.
+ *
+ * @author scf
+ */
+public interface ConnectionPoolMXBean {
+
+    /**
+     * @return The number of connections currently in use, or -1 if unknown.
+     */
+    public int getActiveConnections();
+
+    /**
+     * @return The number of idle connections in the pool, or -1 if unknown.
+     */
+    public int getIdleConnections();
+
+    /**
+     * @return The maximum number of connections in the pool, or -1 if unknown.
+     */
+    public int getMaxConnections();
+
+    /**
+     * @return The number of threads currently waiting for a connection.
+     */
+    public int getThreadsAwaitingConnection();
+
+    /**
+     * @return The number of connection requests since the last reset.
+     */
+    public long getConnectionRequests();
+
+    /**
+     * @return The number of connection requests that failed, for instance
+     * because they timed out, since the last reset.
+     */
+    public long getFailedConnectionRequests();
+
+    /**
+     * @return The average time, in milliseconds, that threads waited for a
+     * connection, since the last reset.
+     */
+    public double getAverageWaitMillis();
+
+    /**
+     * @return The longest time, in milliseconds, that a thread waited for a
+     * connection, since the last reset.
+     */
+    public double getMaxWaitMillis();
+
+    /**
+     * Reset the request and wait-time statistics.
+     */
+    public void resetStatistics();
+
+}
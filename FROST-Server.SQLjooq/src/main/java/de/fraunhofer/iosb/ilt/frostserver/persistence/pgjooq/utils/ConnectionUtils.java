@@ -17,15 +17,28 @@
  */
 package de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import de.fraunhofer.iosb.ilt.frostserver.settings.ConfigDefaults;
 import de.fraunhofer.iosb.ilt.frostserver.settings.Settings;
 import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValue;
+import static de.fraunhofer.iosb.ilt.frostserver.util.Constants.JMX_DOMAIN;
+import java.lang.management.ManagementFactory;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.util.Hashtable;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
@@ -61,13 +74,29 @@ public class ConnectionUtils implements ConfigDefaults {
     public static final String TAG_DB_MAXCONN = "db.conn.max";
     public static final String TAG_DB_MAXIDLE = "db.conn.idle.max";
     public static final String TAG_DB_MINIDLE = "db.conn.idle.min";
+    public static final String TAG_DB_TIMEOUT = "db.conn.timeout";
+    public static final String TAG_DB_PREPARE_THRESHOLD = "db.prepareThreshold";
+    public static final String TAG_DB_STATEMENT_CACHE_QUERIES = "db.preparedStatementCacheQueries";
+
+    /**
+     * The settings that are passed on to the JDBC driver, with the name of the
+     * driver property.
+     */
+    private static final Map<String, String> DRIVER_PROPERTIES = Map.of(
+            TAG_DB_PREPARE_THRESHOLD, "prepareThreshold",
+            TAG_DB_STATEMENT_CACHE_QUERIES, "preparedStatementCacheQueries");
+
+    public static final String POOL_TYPE_DBCP2 = "dbcp2";
+    public static final String POOL_TYPE_HIKARI = "hikari";
+    @DefaultValue(POOL_TYPE_DBCP2)
+    public static final String TAG_DB_POOL_TYPE = "db.conn.pool";
 
     /**
      * The logger for this class.
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionUtils.class);
 
-    private static final Map<String, ConnectionSource> EXISTING_POOLS = new HashMap<>();
+    private static final Map<String, ConnectionSource> EXISTING_POOLS = new ConcurrentHashMap<>();
 
     private ConnectionUtils() {
         // Utility class, should not be instantiated.
@@ -100,11 +129,14 @@ public class ConnectionUtils implements ConfigDefaults {
         synchronized (EXISTING_POOLS) {
             ConnectionSource source = EXISTING_POOLS.get(name);
             if (source == null) {
-                if (!settings.get(TAG_DB_URL, ConnectionUtils.class, false).isEmpty()) {
-                    source = setupBasicDataSource(settings);
-                } else {
+                if (settings.get(TAG_DB_URL, ConnectionUtils.class, false).isEmpty()) {
                     source = setupDataSource(settings);
+                } else if (POOL_TYPE_HIKARI.equalsIgnoreCase(settings.get(TAG_DB_POOL_TYPE, ConnectionUtils.class))) {
+                    source = setupHikariDataSource(name, settings);
+                } else {
+                    source = setupBasicDataSource(settings);
                 }
+                registerMBean(name, source);
                 EXISTING_POOLS.put(name, source);
             }
             return source;
@@ -126,12 +158,80 @@ public class ConnectionUtils implements ConfigDefaults {
             ds.setMaxIdle(settings.getInt(TAG_DB_MAXIDLE, ds.getMaxIdle()));
             ds.setMaxTotal(settings.getInt(TAG_DB_MAXCONN, ds.getMaxTotal()));
             ds.setMinIdle(settings.getInt(TAG_DB_MINIDLE, ds.getMinIdle()));
+            ds.setMaxWaitMillis(settings.getLong(TAG_DB_TIMEOUT, ds.getMaxWaitMillis()));
+            addDriverProperties(settings, ds::addConnectionProperty);
             return new ConnectionSourceBasicDataSource(ds);
         } catch (ClassNotFoundException exc) {
             throw new IllegalArgumentException(exc);
         }
     }
 
+    private static void addDriverProperties(Settings settings, BiConsumer<String, String> target) {
+        for (Map.Entry<String, String> entry : DRIVER_PROPERTIES.entrySet()) {
+            if (settings.containsName(entry.getKey())) {
+                final String value = settings.get(entry.getKey());
+                LOGGER.info("Setting driver property {} to {}.", entry.getValue(), value);
+                target.accept(entry.getValue(), value);
+            }
+        }
+    }
+
+    private static ConnectionSource setupHikariDataSource(String name, Settings settings) {
+        LOGGER.info("Setting up HikariDataSource for database connections.");
+        String driver = settings.get(TAG_DB_DRIVER, ConnectionUtils.class);
+        if (driver.isEmpty()) {
+            throw new IllegalArgumentException("Property '" + TAG_DB_DRIVER + "' must be non-empty");
+        }
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(name);
+        config.setDriverClassName(driver);
+        config.setJdbcUrl(settings.get(TAG_DB_URL, ConnectionUtils.class, false));
+        config.setUsername(settings.get(TAG_DB_USERNAME, ConnectionUtils.class));
+        config.setPassword(settings.get(TAG_DB_PASSWRD, ConnectionUtils.class, false));
+        config.setAutoCommit(false);
+        config.setMaximumPoolSize(settings.getInt(TAG_DB_MAXCONN, config.getMaximumPoolSize()));
+        config.setMinimumIdle(settings.getInt(TAG_DB_MINIDLE, config.getMaximumPoolSize()));
+        config.setConnectionTimeout(settings.getLong(TAG_DB_TIMEOUT, config.getConnectionTimeout()));
+        config.setRegisterMbeans(true);
+        addDriverProperties(settings, config::addDataSourceProperty);
+        HikariDataSource dataSource = new HikariDataSource(config);
+        HikariPoolMXBean poolBean = null;
+        try {
+            ObjectName poolName = new ObjectName("com.zaxxer.hikari:type=Pool (" + name + ")");
+            poolBean = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(), poolName, HikariPoolMXBean.class);
+        } catch (JMException exc) {
+            LOGGER.warn("Failed to find the JMX bean of connection pool {}.", name, exc);
+        }
+        return new ConnectionSourceHikari(dataSource, poolBean);
+    }
+
+    private static void registerMBean(String name, ConnectionSource source) {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            Hashtable<String, String> properties = new Hashtable<>();
+            properties.put("type", "ConnectionPool");
+            properties.put("name", ObjectName.quote(name));
+            ObjectName objectName = new ObjectName(JMX_DOMAIN, properties);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(source, objectName);
+        } catch (JMException | RuntimeException exc) {
+            LOGGER.warn("Failed to register connection pool statistics for {} with JMX.", name, exc);
+        }
+    }
+
+    /**
+     * Get the statistics of the connection pool with the given name.
+     *
+     * @param name The name of the connection pool.
+     * @return The statistics of the pool, or null if no pool with the given
+     * name exists.
+     */
+    public static ConnectionPoolMXBean getPoolStatistics(String name) {
+        return EXISTING_POOLS.get(name);
+    }
+
     private static ConnectionSource setupDataSource(Settings settings) {
         LOGGER.info("Setting up DataSource for database connections.");
         try {
@@ -174,12 +274,91 @@ public class ConnectionUtils implements ConfigDefaults {
         driver.registerPool(name, connectionPool);
     }
 
-    private static interface ConnectionSource {
+    /**
+     * A source of connections, that keeps track of how long threads wait for
+     * connections.
+     */
+    private abstract static class ConnectionSource implements ConnectionPoolMXBean {
+
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        public Connection getConnection() throws SQLException {
+            final long start = System.nanoTime();
+            waiting.incrementAndGet();
+            try {
+                return acquireConnection();
+            } catch (SQLException | RuntimeException exc) {
+                failures.incrementAndGet();
+                throw exc;
+            } finally {
+                waiting.decrementAndGet();
+                final long waited = System.nanoTime() - start;
+                requests.incrementAndGet();
+                totalWaitNanos.addAndGet(waited);
+                maxWaitNanos.accumulateAndGet(waited, Math::max);
+            }
+        }
+
+        protected abstract Connection acquireConnection() throws SQLException;
+
+        @Override
+        public int getActiveConnections() {
+            return -1;
+        }
+
+        @Override
+        public int getIdleConnections() {
+            return -1;
+        }
+
+        @Override
+        public int getMaxConnections() {
+            return -1;
+        }
+
+        @Override
+        public int getThreadsAwaitingConnection() {
+            return waiting.get();
+        }
+
+        @Override
+        public long getConnectionRequests() {
+            return requests.get();
+        }
+
+        @Override
+        public long getFailedConnectionRequests() {
+            return failures.get();
+        }
+
+        @Override
+        public double getAverageWaitMillis() {
+            final long count = requests.get();
+            if (count == 0) {
+                return 0;
+            }
+            return totalWaitNanos.get() / 1_000_000.0 / count;
+        }
+
+        @Override
+        public double getMaxWaitMillis() {
+            return maxWaitNanos.get() / 1_000_000.0;
+        }
 
-        public Connection getConnection() throws SQLException;
+        @Override
+        public void resetStatistics() {
+            requests.set(0);
+            failures.set(0);
+            totalWaitNanos.set(0);
+            maxWaitNanos.set(0);
+        }
     }
 
-    private static class ConnectionSourceDataSource implements ConnectionSource {
+    private static class ConnectionSourceDataSource extends ConnectionSource {
 
         private final DataSource ds;
 
@@ -188,12 +367,12 @@ public class ConnectionUtils implements ConfigDefaults {
         }
 
         @Override
-        public Connection getConnection() throws SQLException {
+        protected Connection acquireConnection() throws SQLException {
             return ds.getConnection();
         }
     }
 
-    private static class ConnectionSourceBasicDataSource implements ConnectionSource {
+    private static class ConnectionSourceBasicDataSource extends ConnectionSource {
 
         private final BasicDataSource dataSource;
 
@@ -202,10 +381,73 @@ public class ConnectionUtils implements ConfigDefaults {
         }
 
         @Override
-        public Connection getConnection() throws SQLException {
+        protected Connection acquireConnection() throws SQLException {
+            return dataSource.getConnection();
+        }
+
+        @Override
+        public int getActiveConnections() {
+            return dataSource.getNumActive();
+        }
+
+        @Override
+        public int getIdleConnections() {
+            return dataSource.getNumIdle();
+        }
+
+        @Override
+        public int getMaxConnections() {
+            return dataSource.getMaxTotal();
+        }
+
+    }
+
+    private static class ConnectionSourceHikari extends ConnectionSource {
+
+        private final HikariDataSource dataSource;
+        private final HikariPoolMXBean pool;
+
+        public ConnectionSourceHikari(HikariDataSource dataSource, HikariPoolMXBean pool) {
+            this.dataSource = dataSource;
+            this.pool = pool;
+        }
+
+        @Override
+        protected Connection acquireConnection() throws SQLException {
             return dataSource.getConnection();
         }
 
+        @Override
+        public int getActiveConnections() {
+            if (pool == null) {
+                return -1;
+            }
+            try {
+                return pool.getActiveConnections();
+            } catch (RuntimeException exc) {
+                // Pool not (yet) registered.
+                return -1;
+            }
+        }
+
+        @Override
+        public int getIdleConnections() {
+            if (pool == null) {
+                return -1;
+            }
+            try {
+                return pool.getIdleConnections();
+            } catch (RuntimeException exc) {
+                // Pool not (yet) registered.
+                return -1;
+            }
+        }
+
+        @Override
+        public int getMaxConnections() {
+            return dataSource.getMaximumPoolSize();
+        }
+
     }
 
     public static class ConnectionWrapper implements Supplier<Connection>, AutoCloseable {
@@ -26,6 +26,7 @@ import de.fraunhofer.iosb.ilt.frostserver.model.ext.TimeValue;
 import de.fraunhofer.iosb.ilt.frostserver.model.ext.UnitOfMeasurement;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.bindings.JsonValue;
 import de.fraunhofer.iosb.ilt.frostserver.query.OrderBy;
+import de.fraunhofer.iosb.ilt.frostserver.util.RawGeoJsonObject;
 import de.fraunhofer.iosb.ilt.frostserver.util.SimpleJsonMapper;
 import java.io.IOException;
 import java.time.LocalDateTime;
@@ -120,6 +121,11 @@ public class Utils {
             return locationUnknownEncoding(locationString);
         }
         if (GeoJsonDeserializier.ENCODINGS.contains(encodingType.toLowerCase())) {
+            if (RawGeoJsonObject.isGeometry(locationString)) {
+                // Only parsed when needed, otherwise written to the output as stored.
+                // Features and invalid GeoJSON are handled below, as before.
+                return new RawGeoJsonObject(locationString);
+            }
             try {
                 return new GeoJsonDeserializier().deserialize(locationString);
             } catch (IOException ex) {
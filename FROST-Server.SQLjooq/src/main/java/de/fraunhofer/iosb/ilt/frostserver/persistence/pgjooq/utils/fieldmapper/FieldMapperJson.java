@@ -18,10 +18,12 @@
 package de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils.fieldmapper;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.type.TypeReference;
 import de.fraunhofer.iosb.ilt.configurable.annotations.ConfigurableField;
 import de.fraunhofer.iosb.ilt.configurable.editor.EditorBoolean;
 import de.fraunhofer.iosb.ilt.configurable.editor.EditorString;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.model.ext.TypeReferencesHelper;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.PostgresPersistenceManager;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.bindings.JsonBinding;
 import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.bindings.JsonValue;
@@ -77,7 +79,12 @@ public class FieldMapperJson extends FieldMapperAbstractEp {
                             (T t, Record tuple, Entity entity, DataSize dataSize) -> {
                                 final JsonValue fieldJsonValue = Utils.getFieldJsonValue(tuple, (Field) t.field(idx));
                                 dataSize.increase(fieldJsonValue.getStringLength());
-                                entity.setProperty(entityProperty, fieldJsonValue.getValue(entityProperty.getType().getTypeReference()));
+                                final TypeReference typeReference = entityProperty.getType().getTypeReference();
+                                if (typeReference == TypeReferencesHelper.TYPE_REFERENCE_MAP) {
+                                    entity.setProperty(entityProperty, fieldJsonValue.getMapValue());
+                                } else {
+                                    entity.setProperty(entityProperty, fieldJsonValue.getValue(typeReference));
+                                }
                             },
                             (t, entity, insertFields) -> insertFields.put(t.field(idx), new JsonValue(entity.getProperty(entityProperty))),
                             (t, entity, updateFields, message) -> {
@@ -170,7 +170,7 @@ public class FieldMapperResult extends FieldMapperAbstractEp {
                 case OBJECT_ARRAY:
                     JsonValue jsonData = Utils.getFieldJsonValue(tuple, (Field<JsonValue>) table.field(idxReJs));
                     dataSize.increase(jsonData.getStringLength());
-                    entity.setProperty(property, jsonData.getValue());
+                    entity.setProperty(property, jsonData.getLazyValue());
                     break;
 
                 case STRING:
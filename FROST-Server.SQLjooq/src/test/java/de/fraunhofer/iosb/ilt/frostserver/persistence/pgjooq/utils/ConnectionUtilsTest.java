@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2024 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils;
+
+import de.fraunhofer.iosb.ilt.frostserver.settings.Settings;
+import static de.fraunhofer.iosb.ilt.frostserver.util.Constants.JMX_DOMAIN;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.Properties;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the JMX registration of the connection pools.
+ *
+ * @author scf
+ */
+class ConnectionUtilsTest {
+
+    @Test
+    void testPoolStatisticsRegistered() throws MalformedObjectNameException {
+        final String poolName = "ConnectionUtilsTest-pool";
+        final Properties properties = new Properties();
+        properties.put(ConnectionUtils.TAG_DB_DRIVER, "org.postgresql.Driver");
+        // Nothing listens on port 1, the pool is set up but no connection can be made.
+        properties.put(ConnectionUtils.TAG_DB_URL, "jdbc:postgresql://localhost:1/none");
+        properties.put(ConnectionUtils.TAG_DB_USERNAME, "user");
+        properties.put(ConnectionUtils.TAG_DB_PASSWRD, "password");
+        properties.put(ConnectionUtils.TAG_DB_MAXCONN, "7");
+        properties.put(ConnectionUtils.TAG_DB_TIMEOUT, "100");
+        final Settings settings = new Settings(properties);
+
+        assertThrows(SQLException.class, () -> ConnectionUtils.getPoolingConnection(poolName, settings));
+
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=ConnectionPool,name=" + ObjectName.quote(poolName));
+        assertTrue(mBeanServer.isRegistered(objectName), "Connection pool not registered with JMX.");
+
+        final ConnectionPoolMXBean proxy = JMX.newMXBeanProxy(mBeanServer, objectName, ConnectionPoolMXBean.class);
+        assertEquals(7, proxy.getMaxConnections());
+        assertEquals(1, proxy.getConnectionRequests());
+        assertEquals(1, proxy.getFailedConnectionRequests());
+
+        final ConnectionPoolMXBean direct = ConnectionUtils.getPoolStatistics(poolName);
+        assertNotNull(direct);
+        proxy.resetStatistics();
+        assertEquals(0, direct.getConnectionRequests());
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2024 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils;
+
+import de.fraunhofer.iosb.ilt.frostserver.util.RawGeoJsonObject;
+import org.geojson.Feature;
+import org.geojson.Point;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for loading stored locations.
+ *
+ * @author scf
+ */
+class UtilsTest {
+
+    private static final String ENCODING_GEOJSON = "application/geo+json";
+    private static final String RAW_POINT = "{\"type\":\"Point\",\"coordinates\":[8.5,49.25]}";
+
+    @Test
+    void testGeometryLoadedRaw() {
+        Object location = Utils.locationFromEncoding(ENCODING_GEOJSON, RAW_POINT);
+        assertTrue(location instanceof RawGeoJsonObject);
+        assertEquals(RAW_POINT, ((RawGeoJsonObject) location).getRawJson());
+        assertTrue(((RawGeoJsonObject) location).getParsed() instanceof Point);
+    }
+
+    @Test
+    void testFeatureLoadedParsed() {
+        String rawFeature = "{\"type\":\"Feature\",\"geometry\":" + RAW_POINT + ",\"properties\":{\"room\":\"A 1.01\"}}";
+        Object location = Utils.locationFromEncoding(ENCODING_GEOJSON, rawFeature);
+        assertTrue(location instanceof Feature);
+        assertEquals("A 1.01", ((Feature) location).getProperty("room"));
+    }
+
+    @Test
+    void testInvalidLoadedAsString() {
+        String invalid = "{\"type\":\"Point\",\"coordinates\":[8.5,49.25]";
+        assertEquals(invalid, Utils.locationFromEncoding(ENCODING_GEOJSON, invalid));
+        String unknownType = "{\"type\":\"Blob\",\"coordinates\":[8.5,49.25]}";
+        assertEquals(unknownType, Utils.locationFromEncoding(ENCODING_GEOJSON, unknownType));
+    }
+}
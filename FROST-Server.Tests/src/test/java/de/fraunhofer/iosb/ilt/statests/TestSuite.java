@@ -37,6 +37,7 @@ import de.fraunhofer.iosb.ilt.statests.c02cud.JsonPatchTests;
 import de.fraunhofer.iosb.ilt.statests.c02cud.ResultTypesTests;
 import de.fraunhofer.iosb.ilt.statests.c03filtering.Capability3Tests;
 import de.fraunhofer.iosb.ilt.statests.c03filtering.DateTimeTests;
+import de.fraunhofer.iosb.ilt.statests.c03filtering.ExpandTests;
 import de.fraunhofer.iosb.ilt.statests.c03filtering.FilterTests;
 import de.fraunhofer.iosb.ilt.statests.c03filtering.GeoTests;
 import de.fraunhofer.iosb.ilt.statests.c03filtering.JsonPropertiesTests;
@@ -46,12 +47,15 @@ import de.fraunhofer.iosb.ilt.statests.c05multidatastream.MultiDatastreamTests;
 import de.fraunhofer.iosb.ilt.statests.c06dataarrays.DataArrayTests;
 import de.fraunhofer.iosb.ilt.statests.c07mqttcreate.Capability7Tests;
 import de.fraunhofer.iosb.ilt.statests.c08mqttsubscribe.Capability8Tests;
+import de.fraunhofer.iosb.ilt.statests.c08mqttsubscribe.IndirectSubscriptionTests;
 import de.fraunhofer.iosb.ilt.statests.f01auth.BasicAuthAnonReadTests;
 import de.fraunhofer.iosb.ilt.statests.f01auth.BasicAuthTests;
 import de.fraunhofer.iosb.ilt.statests.f01auth.KeyCloakAnonReadTests;
 import de.fraunhofer.iosb.ilt.statests.f01auth.KeyCloakTests;
 import de.fraunhofer.iosb.ilt.statests.f02customlinks.CustomLinksTests;
 import de.fraunhofer.iosb.ilt.statests.f03metadata.MetadataTests;
+import de.fraunhofer.iosb.ilt.statests.f04messagebus.PostgresMessageBusTests;
+import de.fraunhofer.iosb.ilt.statests.f05triggers.StatementTriggerTests;
 import de.fraunhofer.iosb.ilt.statests.util.HTTPMethods;
 import de.fraunhofer.iosb.ilt.statests.util.HTTPMethods.HttpResponse;
 import java.io.IOException;
@@ -114,6 +118,8 @@ import org.testcontainers.junit.jupiter.Testcontainers;
     Capability3Tests.Implementation11.class,
     DateTimeTests.Implementation10.class,
     DateTimeTests.Implementation11.class,
+    ExpandTests.Implementation10.class,
+    ExpandTests.Implementation11.class,
     FilterTests.Implementation10.class,
     FilterTests.Implementation11.class,
     GeoTests.Implementation10.class,
@@ -132,6 +138,8 @@ import org.testcontainers.junit.jupiter.Testcontainers;
     Capability7Tests.Implementation11.class,
     Capability8Tests.Implementation10.class,
     Capability8Tests.Implementation11.class,
+    IndirectSubscriptionTests.Implementation10.class,
+    IndirectSubscriptionTests.Implementation11.class,
     BasicAuthTests.Implementation10.class,
     BasicAuthTests.Implementation11.class,
     BasicAuthAnonReadTests.Implementation10.class,
@@ -144,6 +152,8 @@ import org.testcontainers.junit.jupiter.Testcontainers;
     CustomLinksTests.Implementation11.class,
     MetadataTests.Implementation10.class,
     MetadataTests.Implementation11.class,
+    StatementTriggerTests.Implementation11.class,
+    PostgresMessageBusTests.class,
     TestSuite.SuiteFinaliser.class
 })
 @Suite
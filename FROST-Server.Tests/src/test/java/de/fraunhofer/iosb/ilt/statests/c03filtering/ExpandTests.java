@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2021 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.statests.c03filtering;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import de.fraunhofer.iosb.ilt.frostserver.settings.PersistenceSettings;
+import de.fraunhofer.iosb.ilt.sta.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.sta.model.Datastream;
+import de.fraunhofer.iosb.ilt.sta.model.Entity;
+import de.fraunhofer.iosb.ilt.sta.model.Observation;
+import de.fraunhofer.iosb.ilt.sta.model.ObservedProperty;
+import de.fraunhofer.iosb.ilt.sta.model.Sensor;
+import de.fraunhofer.iosb.ilt.sta.model.Thing;
+import de.fraunhofer.iosb.ilt.sta.model.ext.UnitOfMeasurement;
+import de.fraunhofer.iosb.ilt.statests.AbstractTestClass;
+import de.fraunhofer.iosb.ilt.statests.ServerVersion;
+import de.fraunhofer.iosb.ilt.statests.util.EntityUtils;
+import de.fraunhofer.iosb.ilt.statests.util.HTTPMethods;
+import de.fraunhofer.iosb.ilt.statests.util.HTTPMethods.HttpResponse;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.junit.jupiter.api.AfterAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests for $expand when it is loaded in batches. The server expands chunks of
+ * two entities at once, so pages with more entities are expanded in several
+ * chunks. The nested $top, $skip, $orderby and $filter must be applied for
+ * each parent separately.
+ *
+ * @author scf
+ */
+@TestMethodOrder(MethodOrderer.MethodName.class)
+public abstract class ExpandTests extends AbstractTestClass {
+
+    public static class Implementation10 extends ExpandTests {
+
+        public Implementation10() {
+            super(ServerVersion.v_1_0);
+        }
+
+    }
+
+    public static class Implementation11 extends ExpandTests {
+
+        public Implementation11() {
+            super(ServerVersion.v_1_1);
+        }
+
+    }
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExpandTests.class);
+
+    /**
+     * The Things with Datastreams. One more Thing without Datastreams is
+     * created after these.
+     */
+    private static final int THING_COUNT = 3;
+    private static final int DATASTREAM_COUNT = 3;
+    private static final int OBSERVATION_COUNT = 2;
+
+    private static final List<Thing> THINGS = new ArrayList<>();
+    private static final Map<Thing, List<Datastream>> DATASTREAMS = new HashMap<>();
+    private static final Map<Datastream, List<Observation>> OBSERVATIONS = new HashMap<>();
+    private static final Properties SERVER_PROPERTIES = new Properties();
+
+    static {
+        SERVER_PROPERTIES.put(CoreSettings.PREFIX_PERSISTENCE + PersistenceSettings.TAG_BATCH_EXPAND, "true");
+        SERVER_PROPERTIES.put(CoreSettings.PREFIX_PERSISTENCE + PersistenceSettings.TAG_BATCH_EXPAND_SIZE, "2");
+    }
+
+    public ExpandTests(ServerVersion version) {
+        super(version, SERVER_PROPERTIES);
+    }
+
+    @Override
+    protected void setUpVersion() throws ServiceFailureException, URISyntaxException {
+        LOGGER.info("Setting up for version {}.", version.urlPart);
+        createEntities();
+    }
+
+    @Override
+    protected void tearDownVersion() throws ServiceFailureException {
+        cleanup();
+    }
+
+    @AfterAll
+    public static void tearDown() throws ServiceFailureException {
+        LOGGER.info("Tearing down.");
+        cleanup();
+    }
+
+    private static void cleanup() throws ServiceFailureException {
+        EntityUtils.deleteAll(version, serverSettings, service);
+        THINGS.clear();
+        DATASTREAMS.clear();
+        OBSERVATIONS.clear();
+    }
+
+    private static void createEntities() throws ServiceFailureException, URISyntaxException {
+        Sensor sensor = new Sensor("Sensor 1", "The first sensor.", "text", "Some metadata.");
+        service.create(sensor);
+        ObservedProperty obsProp = new ObservedProperty("Temperature", new URI("http://ucom.org/temperature"), "The temperature of the thing.");
+        service.create(obsProp);
+
+        for (int t = 0; t <= THING_COUNT; t++) {
+            Thing thing = new Thing("Thing " + t, "Thing number " + t + ".");
+            service.create(thing);
+            THINGS.add(thing);
+            final List<Datastream> datastreams = new ArrayList<>();
+            DATASTREAMS.put(thing, datastreams);
+            if (t == THING_COUNT) {
+                // The last Thing has no Datastreams.
+                break;
+            }
+            for (int d = 0; d < DATASTREAM_COUNT; d++) {
+                Datastream datastream = new Datastream("Datastream " + t + "." + d, "Datastream " + d + " of Thing " + t + ".", "someType", new UnitOfMeasurement("degree celcius", "°C", "Cel"));
+                datastream.setThing(thing);
+                datastream.setSensor(sensor);
+                datastream.setObservedProperty(obsProp);
+                service.create(datastream);
+                datastreams.add(datastream);
+                final List<Observation> observations = new ArrayList<>();
+                OBSERVATIONS.put(datastream, observations);
+                for (int o = 0; o < OBSERVATION_COUNT; o++) {
+                    Observation observation = new Observation(t * 100 + d * 10 + o, datastream);
+                    service.create(observation);
+                    observations.add(observation);
+                }
+            }
+        }
+    }
+
+    private JsonNode getThings(String query) {
+        final String urlString = serverSettings.getServiceUrl(version) + "/Things?" + query.replace(" ", "%20");
+        HttpResponse response = HTTPMethods.doGet(urlString);
+        assertEquals(200, response.code, "Incorrect response code (" + response.code + ") for url: " + urlString);
+        try {
+            final JsonNode json = new ObjectMapper().readTree(response.response);
+            final JsonNode value = json.get("value");
+            assertTrue(value != null && value.isArray(), "No value array for url: " + urlString);
+            return value;
+        } catch (IOException ex) {
+            fail("Server returned malformed JSON for request: " + urlString + " Exception: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private static void assertId(Entity<?> expected, JsonNode actual) {
+        assertEquals(String.valueOf(expected.getId().getValue()), actual.get("@iot.id").asText());
+    }
+
+    /**
+     * $top and $skip of the expand must be applied for each Thing, not for all
+     * Datastreams together.
+     */
+    @Test
+    void test01TopAndSkipPerParent() {
+        LOGGER.info("  test01TopAndSkipPerParent");
+        final JsonNode things = getThings("$orderby=id asc&$expand=Datastreams($orderby=id asc;$top=1;$skip=1;$count=true)");
+        assertEquals(THINGS.size(), things.size());
+        for (int t = 0; t < THINGS.size(); t++) {
+            final JsonNode thing = things.get(t);
+            assertId(THINGS.get(t), thing);
+            final JsonNode datastreams = thing.get("Datastreams");
+            final List<Datastream> expected = DATASTREAMS.get(THINGS.get(t));
+            assertEquals(expected.size(), thing.get("Datastreams@iot.count").asInt(), "Incorrect count for Thing " + t);
+            if (expected.isEmpty()) {
+                assertEquals(0, datastreams.size(), "Thing " + t + " should have no Datastreams.");
+                assertFalse(thing.has("Datastreams@iot.nextLink"), "Thing " + t + " should have no nextLink.");
+                continue;
+            }
+            assertEquals(1, datastreams.size(), "Incorrect number of Datastreams for Thing " + t);
+            assertId(expected.get(1), datastreams.get(0));
+            assertTrue(thing.has("Datastreams@iot.nextLink"), "Thing " + t + " should have a nextLink.");
+        }
+    }
+
+    /**
+     * Nested expands are loaded for all Datastreams of all Things, and their
+     * $top and $orderby must be applied for each Datastream.
+     */
+    @Test
+    void test02NestedExpand() {
+        LOGGER.info("  test02NestedExpand");
+        final JsonNode things = getThings("$orderby=id asc&$expand=Datastreams($orderby=id asc;$expand=Observations($orderby=id desc;$top=1))");
+        assertEquals(THINGS.size(), things.size());
+        for (int t = 0; t < THINGS.size(); t++) {
+            final JsonNode datastreams = things.get(t).get("Datastreams");
+            final List<Datastream> expected = DATASTREAMS.get(THINGS.get(t));
+            assertEquals(expected.size(), datastreams.size(), "Incorrect number of Datastreams for Thing " + t);
+            for (int d = 0; d < expected.size(); d++) {
+                final JsonNode datastream = datastreams.get(d);
+                assertId(expected.get(d), datastream);
+                final JsonNode observations = datastream.get("Observations");
+                assertEquals(1, observations.size(), "Incorrect number of Observations for Datastream " + t + "." + d);
+                final List<Observation> expectedObs = OBSERVATIONS.get(expected.get(d));
+                assertId(expectedObs.get(expectedObs.size() - 1), observations.get(0));
+            }
+        }
+    }
+
+    /**
+     * When the expand matches no entities at all, every Thing gets an empty
+     * set.
+     */
+    @Test
+    void test03NothingToExpand() {
+        LOGGER.info("  test03NothingToExpand");
+        final JsonNode things = getThings("$orderby=id asc&$expand=Datastreams($filter=name eq 'nothing')");
+        assertEquals(THINGS.size(), things.size());
+        for (JsonNode thing : things) {
+            assertEquals(0, thing.get("Datastreams").size());
+        }
+    }
+
+    /**
+     * A page that is larger than the expand chunk size is expanded in several
+     * chunks, and still ends with a nextLink.
+     */
+    @Test
+    void test04PageInChunks() {
+        LOGGER.info("  test04PageInChunks");
+        final String urlString = serverSettings.getServiceUrl(version) + "/Things?$top=3&$orderby=id%20asc&$expand=Datastreams($select=id)";
+        HttpResponse response = HTTPMethods.doGet(urlString);
+        assertEquals(200, response.code, "Incorrect response code (" + response.code + ") for url: " + urlString);
+        final JsonNode json;
+        try {
+            json = new ObjectMapper().readTree(response.response);
+        } catch (IOException ex) {
+            fail("Server returned malformed JSON for request: " + urlString + " Exception: " + ex.getMessage());
+            return;
+        }
+        final JsonNode things = json.get("value");
+        assertEquals(3, things.size());
+        for (int t = 0; t < 3; t++) {
+            assertId(THINGS.get(t), things.get(t));
+            assertEquals(DATASTREAM_COUNT, things.get(t).get("Datastreams").size(), "Incorrect number of Datastreams for Thing " + t);
+        }
+        assertTrue(json.has("@iot.nextLink"), "The page should have a nextLink.");
+    }
+
+}
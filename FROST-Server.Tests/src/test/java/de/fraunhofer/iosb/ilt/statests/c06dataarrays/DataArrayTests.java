@@ -31,9 +31,12 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 import org.geojson.Point;
 import org.junit.jupiter.api.AfterAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Test;
@@ -330,6 +333,147 @@ public abstract class DataArrayTests extends AbstractTestClass {
         }
     }
 
+    @Test
+    void test05PostDataArraySameDatastream() throws ServiceFailureException {
+        LOGGER.info("  test05PostDataArraySameDatastream");
+        Datastream ds1 = DATASTREAMS.get(0);
+        FeatureOfInterest foi2 = FEATURES.get(1);
+        long countBefore = countObservations(ds1);
+        // Many rows for the same Datastream end up in one multi-row insert.
+        final int rowCount = 20;
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < rowCount; i++) {
+            rows.add("[\"2011-01-01T00:" + String.format("%02d", i) + ":00Z\", " + (100 + i) + ", " + foi2.getId().getJson() + "]");
+        }
+        String jsonString = createDataArrayJson(ds1, rows);
+        String urlString = serverSettings.getServiceUrl(version) + "/CreateObservations";
+        HttpResponse responseMap = HTTPMethods.doPost(urlString, jsonString);
+        assertEquals(201, responseMap.code, "Error posting Observations using Data Array: Code " + responseMap.code);
+
+        List<String> resultLines = parseResultLines(responseMap.response, urlString);
+        assertEquals(rowCount, resultLines.size(), "Incorrect number of result lines for request: " + urlString);
+        Set<Id> createdIds = new HashSet<>();
+        for (int i = 0; i < rowCount; i++) {
+            String textValue = resultLines.get(i);
+            if (textValue.toLowerCase().startsWith("error")) {
+                fail("Server returned an error for line " + i + ": " + textValue);
+            }
+            Id obsId = idFromPostResult(textValue);
+            createdIds.add(obsId);
+            Observation obs = service.observations().find(obsId);
+            assertEquals(100 + i, ((Number) obs.getResult()).intValue(), "Result of line " + i + " stored in the wrong Observation.");
+            assertEquals(ds1.getId(), obs.getDatastream().getId(), "Observation of line " + i + " has the wrong Datastream.");
+            assertEquals(foi2.getId(), obs.getFeatureOfInterest().getId(), "Observation of line " + i + " has the wrong FeatureOfInterest.");
+            OBSERVATIONS.add(obs);
+        }
+        assertEquals(rowCount, createdIds.size(), "Server returned duplicate ids.");
+        assertEquals(countBefore + rowCount, countObservations(ds1), "Incorrect number of Observations in Datastream.");
+    }
+
+    @Test
+    void test06PostDataArrayInvalidReference() throws ServiceFailureException {
+        LOGGER.info("  test06PostDataArrayInvalidReference");
+        Datastream ds1 = DATASTREAMS.get(0);
+        FeatureOfInterest foi1 = FEATURES.get(0);
+        Id missingId;
+        if (foi1.getId() instanceof IdLong) {
+            missingId = new IdLong(Long.MAX_VALUE - 1);
+        } else {
+            missingId = new IdString(UUID.randomUUID().toString());
+        }
+        long countBefore = countObservations(ds1);
+        // The third row references a FeatureOfInterest that does not exist.
+        final int rowCount = 5;
+        final int badRow = 2;
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < rowCount; i++) {
+            Id foiId = i == badRow ? missingId : foi1.getId();
+            rows.add("[\"2012-01-01T00:" + String.format("%02d", i) + ":00Z\", " + (200 + i) + ", " + foiId.getJson() + "]");
+        }
+        String jsonString = createDataArrayJson(ds1, rows);
+        String urlString = serverSettings.getServiceUrl(version) + "/CreateObservations";
+        HttpResponse responseMap = HTTPMethods.doPost(urlString, jsonString);
+        assertEquals(201, responseMap.code, "Error posting Observations using Data Array: Code " + responseMap.code);
+
+        List<String> resultLines = parseResultLines(responseMap.response, urlString);
+        assertEquals(rowCount, resultLines.size(), "Incorrect number of result lines for request: " + urlString);
+        for (int i = 0; i < rowCount; i++) {
+            String textValue = resultLines.get(i);
+            boolean isError = textValue.toLowerCase().startsWith("error");
+            if (i == badRow) {
+                assertTrue(isError, "Server should have returned an error for a non-existing FeatureOfInterest.");
+                continue;
+            }
+            assertFalse(isError, "Server returned an error for line " + i + ": " + textValue);
+            Observation obs = service.observations().find(idFromPostResult(textValue));
+            assertEquals(200 + i, ((Number) obs.getResult()).intValue(), "Result of line " + i + " stored in the wrong Observation.");
+            OBSERVATIONS.add(obs);
+        }
+        assertEquals(countBefore + rowCount - 1, countObservations(ds1), "Incorrect number of Observations in Datastream.");
+        assertEquals(0, countObservations(ds1, "result eq " + (200 + badRow)), "The failed row should not have been stored.");
+
+        // A single insert with the same invalid reference fails as a whole.
+        String singleJson = "{\n"
+                + "  \"phenomenonTime\": \"2012-01-01T00:59:00Z\",\n"
+                + "  \"result\": " + (200 + badRow) + ",\n"
+                + "  \"Datastream\": {\"@iot.id\": " + ds1.getId().getJson() + "},\n"
+                + "  \"FeatureOfInterest\": {\"@iot.id\": " + missingId.getJson() + "}\n"
+                + "}";
+        urlString = ServiceUrlHelper.buildURLString(serverSettings.getServiceUrl(version), EntityType.OBSERVATION, null, null, null);
+        responseMap = HTTPMethods.doPost(urlString, singleJson);
+        assertEquals(400, responseMap.code, "Posting an Observation with a non-existing FeatureOfInterest should fail.");
+        assertEquals(countBefore + rowCount - 1, countObservations(ds1), "Incorrect number of Observations in Datastream.");
+    }
+
+    private static String createDataArrayJson(Datastream datastream, List<String> rows) {
+        return "[\n"
+                + "  {\n"
+                + "    \"Datastream\": {\n"
+                + "      \"@iot.id\": " + datastream.getId().getJson() + "\n"
+                + "    },\n"
+                + "    \"components\": [\n"
+                + "      \"phenomenonTime\",\n"
+                + "      \"result\",\n"
+                + "      \"FeatureOfInterest/id\"\n"
+                + "    ],\n"
+                + "    \"dataArray@iot.count\":" + rows.size() + ",\n"
+                + "    \"dataArray\": [\n"
+                + "      " + String.join(",\n      ", rows) + "\n"
+                + "    ]\n"
+                + "  }\n"
+                + "]";
+    }
+
+    private static List<String> parseResultLines(String response, String urlString) {
+        JsonNode json;
+        try {
+            json = new ObjectMapper().readTree(response);
+        } catch (IOException ex) {
+            LOGGER.error("Exception:", ex);
+            fail("Server returned malformed JSON for request: " + urlString + " Exception: " + ex);
+            return null;
+        }
+        if (!json.isArray()) {
+            fail("Server did not return a JSON array for request: " + urlString);
+        }
+        List<String> lines = new ArrayList<>();
+        for (JsonNode resultLine : json) {
+            if (!resultLine.isTextual()) {
+                fail("Server returned a non-text result line for request: " + urlString);
+            }
+            lines.add(resultLine.textValue());
+        }
+        return lines;
+    }
+
+    private static long countObservations(Datastream datastream) throws ServiceFailureException {
+        return datastream.observations().query().count().top(0).list().getCount();
+    }
+
+    private static long countObservations(Datastream datastream, String filter) throws ServiceFailureException {
+        return datastream.observations().query().filter(filter).count().top(0).list().getCount();
+    }
+
     private void validateGetDataArrayResponse(String response, String urlString, Set<String> requestedProperties) {
         JsonNode json;
         try {
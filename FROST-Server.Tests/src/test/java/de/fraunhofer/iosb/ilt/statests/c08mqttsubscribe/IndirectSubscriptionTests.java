@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2021 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.statests.c08mqttsubscribe;
+
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import de.fraunhofer.iosb.ilt.sta.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.sta.model.Location;
+import de.fraunhofer.iosb.ilt.sta.model.Thing;
+import de.fraunhofer.iosb.ilt.statests.AbstractTestClass;
+import de.fraunhofer.iosb.ilt.statests.ServerVersion;
+import de.fraunhofer.iosb.ilt.statests.util.EntityType;
+import de.fraunhofer.iosb.ilt.statests.util.EntityUtils;
+import de.fraunhofer.iosb.ilt.statests.util.mqtt.MqttBatchResult;
+import de.fraunhofer.iosb.ilt.statests.util.mqtt.MqttHelper;
+import static de.fraunhofer.iosb.ilt.statests.util.mqtt.MqttHelper.WAIT_AFTER_CLEANUP;
+import static de.fraunhofer.iosb.ilt.statests.util.mqtt.MqttHelper.waitMillis;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.geojson.Point;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests for subscriptions on entities that are related to the changed entity
+ * through a many-to-many relation, like Things(x)/Locations. The server runs
+ * with a small maxTop, so the expanded related sets are truncated, and the
+ * server has to fall back to checking each subscription individually.
+ *
+ * @author scf
+ */
+@TestMethodOrder(MethodOrderer.MethodName.class)
+public abstract class IndirectSubscriptionTests extends AbstractTestClass {
+
+    public static class Implementation10 extends IndirectSubscriptionTests {
+
+        public Implementation10() {
+            super(ServerVersion.v_1_0);
+        }
+
+    }
+
+    public static class Implementation11 extends IndirectSubscriptionTests {
+
+        public Implementation11() {
+            super(ServerVersion.v_1_1);
+        }
+
+    }
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndirectSubscriptionTests.class);
+
+    private static final int TOP_MAX = 3;
+    /**
+     * More Things than fit in one expanded set.
+     */
+    private static final int THING_COUNT = TOP_MAX + 2;
+
+    private static final List<Thing> THINGS = new ArrayList<>();
+    private static final Properties SERVER_PROPERTIES = new Properties();
+
+    static {
+        SERVER_PROPERTIES.put(CoreSettings.TAG_MAX_TOP, Integer.toString(TOP_MAX));
+    }
+
+    /**
+     * The Location of all Things.
+     */
+    private static Location sharedLocation;
+    /**
+     * The Location of only the first two Things.
+     */
+    private static Location smallLocation;
+    private static MqttHelper mqttHelper;
+
+    public IndirectSubscriptionTests(ServerVersion version) {
+        super(version, SERVER_PROPERTIES);
+    }
+
+    @Override
+    protected void setUpVersion() throws ServiceFailureException {
+        LOGGER.info("Setting up for version {}.", version.urlPart);
+        mqttHelper = new MqttHelper(version, serverSettings.getMqttUrl(), serverSettings.getMqttTimeOut());
+        createEntities();
+    }
+
+    @Override
+    protected void tearDownVersion() throws ServiceFailureException {
+        cleanup();
+    }
+
+    @AfterAll
+    public static void tearDown() throws ServiceFailureException {
+        LOGGER.info("Tearing down.");
+        cleanup();
+        mqttHelper = null;
+    }
+
+    private static void cleanup() throws ServiceFailureException {
+        EntityUtils.deleteAll(version, serverSettings, service);
+        THINGS.clear();
+        sharedLocation = null;
+        smallLocation = null;
+    }
+
+    private static void createEntities() throws ServiceFailureException {
+        sharedLocation = new Location("Shared Location", "The Location of all Things.", "application/vnd.geo+json", new Point(8, 50));
+        service.create(sharedLocation);
+        smallLocation = new Location("Small Location", "The Location of two Things.", "application/vnd.geo+json", new Point(9, 50));
+        service.create(smallLocation);
+        for (int i = 0; i < THING_COUNT; i++) {
+            Thing thing = new Thing("Thing " + i, "Thing number " + i + ".");
+            thing.getLocations().add(sharedLocation.withOnlyId());
+            if (i < 2) {
+                thing.getLocations().add(smallLocation.withOnlyId());
+            }
+            service.create(thing);
+            THINGS.add(thing);
+        }
+    }
+
+    private String locationsOf(int thingIdx) {
+        return mqttHelper.getTopic(EntityType.THING, THINGS.get(thingIdx).getId().getValue(), "Locations");
+    }
+
+    /**
+     * The shared Location has more Things than maxTop, so the expanded set of
+     * Things is truncated. Subscriptions for Things in and beyond the first
+     * page must both be notified.
+     */
+    @Test
+    void test01TruncatedRelatedSet() throws ServiceFailureException {
+        LOGGER.info("  test01TruncatedRelatedSet");
+        waitMillis(WAIT_AFTER_CLEANUP);
+        final String firstTopic = locationsOf(0);
+        final String lastTopic = locationsOf(THING_COUNT - 1);
+        MqttBatchResult<Object> result = mqttHelper.executeRequests(() -> {
+            sharedLocation.setName("Shared Location Renamed");
+            service.update(sharedLocation);
+            return null;
+        }, firstTopic, lastTopic);
+
+        final JSONObject first = result.getMessages().get(firstTopic);
+        final JSONObject last = result.getMessages().get(lastTopic);
+        assertNotNull(first, "No message for the first Thing.");
+        assertNotNull(last, "No message for the Thing beyond maxTop.");
+        assertEquals("Shared Location Renamed", first.getString("name"));
+        assertEquals("Shared Location Renamed", last.getString("name"));
+    }
+
+    /**
+     * The small Location has fewer Things than maxTop, so the related ids are
+     * complete, and Things that are not related must not be notified.
+     */
+    @Test
+    void test02CompleteRelatedSet() throws ServiceFailureException {
+        LOGGER.info("  test02CompleteRelatedSet");
+        waitMillis(WAIT_AFTER_CLEANUP);
+        final String relatedTopic = locationsOf(1);
+        final String unrelatedTopic = locationsOf(2);
+        MqttBatchResult<Object> result = mqttHelper.executeRequests(() -> {
+            smallLocation.setName("Small Location Renamed");
+            service.update(smallLocation);
+            return null;
+        }, relatedTopic, unrelatedTopic);
+
+        final JSONObject related = result.getMessages().get(relatedTopic);
+        assertNotNull(related, "No message for the related Thing.");
+        assertEquals("Small Location Renamed", related.getString("name"));
+        assertNull(result.getMessages().get(unrelatedTopic), "Message for an unrelated Thing.");
+    }
+
+}
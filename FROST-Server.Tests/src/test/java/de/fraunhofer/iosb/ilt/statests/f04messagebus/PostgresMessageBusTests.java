@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2024 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.statests.f04messagebus;
+
+import de.fraunhofer.iosb.ilt.frostserver.messagebus.MessageBus;
+import de.fraunhofer.iosb.ilt.frostserver.messagebus.MessageBusFactory;
+import de.fraunhofer.iosb.ilt.frostserver.model.DefaultEntity;
+import de.fraunhofer.iosb.ilt.frostserver.model.EntityChangedMessage;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.IdLong;
+import de.fraunhofer.iosb.ilt.frostserver.persistence.PersistenceManager;
+import de.fraunhofer.iosb.ilt.frostserver.persistence.PersistenceManagerFactory;
+import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.messagebus.PostgresMessageBus;
+import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.utils.ConnectionUtils;
+import de.fraunhofer.iosb.ilt.frostserver.plugin.coremodel.PluginCoreModel;
+import de.fraunhofer.iosb.ilt.frostserver.settings.BusSettings;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import static de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings.PREFIX_BUS;
+import static de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings.PREFIX_PERSISTENCE;
+import de.fraunhofer.iosb.ilt.frostserver.settings.PersistenceSettings;
+import de.fraunhofer.iosb.ilt.frostserver.util.exception.IncompleteEntityException;
+import de.fraunhofer.iosb.ilt.frostserver.util.exception.NoSuchEntityException;
+import de.fraunhofer.iosb.ilt.statests.TestSuite;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.AfterAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests for the PostgreSQL NOTIFY / LISTEN message bus, between two nodes
+ * that use the database of the test suite. Messages are sent directly on the
+ * bus, and through the transactions of a PersistenceManager.
+ *
+ * @author scf
+ */
+public class PostgresMessageBusTests {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PostgresMessageBusTests.class);
+
+    private static final String CHANNEL = "frost_bus_test";
+    private static final int MAX_NOTIFY_SIZE = 2000;
+    private static final long RECEIVE_TIMEOUT_MS = 10_000;
+    private static final long SILENCE_TIMEOUT_MS = 1_000;
+    private static final String OUTBOX_COUNT = "SELECT count(*) FROM \"FROST_BUS_OUTBOX\"";
+
+    private static final BlockingQueue<EntityChangedMessage> RECEIVED = new LinkedBlockingQueue<>();
+
+    private static CoreSettings senderSettings;
+    private static CoreSettings receiverSettings;
+    private static PluginCoreModel senderModel;
+    private static long nextId = 1;
+
+    @BeforeAll
+    static void setUp() throws InterruptedException {
+        final String pgConnectUrl = TestSuite.getInstance().getPgConnectUrl();
+        senderSettings = createSettings(pgConnectUrl, "http://sender/");
+        receiverSettings = createSettings(pgConnectUrl, "http://receiver/");
+        senderModel = senderSettings.getPluginManager().getPlugin(PluginCoreModel.class);
+        MessageBusFactory.createMessageBus(senderSettings);
+        MessageBusFactory.createMessageBus(receiverSettings);
+        receiverSettings.getMessageBus().addMessageListener(RECEIVED::add);
+        awaitListening();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        for (CoreSettings settings : new CoreSettings[]{senderSettings, receiverSettings}) {
+            final MessageBus bus = settings == null ? null : settings.getMessageBus();
+            if (bus != null) {
+                bus.stop();
+            }
+        }
+    }
+
+    @BeforeEach
+    void clearReceived() {
+        RECEIVED.clear();
+    }
+
+    @Test
+    void testInTransactionOnlyAfterCommit() throws InterruptedException, SQLException {
+        final long id = nextId++;
+        final PostgresMessageBus bus = (PostgresMessageBus) senderSettings.getMessageBus();
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            assertTrue(bus.sendInTransaction(connection, Arrays.asList(createMessage(id, "In a transaction"))));
+            assertNull(RECEIVED.poll(SILENCE_TIMEOUT_MS, TimeUnit.MILLISECONDS), "Message received before commit.");
+            connection.commit();
+        }
+        assertEquals("In a transaction", receive(id).getProperty(senderModel.epDescription));
+    }
+
+    @Test
+    void testPmCommit() throws InterruptedException, NoSuchEntityException, IncompleteEntityException {
+        final String name = "Committed Thing " + nextId++;
+        try (PersistenceManager pm = createPersistenceManager()) {
+            pm.insert(createThing(name, "Inserted and committed."));
+            assertNull(RECEIVED.poll(SILENCE_TIMEOUT_MS, TimeUnit.MILLISECONDS), "Message received before commit.");
+            pm.commit();
+        }
+        assertEquals("Inserted and committed.", receive(name).getProperty(senderModel.epDescription));
+    }
+
+    @Test
+    void testPmRollback() throws InterruptedException, NoSuchEntityException, IncompleteEntityException {
+        final String rolledBack = "Rolled back Thing " + nextId++;
+        final String committed = "Committed Thing " + nextId++;
+        try (PersistenceManager pm = createPersistenceManager()) {
+            pm.insert(createThing(rolledBack, "Inserted and rolled back."));
+            pm.rollback();
+            pm.insert(createThing(committed, "Inserted and committed."));
+            pm.commit();
+        }
+        // Notifications arrive in commit order, so the rolled back Thing
+        // would have arrived before the committed one.
+        final List<EntityChangedMessage> before = new ArrayList<>();
+        receive(committed, before);
+        for (EntityChangedMessage message : before) {
+            assertNotEquals(rolledBack, message.getEntity().getProperty(senderModel.epName), "Message received for rolled back Thing.");
+        }
+    }
+
+    @Test
+    void testPmOversized() throws InterruptedException, NoSuchEntityException, IncompleteEntityException, SQLException {
+        final String name = "Large Thing " + nextId++;
+        final String description = StringUtils.repeat("A large Thing. ", 2 * MAX_NOTIFY_SIZE / 10);
+        final long outboxBefore = countOutbox();
+        try (PersistenceManager pm = createPersistenceManager()) {
+            pm.insert(createThing(name, description));
+            pm.commit();
+        }
+        assertEquals(description, receive(name).getProperty(senderModel.epDescription), "Message from the outbox differs.");
+        assertTrue(countOutbox() > outboxBefore, "Oversized message not sent through the outbox.");
+    }
+
+    @Test
+    void testInvalidNotification() throws InterruptedException, SQLException {
+        try (Connection connection = getConnection();
+                PreparedStatement notify = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            connection.setAutoCommit(true);
+            notify.setString(1, CHANNEL);
+            notify.setString(2, "#notAnId");
+            notify.execute();
+            notify.setString(2, "not json");
+            notify.execute();
+        }
+        // The listener must survive the broken notifications.
+        final long id = nextId++;
+        senderSettings.getMessageBus().sendMessage(createMessage(id, "After broken notifications"));
+        assertEquals("After broken notifications", receive(id).getProperty(senderModel.epDescription));
+    }
+
+    @Test
+    void testNormalMessage() throws InterruptedException {
+        final long id = nextId++;
+        senderSettings.getMessageBus().sendMessage(createMessage(id, "A small Thing"));
+
+        final Entity entity = receive(id);
+        assertEquals("Thing " + id, entity.getProperty(senderModel.epName));
+        assertEquals("A small Thing", entity.getProperty(senderModel.epDescription));
+    }
+
+    @Test
+    void testOversizedMessage() throws InterruptedException {
+        final long id = nextId++;
+        final String description = StringUtils.repeat("A large Thing. ", 2 * MAX_NOTIFY_SIZE / 10);
+        senderSettings.getMessageBus().sendMessage(createMessage(id, description));
+
+        final Entity entity = receive(id);
+        assertEquals("Thing " + id, entity.getProperty(senderModel.epName));
+        assertEquals(description, entity.getProperty(senderModel.epDescription), "Message from the outbox differs.");
+    }
+
+    private static CoreSettings createSettings(String pgConnectUrl, String serviceRootUrl) {
+        final Properties properties = new Properties();
+        properties.put(CoreSettings.TAG_SERVICE_ROOT_URL, serviceRootUrl);
+        properties.put(CoreSettings.TAG_TEMP_PATH, System.getProperty("java.io.tmpdir"));
+        properties.put(PREFIX_PERSISTENCE + PersistenceSettings.TAG_IMPLEMENTATION_CLASS, TestSuite.VAL_PERSISTENCE_MANAGER);
+        properties.put(PREFIX_PERSISTENCE + PersistenceSettings.TAG_AUTO_UPDATE_DATABASE, "true");
+        properties.put(PREFIX_PERSISTENCE + ConnectionUtils.TAG_DB_DRIVER, "org.postgresql.Driver");
+        properties.put(PREFIX_PERSISTENCE + ConnectionUtils.TAG_DB_URL, pgConnectUrl);
+        properties.put(PREFIX_PERSISTENCE + ConnectionUtils.TAG_DB_USERNAME, TestSuite.VAL_PG_USER);
+        properties.put(PREFIX_PERSISTENCE + ConnectionUtils.TAG_DB_PASSWRD, TestSuite.VAL_PG_PASS);
+        properties.put(PREFIX_BUS + BusSettings.TAG_IMPLEMENTATION_CLASS, PostgresMessageBus.class.getName());
+        properties.put(PREFIX_BUS + PostgresMessageBus.TAG_CHANNEL, CHANNEL);
+        properties.put(PREFIX_BUS + PostgresMessageBus.TAG_MAX_NOTIFY_SIZE, Integer.toString(MAX_NOTIFY_SIZE));
+        properties.put(PREFIX_BUS + PostgresMessageBus.TAG_LISTEN_POLL_INTERVAL, "100");
+        return new CoreSettings(properties);
+    }
+
+    private static PersistenceManager createPersistenceManager() {
+        return PersistenceManagerFactory.getInstance(senderSettings).create();
+    }
+
+    private static Connection getConnection() throws SQLException {
+        return ConnectionUtils.getConnection("BusTest", senderSettings.getPersistenceSettings().getCustomSettings());
+    }
+
+    private static long countOutbox() throws SQLException {
+        try (Connection connection = getConnection();
+                Statement stmt = connection.createStatement();
+                ResultSet rs = stmt.executeQuery(OUTBOX_COUNT)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static Entity createThing(String name, String description) {
+        return new DefaultEntity(senderModel.etThing)
+                .setProperty(senderModel.epName, name)
+                .setProperty(senderModel.epDescription, description);
+    }
+
+    private static EntityChangedMessage createMessage(long id, String description) {
+        return new EntityChangedMessage()
+                .setEventType(EntityChangedMessage.Type.CREATE)
+                .setEntity(new DefaultEntity(senderModel.etThing, new IdLong(id))
+                        .setProperty(senderModel.epName, "Thing " + id)
+                        .setProperty(senderModel.epDescription, description));
+    }
+
+    /**
+     * Waits for the message about the Thing with the given id, skipping other
+     * messages.
+     */
+    private static Entity receive(long id) throws InterruptedException {
+        return receive("Thing " + id, entity -> ((Number) entity.getId().getValue()).longValue() == id, new ArrayList<>());
+    }
+
+    /**
+     * Waits for the message about the Thing with the given name, skipping
+     * other messages.
+     */
+    private static Entity receive(String name) throws InterruptedException {
+        return receive(name, new ArrayList<>());
+    }
+
+    /**
+     * Waits for the message about the Thing with the given name, adding the
+     * skipped messages to the given list.
+     */
+    private static Entity receive(String name, List<EntityChangedMessage> skipped) throws InterruptedException {
+        return receive(name, entity -> name.equals(entity.getProperty(senderModel.epName)), skipped);
+    }
+
+    private static Entity receive(String description, Predicate<Entity> matches, List<EntityChangedMessage> skipped) throws InterruptedException {
+        final long end = System.currentTimeMillis() + RECEIVE_TIMEOUT_MS;
+        long remaining = RECEIVE_TIMEOUT_MS;
+        while (remaining > 0) {
+            final EntityChangedMessage message = RECEIVED.poll(remaining, TimeUnit.MILLISECONDS);
+            if (message != null) {
+                final Entity entity = message.getEntity();
+                assertNotNull(entity);
+                if (matches.test(entity)) {
+                    assertEquals(EntityChangedMessage.Type.CREATE, message.getEventType());
+                    assertEquals("Thing", entity.getEntityType().entityName);
+                    return entity;
+                }
+                skipped.add(message);
+            }
+            remaining = end - System.currentTimeMillis();
+        }
+        fail("Message for " + description + " not received within " + RECEIVE_TIMEOUT_MS + " ms.");
+        return null;
+    }
+
+    /**
+     * The receiver starts listening in the background. Messages sent before
+     * it listens are not delivered, so wait until a probe message arrives.
+     */
+    private static void awaitListening() throws InterruptedException {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            senderSettings.getMessageBus().sendMessage(createMessage(0, "probe"));
+            if (RECEIVED.poll(200, TimeUnit.MILLISECONDS) != null) {
+                LOGGER.info("Receiver listening after {} probes.", attempt + 1);
+                return;
+            }
+        }
+        fail("Receiver did not start listening.");
+    }
+}
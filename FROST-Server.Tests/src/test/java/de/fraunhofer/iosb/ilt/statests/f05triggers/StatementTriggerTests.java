@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2024 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.statests.f05triggers;
+
+import de.fraunhofer.iosb.ilt.frostserver.plugin.coremodel.CoreModelSettings;
+import static de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings.PREFIX_PLUGINS;
+import de.fraunhofer.iosb.ilt.sta.ServiceFailureException;
+import de.fraunhofer.iosb.ilt.sta.model.Datastream;
+import de.fraunhofer.iosb.ilt.sta.model.FeatureOfInterest;
+import de.fraunhofer.iosb.ilt.sta.model.Observation;
+import de.fraunhofer.iosb.ilt.sta.model.ObservedProperty;
+import de.fraunhofer.iosb.ilt.sta.model.Sensor;
+import de.fraunhofer.iosb.ilt.sta.model.Thing;
+import de.fraunhofer.iosb.ilt.sta.model.ext.UnitOfMeasurement;
+import de.fraunhofer.iosb.ilt.statests.AbstractTestClass;
+import de.fraunhofer.iosb.ilt.statests.ServerVersion;
+import de.fraunhofer.iosb.ilt.statests.TestSuite;
+import de.fraunhofer.iosb.ilt.statests.util.EntityUtils;
+import de.fraunhofer.iosb.ilt.statests.util.HTTPMethods;
+import de.fraunhofer.iosb.ilt.statests.util.HTTPMethods.HttpResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.geojson.Point;
+import org.junit.jupiter.api.AfterAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests for the statement-level Datastream summary trigger, that is used when
+ * coreModel.datastreamSummaryMode is STATEMENT.
+ *
+ * @author scf
+ */
+@TestMethodOrder(MethodOrderer.MethodName.class)
+public abstract class StatementTriggerTests extends AbstractTestClass {
+
+    /**
+     * The trigger mode does not depend on the version, and the server only
+     * switches triggers when it starts, so only one version is tested.
+     */
+    public static class Implementation11 extends StatementTriggerTests {
+
+        public Implementation11() {
+            super(ServerVersion.v_1_1);
+        }
+
+    }
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatementTriggerTests.class);
+
+    private static final String TRIGGER_ROW = "datastreams_actualization_insert";
+    private static final String TRIGGER_STATEMENT = "datastreams_actualization_insert_stmt";
+    private static final String SCRIPT_ROW = "/liquibase/plugincoremodel/postgresTriggersRow.sql";
+
+    private static final List<Datastream> DATASTREAMS = new ArrayList<>();
+    private static final List<FeatureOfInterest> FEATURES = new ArrayList<>();
+    private static final Properties SERVER_PROPERTIES = new Properties();
+
+    static {
+        SERVER_PROPERTIES.put(PREFIX_PLUGINS + CoreModelSettings.TAG_DATASTREAM_SUMMARY_MODE, "STATEMENT");
+    }
+
+    public StatementTriggerTests(ServerVersion version) {
+        super(version, SERVER_PROPERTIES);
+    }
+
+    @Override
+    protected void setUpVersion() throws ServiceFailureException, URISyntaxException {
+        LOGGER.info("Setting up for version {}.", version.urlPart);
+        createEntities();
+    }
+
+    @Override
+    protected void tearDownVersion() throws ServiceFailureException {
+        cleanup();
+    }
+
+    /**
+     * All servers of the test suite share one database. Other servers
+     * expect the row trigger, so switch back to it.
+     */
+    @AfterAll
+    public static void tearDown() throws ServiceFailureException, SQLException, IOException {
+        LOGGER.info("Tearing down.");
+        cleanup();
+        try (InputStream script = StatementTriggerTests.class.getResourceAsStream(SCRIPT_ROW);
+                Connection connection = getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.execute(new String(script.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void cleanup() throws ServiceFailureException {
+        EntityUtils.deleteAll(version, serverSettings, service);
+        DATASTREAMS.clear();
+        FEATURES.clear();
+    }
+
+    private static void createEntities() throws ServiceFailureException {
+        Thing thing = new Thing("Thing 1", "The first thing.");
+        Sensor sensor = new Sensor("Sensor 1", "The first sensor.", "text", "Some metadata.");
+        ObservedProperty obsProp = new ObservedProperty("Temperature", "http://ucom.org/temperature", "The temperature of the thing.");
+        Datastream datastream = new Datastream("Datastream 1", "The temperature of thing 1, sensor 1.", "someType", new UnitOfMeasurement("degree celcius", "°C", "ucum:T"));
+        datastream.setSensor(sensor);
+        datastream.setObservedProperty(obsProp);
+        datastream.setThing(thing);
+        service.create(datastream);
+        DATASTREAMS.add(datastream);
+
+        double[][] coordinates = {{8, 50}, {9, 50}, {8.5, 51}, {8, 49}};
+        for (int i = 0; i < coordinates.length; i++) {
+            FeatureOfInterest foi = new FeatureOfInterest("Feature " + i, "Feature of Interest " + i, "application/vnd.geo+json", new Point(coordinates[i][0], coordinates[i][1]));
+            service.create(foi);
+            FEATURES.add(foi);
+        }
+    }
+
+    @Test
+    void test01TriggerSwitched() throws SQLException {
+        LOGGER.info("  test01TriggerSwitched");
+        assertTrue(triggerExists(TRIGGER_STATEMENT), "Statement trigger missing.");
+        assertFalse(triggerExists(TRIGGER_ROW), "Row trigger should have been dropped.");
+    }
+
+    @Test
+    void test02MultiRowInsert() throws ServiceFailureException, SQLException {
+        LOGGER.info("  test02MultiRowInsert");
+        // One multi-row insert. The latest phenomenonTime is not in the last row.
+        String jsonString = "[{"
+                + "\"Datastream\": {\"@iot.id\": " + DATASTREAMS.get(0).getId().getJson() + "},"
+                + "\"components\": [\"phenomenonTime\", \"resultTime\", \"result\", \"FeatureOfInterest/id\"],"
+                + "\"dataArray@iot.count\": 3,"
+                + "\"dataArray\": ["
+                + "[\"2020-01-01T01:00:00Z\", \"2020-01-01T01:00:10Z\", 1, " + FEATURES.get(0).getId().getJson() + "],"
+                + "[\"2020-01-01T03:00:00Z\", \"2020-01-01T03:00:10Z\", 2, " + FEATURES.get(1).getId().getJson() + "],"
+                + "[\"2020-01-01T02:00:00Z\", \"2020-01-01T02:00:10Z\", 3, " + FEATURES.get(2).getId().getJson() + "]"
+                + "]}]";
+        HttpResponse response = HTTPMethods.doPost(serverSettings.getServiceUrl(version) + "/CreateObservations", jsonString);
+        assertEquals(201, response.code, "Error posting Observations using Data Array: " + response.response);
+        assertFalse(response.response.toLowerCase().contains("error"), "Failed to create Observations: " + response.response);
+
+        Datastream ds = service.datastreams().find(DATASTREAMS.get(0).getId());
+        assertNotNull(ds.getPhenomenonTime(), "phenomenonTime not set.");
+        assertEquals(ZonedDateTime.parse("2020-01-01T01:00:00Z").toInstant(), ds.getPhenomenonTime().getStart());
+        assertEquals(ZonedDateTime.parse("2020-01-01T03:00:00Z").toInstant(), ds.getPhenomenonTime().getEnd());
+        assertNotNull(ds.getResultTime(), "resultTime not set.");
+        assertEquals(ZonedDateTime.parse("2020-01-01T01:00:10Z").toInstant(), ds.getResultTime().getStart());
+        assertEquals(ZonedDateTime.parse("2020-01-01T03:00:10Z").toInstant(), ds.getResultTime().getEnd());
+
+        assertEquals(FEATURES.get(1).getId().getValue().toString(), lastFoiId(), "LAST_FOI_ID not the Feature of the latest Observation.");
+        assertTrue(observedAreaEquals("POLYGON((8 50, 9 50, 8.5 51, 8 50))"), "observedArea not the hull of the Features.");
+    }
+
+    @Test
+    void test03SingleInsert() throws ServiceFailureException, SQLException {
+        LOGGER.info("  test03SingleInsert");
+        Observation observation = new Observation(4, ZonedDateTime.parse("2019-12-31T00:00:00Z"));
+        observation.setDatastream(DATASTREAMS.get(0));
+        observation.setFeatureOfInterest(FEATURES.get(3).withOnlyId());
+        service.create(observation);
+
+        Datastream ds = service.datastreams().find(DATASTREAMS.get(0).getId());
+        assertEquals(ZonedDateTime.parse("2019-12-31T00:00:00Z").toInstant(), ds.getPhenomenonTime().getStart());
+        assertEquals(ZonedDateTime.parse("2020-01-01T03:00:00Z").toInstant(), ds.getPhenomenonTime().getEnd());
+        assertEquals(ZonedDateTime.parse("2020-01-01T01:00:10Z").toInstant(), ds.getResultTime().getStart());
+        assertEquals(ZonedDateTime.parse("2020-01-01T03:00:10Z").toInstant(), ds.getResultTime().getEnd());
+
+        assertEquals(FEATURES.get(3).getId().getValue().toString(), lastFoiId());
+        assertTrue(observedAreaEquals("POLYGON((8 49, 9 50, 8.5 51, 8 50, 8 49))"), "observedArea not extended by the new Feature.");
+    }
+
+    private static Connection getConnection() throws SQLException {
+        return DriverManager.getConnection(TestSuite.getInstance().getPgConnectUrl(), TestSuite.VAL_PG_USER, TestSuite.VAL_PG_PASS);
+    }
+
+    private static boolean triggerExists(String name) throws SQLException {
+        try (Connection connection = getConnection();
+                PreparedStatement statement = connection.prepareStatement("select count(*) from pg_trigger where tgname = ?")) {
+            statement.setString(1, name);
+            try (ResultSet result = statement.executeQuery()) {
+                result.next();
+                return result.getInt(1) > 0;
+            }
+        }
+    }
+
+    private static String lastFoiId() throws SQLException {
+        try (Connection connection = getConnection();
+                PreparedStatement statement = connection.prepareStatement("select \"LAST_FOI_ID\"::text from \"DATASTREAMS\" where \"ID\"::text = ?")) {
+            statement.setString(1, DATASTREAMS.get(0).getId().getValue().toString());
+            try (ResultSet result = statement.executeQuery()) {
+                assertTrue(result.next(), "Datastream not found in the database.");
+                return result.getString(1);
+            }
+        }
+    }
+
+    private static boolean observedAreaEquals(String wkt) throws SQLException {
+        try (Connection connection = getConnection();
+                PreparedStatement statement = connection.prepareStatement("select ST_Equals(\"OBSERVED_AREA\", ST_GeomFromText(?, ST_SRID(\"OBSERVED_AREA\"))) from \"DATASTREAMS\" where \"ID\"::text = ?")) {
+            statement.setString(1, wkt);
+            statement.setString(2, DATASTREAMS.get(0).getId().getValue().toString());
+            try (ResultSet result = statement.executeQuery()) {
+                assertTrue(result.next(), "Datastream not found in the database.");
+                return result.getBoolean(1);
+            }
+        }
+    }
+
+}
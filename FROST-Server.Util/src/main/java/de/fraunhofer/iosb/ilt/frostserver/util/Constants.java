@@ -35,6 +35,11 @@ public class Constants {
     public static final String CONTENT_TYPE_TEXT_HTML = "text/html";
     public static final String CHARSET_UTF8 = "charset=UTF-8";
 
+    /**
+     * The JMX domain under which the MBeans of the server are registered.
+     */
+    public static final String JMX_DOMAIN = "de.fraunhofer.iosb.ilt.frostserver";
+
     public static final String HEADER_ACCEPT = "Accept";
     public static final String HEADER_LOCATION = "Location";
     public static final String HEADER_PREFER = "Prefer";
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import org.geojson.Crs;
+import org.geojson.GeoJsonObject;
+import org.geojson.GeoJsonObjectVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A GeoJsonObject that holds the GeoJSON in its serialised form, as stored in
+ * the database, and only parses it when the geometry is accessed. When
+ * serialised to a JSON text generator before it is parsed, the stored GeoJSON
+ * is written verbatim.
+ *
+ * Only use this for GeoJSON geometries, see {@link #isGeometry(String)}.
+ * Features are not Geometries and must be parsed, since code handling them
+ * checks for instances of {@link org.geojson.Feature}.
+ *
+ * @author hylke
+ */
+@JsonSerialize(using = RawGeoJsonObject.RawGeoJsonSerializer.class)
+public class RawGeoJsonObject extends GeoJsonObject {
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RawGeoJsonObject.class);
+
+    private static final Set<String> GEOMETRY_TYPES = new HashSet<>(Arrays.asList(
+            "Point", "MultiPoint", "LineString", "MultiLineString", "Polygon", "MultiPolygon", "GeometryCollection"));
+
+    private final String rawJson;
+    private GeoJsonObject parsed;
+
+    /**
+     * Create a new RawGeoJsonObject.
+     *
+     * @param rawJson The GeoJSON, in serialised form.
+     */
+    public RawGeoJsonObject(String rawJson) {
+        this.rawJson = rawJson;
+    }
+
+    /**
+     * The GeoJSON this object was created with.
+     *
+     * @return The GeoJSON this object was created with.
+     */
+    public String getRawJson() {
+        return rawJson;
+    }
+
+    /**
+     * Check if the GeoJSON has been parsed. After parsing, the parsed object
+     * may have been modified, and the original GeoJSON can no longer be used.
+     *
+     * @return true if the GeoJSON has been parsed.
+     */
+    public boolean isParsed() {
+        return parsed != null;
+    }
+
+    /**
+     * Get the parsed GeoJsonObject, parsing the GeoJSON if this has not been
+     * done yet.
+     *
+     * @return The parsed GeoJsonObject.
+     */
+    public GeoJsonObject getParsed() {
+        if (parsed == null) {
+            try {
+                parsed = GeoHelper.parseGeoJson(rawJson);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Failed to parse stored GeoJSON.", ex);
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Returns the parsed GeoJsonObject if the given object is a
+     * RawGeoJsonObject, or the given object otherwise. If the stored GeoJSON
+     * can not be parsed, the stored String is returned, like for locations
+     * that are loaded with an invalid GeoJSON encoding.
+     *
+     * @param object The object to materialise.
+     * @return The parsed GeoJsonObject, the stored String, or the given object.
+     */
+    public static Object materialise(Object object) {
+        if (object instanceof RawGeoJsonObject) {
+            final RawGeoJsonObject raw = (RawGeoJsonObject) object;
+            try {
+                return raw.getParsed();
+            } catch (IllegalStateException ex) {
+                LOGGER.error("Failed to deserialise geoJson.", ex);
+                return raw.rawJson;
+            }
+        }
+        return object;
+    }
+
+    /**
+     * Checks if the given String is a valid JSON object, with a type that is
+     * a GeoJSON Geometry type. The String is scanned without building any
+     * objects, which is much cheaper than parsing it.
+     *
+     * @param json The String to check.
+     * @return true if the String can be held by a RawGeoJsonObject.
+     */
+    public static boolean isGeometry(String json) {
+        if (!RawJsonMap.isJsonObject(json)) {
+            return false;
+        }
+        String type = null;
+        try (JsonParser parser = SimpleJsonMapper.getSimpleObjectMapper().createParser(json)) {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String name = parser.currentName();
+                if (parser.nextToken() == JsonToken.VALUE_STRING && "type".equals(name)) {
+                    type = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (parser.nextToken() != null) {
+                // Trailing content after the object.
+                return false;
+            }
+        } catch (IOException ex) {
+            LOGGER.trace("Not valid JSON.", ex);
+            return false;
+        }
+        return GEOMETRY_TYPES.contains(type);
+    }
+
+    @Override
+    public <T> T accept(GeoJsonObjectVisitor<T> geoJsonObjectVisitor) {
+        return getParsed().accept(geoJsonObjectVisitor);
+    }
+
+    @Override
+    public Crs getCrs() {
+        return getParsed().getCrs();
+    }
+
+    @Override
+    public void setCrs(Crs crs) {
+        getParsed().setCrs(crs);
+    }
+
+    @Override
+    public double[] getBbox() {
+        return getParsed().getBbox();
+    }
+
+    @Override
+    public void setBbox(double[] bbox) {
+        getParsed().setBbox(bbox);
+    }
+
+    @Override
+    public int hashCode() {
+        return getParsed().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj instanceof RawGeoJsonObject) {
+            return Objects.equals(getParsed(), ((RawGeoJsonObject) obj).getParsed());
+        }
+        return Objects.equals(getParsed(), obj);
+    }
+
+    @Override
+    public String toString() {
+        return rawJson;
+    }
+
+    /**
+     * Writes the stored GeoJSON if it has not been parsed, and the target is a
+     * JSON text generator. Otherwise the parsed GeoJsonObject is serialised,
+     * or the stored String if it can not be parsed.
+     */
+    public static class RawGeoJsonSerializer extends JsonSerializer<RawGeoJsonObject> {
+
+        @Override
+        public void serialize(RawGeoJsonObject value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            if (!value.isParsed() && gen instanceof JsonGeneratorImpl) {
+                gen.writeRawValue(value.rawJson);
+                return;
+            }
+            serializers.defaultSerializeValue(materialise(value), gen);
+        }
+
+        @Override
+        public void serializeWithType(RawGeoJsonObject value, JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+            // The stored GeoJSON, and the parsed object, already contain the type.
+            serialize(value, gen, serializers);
+        }
+
+    }
+
+}
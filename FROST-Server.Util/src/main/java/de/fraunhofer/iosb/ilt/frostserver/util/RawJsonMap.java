@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A Map that holds a JSON object in its serialised form, and only parses it
+ * when the content of the map is accessed. When serialised to a JSON text
+ * generator before it is parsed, the original JSON is written verbatim, so
+ * values that are read from the database and directly written to the client
+ * are never parsed.
+ *
+ * @author hylke
+ */
+@JsonSerialize(using = RawJsonMap.RawJsonMapSerializer.class)
+public class RawJsonMap extends AbstractMap<String, Object> {
+
+    private static final TypeReference<LinkedHashMap<String, Object>> TYPE_MAP = new TypeReference<LinkedHashMap<String, Object>>() {
+        // Empty on purpose.
+    };
+
+    private final String rawJson;
+    private Map<String, Object> parsed;
+
+    /**
+     * Create a new RawJsonMap.
+     *
+     * @param rawJson The JSON object, in serialised form. Must be a JSON
+     * object, see {@link #isJsonObject(java.lang.String)}.
+     */
+    public RawJsonMap(String rawJson) {
+        this.rawJson = rawJson;
+    }
+
+    /**
+     * Checks if the given String looks like a JSON object, that can be held by
+     * a RawJsonMap.
+     *
+     * @param json The String to check.
+     * @return true if the first non-whitespace character is a '{'.
+     */
+    public static boolean isJsonObject(String json) {
+        if (json == null) {
+            return false;
+        }
+        for (int i = 0; i < json.length(); i++) {
+            final char c = json.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == '{';
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if the content of the map has been parsed. After parsing, the map
+     * may have been modified, and the original JSON can no longer be used.
+     *
+     * @return true if the content of the map has been parsed.
+     */
+    public boolean isParsed() {
+        return parsed != null;
+    }
+
+    /**
+     * The JSON this map was created with.
+     *
+     * @return The JSON this map was created with.
+     */
+    public String getRawJson() {
+        return rawJson;
+    }
+
+    private Map<String, Object> getParsed() {
+        if (parsed == null) {
+            try {
+                parsed = SimpleJsonMapper.getSimpleObjectMapper().readValue(rawJson, TYPE_MAP);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Failed to parse stored JSON.", ex);
+            }
+            if (parsed == null) {
+                parsed = new LinkedHashMap<>();
+            }
+        }
+        return parsed;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return getParsed().entrySet();
+    }
+
+    @Override
+    public int size() {
+        return getParsed().size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return getParsed().containsKey(key);
+    }
+
+    @Override
+    public Object get(Object key) {
+        return getParsed().get(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return getParsed().put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return getParsed().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        getParsed().clear();
+    }
+
+    /**
+     * Writes the original JSON if the map has not been parsed, and the target
+     * is a JSON text generator. Otherwise the (parsed) content is serialised
+     * as a normal Map.
+     */
+    public static class RawJsonMapSerializer extends JsonSerializer<RawJsonMap> {
+
+        @Override
+        public void serialize(RawJsonMap value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            if (!value.isParsed() && gen instanceof JsonGeneratorImpl) {
+                gen.writeRawValue(value.rawJson);
+                return;
+            }
+            serializers.defaultSerializeValue(value.getParsed(), gen);
+        }
+
+        @Override
+        public boolean isEmpty(SerializerProvider provider, RawJsonMap value) {
+            return value == null || value.isEmpty();
+        }
+
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2024 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.geojson.Point;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author hylke
+ */
+class RawGeoJsonObjectTest {
+
+    private static final String RAW_POINT = "{\"type\": \"Point\", \"coordinates\": [8.5, 49.25]}";
+
+    @Test
+    void testRawValueWrittenVerbatim() throws IOException {
+        final ObjectMapper mapper = SimpleJsonMapper.getSimpleObjectMapper();
+        final Map<String, Object> container = new LinkedHashMap<>();
+        final RawGeoJsonObject rawPoint = new RawGeoJsonObject(RAW_POINT);
+        container.put("location", rawPoint);
+        assertEquals("{\"location\":" + RAW_POINT + "}", mapper.writeValueAsString(container));
+        assertFalse(rawPoint.isParsed());
+    }
+
+    @Test
+    void testParsedOnAccess() throws IOException {
+        final ObjectMapper mapper = SimpleJsonMapper.getSimpleObjectMapper();
+        final RawGeoJsonObject rawPoint = new RawGeoJsonObject(RAW_POINT);
+        assertTrue(rawPoint.getParsed() instanceof Point);
+        assertEquals(8.5, ((Point) rawPoint.getParsed()).getCoordinates().getLongitude());
+        assertEquals(rawPoint.getParsed(), RawGeoJsonObject.materialise(rawPoint));
+        rawPoint.setBbox(new double[]{8, 49, 9, 50});
+        assertEquals("{\"type\":\"Point\",\"bbox\":[8.0,49.0,9.0,50.0],\"coordinates\":[8.5,49.25]}", mapper.writeValueAsString(rawPoint));
+    }
+
+    @Test
+    void testInvalidGeoJsonFallsBackToString() {
+        final ObjectMapper mapper = SimpleJsonMapper.getSimpleObjectMapper();
+        final String invalid = "{\"type\": \"Point\", \"coordinates\": \"here\"}";
+        final RawGeoJsonObject rawInvalid = new RawGeoJsonObject(invalid);
+        assertEquals(invalid, RawGeoJsonObject.materialise(rawInvalid));
+        assertEquals("here", RawGeoJsonObject.materialise("here"));
+        // When it has to be parsed for serialisation, it becomes the stored String.
+        assertEquals(invalid, mapper.valueToTree(rawInvalid).textValue());
+    }
+
+    @Test
+    void testIsGeometry() {
+        assertTrue(RawGeoJsonObject.isGeometry(RAW_POINT));
+        assertTrue(RawGeoJsonObject.isGeometry("{\"coordinates\": [[0, 0], [1, 1]], \"type\": \"LineString\"}"));
+        assertTrue(RawGeoJsonObject.isGeometry("{\"type\":\"GeometryCollection\",\"geometries\":[{\"type\":\"Point\",\"coordinates\":[0,0]}]}"));
+        assertFalse(RawGeoJsonObject.isGeometry("{\"type\":\"Feature\",\"geometry\":" + RAW_POINT + ",\"properties\":{\"type\":\"Point\"}}"));
+        assertFalse(RawGeoJsonObject.isGeometry("{\"type\":\"FeatureCollection\",\"features\":[]}"));
+        assertFalse(RawGeoJsonObject.isGeometry("{\"coordinates\": [8.5, 49.25]}"));
+        assertFalse(RawGeoJsonObject.isGeometry("{\"type\": \"Point\", \"coordinates\": [8.5, 49.25]"));
+        assertFalse(RawGeoJsonObject.isGeometry("{\"type\": \"Point\"} {}"));
+        assertFalse(RawGeoJsonObject.isGeometry("POINT (8.5 49.25)"));
+        assertFalse(RawGeoJsonObject.isGeometry(null));
+    }
+
+}
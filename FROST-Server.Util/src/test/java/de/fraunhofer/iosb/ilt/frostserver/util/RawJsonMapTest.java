@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author hylke
+ */
+class RawJsonMapTest {
+
+    private static final String RAW_JSON = "{\"a\": 1, \"b\": [1, 2.5], \"c\": {\"d\": \"e\"}}";
+
+    @Test
+    void testRawValueWrittenVerbatim() throws IOException {
+        final ObjectMapper mapper = SimpleJsonMapper.getSimpleObjectMapper();
+        final Map<String, Object> container = new LinkedHashMap<>();
+        final RawJsonMap rawMap = new RawJsonMap(RAW_JSON);
+        container.put("properties", rawMap);
+        assertEquals("{\"properties\":" + RAW_JSON + "}", mapper.writeValueAsString(container));
+        assertFalse(rawMap.isParsed());
+    }
+
+    @Test
+    void testParsedOnAccess() throws IOException {
+        final ObjectMapper mapper = SimpleJsonMapper.getSimpleObjectMapper();
+        final RawJsonMap rawMap = new RawJsonMap(RAW_JSON);
+        assertEquals(3, rawMap.size());
+        assertTrue(rawMap.isParsed());
+        assertEquals(1, rawMap.get("a"));
+        rawMap.put("f", "g");
+        rawMap.remove("b");
+        assertEquals("{\"a\":1,\"c\":{\"d\":\"e\"},\"f\":\"g\"}", mapper.writeValueAsString(rawMap));
+    }
+
+    @Test
+    void testTreeConversion() {
+        final ObjectMapper mapper = SimpleJsonMapper.getSimpleObjectMapper();
+        final RawJsonMap rawMap = new RawJsonMap(RAW_JSON);
+        assertEquals("e", mapper.valueToTree(rawMap).get("c").get("d").asText());
+    }
+
+    @Test
+    void testIsJsonObject() {
+        assertTrue(RawJsonMap.isJsonObject(" \n{}"));
+        assertFalse(RawJsonMap.isJsonObject("[{}]"));
+        assertFalse(RawJsonMap.isJsonObject("null"));
+        assertFalse(RawJsonMap.isJsonObject(null));
+    }
+
+}
@@ -37,10 +37,20 @@ import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
 import static de.fraunhofer.iosb.ilt.frostserver.util.Constants.CHARSET_UTF8;
 import static de.fraunhofer.iosb.ilt.frostserver.util.Constants.CONTENT_TYPE;
 import static de.fraunhofer.iosb.ilt.frostserver.util.Constants.CONTENT_TYPE_APPLICATION_JSON;
+import de.fraunhofer.iosb.ilt.frostserver.util.HttpMethod;
 import de.fraunhofer.iosb.ilt.frostserver.util.StringHelper;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,8 +68,25 @@ public class BatchProcessor<C extends Content> {
 
     private final BatchFactory<C> batchFactory;
 
+    /**
+     * The executor used to run independent read requests in parallel. If
+     * null, all parts are processed sequentially.
+     */
+    private final ExecutorService executor;
+    /**
+     * The maximum time, in milliseconds, to wait for a read request running on
+     * the executor. 0 means no limit.
+     */
+    private final long partTimeout;
+
     public BatchProcessor(BatchFactory<C> batchFactory) {
+        this(batchFactory, null, 0);
+    }
+
+    public BatchProcessor(BatchFactory<C> batchFactory, ExecutorService executor, long partTimeout) {
         this.batchFactory = batchFactory;
+        this.executor = executor;
+        this.partTimeout = partTimeout;
     }
 
     public Request processHttpRequest(Service service, Request httpRequest, boolean inChangeSet) {
@@ -140,6 +167,7 @@ public class BatchProcessor<C extends Content> {
                 Request httpResponse = processHttpRequest(service, request, true);
                 if (httpResponse.isExecuteFailed()) {
                     service.rollbackTransaction();
+                    service.maybeRollbackAndClose();
                     return httpResponse;
                 } else {
                     Part newPart = batchFactory.createPart(batchRequest.getVersion(), service.getSettings(), true, "");
@@ -157,32 +185,187 @@ public class BatchProcessor<C extends Content> {
             }
         }
         service.commitTransaction();
+        // Return the connection to the pool, parallel reads after this
+        // changeset each need one.
+        service.maybeCommitAndClose();
         return response;
     }
 
+    /**
+     * Process the parts of the given batch. If an executor is configured,
+     * consecutive GET requests outside of changesets are executed in parallel,
+     * each with its own Service. Changesets and other requests wait for all
+     * preceding requests to finish, and the responses are added in the order
+     * of the requests.
+     *
+     * @param batchRequest The service request containing the batch.
+     * @param service The service to use for sequentially executed parts.
+     * @param batch The batch to process.
+     * @return The batch with the responses.
+     */
     public Batch<C> processBatch(ServiceRequest batchRequest, Service service, Batch<C> batch) {
+        Batch<C> batchResponse = batchFactory.createBatch(batchRequest.getVersion(), service.getSettings(), false);
+        processBatch(batchRequest, service, batch, batchResponse, null);
+        return batchResponse;
+    }
+
+    /**
+     * Process the parts of the given batch, like
+     * {@link #processBatch(ServiceRequest, Service, Batch)}. If a writer is
+     * given, each response part is written to it as soon as it is done,
+     * instead of being added to the response batch. The caller is responsible
+     * for writing the start and the end of the response batch.
+     *
+     * @param batchRequest The service request containing the batch.
+     * @param service The service to use for sequentially executed parts.
+     * @param batch The batch to process.
+     * @param batchResponse The batch to add the responses to, or to use for
+     * writing the responses.
+     * @param out The writer to stream the responses to, or null to add the
+     * responses to the response batch.
+     */
+    public void processBatch(ServiceRequest batchRequest, Service service, Batch<C> batch, Batch<C> batchResponse, Writer out) {
         Version batchVersion = batchRequest.getVersion();
-        Batch<C> batchResponse = batchFactory.createBatch(batchVersion, service.getSettings(), false);
+        ResponseSink sink = new ResponseSink(batchResponse, out);
+        List<PendingRead> pendingReads = new ArrayList<>();
         for (Part<C> part : batch.getParts()) {
             LOGGER.debug("Part: {}", part);
             Content content = part.getContent();
+            if (executor != null && isRead(content)) {
+                Request request = (Request) content;
+                pendingReads.add(new PendingRead(request, submitRead(batchRequest, service.getSettings(), request)));
+                continue;
+            }
+            addPendingReads(batchVersion, service.getSettings(), pendingReads, sink);
             if (content instanceof Batch) {
                 Batch<C> changset = (Batch<C>) content;
                 Content changesetResponse = processChangeset(batchRequest, service, changset);
                 Part newPart = batchFactory.createPart(batchVersion, service.getSettings(), false, "");
                 newPart.setContent(changesetResponse);
-                batchResponse.addPart(newPart);
+                sink.add(newPart);
             } else if (content instanceof Request) {
                 Request request = (Request) content;
                 Request httpResponse = processHttpRequest(service, request, false);
                 Part newPart = batchFactory.createPart(batchVersion, service.getSettings(), false, "");
                 newPart.setContent(httpResponse);
-                batchResponse.addPart(newPart);
+                sink.add(newPart);
             } else {
                 LOGGER.warn("Invalid part type: {}", content.getClass().getName());
             }
         }
-        return batchResponse;
+        addPendingReads(batchVersion, service.getSettings(), pendingReads, sink);
+    }
+
+    private static boolean isRead(Content content) {
+        return content instanceof Request && ((Request) content).getMethod() == HttpMethod.GET;
+    }
+
+    private Future<Request> submitRead(ServiceRequest batchRequest, CoreSettings coreSettings, Request request) {
+        try {
+            return executor.submit(() -> {
+                ServiceRequest.LOCAL_REQUEST.set(batchRequest);
+                try (Service partService = new Service(coreSettings)) {
+                    return processHttpRequest(partService, request, false);
+                } finally {
+                    ServiceRequest.LOCAL_REQUEST.remove();
+                }
+            });
+        } catch (RejectedExecutionException exc) {
+            // The executor is shutting down, finish the batch on this thread.
+            LOGGER.debug("Batch executor rejected part, executing directly.");
+            try (Service partService = new Service(coreSettings)) {
+                return CompletableFuture.completedFuture(processHttpRequest(partService, request, false));
+            }
+        }
+    }
+
+    private void addPendingReads(Version batchVersion, CoreSettings coreSettings, List<PendingRead> pendingReads, ResponseSink sink) {
+        for (PendingRead pendingRead : pendingReads) {
+            Part newPart = batchFactory.createPart(batchVersion, coreSettings, false, "");
+            newPart.setContent(awaitRead(batchVersion, pendingRead));
+            sink.add(newPart);
+        }
+        pendingReads.clear();
+    }
+
+    private Request awaitRead(Version batchVersion, PendingRead pendingRead) {
+        final Future<Request> future = pendingRead.future;
+        final String contentId = pendingRead.request.getContentId();
+        try {
+            if (partTimeout > 0) {
+                return future.get(partTimeout, TimeUnit.MILLISECONDS);
+            }
+            return future.get();
+        } catch (TimeoutException exc) {
+            future.cancel(true);
+            LOGGER.warn("Batch part did not finish within {} ms.", partTimeout);
+            return failedRequest(batchVersion, contentId, "Request timed out.");
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted while waiting for batch part.");
+            return failedRequest(batchVersion, contentId, "Interrupted.");
+        } catch (ExecutionException exc) {
+            LOGGER.error("Failed to execute batch part.", exc.getCause());
+            return failedRequest(batchVersion, contentId, "Failed to execute request. See logs for details.");
+        }
+    }
+
+    private Request failedRequest(Version batchVersion, String contentId, String message) {
+        Request httpResponse = batchFactory.createRequest(batchVersion, false);
+        httpResponse.setContentId(contentId);
+        httpResponse.setStatus(500, "Internal Server Error");
+        httpResponse.setExecuteFailed(true);
+        httpResponse.addData(message);
+        return httpResponse;
+    }
+
+    /**
+     * A read request that is running on the executor.
+     */
+    private static class PendingRead {
+
+        private final Request request;
+        private final Future<Request> future;
+
+        public PendingRead(Request request, Future<Request> future) {
+            this.request = request;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Receives the finished response parts, and either adds them to the
+     * response batch, or writes them out directly.
+     */
+    private class ResponseSink {
+
+        private final Batch<C> batchResponse;
+        private final Writer out;
+        private boolean writeFailed;
+
+        public ResponseSink(Batch<C> batchResponse, Writer out) {
+            this.batchResponse = batchResponse;
+            this.out = out;
+        }
+
+        public void add(Part<C> part) {
+            if (out == null) {
+                batchResponse.addPart(part);
+                return;
+            }
+            if (writeFailed) {
+                return;
+            }
+            try {
+                batchResponse.writePart(out, part);
+                out.flush();
+            } catch (IOException ex) {
+                // The client is most likely gone. Process the remaining parts
+                // anyway, like a buffered response would, but stop writing.
+                LOGGER.error("Failed to write batch part, discarding further output: {}", ex.getMessage());
+                writeFailed = true;
+            }
+        }
     }
 
 }
@@ -27,12 +27,20 @@ import de.fraunhofer.iosb.ilt.frostserver.settings.ConfigDefaults;
 import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
 import de.fraunhofer.iosb.ilt.frostserver.settings.Settings;
 import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValueBoolean;
+import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValueInt;
 import de.fraunhofer.iosb.ilt.frostserver.util.HttpMethod;
 import static de.fraunhofer.iosb.ilt.frostserver.util.HttpMethod.POST;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  *
@@ -42,12 +50,27 @@ public class PluginBatchProcessing implements PluginService, PluginRootDocument,
 
     @DefaultValueBoolean(true)
     public static final String TAG_ENABLE_BATCH_PROCESSING = "batchProcessing.enable";
+    @DefaultValueInt(0)
+    public static final String TAG_PARALLEL_THREADS = "batchProcessing.parallelThreads";
+    @DefaultValueInt(300_000)
+    public static final String TAG_PART_TIMEOUT = "batchProcessing.partTimeout";
+
+    /**
+     * The logger for this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PluginBatchProcessing.class);
 
     private static final String REQUIREMENT_BATCH_PROCESSING = "http://www.opengis.net/spec/iot_sensing/1.1/req/batch-request/batch-request";
     private static final String REQUIREMENT_JSON_BATCH_PROCESSING = "https://fraunhoferiosb.github.io/FROST-Server/extensions/JsonBatchRequest.html";
 
     private CoreSettings settings;
     private boolean enabled;
+    /**
+     * The executor for parallel read requests. Set to null when the plugin is
+     * stopped, after which batches are processed sequentially.
+     */
+    private volatile ExecutorService executor;
+    private long partTimeout;
 
     @Override
     public void init(CoreSettings settings) {
@@ -56,6 +79,15 @@ public class PluginBatchProcessing implements PluginService, PluginRootDocument,
         enabled = pluginSettings.getBoolean(TAG_ENABLE_BATCH_PROCESSING, getClass());
         if (enabled) {
             settings.getPluginManager().registerPlugin(this);
+            int threads = pluginSettings.getInt(TAG_PARALLEL_THREADS, getClass());
+            partTimeout = pluginSettings.getInt(TAG_PART_TIMEOUT, getClass());
+            if (threads > 0) {
+                ThreadFactory factory = new BasicThreadFactory.Builder()
+                        .namingPattern("BatchPart-%d")
+                        .daemon(true)
+                        .build();
+                executor = Executors.newFixedThreadPool(threads, factory);
+            }
         }
     }
 
@@ -64,6 +96,26 @@ public class PluginBatchProcessing implements PluginService, PluginRootDocument,
         return enabled;
     }
 
+    @Override
+    public void stop() {
+        final ExecutorService toStop = executor;
+        if (toStop == null) {
+            return;
+        }
+        executor = null;
+        toStop.shutdown();
+        try {
+            if (!toStop.awaitTermination(5, TimeUnit.SECONDS)) {
+                LOGGER.warn("Batch parts still running after 5 seconds, interrupting.");
+                toStop.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            LOGGER.debug("Rude wakeup?", ex);
+            toStop.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Override
     public void modifyServiceDocument(ServiceRequest request, Map<String, Object> result) {
         Map<String, Object> serverSettings = (Map<String, Object>) result.get(Service.KEY_SERVER_SETTINGS);
@@ -101,7 +153,7 @@ public class PluginBatchProcessing implements PluginService, PluginRootDocument,
 
     @Override
     public ServiceResponse execute(Service service, ServiceRequest request, ServiceResponse response) {
-        return new ServiceBatchProcessing(settings)
+        return new ServiceBatchProcessing(settings, executor, partTimeout)
                 .executeBatchOperation(service, request, response);
     }
 }
@@ -17,7 +17,6 @@
  */
 package de.fraunhofer.iosb.ilt.frostserver.plugin.batchprocessing;
 
-import de.fraunhofer.iosb.ilt.frostserver.formatter.FormatWriterGeneric;
 import de.fraunhofer.iosb.ilt.frostserver.plugin.batchprocessing.batch.Batch;
 import de.fraunhofer.iosb.ilt.frostserver.plugin.batchprocessing.batch.BatchFactory;
 import de.fraunhofer.iosb.ilt.frostserver.plugin.batchprocessing.json.JsonBatchFactory;
@@ -27,9 +26,11 @@ import de.fraunhofer.iosb.ilt.frostserver.service.ServiceRequest;
 import de.fraunhofer.iosb.ilt.frostserver.service.ServiceResponse;
 import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -61,9 +62,26 @@ public class ServiceBatchProcessing {
     }
 
     private final CoreSettings settings;
+    private final ExecutorService executor;
+    private final long partTimeout;
 
     public ServiceBatchProcessing(final CoreSettings settings) {
+        this(settings, null, 0);
+    }
+
+    /**
+     * Create a new batch service.
+     *
+     * @param settings The settings to use.
+     * @param executor The executor to run independent read requests on, or
+     * null to process all requests sequentially.
+     * @param partTimeout The maximum time, in milliseconds, to wait for a read
+     * request running on the executor, or 0 to wait without limit.
+     */
+    public ServiceBatchProcessing(final CoreSettings settings, final ExecutorService executor, final long partTimeout) {
         this.settings = settings;
+        this.executor = executor;
+        this.partTimeout = partTimeout;
     }
 
     public ServiceResponse executeBatchOperation(final Service service, final ServiceRequest request, final ServiceResponse response) {
@@ -74,15 +92,17 @@ public class ServiceBatchProcessing {
         }
         Batch<?> batch = batchFactory.createBatch(request.getVersion(), settings, false);
         batch.parse(request);
-        Batch<?> resultContent = new BatchProcessor(batchFactory).processBatch(request, service, batch);
-        return sendResponse(resultContent, response);
-    }
-
-    private ServiceResponse sendResponse(final Batch batch, final ServiceResponse response) {
+        Batch<?> batchResponse = batchFactory.createBatch(request.getVersion(), settings, false);
         response.setCode(200);
-        batch.getHeaders().entrySet().forEach(x -> response.addHeader(x.getKey(), x.getValue()));
+        batchResponse.getHeaders().entrySet().forEach(x -> response.addHeader(x.getKey(), x.getValue()));
         try {
-            new FormatWriterGeneric(batch.getContent(false)).writeFormatted(response.getWriter());
+            // Each part is sent as soon as it is done, so only one part at a
+            // time is held in memory.
+            Writer out = response.getWriter();
+            batchResponse.writeStart(out, false);
+            new BatchProcessor(batchFactory, executor, partTimeout).processBatch(request, service, batch, batchResponse, out);
+            batchResponse.writeEnd(out);
+            out.flush();
         } catch (IOException ex) {
             LOGGER.error("Failed to format", ex);
         }
@@ -3,6 +3,10 @@ package de.fraunhofer.iosb.ilt.frostserver.plugin.batchprocessing.batch;
 import de.fraunhofer.iosb.ilt.frostserver.path.Version;
 import de.fraunhofer.iosb.ilt.frostserver.service.ServiceRequest;
 import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -59,4 +63,47 @@ public abstract class Batch<C extends Content> implements Content {
         return this;
     }
 
+    /**
+     * Write everything that comes before the first part of the response
+     * content.
+     *
+     * @param out The writer to write to.
+     * @param allHeaders flag indicating all headers should be included.
+     * @throws IOException If writing fails.
+     */
+    public abstract void writeStart(Writer out, boolean allHeaders) throws IOException;
+
+    /**
+     * Write the given part of the response content. This allows a response to
+     * be sent part by part, without holding all parts in memory.
+     *
+     * @param out The writer to write to.
+     * @param part The part to write.
+     * @throws IOException If writing fails.
+     */
+    public abstract void writePart(Writer out, Part<C> part) throws IOException;
+
+    /**
+     * Write everything that comes after the last part of the response content.
+     *
+     * @param out The writer to write to.
+     * @throws IOException If writing fails.
+     */
+    public abstract void writeEnd(Writer out) throws IOException;
+
+    @Override
+    public String getContent(boolean allHeaders) {
+        StringWriter out = new StringWriter();
+        try {
+            writeStart(out, allHeaders);
+            for (Part<C> part : parts) {
+                writePart(out, part);
+            }
+            writeEnd(out);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to generate content.", ex);
+        }
+        return out.toString();
+    }
+
 }
@@ -2,9 +2,6 @@ package de.fraunhofer.iosb.ilt.frostserver.plugin.batchprocessing.json;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.util.RawValue;
 import de.fraunhofer.iosb.ilt.frostserver.path.Version;
 import de.fraunhofer.iosb.ilt.frostserver.plugin.batchprocessing.batch.Batch;
 import de.fraunhofer.iosb.ilt.frostserver.plugin.batchprocessing.batch.Content;
@@ -15,11 +12,10 @@ import static de.fraunhofer.iosb.ilt.frostserver.util.Constants.CONTENT_TYPE_APP
 import de.fraunhofer.iosb.ilt.frostserver.util.HttpMethod;
 import de.fraunhofer.iosb.ilt.frostserver.util.StringHelper;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.Writer;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +29,8 @@ public class JsonBatch extends Batch<Content> {
 
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
+    private boolean firstResponse = true;
+
     public JsonBatch(Version batchVersion, CoreSettings settings, boolean isChangeSet) {
         super(batchVersion, settings, isChangeSet);
     }
@@ -96,29 +94,30 @@ public class JsonBatch extends Batch<Content> {
     }
 
     @Override
-    public String getContent(boolean allHeaders) {
-        List<String> responses = new ArrayList<>();
-        addResponses(responses, this);
-        ObjectNode rootNode = OBJECT_MAPPER.createObjectNode();
-        ArrayNode arrayNode = OBJECT_MAPPER.createArrayNode();
-        responses.forEach(s -> arrayNode.addRawValue(new RawValue(s)));
-        rootNode.set("responses", arrayNode);
-        try {
-            return OBJECT_MAPPER.writeValueAsString(rootNode);
-        } catch (IOException ex) {
-            throw new IllegalStateException("Failed to generate JSON.", ex);
-        }
+    public void writeStart(Writer out, boolean allHeaders) throws IOException {
+        firstResponse = true;
+        out.write("{\"responses\":[");
     }
 
-    private void addResponses(List<String> responses, Batch<Content> batch) {
-        for (Part<Content> part : batch.getParts()) {
-            Content partContent = part.getContent();
-            if (partContent instanceof Batch) {
-                addResponses(responses, (Batch) partContent);
-            } else {
-                responses.add(partContent.getContent(false));
+    @Override
+    public void writePart(Writer out, Part<Content> part) throws IOException {
+        Content partContent = part.getContent();
+        if (partContent instanceof Batch) {
+            for (Part<Content> subPart : ((Batch<Content>) partContent).getParts()) {
+                writePart(out, subPart);
             }
+            return;
         }
+        if (!firstResponse) {
+            out.write(',');
+        }
+        firstResponse = false;
+        out.write(partContent.getContent(false));
+    }
+
+    @Override
+    public void writeEnd(Writer out) throws IOException {
+        out.write("]}");
     }
 
     @Override
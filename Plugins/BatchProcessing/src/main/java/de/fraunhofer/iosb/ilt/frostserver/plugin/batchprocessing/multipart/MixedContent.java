@@ -25,6 +25,7 @@ import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
 import de.fraunhofer.iosb.ilt.frostserver.util.StringHelper;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
@@ -225,25 +226,26 @@ public class MixedContent extends Batch<MultipartContent> implements MultipartCo
     }
 
     @Override
-    public String getContent(boolean allHeaders) {
+    public void writeStart(Writer out, boolean allHeaders) throws IOException {
         if (boundary == null) {
             generateBoundary();
         }
-        StringBuilder content = new StringBuilder();
         if (allHeaders) {
-            content.append("Content-Type: multipart/mixed; boundary=").append(boundary).append('\n');
-            content.append('\n');
+            out.append("Content-Type: multipart/mixed; boundary=").append(boundary).append('\n');
+            out.append('\n');
         }
+    }
 
-        for (Part<MultipartContent> part : parts) {
-            content.append(boundaryPart).append('\n');
-            MultipartContent partContent = part.getContent();
-            content.append(partContent.getContent(true));
-            content.append('\n');
-        }
+    @Override
+    public void writePart(Writer out, Part<MultipartContent> part) throws IOException {
+        out.append(boundaryPart).append('\n');
+        out.append(part.getContent().getContent(true));
+        out.append('\n');
+    }
 
-        content.append(boundaryEnd);
-        return content.toString();
+    @Override
+    public void writeEnd(Writer out) throws IOException {
+        out.append(boundaryEnd);
     }
 
     @Override
@@ -0,0 +1,359 @@
+/*
+ * Copyright (C) 2024 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.plugin.batchprocessing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fraunhofer.iosb.ilt.frostserver.path.Version;
+import de.fraunhofer.iosb.ilt.frostserver.service.PluginManager;
+import de.fraunhofer.iosb.ilt.frostserver.service.PluginService;
+import de.fraunhofer.iosb.ilt.frostserver.service.Service;
+import de.fraunhofer.iosb.ilt.frostserver.service.ServiceRequest;
+import de.fraunhofer.iosb.ilt.frostserver.service.ServiceRequestBuilder;
+import de.fraunhofer.iosb.ilt.frostserver.service.ServiceResponse;
+import de.fraunhofer.iosb.ilt.frostserver.service.ServiceResponseDefault;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import de.fraunhofer.iosb.ilt.frostserver.settings.PersistenceSettings;
+import static de.fraunhofer.iosb.ilt.frostserver.util.Constants.CONTENT_TYPE_APPLICATION_JSON;
+import de.fraunhofer.iosb.ilt.frostserver.util.DummyPersistenceManager;
+import de.fraunhofer.iosb.ilt.frostserver.util.HttpMethod;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the parallel execution of read requests in batches.
+ *
+ * @author scf
+ */
+class PluginBatchProcessingTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Requests on paths starting with this wait until the other waiting
+     * requests arrive, which only works when they run in parallel.
+     */
+    private static final String PATH_WAIT = "/wait";
+    /**
+     * Requests on paths starting with this take a connection from the pool.
+     */
+    private static final String PATH_DB = "/db";
+    /**
+     * Requests on paths starting with this take longer than the part timeout.
+     */
+    private static final String PATH_HANG = "/hang";
+    private static final int PART_TIMEOUT = 1000;
+    private static final String REQUEST_TYPE_TEST = "test";
+    private static final int WAITING_REQUESTS = 3;
+
+    private static CyclicBarrier barrier;
+
+    private CoreSettings coreSettings;
+    private PluginBatchProcessing plugin;
+
+    @BeforeEach
+    public void init() {
+        Properties properties = new Properties();
+        properties.put(CoreSettings.TAG_SERVICE_ROOT_URL, "http://localhost/");
+        properties.put(CoreSettings.TAG_TEMP_PATH, "/tmp/");
+        properties.put(CoreSettings.PREFIX_PERSISTENCE + PersistenceSettings.TAG_IMPLEMENTATION_CLASS, PooledPersistenceManager.class.getName());
+        properties.put(CoreSettings.PREFIX_PERSISTENCE + PersistenceSettings.TAG_AUTO_UPDATE_DATABASE, "false");
+        properties.put(CoreSettings.PREFIX_PLUGINS + PluginManager.TAG_PROVIDED_PLUGINS, TestService.class.getName() + "," + PluginBatchProcessing.class.getName());
+        properties.put(CoreSettings.PREFIX_PLUGINS + PluginBatchProcessing.TAG_PARALLEL_THREADS, Integer.toString(WAITING_REQUESTS));
+        properties.put(CoreSettings.PREFIX_PLUGINS + PluginBatchProcessing.TAG_PART_TIMEOUT, Integer.toString(PART_TIMEOUT));
+        coreSettings = new CoreSettings(properties);
+        PooledPersistenceManager.setPoolSize(1);
+        plugin = coreSettings.getPluginManager().getPlugin(PluginBatchProcessing.class);
+        barrier = new CyclicBarrier(WAITING_REQUESTS);
+    }
+
+    @AfterEach
+    public void stop() {
+        coreSettings.getPluginManager().stopPlugins();
+    }
+
+    @Test
+    void testParallelReads() throws IOException {
+        List<JsonNode> responses = executeBatch(
+                request("1", HttpMethod.GET, "wait/1"),
+                request("2", HttpMethod.GET, "wait/2"),
+                request("3", HttpMethod.GET, "wait/3"));
+
+        assertEquals(3, responses.size());
+        for (JsonNode response : responses) {
+            assertEquals(200, response.get("status").intValue(), "Reads did not run in parallel: " + response);
+            assertTrue(threadOf(response).startsWith("BatchPart-"), "Read not executed on the batch executor.");
+        }
+    }
+
+    @Test
+    void testResponseOrder() throws IOException {
+        final String mainThread = Thread.currentThread().getName();
+        List<JsonNode> responses = executeBatch(
+                request("1", HttpMethod.GET, "slow/1"),
+                request("2", HttpMethod.GET, "fast/2"),
+                request("3", HttpMethod.POST, "Things"),
+                request("4", HttpMethod.GET, "slow/4"),
+                request("5", HttpMethod.GET, "fast/5"));
+
+        assertEquals(5, responses.size());
+        for (int i = 0; i < responses.size(); i++) {
+            JsonNode response = responses.get(i);
+            assertEquals(Integer.toString(i + 1), response.get("id").textValue());
+            assertEquals(200, response.get("status").intValue());
+        }
+        assertEquals("/slow/1", responses.get(0).get("body").get("path").textValue());
+        assertEquals("/fast/5", responses.get(4).get("body").get("path").textValue());
+        assertEquals(mainThread, threadOf(responses.get(2)), "Non-read executed on the batch executor.");
+        // The write only starts after the reads before it are done.
+        assertEquals(2, responses.get(2).get("body").get("done").intValue());
+    }
+
+    @Test
+    void testSequentialAfterStop() throws IOException {
+        final String mainThread = Thread.currentThread().getName();
+        plugin.stop();
+        List<JsonNode> responses = executeBatch(
+                request("1", HttpMethod.GET, "fast/1"),
+                request("2", HttpMethod.GET, "fast/2"));
+
+        assertEquals(2, responses.size());
+        for (JsonNode response : responses) {
+            assertEquals(200, response.get("status").intValue());
+            assertEquals(mainThread, threadOf(response));
+        }
+    }
+
+    @Test
+    void testChangesetReleasesConnection() throws IOException {
+        // The pool has one connection. If the changeset kept it, the reads
+        // after it could not get one.
+        List<JsonNode> responses = executeBatch(
+                changesetRequest("1", "db/Things"),
+                request("2", HttpMethod.GET, "db/2"),
+                request("3", HttpMethod.GET, "db/3"));
+
+        assertEquals(3, responses.size());
+        for (JsonNode response : responses) {
+            assertEquals(200, response.get("status").intValue(), "No connection for request: " + response);
+        }
+        assertEquals(1, PooledPersistenceManager.availableConnections(), "Connection not returned to the pool.");
+    }
+
+    @Test
+    void testPartTimeout() throws IOException {
+        final long start = System.currentTimeMillis();
+        // The body of a failed part is plain text, so the response is checked
+        // as text.
+        final String result = executeBatchRaw(
+                request("1", HttpMethod.GET, "hang/1"),
+                request("2", HttpMethod.GET, "fast/2"));
+
+        assertTrue(result.contains("{\"id\":\"1\",\"status\":500"), "Hanging request not timed out: " + result);
+        assertTrue(result.contains("{\"id\":\"2\",\"status\":200"), "Fast request not answered: " + result);
+        assertTrue(System.currentTimeMillis() - start < 5 * PART_TIMEOUT, "Batch waited for the hanging request.");
+    }
+
+    private static String threadOf(JsonNode response) {
+        return response.get("body").get("thread").textValue();
+    }
+
+    private static String request(String id, HttpMethod method, String url) {
+        return "{\"id\":\"" + id + "\",\"method\":\"" + method + "\",\"url\":\"" + url + "\"}";
+    }
+
+    private static String changesetRequest(String id, String url) {
+        return "{\"id\":\"" + id + "\",\"atomicityGroup\":\"group1\",\"method\":\"" + HttpMethod.POST + "\",\"url\":\"" + url + "\"}";
+    }
+
+    private List<JsonNode> executeBatch(String... requests) throws IOException {
+        final JsonNode result = MAPPER.readTree(executeBatchRaw(requests));
+        assertFalse(result.path("responses").isMissingNode());
+        final List<JsonNode> responses = new ArrayList<>();
+        result.get("responses").forEach(responses::add);
+        return responses;
+    }
+
+    private String executeBatchRaw(String... requests) {
+        TestService.reset();
+        final String content = "{\"requests\":[" + String.join(",", requests) + "]}";
+        final ServiceRequest request = new ServiceRequestBuilder(coreSettings, Version.V_1_1)
+                .withRequestType(ServiceBatchProcessing.REQUEST_TYPE_BATCH)
+                .withUrlPath(ServiceBatchProcessing.PATH_POST_BATCH)
+                .withContentType(CONTENT_TYPE_APPLICATION_JSON)
+                .withContent(content)
+                .build();
+        final ServiceResponseDefault response = new ServiceResponseDefault();
+        try (Service service = new Service(coreSettings)) {
+            plugin.execute(service, request, response);
+        }
+        assertEquals(200, response.getCode());
+        return response.getWriter().toString();
+    }
+
+    /**
+     * Answers all requests with the path, the executing thread and the number
+     * of requests that finished before this one started.
+     */
+    public static class TestService implements PluginService {
+
+        private static final Object LOCK = new Object();
+        private static int done;
+
+        private boolean enabled;
+
+        public static void reset() {
+            synchronized (LOCK) {
+                done = 0;
+            }
+        }
+
+        @Override
+        public void init(CoreSettings settings) {
+            enabled = true;
+            settings.getPluginManager().registerPlugin(this);
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public Collection<Version> getVersions() {
+            return Arrays.asList(Version.V_1_1);
+        }
+
+        @Override
+        public boolean definesVersions() {
+            return true;
+        }
+
+        @Override
+        public Collection<String> getVersionedUrlPaths() {
+            return Arrays.asList(PluginManager.PATH_WILDCARD);
+        }
+
+        @Override
+        public Collection<String> getRequestTypes() {
+            return Arrays.asList(REQUEST_TYPE_TEST);
+        }
+
+        @Override
+        public String getRequestTypeFor(Version version, String path, HttpMethod method, String contentType) {
+            return REQUEST_TYPE_TEST;
+        }
+
+        @Override
+        public ServiceResponse execute(Service mainService, ServiceRequest request, ServiceResponse response) {
+            final String path = request.getUrlPath();
+            final int doneBefore;
+            synchronized (LOCK) {
+                doneBefore = done;
+            }
+            try {
+                if (path.startsWith(PATH_WAIT)) {
+                    barrier.await(5, TimeUnit.SECONDS);
+                } else if (path.startsWith("/slow")) {
+                    Thread.sleep(200);
+                } else if (path.startsWith(PATH_HANG)) {
+                    Thread.sleep(10L * PART_TIMEOUT);
+                } else if (path.startsWith(PATH_DB)) {
+                    // Like the real requests: take a connection, and only give
+                    // it back when not in a transaction.
+                    mainService.getPm();
+                    mainService.maybeCommitAndClose();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return response.setStatus(500, "Interrupted");
+            } catch (BrokenBarrierException | TimeoutException ex) {
+                return response.setStatus(500, "Timed out waiting for other requests");
+            } catch (IllegalStateException ex) {
+                return response.setStatus(500, ex.getMessage());
+            }
+            try {
+                response.getWriter().write("{\"path\":\"" + path
+                        + "\",\"thread\":\"" + Thread.currentThread().getName()
+                        + "\",\"done\":" + doneBefore + "}");
+            } catch (IOException ex) {
+                return response.setStatus(500, ex.getMessage());
+            }
+            synchronized (LOCK) {
+                done++;
+            }
+            return response.setCode(200);
+        }
+    }
+
+    /**
+     * A PersistenceManager that does nothing, except taking a connection from a
+     * simulated pool when it is created, and returning it when closed.
+     */
+    public static class PooledPersistenceManager extends DummyPersistenceManager {
+
+        private static Semaphore connections = new Semaphore(Integer.MAX_VALUE);
+
+        private boolean holdsConnection;
+
+        public static void setPoolSize(int size) {
+            connections = new Semaphore(size);
+        }
+
+        public static int availableConnections() {
+            return connections.availablePermits();
+        }
+
+        @Override
+        public void init(CoreSettings settings) {
+            super.init(settings);
+            try {
+                holdsConnection = connections.tryAcquire(PART_TIMEOUT / 2, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            if (!holdsConnection) {
+                throw new IllegalStateException("No connection available");
+            }
+        }
+
+        @Override
+        public void close() {
+            if (holdsConnection) {
+                holdsConnection = false;
+                connections.release();
+            }
+        }
+
+    }
+}
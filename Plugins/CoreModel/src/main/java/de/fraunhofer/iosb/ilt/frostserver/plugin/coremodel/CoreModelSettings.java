@@ -22,6 +22,7 @@ import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
 import de.fraunhofer.iosb.ilt.frostserver.settings.Settings;
 import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValue;
 import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValueBoolean;
+import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValueInt;
 
 /**
  *
@@ -33,6 +34,10 @@ public final class CoreModelSettings implements ConfigDefaults {
     public static final String TAG_ENABLE_CORE_MODEL = "coreModel.enable";
     @DefaultValueBoolean(false)
     public static final String TAG_CAN_EDIT_DS_PHENTIME = "coreModel.editableDsProperties";
+    @DefaultValue("ROW")
+    public static final String TAG_DATASTREAM_SUMMARY_MODE = "coreModel.datastreamSummaryMode";
+    @DefaultValueInt(0)
+    public static final String TAG_GENERATED_FOI_CACHE_SIZE = "coreModel.generatedFoiCacheSize";
     @DefaultValue("LONG")
     public static final String TAG_ID_TYPE_DEFAULT = "coreModel.idType";
     @DefaultValue("")
@@ -62,6 +67,8 @@ public final class CoreModelSettings implements ConfigDefaults {
     public final String idTypeSensor;
     public final String idTypeThing;
     public final boolean dsPropsEditable;
+    public final int generatedFoiCacheSize;
+    public final String datastreamSummaryMode;
 
     public CoreModelSettings(CoreSettings settings) {
         Settings pluginSettings = settings.getPluginSettings();
@@ -75,5 +82,7 @@ public final class CoreModelSettings implements ConfigDefaults {
         idTypeSensor = pluginSettings.get(TAG_ID_TYPE_SENSOR, idTypeDefault).toUpperCase();
         idTypeThing = pluginSettings.get(TAG_ID_TYPE_THING, idTypeDefault).toUpperCase();
         dsPropsEditable = pluginSettings.getBoolean(TAG_CAN_EDIT_DS_PHENTIME, CoreModelSettings.class);
+        generatedFoiCacheSize = pluginSettings.getInt(TAG_GENERATED_FOI_CACHE_SIZE, CoreModelSettings.class);
+        datastreamSummaryMode = pluginSettings.get(TAG_DATASTREAM_SUMMARY_MODE, CoreModelSettings.class).toUpperCase();
     }
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2020 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.plugin.coremodel;
+
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Id;
+import static de.fraunhofer.iosb.ilt.frostserver.util.Constants.JMX_DOMAIN;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded, least-recently-used cache of the FeatureOfInterest that was
+ * generated for the Location of the Thing of a Datastream. The cache must be
+ * cleared whenever the Location of a Thing, the Thing of a Datastream, or a
+ * generated FeatureOfInterest changes. Entries must only be added after the
+ * transaction that created the FeatureOfInterest is committed.
+ *
+ * @author hylke
+ */
+public class GeneratedFoiCache implements GeneratedFoiCacheMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GeneratedFoiCache.class.getName());
+
+    /**
+     * Log the hit and miss counts once every this many lookups.
+     */
+    private static final long LOG_INTERVAL = 10_000;
+
+    private final int maxSize;
+    private final Map<Id, Id> foiIdByDatastreamId;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxSize The maximum number of Datastreams to cache the
+     * FeatureOfInterest for. If 0 or less, nothing is cached.
+     */
+    public GeneratedFoiCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.foiIdByDatastreamId = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Id, Id> eldest) {
+                return size() > GeneratedFoiCache.this.maxSize;
+            }
+        };
+        if (isEnabled()) {
+            registerMBean();
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Get the id of the generated FeatureOfInterest for the given Datastream.
+     *
+     * @param datastreamId The id of the Datastream.
+     * @return The id of the FeatureOfInterest, or null if not cached.
+     */
+    public Id get(Id datastreamId) {
+        Id foiId;
+        synchronized (foiIdByDatastreamId) {
+            foiId = foiIdByDatastreamId.get(datastreamId);
+        }
+        final long count;
+        if (foiId == null) {
+            count = misses.incrementAndGet() + hits.get();
+        } else {
+            count = hits.incrementAndGet() + misses.get();
+        }
+        if (count % LOG_INTERVAL == 0) {
+            LOGGER.debug("Generated FeatureOfInterest cache: hits: {}, misses: {}.", hits.get(), misses.get());
+        }
+        return foiId;
+    }
+
+    public void put(Id datastreamId, Id foiId) {
+        if (!isEnabled() || datastreamId == null || foiId == null) {
+            return;
+        }
+        synchronized (foiIdByDatastreamId) {
+            foiIdByDatastreamId.put(datastreamId, foiId);
+        }
+    }
+
+    public void remove(Id datastreamId) {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (foiIdByDatastreamId) {
+            foiIdByDatastreamId.remove(datastreamId);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        synchronized (foiIdByDatastreamId) {
+            return foiIdByDatastreamId.size();
+        }
+    }
+
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public void clear() {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (foiIdByDatastreamId) {
+            foiIdByDatastreamId.clear();
+        }
+        LOGGER.debug("Generated FeatureOfInterest cache cleared. Hits: {}, misses: {}.", hits.get(), misses.get());
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public double getHitRatio() {
+        final long hitCount = hits.get();
+        final long total = hitCount + misses.get();
+        if (total == 0) {
+            return 0;
+        }
+        return (double) hitCount / total;
+    }
+
+    @Override
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_DOMAIN, "type", "GeneratedFoiCache");
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(this, objectName);
+        } catch (JMException | RuntimeException exc) {
+            LOGGER.warn("Failed to register generated FeatureOfInterest cache statistics with JMX.", exc);
+        }
+    }
+
+}
@@ -121,6 +121,7 @@ public class PluginCoreModel implements PluginRootDocument, PluginModel, Liquiba
     private static final String NAME_LIQUIBASE_HIST_LOCATION = "HistLocation";
     private static final String NAME_LIQUIBASE_FEATURE = "Feature";
 
+    private static final String LIQUIBASE_PARAM_DATASTREAM_SUMMARY_MODE = "datastreamSummaryMode";
     private static final String LIQUIBASE_CHANGELOG_FILENAME = "liquibase/plugincoremodel/tables.xml";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PluginCoreModel.class.getName());
@@ -364,7 +365,7 @@ public class PluginCoreModel implements PluginRootDocument, PluginModel, Liquiba
             tableCollection.registerTable(etHistoricalLocation, new TableImpHistLocations(dataTypeHist, dataTypeThng, this));
             tableCollection.registerTable(etLocation, new TableImpLocations(dataTypeLctn, this));
             tableCollection.registerTable(new TableImpLocationsHistLocations(dataTypeLctn, dataTypeHist));
-            tableCollection.registerTable(etObservation, new TableImpObservations(dataTypeObsr, dataTypeDstr, dataTypeFeat, this));
+            tableCollection.registerTable(etObservation, new TableImpObservations(dataTypeObsr, dataTypeDstr, dataTypeFeat, this, modelSettings.generatedFoiCacheSize));
             tableCollection.registerTable(etObservedProperty, new TableImpObsProperties(dataTypeObPr, this));
             tableCollection.registerTable(etSensor, new TableImpSensors(dataTypeSnsr, this));
             tableCollection.registerTable(etThing, new TableImpThings(dataTypeThng, this));
@@ -386,6 +387,7 @@ public class PluginCoreModel implements PluginRootDocument, PluginModel, Liquiba
         ppm.generateLiquibaseVariables(target, NAME_LIQUIBASE_OBSERVATION, modelSettings.idTypeObservation);
         ppm.generateLiquibaseVariables(target, NAME_LIQUIBASE_SENSOR, modelSettings.idTypeSensor);
         ppm.generateLiquibaseVariables(target, NAME_LIQUIBASE_THING, modelSettings.idTypeThing);
+        target.put(LIQUIBASE_PARAM_DATASTREAM_SUMMARY_MODE, modelSettings.datastreamSummaryMode);
 
         return target;
     }
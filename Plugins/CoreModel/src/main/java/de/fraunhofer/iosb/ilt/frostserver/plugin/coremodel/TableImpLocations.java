@@ -214,13 +214,15 @@ public class TableImpLocations extends StaTableAbstract<TableImpLocations> {
                 LOGGER.debug(EntityFactories.LINKED_L_TO_HL, locationId, histLocationId);
 
                 // Send a message about the creation of a new HL
-                Entity newHl = pm.get(pluginCoreModel.etHistoricalLocation, ParserUtils.idFromObject(histLocationId));
-                newHl.setQuery(modelRegistry.getMessageQueryGenerator().getQueryFor(newHl.getEntityType()));
-                pm.getEntityChangedMessages().add(
-                        new EntityChangedMessage()
-                                .setEventType(EntityChangedMessage.Type.CREATE)
-                                .setEntity(newHl)
-                );
+                if (pm.isChangeMessageNeeded(pluginCoreModel.etHistoricalLocation)) {
+                    Entity newHl = pm.get(pluginCoreModel.etHistoricalLocation, ParserUtils.idFromObject(histLocationId));
+                    newHl.setQuery(modelRegistry.getMessageQueryGenerator().getQueryFor(newHl.getEntityType()));
+                    pm.getEntityChangedMessages().add(
+                            new EntityChangedMessage()
+                                    .setEventType(EntityChangedMessage.Type.CREATE)
+                                    .setEntity(newHl)
+                    );
+                }
             }
             return;
         }
@@ -144,6 +144,12 @@ public class TableImpObservations extends StaTableAbstract<TableImpObservations>
 
     private final transient PluginCoreModel pluginCoreModel;
 
+    /**
+     * The cache of generated FeatureOfInterest ids, by Datastream id. Shared
+     * between aliases of this table.
+     */
+    private final transient GeneratedFoiCache foiCache;
+
     /**
      * Create a <code>public.OBSERVATIONS</code> table reference.
      *
@@ -153,10 +159,13 @@ public class TableImpObservations extends StaTableAbstract<TableImpObservations>
      * @param idTypeFeature The (SQL)DataType of the FEATURE_ID column used in
      * the database.
      * @param pluginCoreModel the coreModel plugin this table belongs to.
+     * @param foiCacheSize The maximum number of Datastreams to cache the
+     * generated FeatureOfInterest for.
      */
-    public TableImpObservations(DataType<?> idType, DataType<?> idTypeDs, DataType<?> idTypeFeature, PluginCoreModel pluginCoreModel) {
+    public TableImpObservations(DataType<?> idType, DataType<?> idTypeDs, DataType<?> idTypeFeature, PluginCoreModel pluginCoreModel, int foiCacheSize) {
         super(idType, DSL.name(NAME_TABLE), null);
         this.pluginCoreModel = pluginCoreModel;
+        this.foiCache = new GeneratedFoiCache(foiCacheSize);
         colDatastreamId = createField(DSL.name(NAME_COL_DATASTREAMID), idTypeDs);
         colFeatureId = createField(DSL.name(NAME_COL_FEATUREID), idTypeFeature);
     }
@@ -164,6 +173,7 @@ public class TableImpObservations extends StaTableAbstract<TableImpObservations>
     private TableImpObservations(Name alias, TableImpObservations aliased, PluginCoreModel pluginCoreModel) {
         super(aliased.getIdType(), alias, aliased);
         this.pluginCoreModel = pluginCoreModel;
+        this.foiCache = aliased.foiCache;
         colDatastreamId = createField(DSL.name(NAME_COL_DATASTREAMID), aliased.colDatastreamId.getDataType());
         colFeatureId = createField(DSL.name(NAME_COL_FEATUREID), aliased.colFeatureId.getDataType());
     }
@@ -240,6 +250,68 @@ public class TableImpObservations extends StaTableAbstract<TableImpObservations>
             }
             return true;
         });
+        registerFoiCacheInvalidation();
+    }
+
+    /**
+     * Registers hooks on the tables that influence which FeatureOfInterest is
+     * generated for a Datastream, clearing the cache when they change. The
+     * cache is cleared both directly and after the commit, so that a lookup
+     * from a concurrent transaction can not re-add an outdated entry.
+     */
+    private void registerFoiCacheInvalidation() {
+        if (!foiCache.isEnabled()) {
+            return;
+        }
+        final TableCollection tables = getTables();
+        final TableImpThings thingsTable = tables.getTableForClass(TableImpThings.class);
+        thingsTable.registerHookPreUpdate(-1, (pm, entity, entityId) -> {
+            if (entity.isSetProperty(pluginCoreModel.npLocationsThing)) {
+                clearFoiCache(pm);
+            }
+        });
+        thingsTable.registerHookPreDelete(-1, (pm, entityId) -> clearFoiCache(pm));
+        final TableImpLocations locationsTable = tables.getTableForClass(TableImpLocations.class);
+        locationsTable.registerHookPreInsert(-1, (pm, entity, insertFields) -> {
+            if (entity.isSetProperty(pluginCoreModel.npThingsLocation)) {
+                clearFoiCache(pm);
+            }
+            return true;
+        });
+        locationsTable.registerHookPreUpdate(-1, (pm, entity, entityId) -> {
+            if (entity.isSetProperty(pluginCoreModel.npThingsLocation)) {
+                clearFoiCache(pm);
+            }
+        });
+        locationsTable.registerHookPreDelete(-1, (pm, entityId) -> clearFoiCache(pm));
+        final TableImpDatastreams datastreamsTable = tables.getTableForClass(TableImpDatastreams.class);
+        datastreamsTable.registerHookPreUpdate(-1, (pm, entity, entityId) -> {
+            if (entity.isSetProperty(pluginCoreModel.npThingDatasteam)) {
+                removeFromFoiCache(pm, ParserUtils.idFromObject(entityId));
+            }
+        });
+        datastreamsTable.registerHookPreDelete(-1, (pm, entityId) -> removeFromFoiCache(pm, ParserUtils.idFromObject(entityId)));
+        final TableImpFeatures featuresTable = tables.getTableForClass(TableImpFeatures.class);
+        featuresTable.registerHookPreDelete(-1, (pm, entityId) -> clearFoiCache(pm));
+    }
+
+    private void clearFoiCache(PostgresPersistenceManager pm) {
+        foiCache.clear();
+        pm.runAfterCommit(foiCache::clear);
+    }
+
+    private void removeFromFoiCache(PostgresPersistenceManager pm, Id datastreamId) {
+        foiCache.remove(datastreamId);
+        pm.runAfterCommit(() -> foiCache.remove(datastreamId));
+    }
+
+    /**
+     * Get the cache of generated FeatureOfInterest ids, by Datastream id.
+     *
+     * @return the cache of generated FeatureOfInterest ids.
+     */
+    public GeneratedFoiCache getFoiCache() {
+        return foiCache;
     }
 
     @Override
@@ -315,7 +387,7 @@ public class TableImpObservations extends StaTableAbstract<TableImpObservations>
                 case OBJECT_ARRAY:
                     JsonValue jsonData = Utils.getFieldJsonValue(tuple, table.colResultJson);
                     dataSize.increase(jsonData.getStringLength());
-                    entity.setProperty(pluginCoreModel.epResult, jsonData.getValue());
+                    entity.setProperty(pluginCoreModel.epResult, jsonData.getLazyValue());
                     break;
 
                 case STRING:
@@ -340,6 +412,12 @@ public class TableImpObservations extends StaTableAbstract<TableImpObservations>
     }
 
     public Entity generateFeatureOfInterest(PostgresPersistenceManager pm, Id datastreamId) throws NoSuchEntityException, IncompleteEntityException {
+        if (foiCache.isEnabled()) {
+            final Id foiId = foiCache.get(datastreamId);
+            if (foiId != null) {
+                return new DefaultEntity(pluginCoreModel.etFeatureOfInterest, foiId);
+            }
+        }
         final Object dsId = datastreamId.getValue();
         final DSLContext dslContext = pm.getDslContext();
         TableCollection tableCollection = getTables();
@@ -354,7 +432,13 @@ public class TableImpObservations extends StaTableAbstract<TableImpObservations>
                 .innerJoin(qt).on(((TableField) qt.getId()).eq(qtl.getThingId()))
                 .innerJoin(qd).on(((TableField) qd.getThingId()).eq(qt.getId()))
                 .where(((TableField) qd.getId()).eq(dsId));
-        return generateFeatureOfInterest(pm, query);
+        final Entity foi = generateFeatureOfInterest(pm, query);
+        if (foi != null && foiCache.isEnabled()) {
+            // The FoI may have been created in this transaction, only cache it once that is committed.
+            final Id foiId = foi.getId();
+            pm.runAfterCommit(() -> foiCache.put(datastreamId, foiId));
+        }
+        return foi;
     }
 
     public Entity generateFeatureOfInterest(PostgresPersistenceManager pm, ResultQuery<Record3<Object, Object, String>> locationQuery) throws NoSuchEntityException, IncompleteEntityException {
@@ -171,13 +171,15 @@ public class TableImpThings extends StaTableAbstract<TableImpThings> {
                 }
 
                 // Send a message about the creation of a new HL
-                Entity newHl = pm.get(pluginCoreModel.etHistoricalLocation, ParserUtils.idFromObject(histLocationId));
-                newHl.setQuery(modelRegistry.getMessageQueryGenerator().getQueryFor(newHl.getEntityType()));
-                pm.getEntityChangedMessages().add(
-                        new EntityChangedMessage()
-                                .setEventType(EntityChangedMessage.Type.CREATE)
-                                .setEntity(newHl)
-                );
+                if (pm.isChangeMessageNeeded(pluginCoreModel.etHistoricalLocation)) {
+                    Entity newHl = pm.get(pluginCoreModel.etHistoricalLocation, ParserUtils.idFromObject(histLocationId));
+                    newHl.setQuery(modelRegistry.getMessageQueryGenerator().getQueryFor(newHl.getEntityType()));
+                    pm.getEntityChangedMessages().add(
+                            new EntityChangedMessage()
+                                    .setEventType(EntityChangedMessage.Type.CREATE)
+                                    .setEntity(newHl)
+                    );
+                }
             }
             return;
         }
@@ -0,0 +1,34 @@
+-- Copyright (C) 2016 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+-- Karlsruhe, Germany.
+--
+-- This program is free software: you can redistribute it and/or modify
+-- it under the terms of the GNU Lesser General Public License as published by
+-- the Free Software Foundation, either version 3 of the License, or
+-- (at your option) any later version.
+--
+-- This program is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+-- GNU Lesser General Public License for more details.
+--
+-- You should have received a copy of the GNU Lesser General Public License
+-- along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+-- ---------------------------------------
+-- Switches back from the statement-level Datastream update trigger to the
+-- row-level trigger defined in postgresTriggers.sql.
+-- ---------------------------------------
+-- The statement trigger is only dropped once the row trigger exists.
+do $$ begin
+    begin
+        create trigger datastreams_actualization_insert
+            after insert
+            on "OBSERVATIONS"
+            for each row
+            execute procedure datastreams_update_insert();
+    exception
+        when duplicate_object then null;
+    end;
+    drop trigger if exists datastreams_actualization_insert_stmt on "OBSERVATIONS";
+end $$;
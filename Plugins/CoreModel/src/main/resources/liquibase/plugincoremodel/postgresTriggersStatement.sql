@@ -0,0 +1,101 @@
+-- Copyright (C) 2016 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+-- Karlsruhe, Germany.
+--
+-- This program is free software: you can redistribute it and/or modify
+-- it under the terms of the GNU Lesser General Public License as published by
+-- the Free Software Foundation, either version 3 of the License, or
+-- (at your option) any later version.
+--
+-- This program is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+-- GNU Lesser General Public License for more details.
+--
+-- You should have received a copy of the GNU Lesser General Public License
+-- along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+-- ---------------------------------------
+-- Function: datastreams_update_insert_statement()
+--
+-- Statement-level alternative to datastreams_update_insert(). Instead of
+-- updating the Datastream once for each inserted Observation, all Observations
+-- inserted by one statement are aggregated, and each affected Datastream is
+-- updated once, and only if one of the fields actually changes.
+--
+-- The rows in the transition table have no reliable order, so LAST_FOI_ID is
+-- set to the FeatureOfInterest of the Observation with the latest
+-- phenomenonTime. This works for all ID types.
+--
+-- Updated fields are:
+-- PHENOMENON_TIME_START,PHENOMENON_TIME_END,RESULT_TIME_START,RESULT_TIME_END,
+-- LAST_FOI_ID and OBSERVED_AREA
+-- ---------------------------------------
+create or replace function datastreams_update_insert_statement()
+    returns trigger as
+$BODY$
+begin
+
+with "NEW_STATS" as (
+    select "DATASTREAM_ID",
+        min("PHENOMENON_TIME_START") as "PT_START",
+        max(coalesce("PHENOMENON_TIME_END", "PHENOMENON_TIME_START")) as "PT_END",
+        min("RESULT_TIME") as "RT_START",
+        max("RESULT_TIME") as "RT_END",
+        (array_agg("FEATURE_ID" order by coalesce("PHENOMENON_TIME_END", "PHENOMENON_TIME_START") desc, "PHENOMENON_TIME_START" desc))[1] as "LAST_FOI_ID"
+    from "NEW_OBSERVATIONS"
+    where "DATASTREAM_ID" is not null
+    group by "DATASTREAM_ID"
+), "NEW_AREAS" as (
+    select o."DATASTREAM_ID", ST_Collect(f."GEOM") as "GEOM"
+    from (select distinct "DATASTREAM_ID", "FEATURE_ID" from "NEW_OBSERVATIONS" where "DATASTREAM_ID" is not null) o
+    join "FEATURES" f on f."ID" = o."FEATURE_ID"
+    join "DATASTREAMS" d on d."ID" = o."DATASTREAM_ID"
+    where d."LAST_FOI_ID" is null or d."LAST_FOI_ID" != o."FEATURE_ID"
+    group by o."DATASTREAM_ID"
+)
+update "DATASTREAMS" d set
+    "PHENOMENON_TIME_START" = least(d."PHENOMENON_TIME_START", s."PT_START"),
+    "PHENOMENON_TIME_END" = greatest(d."PHENOMENON_TIME_END", s."PT_END"),
+    "RESULT_TIME_START" = least(d."RESULT_TIME_START", s."RT_START"),
+    "RESULT_TIME_END" = greatest(d."RESULT_TIME_END", s."RT_END"),
+    "LAST_FOI_ID" = s."LAST_FOI_ID",
+    "OBSERVED_AREA" = case
+        when a."GEOM" is null then d."OBSERVED_AREA"
+        else ST_ConvexHull(ST_Collect(d."OBSERVED_AREA", a."GEOM"))
+    end
+from "NEW_STATS" s
+left join "NEW_AREAS" a on a."DATASTREAM_ID" = s."DATASTREAM_ID"
+where d."ID" = s."DATASTREAM_ID"
+    and (
+        d."PHENOMENON_TIME_START" is null or s."PT_START" < d."PHENOMENON_TIME_START"
+        or d."PHENOMENON_TIME_END" is null or s."PT_END" > d."PHENOMENON_TIME_END"
+        or (s."RT_START" is not null and (d."RESULT_TIME_START" is null or s."RT_START" < d."RESULT_TIME_START"))
+        or (s."RT_END" is not null and (d."RESULT_TIME_END" is null or s."RT_END" > d."RESULT_TIME_END"))
+        or d."LAST_FOI_ID" is distinct from s."LAST_FOI_ID"
+        or a."GEOM" is not null
+    );
+
+return null;
+end
+$BODY$
+    language plpgsql volatile
+    cost 100;
+
+
+-- The row trigger is only dropped once the statement trigger exists. Any other
+-- failure to create the statement trigger aborts the script, leaving the row
+-- trigger in place.
+do $$ begin
+    begin
+        create trigger datastreams_actualization_insert_stmt
+            after insert
+            on "OBSERVATIONS"
+            referencing new table as "NEW_OBSERVATIONS"
+            for each statement
+            execute procedure datastreams_update_insert_statement();
+    exception
+        when duplicate_object then null;
+    end;
+    drop trigger if exists datastreams_actualization_insert on "OBSERVATIONS";
+end $$;
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2021 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.plugin.coremodel;
+
+import de.fraunhofer.iosb.ilt.frostserver.messagebus.InternalMessageBus;
+import de.fraunhofer.iosb.ilt.frostserver.model.DefaultEntity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.IdLong;
+import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.PostgresPersistenceManager;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import de.fraunhofer.iosb.ilt.frostserver.settings.PersistenceSettings;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record1;
+import org.jooq.Result;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockResult;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for mapping the ids returned by a multi-row insert to the inserted
+ * entities. The inserts run against a mock connection, that returns the ids
+ * in a given order.
+ *
+ * @author scf
+ */
+class BatchInsertTest {
+
+    private static CoreSettings coreSettings;
+    private static PluginCoreModel pluginCoreModel;
+
+    private final List<String> inserts = new ArrayList<>();
+    private List<Long> returnedIds;
+
+    @BeforeAll
+    public static void beforeClass() {
+        Properties properties = new Properties();
+        properties.put(CoreSettings.TAG_SERVICE_ROOT_URL, "http://localhost/");
+        properties.put(CoreSettings.TAG_TEMP_PATH, "/tmp/");
+        properties.put(CoreSettings.PREFIX_PERSISTENCE + PersistenceSettings.TAG_IMPLEMENTATION_CLASS, PostgresPersistenceManager.class.getName());
+        coreSettings = new CoreSettings(properties);
+        coreSettings.setMessageBus(new InternalMessageBus());
+        pluginCoreModel = coreSettings.getPluginManager().getPlugin(PluginCoreModel.class);
+        InsertingPersistenceManager initPm = new InsertingPersistenceManager(null, false);
+        initPm.init(coreSettings);
+        coreSettings.getPluginManager().initPlugins(initPm);
+        initPm.getTableCollection().init(initPm.getEntityFactories());
+    }
+
+    @BeforeEach
+    public void setUp() {
+        inserts.clear();
+        returnedIds = null;
+    }
+
+    /**
+     * Creates a DSLContext on a mock connection that returns the returnedIds
+     * for each insert, in the order of that list.
+     */
+    private DSLContext createDslContext() {
+        final DSLContext create = DSL.using(SQLDialect.POSTGRES);
+        final Field<Long> idField = DSL.field(DSL.name("ID"), SQLDataType.BIGINT);
+        final MockConnection mockConnection = new MockConnection(ctx -> {
+            if (!ctx.sql().toLowerCase().startsWith("insert")) {
+                return new MockResult[]{new MockResult(0)};
+            }
+            inserts.add(ctx.sql());
+            final Result<Record1<Long>> result = create.newResult(idField);
+            for (Long id : returnedIds) {
+                result.add(create.newRecord(idField).values(id));
+            }
+            return new MockResult[]{new MockResult(returnedIds.size(), result)};
+        });
+        return DSL.using(mockConnection, SQLDialect.POSTGRES);
+    }
+
+    private InsertingPersistenceManager createPm(boolean clientSuppliedIds) {
+        InsertingPersistenceManager pm = new InsertingPersistenceManager(createDslContext(), clientSuppliedIds);
+        pm.init(coreSettings);
+        return pm;
+    }
+
+    private List<Entity> createThings(Long... ids) {
+        final List<Entity> things = new ArrayList<>();
+        for (Long id : ids) {
+            final Entity thing = new DefaultEntity(pluginCoreModel.etThing)
+                    .setProperty(pluginCoreModel.epName, "Thing " + things.size())
+                    .setProperty(pluginCoreModel.epDescription, "A Thing");
+            if (id != null) {
+                thing.setId(new IdLong(id));
+            }
+            things.add(thing);
+        }
+        return things;
+    }
+
+    private static void assertIds(List<Entity> entities, long... expected) {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(new IdLong(expected[i]), entities.get(i).getId(), "Wrong id for row " + i);
+        }
+    }
+
+    @Test
+    void testClientIdsReturnedOutOfOrder() {
+        final InsertingPersistenceManager pm = createPm(true);
+        final List<Entity> things = createThings(50L, 3L, 27L);
+        returnedIds = Arrays.asList(27L, 50L, 3L);
+        final List<Exception> result = pm.insertAll(things);
+        assertEquals(1, inserts.size(), "All rows must be inserted with one statement.");
+        for (Exception exception : result) {
+            assertNull(exception);
+        }
+        assertIds(things, 50, 3, 27);
+    }
+
+    @Test
+    void testClientIdNotReturned() {
+        final InsertingPersistenceManager pm = createPm(true);
+        final List<Entity> things = createThings(50L, 3L, 27L);
+        returnedIds = Arrays.asList(50L, 3L, 99L);
+        assertThrows(IllegalStateException.class, () -> pm.insertAll(things));
+    }
+
+    @Test
+    void testGeneratedIdsByPosition() {
+        final InsertingPersistenceManager pm = createPm(false);
+        final List<Entity> things = createThings(null, null, null);
+        returnedIds = Arrays.asList(7L, 8L, 9L);
+        final List<Exception> result = pm.insertAll(things);
+        assertEquals(1, inserts.size(), "All rows must be inserted with one statement.");
+        for (Exception exception : result) {
+            assertNull(exception);
+        }
+        assertIds(things, 7, 8, 9);
+    }
+
+    /**
+     * A PersistenceManager that uses the given DSLContext instead of a
+     * database connection.
+     */
+    private static class InsertingPersistenceManager extends PostgresPersistenceManager {
+
+        private final DSLContext dslContext;
+        private final boolean clientSuppliedIds;
+
+        public InsertingPersistenceManager(DSLContext dslContext, boolean clientSuppliedIds) {
+            this.dslContext = dslContext == null ? DSL.using(SQLDialect.POSTGRES) : dslContext;
+            this.clientSuppliedIds = clientSuppliedIds;
+        }
+
+        @Override
+        public DSLContext getDslContext() {
+            return dslContext;
+        }
+
+        @Override
+        public boolean useClientSuppliedId(Entity entity) {
+            return clientSuppliedIds;
+        }
+
+    }
+}
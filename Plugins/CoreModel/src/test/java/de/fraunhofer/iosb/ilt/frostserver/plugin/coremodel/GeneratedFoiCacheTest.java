@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.plugin.coremodel;
+
+import de.fraunhofer.iosb.ilt.frostserver.messagebus.InternalMessageBus;
+import de.fraunhofer.iosb.ilt.frostserver.model.DefaultEntity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.EntitySetImpl;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.IdLong;
+import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.PostgresPersistenceManager;
+import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.tables.TableCollection;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import de.fraunhofer.iosb.ilt.frostserver.settings.PersistenceSettings;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.exception.DetachedException;
+import org.jooq.impl.DSL;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the cache of generated FeaturesOfInterest, and the hooks that
+ * invalidate it. The hooks are triggered through the tables, using a
+ * PersistenceManager without a database connection, so the actual database
+ * statements fail after the hooks have run.
+ *
+ * @author hylke
+ */
+class GeneratedFoiCacheTest {
+
+    private static final IdLong DS_1 = new IdLong(1);
+    private static final IdLong DS_2 = new IdLong(2);
+    private static final IdLong FOI_1 = new IdLong(11);
+    private static final IdLong FOI_2 = new IdLong(12);
+
+    private static CoreSettings coreSettings;
+    private static PluginCoreModel pluginCoreModel;
+    private static TableCollection tables;
+    private static GeneratedFoiCache foiCache;
+
+    private DetachedPersistenceManager pm;
+
+    @BeforeAll
+    public static void beforeClass() {
+        Properties properties = new Properties();
+        properties.put(CoreSettings.TAG_SERVICE_ROOT_URL, "http://localhost/");
+        properties.put(CoreSettings.TAG_TEMP_PATH, "/tmp/");
+        properties.put(CoreSettings.PREFIX_PERSISTENCE + PersistenceSettings.TAG_IMPLEMENTATION_CLASS, PostgresPersistenceManager.class.getName());
+        properties.put(CoreSettings.PREFIX_PLUGINS + CoreModelSettings.TAG_GENERATED_FOI_CACHE_SIZE, "2");
+        coreSettings = new CoreSettings(properties);
+        coreSettings.setMessageBus(new InternalMessageBus());
+        pluginCoreModel = coreSettings.getPluginManager().getPlugin(PluginCoreModel.class);
+        DetachedPersistenceManager initPm = new DetachedPersistenceManager();
+        initPm.init(coreSettings);
+        coreSettings.getPluginManager().initPlugins(initPm);
+        tables = initPm.getTableCollection();
+        tables.init(initPm.getEntityFactories());
+        foiCache = tables.getTableForClass(TableImpObservations.class).getFoiCache();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        pm = new DetachedPersistenceManager();
+        pm.init(coreSettings);
+        foiCache.clear();
+        foiCache.resetStatistics();
+        foiCache.put(DS_1, FOI_1);
+        foiCache.put(DS_2, FOI_2);
+    }
+
+    @Test
+    void testHitsAndMisses() {
+        assertEquals(FOI_1, foiCache.get(DS_1));
+        assertEquals(FOI_2, foiCache.get(DS_2));
+        assertNull(foiCache.get(new IdLong(3)));
+        assertEquals(2, foiCache.getHits());
+        assertEquals(1, foiCache.getMisses());
+        assertEquals(2.0 / 3, foiCache.getHitRatio(), 0.0001);
+        foiCache.resetStatistics();
+        assertEquals(0, foiCache.getHits());
+        assertEquals(0, foiCache.getMisses());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEviction() {
+        foiCache.get(DS_1);
+        foiCache.put(new IdLong(3), new IdLong(13));
+        assertEquals(2, foiCache.getSize());
+        assertEquals(FOI_1, foiCache.get(DS_1));
+        assertNull(foiCache.get(DS_2));
+    }
+
+    @Test
+    void testDisabled() {
+        GeneratedFoiCache disabled = new GeneratedFoiCache(0);
+        assertFalse(disabled.isEnabled());
+        disabled.put(DS_1, FOI_1);
+        assertNull(disabled.get(DS_1));
+        assertEquals(0, disabled.getSize());
+    }
+
+    @Test
+    void testMBean() throws JMException {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName("de.fraunhofer.iosb.ilt.frostserver", "type", "GeneratedFoiCache");
+        assertTrue(mBeanServer.isRegistered(objectName));
+        assertEquals(2, mBeanServer.getAttribute(objectName, "MaxSize"));
+    }
+
+    @Test
+    void testThingUpdate() throws Exception {
+        Entity thing = new DefaultEntity(pluginCoreModel.etThing, DS_1)
+                .setProperty(pluginCoreModel.epName, "Thing");
+        ignoreDatabase(() -> tables.getTableForClass(TableImpThings.class).updateInDatabase(pm, thing, 1L));
+        assertEquals(2, foiCache.getSize(), "Changing the name of a Thing should not clear the cache.");
+
+        Entity thingLocations = new DefaultEntity(pluginCoreModel.etThing, DS_1)
+                .setProperty(pluginCoreModel.npLocationsThing, new EntitySetImpl(pluginCoreModel.etLocation));
+        ignoreDatabase(() -> tables.getTableForClass(TableImpThings.class).updateInDatabase(pm, thingLocations, 1L));
+        assertEquals(0, foiCache.getSize(), "Changing the Locations of a Thing should clear the cache.");
+    }
+
+    @Test
+    void testThingDelete() throws Exception {
+        ignoreDatabase(() -> tables.getTableForClass(TableImpThings.class).delete(pm, 1L));
+        assertEquals(0, foiCache.getSize());
+    }
+
+    @Test
+    void testLocationInsert() throws Exception {
+        Entity location = new DefaultEntity(pluginCoreModel.etLocation)
+                .setProperty(pluginCoreModel.epName, "Location");
+        ignoreDatabase(() -> tables.getTableForClass(TableImpLocations.class).insertIntoDatabase(pm, location));
+        assertEquals(2, foiCache.getSize(), "A Location without Things should not clear the cache.");
+
+        Entity thingLocation = new DefaultEntity(pluginCoreModel.etLocation)
+                .setProperty(pluginCoreModel.npThingsLocation, new EntitySetImpl(pluginCoreModel.etThing));
+        ignoreDatabase(() -> tables.getTableForClass(TableImpLocations.class).insertIntoDatabase(pm, thingLocation));
+        assertEquals(0, foiCache.getSize(), "A Location for a Thing should clear the cache.");
+    }
+
+    @Test
+    void testLocationUpdateAndDelete() throws Exception {
+        Entity location = new DefaultEntity(pluginCoreModel.etLocation, new IdLong(5))
+                .setProperty(pluginCoreModel.npThingsLocation, new EntitySetImpl(pluginCoreModel.etThing));
+        ignoreDatabase(() -> tables.getTableForClass(TableImpLocations.class).updateInDatabase(pm, location, 5L));
+        assertEquals(0, foiCache.getSize());
+
+        foiCache.put(DS_1, FOI_1);
+        ignoreDatabase(() -> tables.getTableForClass(TableImpLocations.class).delete(pm, 5L));
+        assertEquals(0, foiCache.getSize());
+    }
+
+    @Test
+    void testDatastreamUpdateAndDelete() throws Exception {
+        Entity datastream = new DefaultEntity(pluginCoreModel.etDatastream, DS_1)
+                .setProperty(pluginCoreModel.npThingDatasteam, new DefaultEntity(pluginCoreModel.etThing, new IdLong(7)));
+        ignoreDatabase(() -> tables.getTableForClass(TableImpDatastreams.class).updateInDatabase(pm, datastream, 1L));
+        assertNull(foiCache.get(DS_1), "Changing the Thing of a Datastream should remove it from the cache.");
+        assertEquals(FOI_2, foiCache.get(DS_2), "Other Datastreams should stay cached.");
+
+        ignoreDatabase(() -> tables.getTableForClass(TableImpDatastreams.class).delete(pm, 2L));
+        assertEquals(0, foiCache.getSize());
+    }
+
+    @Test
+    void testFeatureDelete() throws Exception {
+        ignoreDatabase(() -> tables.getTableForClass(TableImpFeatures.class).delete(pm, 11L));
+        assertEquals(0, foiCache.getSize());
+    }
+
+    @Test
+    void testClearedAgainAfterCommit() throws Exception {
+        ignoreDatabase(() -> tables.getTableForClass(TableImpFeatures.class).delete(pm, 11L));
+        assertEquals(0, foiCache.getSize());
+        // A concurrent request caches the FeatureOfInterest before the delete is committed.
+        foiCache.put(DS_1, FOI_1);
+        pm.commit();
+        assertEquals(0, foiCache.getSize());
+    }
+
+    @Test
+    void testNotClearedAfterRollback() throws Exception {
+        ignoreDatabase(() -> tables.getTableForClass(TableImpFeatures.class).delete(pm, 11L));
+        foiCache.put(DS_1, FOI_1);
+        pm.rollback();
+        pm.commit();
+        assertEquals(1, foiCache.getSize());
+    }
+
+    private static void ignoreDatabase(DatabaseAction action) throws Exception {
+        try {
+            action.run();
+        } catch (DetachedException exc) {
+            // Expected, there is no database.
+        }
+    }
+
+    private static interface DatabaseAction {
+
+        public void run() throws Exception;
+    }
+
+    /**
+     * A PersistenceManager that has no database connection.
+     */
+    private static class DetachedPersistenceManager extends PostgresPersistenceManager {
+
+        private final DSLContext dslContext = DSL.using(SQLDialect.POSTGRES);
+
+        @Override
+        public DSLContext getDslContext() {
+            return dslContext;
+        }
+
+        @Override
+        public boolean useClientSuppliedId(Entity entity) {
+            return false;
+        }
+
+    }
+}
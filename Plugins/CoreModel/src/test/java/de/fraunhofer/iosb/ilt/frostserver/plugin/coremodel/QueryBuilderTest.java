@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2021 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.plugin.coremodel;
+
+import de.fraunhofer.iosb.ilt.frostserver.messagebus.InternalMessageBus;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Id;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.IdLong;
+import de.fraunhofer.iosb.ilt.frostserver.path.PathElement;
+import de.fraunhofer.iosb.ilt.frostserver.path.PathElementEntity;
+import de.fraunhofer.iosb.ilt.frostserver.path.PathElementEntitySet;
+import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
+import de.fraunhofer.iosb.ilt.frostserver.path.Version;
+import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.PostgresPersistenceManager;
+import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.QueryBuilder;
+import de.fraunhofer.iosb.ilt.frostserver.query.OrderBy;
+import de.fraunhofer.iosb.ilt.frostserver.query.PropertyPlaceholder;
+import de.fraunhofer.iosb.ilt.frostserver.query.Query;
+import de.fraunhofer.iosb.ilt.frostserver.query.expression.Path;
+import de.fraunhofer.iosb.ilt.frostserver.query.expression.constant.StringConstant;
+import de.fraunhofer.iosb.ilt.frostserver.query.expression.function.comparison.Equal;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import de.fraunhofer.iosb.ilt.frostserver.settings.PersistenceSettings;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.conf.ParamType;
+import org.jooq.impl.DSL;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the queries the QueryBuilder generates to load $expand in batches.
+ * The queries are generated using a PersistenceManager without a database
+ * connection, and checked in their SQL form.
+ *
+ * @author scf
+ */
+class QueryBuilderTest {
+
+    private static final List<Id> PARENT_IDS = Arrays.asList(new IdLong(1), new IdLong(2), new IdLong(3));
+
+    private static CoreSettings coreSettings;
+    private static PluginCoreModel pluginCoreModel;
+
+    private DetachedPersistenceManager pm;
+
+    @BeforeAll
+    public static void beforeClass() {
+        Properties properties = new Properties();
+        properties.put(CoreSettings.TAG_SERVICE_ROOT_URL, "http://localhost/");
+        properties.put(CoreSettings.TAG_TEMP_PATH, "/tmp/");
+        properties.put(CoreSettings.PREFIX_PERSISTENCE + PersistenceSettings.TAG_IMPLEMENTATION_CLASS, PostgresPersistenceManager.class.getName());
+        properties.put(CoreSettings.PREFIX_PERSISTENCE + PersistenceSettings.TAG_BATCH_EXPAND, "true");
+        coreSettings = new CoreSettings(properties);
+        coreSettings.setMessageBus(new InternalMessageBus());
+        pluginCoreModel = coreSettings.getPluginManager().getPlugin(PluginCoreModel.class);
+        DetachedPersistenceManager initPm = new DetachedPersistenceManager();
+        initPm.init(coreSettings);
+        coreSettings.getPluginManager().initPlugins(initPm);
+        initPm.getTableCollection().init(initPm.getEntityFactories());
+    }
+
+    @BeforeEach
+    public void setUp() {
+        pm = new DetachedPersistenceManager();
+        pm.init(coreSettings);
+    }
+
+    /**
+     * Creates the path Things/Things()/Datastreams, as used for loading the
+     * Datastreams of multiple Things.
+     */
+    private ResourcePath createExpandPath() {
+        PathElement parentCollection = new PathElementEntitySet(pluginCoreModel.etThing);
+        PathElement parent = new PathElementEntity(null, pluginCoreModel.etThing, parentCollection);
+        ResourcePath path = new ResourcePath("http://localhost", Version.V_1_1, null);
+        path.addPathElement(parentCollection, false, false);
+        path.addPathElement(parent, false, true);
+        path.addPathElement(new PathElementEntitySet(pluginCoreModel.npDatastreamsThing, parent), true, false);
+        return path;
+    }
+
+    private Query createQuery() {
+        return new Query(coreSettings.getModelRegistry(), coreSettings.getQueryDefaults(), createExpandPath());
+    }
+
+    private String buildExpandIds(Query query, boolean withCount) {
+        query.validate(pluginCoreModel.etDatastream);
+        return new QueryBuilder(pm, coreSettings, pm.getTableCollection())
+                .forPath(createExpandPath())
+                .usingQuery(query)
+                .buildSelectExpandIds(PARENT_IDS, withCount)
+                .getSQL(ParamType.INLINED);
+    }
+
+    private String buildTypeAndIds(List<Id> ids) {
+        final Query query = createQuery()
+                .addSelect(pluginCoreModel.epName)
+                .validate(pluginCoreModel.etDatastream);
+        return new QueryBuilder(pm, coreSettings, pm.getTableCollection())
+                .forTypeAndIds(pluginCoreModel.etDatastream, ids)
+                .usingQuery(query)
+                .buildSelect()
+                .getSQL(ParamType.INLINED);
+    }
+
+    @Test
+    void testExpandIdsTopAndSkipPerParent() {
+        final String sql = buildExpandIds(createQuery().setTop(2).setSkip(3), false);
+        assertTrue(sql.contains("row_number() over (partition by \"expInner\".\"expParentId\""), sql);
+        // Rows 4 and 5 are the page, row 6 is used to detect a nextLink.
+        assertTrue(sql.contains("\"expRanked\".\"expRowNr\" between 4 and 6"), sql);
+        assertTrue(sql.contains("in (1, 2, 3)"), sql);
+        assertFalse(sql.contains(" fetch next "), "The page must be limited per parent, not for the whole query: " + sql);
+        assertFalse(sql.contains("count(*) over"), sql);
+    }
+
+    @Test
+    void testExpandIdsDefaultTop() {
+        final int defaultTop = coreSettings.getQueryDefaults().getTopDefault();
+        final String sql = buildExpandIds(createQuery(), false);
+        assertTrue(sql.contains("\"expRanked\".\"expRowNr\" between 1 and " + (defaultTop + 1)), sql);
+    }
+
+    @Test
+    void testExpandIdsWithCount() {
+        final String sql = buildExpandIds(createQuery().setTop(2).setCount(true), true);
+        assertTrue(sql.contains("count(*) over (partition by \"expInner\".\"expParentId\")"), sql);
+        assertTrue(sql.contains("\"expRanked\".\"expRowNr\" between 1 and 3"), sql);
+    }
+
+    @Test
+    void testExpandIdsOrderedAndFiltered() {
+        final Query query = createQuery()
+                .setTop(1)
+                .addOrderBy(new OrderBy(new Path(new PropertyPlaceholder("name")), OrderBy.OrderType.DESCENDING))
+                .setFilter(new Equal(new Path(new PropertyPlaceholder("name")), new StringConstant("ds")));
+        final String sql = buildExpandIds(query, false);
+        assertTrue(sql.contains("order by \"expInner\".\"expSort0\" desc"), sql);
+        assertTrue(sql.contains("'ds'"), sql);
+    }
+
+    @Test
+    void testTypeAndIds() {
+        final String sql = buildTypeAndIds(Arrays.asList(new IdLong(7), new IdLong(8)));
+        assertTrue(sql.contains("in (7, 8)"), sql);
+        assertTrue(sql.contains("fetch next 2 rows only"), sql);
+    }
+
+    @Test
+    void testTypeAndIdsEmpty() {
+        final String sql = buildTypeAndIds(Collections.emptyList());
+        assertTrue(sql.contains("1 = 0") || sql.contains("false"), "An empty id list must not match any rows: " + sql);
+    }
+
+    /**
+     * A PersistenceManager that has no database connection.
+     */
+    private static class DetachedPersistenceManager extends PostgresPersistenceManager {
+
+        private final DSLContext dslContext = DSL.using(SQLDialect.POSTGRES);
+
+        @Override
+        public DSLContext getDslContext() {
+            return dslContext;
+        }
+
+        @Override
+        public boolean useClientSuppliedId(Entity entity) {
+            return false;
+        }
+
+    }
+}
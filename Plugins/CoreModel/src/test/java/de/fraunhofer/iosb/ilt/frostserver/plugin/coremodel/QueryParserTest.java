@@ -27,6 +27,7 @@ import de.fraunhofer.iosb.ilt.frostserver.property.EntityPropertyCustomSelect;
 import de.fraunhofer.iosb.ilt.frostserver.property.NavigationPropertyCustom;
 import de.fraunhofer.iosb.ilt.frostserver.query.Expand;
 import de.fraunhofer.iosb.ilt.frostserver.query.OrderBy;
+import de.fraunhofer.iosb.ilt.frostserver.query.PropertyPlaceholder;
 import de.fraunhofer.iosb.ilt.frostserver.query.Query;
 import de.fraunhofer.iosb.ilt.frostserver.query.QueryDefaults;
 import de.fraunhofer.iosb.ilt.frostserver.query.expression.Path;
@@ -115,6 +116,32 @@ class QueryParserTest {
         assertEquals(10, result.getSkip(11));
     }
 
+    @Test
+    void testSkipMax() {
+        QueryDefaults limitedDefaults = new QueryDefaults(false, false, 100, 1000).setSkipMax(100);
+
+        Query result = new Query(modelRegistry, limitedDefaults, path).setSkip(100);
+        result.validate(pluginCoreModel.etThing);
+        assertTrue(result.isPkOrder());
+        assertEquals(1, result.getOrderBy().size());
+
+        Query tooDeep = new Query(modelRegistry, limitedDefaults, path).setSkip(101);
+        assertThrows(IllegalArgumentException.class, () -> tooDeep.validate(pluginCoreModel.etThing));
+
+        Query withSkipFilter = new Query(modelRegistry, limitedDefaults, path).setSkip(101);
+        withSkipFilter.setSkipFilter(new GreaterThan(new Path(new PropertyPlaceholder("id")), new IntegerConstant(5)));
+        withSkipFilter.validate(pluginCoreModel.etThing);
+
+        Query nonNullOrder = new Query(modelRegistry, limitedDefaults, path).setSkip(101);
+        nonNullOrder.addOrderBy(new OrderBy(new Path(new PropertyPlaceholder("name")), OrderBy.OrderType.ASCENDING));
+        assertThrows(IllegalArgumentException.class, () -> nonNullOrder.validate(pluginCoreModel.etThing));
+
+        // Values of properties can be null, so nextLinks may use $skip.
+        Query nullableOrder = new Query(modelRegistry, limitedDefaults, path).setSkip(101);
+        nullableOrder.addOrderBy(new OrderBy(new Path(new PropertyPlaceholder("properties")), OrderBy.OrderType.ASCENDING));
+        nullableOrder.validate(pluginCoreModel.etThing);
+    }
+
     @Test
     void testCount() {
         Query expResult = new Query(modelRegistry, coreSettings.getQueryDefaults(), path);
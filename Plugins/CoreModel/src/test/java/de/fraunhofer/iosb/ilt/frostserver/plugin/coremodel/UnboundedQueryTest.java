@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2021 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.plugin.coremodel;
+
+import de.fraunhofer.iosb.ilt.frostserver.messagebus.InternalMessageBus;
+import de.fraunhofer.iosb.ilt.frostserver.model.EntityType;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.EntitySet;
+import de.fraunhofer.iosb.ilt.frostserver.path.PathElementEntitySet;
+import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
+import de.fraunhofer.iosb.ilt.frostserver.path.Version;
+import de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.PostgresPersistenceManager;
+import de.fraunhofer.iosb.ilt.frostserver.query.Query;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import de.fraunhofer.iosb.ilt.frostserver.settings.PersistenceSettings;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.jooq.DSLContext;
+import org.jooq.ExecuteContext;
+import org.jooq.ExecuteListener;
+import org.jooq.Field;
+import org.jooq.Record1;
+import org.jooq.Result;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.SQLDataType;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockResult;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the queries of unbounded requests, like the CSV export. The
+ * queries are run against a mock connection, that records the executed SQL and
+ * the fetch size of the statements.
+ *
+ * @author scf
+ */
+class UnboundedQueryTest {
+
+    private static final int EXPORT_FETCH_SIZE = 7;
+    private static final int ROW_COUNT = 5;
+    private static final String READ_ONLY = "SET TRANSACTION READ ONLY";
+
+    private static CoreSettings coreSettings;
+    private static PluginCoreModel pluginCoreModel;
+
+    private final List<String> executed = new ArrayList<>();
+    private final List<Integer> fetchSizes = new ArrayList<>();
+    private RecordingPersistenceManager pm;
+
+    @BeforeAll
+    public static void beforeClass() {
+        Properties properties = new Properties();
+        properties.put(CoreSettings.TAG_SERVICE_ROOT_URL, "http://localhost/");
+        properties.put(CoreSettings.TAG_TEMP_PATH, "/tmp/");
+        properties.put(CoreSettings.PREFIX_PERSISTENCE + PersistenceSettings.TAG_IMPLEMENTATION_CLASS, PostgresPersistenceManager.class.getName());
+        properties.put(CoreSettings.PREFIX_PERSISTENCE + PersistenceSettings.TAG_EXPORT_FETCH_SIZE, Integer.toString(EXPORT_FETCH_SIZE));
+        coreSettings = new CoreSettings(properties);
+        coreSettings.setMessageBus(new InternalMessageBus());
+        pluginCoreModel = coreSettings.getPluginManager().getPlugin(PluginCoreModel.class);
+        RecordingPersistenceManager initPm = new RecordingPersistenceManager(null);
+        initPm.init(coreSettings);
+        coreSettings.getPluginManager().initPlugins(initPm);
+        initPm.getTableCollection().init(initPm.getEntityFactories());
+    }
+
+    @BeforeEach
+    public void setUp() {
+        executed.clear();
+        fetchSizes.clear();
+        pm = new RecordingPersistenceManager(createDslContext());
+        pm.init(coreSettings);
+    }
+
+    /**
+     * Creates a DSLContext on a mock connection that returns ROW_COUNT ids for
+     * each select, and records the SQL and fetch size of each statement.
+     */
+    private DSLContext createDslContext() {
+        final DSLContext create = DSL.using(SQLDialect.POSTGRES);
+        final Field<Long> idField = DSL.field(DSL.name("e0", "ID"), SQLDataType.BIGINT);
+        final MockConnection mockConnection = new MockConnection(ctx -> {
+            if (!ctx.sql().toLowerCase().startsWith("select")) {
+                return new MockResult[]{new MockResult(0)};
+            }
+            final Result<Record1<Long>> result = create.newResult(idField);
+            for (long id = 1; id <= ROW_COUNT; id++) {
+                result.add(create.newRecord(idField).values(id));
+            }
+            return new MockResult[]{new MockResult(ROW_COUNT, result)};
+        });
+        final ExecuteListener recorder = new ExecuteListener() {
+            @Override
+            public void executeStart(ExecuteContext ctx) {
+                executed.add(ctx.sql());
+                try {
+                    fetchSizes.add(ctx.statement().getFetchSize());
+                } catch (SQLException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        };
+        return DSL.using(new DefaultConfiguration()
+                .set(recordFetchSize(mockConnection))
+                .set(SQLDialect.POSTGRES)
+                .set(recorder));
+    }
+
+    /**
+     * Wraps the connection so that its prepared statements remember their
+     * fetch size. The statements of the mock connection ignore it.
+     */
+    private static Connection recordFetchSize(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    final Object result = invoke(connection, method, args);
+                    if (result instanceof PreparedStatement) {
+                        return recordFetchSize((PreparedStatement) result);
+                    }
+                    return result;
+                });
+    }
+
+    private static PreparedStatement recordFetchSize(PreparedStatement statement) {
+        final int[] fetchSize = new int[1];
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    if ("setFetchSize".equals(method.getName())) {
+                        fetchSize[0] = (Integer) args[0];
+                        return null;
+                    }
+                    if ("getFetchSize".equals(method.getName())) {
+                        return fetchSize[0];
+                    }
+                    return invoke(statement, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private ResourcePath createPath() {
+        ResourcePath path = new ResourcePath("http://localhost", Version.V_1_1, "/Things");
+        path.addPathElement(new PathElementEntitySet(pluginCoreModel.etThing), true, false);
+        return path;
+    }
+
+    private Query createQuery(ResourcePath path) {
+        final EntityType etThing = pluginCoreModel.etThing;
+        return new Query(coreSettings.getModelRegistry(), coreSettings.getQueryDefaults(), path)
+                .addSelect(etThing.getPrimaryKey())
+                .validate(etThing);
+    }
+
+    private String selectSql() {
+        for (String sql : executed) {
+            if (sql.toLowerCase().startsWith("select")) {
+                return sql;
+            }
+        }
+        throw new AssertionError("No select executed: " + executed);
+    }
+
+    @Test
+    void testUnboundedReadsAllRows() {
+        final ResourcePath path = createPath();
+        final Query query = createQuery(path).setTop(2);
+        query.setUnbounded(true);
+        final EntitySet result = (EntitySet) pm.get(path, query);
+        int count = 0;
+        for (Entity entity : result) {
+            count++;
+        }
+        assertEquals(ROW_COUNT, count, "An unbounded request must ignore $top.");
+        assertNull(result.getNextLink(), "An unbounded request must not have a nextLink.");
+        final String sql = selectSql();
+        assertFalse(sql.contains(" fetch next "), "An unbounded request must not have a limit: " + sql);
+        assertFalse(sql.contains(" limit "), "An unbounded request must not have a limit: " + sql);
+    }
+
+    @Test
+    void testUnboundedSkip() {
+        final ResourcePath path = createPath();
+        final Query query = createQuery(path).setSkip(3);
+        query.setUnbounded(true);
+        pm.get(path, query);
+        final String sql = selectSql();
+        assertTrue(sql.contains(" offset ? rows"), "$skip must still be applied: " + sql);
+        assertFalse(sql.contains(" fetch next "), "An unbounded request must not have a limit: " + sql);
+    }
+
+    @Test
+    void testUnboundedReadOnlyWithFetchSize() {
+        final ResourcePath path = createPath();
+        final Query query = createQuery(path);
+        query.setUnbounded(true);
+        pm.get(path, query);
+        assertEquals(READ_ONLY, executed.get(0), "The transaction must be read-only before the select.");
+        final int selectIndex = executed.indexOf(selectSql());
+        assertTrue(selectIndex > 0, "The select must run after the transaction is set to read-only.");
+        assertEquals(EXPORT_FETCH_SIZE, fetchSizes.get(selectIndex));
+    }
+
+    @Test
+    void testBoundedKeepsLimit() {
+        final ResourcePath path = createPath();
+        final Query query = createQuery(path).setTop(2);
+        final EntitySet result = (EntitySet) pm.get(path, query);
+        int count = 0;
+        for (Entity entity : result) {
+            count++;
+        }
+        assertEquals(2, count);
+        assertFalse(executed.contains(READ_ONLY), "A normal request must not change the transaction.");
+        final String sql = selectSql();
+        assertTrue(sql.contains(" fetch next ? rows only"), sql);
+        assertEquals(0, fetchSizes.get(executed.indexOf(sql)));
+    }
+
+    /**
+     * A PersistenceManager that uses the given DSLContext instead of a
+     * database connection.
+     */
+    private static class RecordingPersistenceManager extends PostgresPersistenceManager {
+
+        private final DSLContext dslContext;
+
+        public RecordingPersistenceManager(DSLContext dslContext) {
+            this.dslContext = dslContext == null ? DSL.using(SQLDialect.POSTGRES) : dslContext;
+        }
+
+        @Override
+        public DSLContext getDslContext() {
+            return dslContext;
+        }
+
+        @Override
+        public boolean useClientSuppliedId(Entity entity) {
+            return false;
+        }
+
+    }
+}
@@ -19,6 +19,7 @@ package de.fraunhofer.iosb.ilt.frostserver.plugin.format.csv;
 
 import de.fraunhofer.iosb.ilt.frostserver.formatter.ResultFormatter;
 import de.fraunhofer.iosb.ilt.frostserver.path.Version;
+import de.fraunhofer.iosb.ilt.frostserver.query.Query;
 import de.fraunhofer.iosb.ilt.frostserver.service.PluginResultFormat;
 import de.fraunhofer.iosb.ilt.frostserver.service.PluginRootDocument;
 import de.fraunhofer.iosb.ilt.frostserver.service.Service;
@@ -27,6 +28,10 @@ import de.fraunhofer.iosb.ilt.frostserver.settings.ConfigDefaults;
 import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
 import de.fraunhofer.iosb.ilt.frostserver.settings.Settings;
 import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValueBoolean;
+import de.fraunhofer.iosb.ilt.frostserver.util.PrincipalExtended;
+import de.fraunhofer.iosb.ilt.frostserver.util.exception.ForbiddenException;
+import de.fraunhofer.iosb.ilt.frostserver.util.exception.UnauthorizedException;
+import java.security.Principal;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
@@ -40,6 +45,10 @@ public class PluginResultFormatCsv implements PluginResultFormat, PluginRootDocu
 
     @DefaultValueBoolean(true)
     public static final String TAG_ENABLE_CSV = "csv.enable";
+    @DefaultValueBoolean(false)
+    public static final String TAG_ENABLE_EXPORT = "csv.exportEnable";
+    @DefaultValueBoolean(true)
+    public static final String TAG_EXPORT_ADMIN_ONLY = "csv.exportAdminOnly";
 
     private static final String REQUIREMENT_CSV = "https://github.com/INSIDE-information-systems/SensorThingsAPI/blob/master/CSV-ResultFormat/CSV-ResultFormat.md";
 
@@ -48,14 +57,24 @@ public class PluginResultFormatCsv implements PluginResultFormat, PluginRootDocu
      */
     public static final String CSV_FORMAT_NAME = "CSV";
 
+    /**
+     * The "name" of the CSV resultFormatter that returns all matching
+     * entities, ignoring $top.
+     */
+    public static final String CSV_EXPORT_FORMAT_NAME = "CSVExport";
+
     private CoreSettings settings;
     private boolean enabled;
+    private boolean exportEnabled;
+    private boolean exportAdminOnly;
 
     @Override
     public void init(CoreSettings settings) {
         this.settings = settings;
         Settings pluginSettings = settings.getPluginSettings();
         enabled = pluginSettings.getBoolean(TAG_ENABLE_CSV, getClass());
+        exportEnabled = pluginSettings.getBoolean(TAG_ENABLE_EXPORT, getClass());
+        exportAdminOnly = pluginSettings.getBoolean(TAG_EXPORT_ADMIN_ONLY, getClass());
         if (enabled) {
             settings.getPluginManager().registerPlugin(this);
         }
@@ -73,9 +92,29 @@ public class PluginResultFormatCsv implements PluginResultFormat, PluginRootDocu
 
     @Override
     public Collection<String> getFormatNames() {
+        if (exportEnabled) {
+            return Arrays.asList(CSV_FORMAT_NAME, CSV_EXPORT_FORMAT_NAME);
+        }
         return Arrays.asList(CSV_FORMAT_NAME);
     }
 
+    @Override
+    public void parsedPathAndQuery(CoreSettings settings, ServiceRequest request, Query query) {
+        if (!exportEnabled || !CSV_EXPORT_FORMAT_NAME.equalsIgnoreCase(query.getFormat())) {
+            return;
+        }
+        if (exportAdminOnly) {
+            final Principal principal = request.getUserPrincipal();
+            if (principal == null) {
+                throw new UnauthorizedException("Exports require authentication.");
+            }
+            if (!(principal instanceof PrincipalExtended) || !((PrincipalExtended) principal).isAdmin()) {
+                throw new ForbiddenException("Exports are only allowed for admin users.");
+            }
+        }
+        query.setUnbounded(true);
+    }
+
     @Override
     public ResultFormatter getResultFormatter(String format) {
         return new ResultFormatterCsv();
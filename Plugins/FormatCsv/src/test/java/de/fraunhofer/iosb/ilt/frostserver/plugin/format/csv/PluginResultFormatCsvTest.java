@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2021 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.plugin.format.csv;
+
+import static de.fraunhofer.iosb.ilt.frostserver.plugin.format.csv.PluginResultFormatCsv.CSV_EXPORT_FORMAT_NAME;
+import static de.fraunhofer.iosb.ilt.frostserver.plugin.format.csv.PluginResultFormatCsv.CSV_FORMAT_NAME;
+import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
+import de.fraunhofer.iosb.ilt.frostserver.path.Version;
+import de.fraunhofer.iosb.ilt.frostserver.query.Query;
+import de.fraunhofer.iosb.ilt.frostserver.service.ServiceRequest;
+import de.fraunhofer.iosb.ilt.frostserver.service.ServiceRequestBuilder;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import de.fraunhofer.iosb.ilt.frostserver.util.PrincipalExtended;
+import de.fraunhofer.iosb.ilt.frostserver.util.exception.ForbiddenException;
+import de.fraunhofer.iosb.ilt.frostserver.util.exception.UnauthorizedException;
+import java.security.Principal;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the checks the CSV plugin does before an export.
+ *
+ * @author scf
+ */
+class PluginResultFormatCsvTest {
+
+    private static CoreSettings createSettings(boolean exportEnabled, boolean adminOnly) {
+        CoreSettings settings = new CoreSettings();
+        settings.getPluginSettings().set(PluginResultFormatCsv.TAG_ENABLE_EXPORT, exportEnabled);
+        settings.getPluginSettings().set(PluginResultFormatCsv.TAG_EXPORT_ADMIN_ONLY, adminOnly);
+        return settings;
+    }
+
+    private static PluginResultFormatCsv createPlugin(CoreSettings settings) {
+        PluginResultFormatCsv plugin = new PluginResultFormatCsv();
+        plugin.init(settings);
+        return plugin;
+    }
+
+    private static Query createQuery(CoreSettings settings, String format) {
+        ResourcePath path = new ResourcePath("http://localhost", Version.V_1_1, "/Things");
+        return new Query(settings.getModelRegistry(), settings.getQueryDefaults(), path)
+                .setFormat(format);
+    }
+
+    private static ServiceRequest createRequest(CoreSettings settings, Principal principal) {
+        return new ServiceRequestBuilder(settings, Version.V_1_1)
+                .withUrlPath("/Things")
+                .withContent("")
+                .withUserPrincipal(principal)
+                .build();
+    }
+
+    @Test
+    void testExportAnonymous() {
+        final CoreSettings settings = createSettings(true, true);
+        final PluginResultFormatCsv plugin = createPlugin(settings);
+        final Query query = createQuery(settings, CSV_EXPORT_FORMAT_NAME);
+        final ServiceRequest request = createRequest(settings, null);
+        assertThrows(UnauthorizedException.class, () -> plugin.parsedPathAndQuery(settings, request, query));
+        assertFalse(query.isUnbounded());
+    }
+
+    @Test
+    void testExportNonAdmin() {
+        final CoreSettings settings = createSettings(true, true);
+        final PluginResultFormatCsv plugin = createPlugin(settings);
+        final Query query = createQuery(settings, CSV_EXPORT_FORMAT_NAME);
+        final ServiceRequest request = createRequest(settings, new PrincipalExtended("user", false));
+        assertThrows(ForbiddenException.class, () -> plugin.parsedPathAndQuery(settings, request, query));
+        assertFalse(query.isUnbounded());
+
+        final Principal plain = () -> "plain";
+        final ServiceRequest plainRequest = createRequest(settings, plain);
+        assertThrows(ForbiddenException.class, () -> plugin.parsedPathAndQuery(settings, plainRequest, query));
+        assertFalse(query.isUnbounded());
+    }
+
+    @Test
+    void testExportAdmin() {
+        final CoreSettings settings = createSettings(true, true);
+        final PluginResultFormatCsv plugin = createPlugin(settings);
+        final Query query = createQuery(settings, CSV_EXPORT_FORMAT_NAME);
+        plugin.parsedPathAndQuery(settings, createRequest(settings, new PrincipalExtended("admin", true)), query);
+        assertTrue(query.isUnbounded());
+    }
+
+    @Test
+    void testExportNotAdminOnly() {
+        final CoreSettings settings = createSettings(true, false);
+        final PluginResultFormatCsv plugin = createPlugin(settings);
+        final Query query = createQuery(settings, CSV_EXPORT_FORMAT_NAME);
+        plugin.parsedPathAndQuery(settings, createRequest(settings, null), query);
+        assertTrue(query.isUnbounded());
+    }
+
+    @Test
+    void testPlainCsvNotUnbounded() {
+        final CoreSettings settings = createSettings(true, true);
+        final PluginResultFormatCsv plugin = createPlugin(settings);
+        final Query query = createQuery(settings, CSV_FORMAT_NAME);
+        plugin.parsedPathAndQuery(settings, createRequest(settings, null), query);
+        assertFalse(query.isUnbounded());
+    }
+
+    @Test
+    void testExportDisabled() {
+        final CoreSettings settings = createSettings(false, true);
+        final PluginResultFormatCsv plugin = createPlugin(settings);
+        assertFalse(plugin.getFormatNames().contains(CSV_EXPORT_FORMAT_NAME));
+        final Query query = createQuery(settings, CSV_EXPORT_FORMAT_NAME);
+        plugin.parsedPathAndQuery(settings, createRequest(settings, null), query);
+        assertFalse(query.isUnbounded());
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.plugin.format.dataarray;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import de.fraunhofer.iosb.ilt.frostserver.formatter.FormatWriter;
+import de.fraunhofer.iosb.ilt.frostserver.json.serialize.JsonWriter;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.EntitySet;
+import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
+import de.fraunhofer.iosb.ilt.frostserver.path.UrlHelper;
+import de.fraunhofer.iosb.ilt.frostserver.plugin.format.dataarray.ResultFormatterDataArray.VisibleComponents;
+import de.fraunhofer.iosb.ilt.frostserver.property.NavigationPropertyMain.NavigationPropertyEntity;
+import static de.fraunhofer.iosb.ilt.frostserver.property.SpecialNames.AT_IOT_COUNT;
+import static de.fraunhofer.iosb.ilt.frostserver.property.SpecialNames.AT_IOT_NAVIGATION_LINK;
+import static de.fraunhofer.iosb.ilt.frostserver.property.SpecialNames.AT_IOT_NEXT_LINK;
+import de.fraunhofer.iosb.ilt.frostserver.query.Query;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A FormatWriter that writes Observations in the dataArray format while
+ * iterating over them, without collecting them first. This only gives the
+ * correct result if the Observations arrive grouped by their
+ * (Multi)Datastream, since a new dataArray value is started each time the
+ * (Multi)Datastream changes. The count of each dataArray and the nextLink are
+ * written after the data, since they are only known once all data is written.
+ */
+public class FormatWriterDataArray implements FormatWriter {
+
+    private static final String DATAARRAY_IOT_COUNT = "dataArray" + AT_IOT_COUNT;
+    private static final String MULTI_DATASTREAM_IOT_NAVIGATION_LINK = "MultiDatastream" + AT_IOT_NAVIGATION_LINK;
+    private static final String DATASTREAM_IOT_NAVIGATION_LINK = "Datastream" + AT_IOT_NAVIGATION_LINK;
+
+    private final ResourcePath path;
+    private final Query query;
+    private final EntitySet entitySet;
+    private final VisibleComponents visComps;
+    private final List<String> components;
+    private final NavigationPropertyEntity npDatastream;
+    private final NavigationPropertyEntity npMultiDatastream;
+    private final int flushInterval;
+
+    /**
+     * Create a new FormatWriterDataArray.
+     *
+     * @param path The path of the request.
+     * @param query The query of the request.
+     * @param entitySet The Observations to write, grouped by
+     * (Multi)Datastream.
+     * @param visComps The components to write for each Observation.
+     * @param npDatastream The Datastream navigationProperty of Observations.
+     * @param npMultiDatastream The MultiDatastream navigationProperty of
+     * Observations, or null if MultiDatastreams are not enabled.
+     * @param flushInterval The number of Observations after which the target
+     * is flushed, 0 or less for no intermediate flushing.
+     */
+    public FormatWriterDataArray(ResourcePath path, Query query, EntitySet entitySet, VisibleComponents visComps, NavigationPropertyEntity npDatastream, NavigationPropertyEntity npMultiDatastream, int flushInterval) {
+        this.path = path;
+        this.query = query;
+        this.entitySet = entitySet;
+        this.visComps = visComps;
+        this.components = visComps.getComponents();
+        this.npDatastream = npDatastream;
+        this.npMultiDatastream = npMultiDatastream;
+        this.flushInterval = flushInterval;
+    }
+
+    @Override
+    public void writeFormatted(Writer target) throws IOException {
+        try (JsonGenerator gen = getFactory().createGenerator(target)) {
+            write(gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
+        }
+    }
+
+    @Override
+    public void writeFormatted(OutputStream target) throws IOException {
+        try (JsonGenerator gen = getFactory().createGenerator(target, JsonEncoding.UTF8)) {
+            write(gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
+        }
+    }
+
+    private static JsonFactory getFactory() {
+        return JsonWriter.getObjectMapper().getFactory();
+    }
+
+    private void write(JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        final long count = entitySet.getCount();
+        if (count >= 0) {
+            gen.writeNumberField(AT_IOT_COUNT, count);
+        }
+        gen.writeArrayFieldStart("value");
+        Entity current = null;
+        int currentCount = 0;
+        int written = 0;
+        for (Entity obs : entitySet) {
+            final Entity parent = getParent(obs);
+            if (current == null || !isSameEntity(current, parent)) {
+                if (current != null) {
+                    endDataArray(gen, currentCount);
+                }
+                startDataArray(gen, parent);
+                current = parent;
+                currentCount = 0;
+            }
+            visComps.writeObservation(gen, obs);
+            currentCount++;
+            written++;
+            if (flushInterval > 0 && written % flushInterval == 0) {
+                gen.flush();
+            }
+        }
+        if (current != null) {
+            endDataArray(gen, currentCount);
+        }
+        gen.writeEndArray();
+        final String nextLink = entitySet.getNextLink();
+        if (nextLink != null) {
+            gen.writeStringField(AT_IOT_NEXT_LINK, nextLink);
+        }
+        gen.writeEndObject();
+    }
+
+    private Entity getParent(Entity observation) {
+        final Entity datastream = observation.getProperty(npDatastream);
+        if (datastream != null) {
+            return datastream;
+        }
+        if (npMultiDatastream == null) {
+            throw new IllegalArgumentException("No Datastream found and MultiDatastream plugin not enabled.");
+        }
+        return observation.getProperty(npMultiDatastream);
+    }
+
+    private static boolean isSameEntity(Entity one, Entity other) {
+        return one.getEntityType() == other.getEntityType()
+                && Objects.equals(one.getId(), other.getId());
+    }
+
+    private void startDataArray(JsonGenerator gen, Entity parent) throws IOException {
+        gen.writeStartObject();
+        final String selfLink = UrlHelper.generateSelfLink(query, path, parent);
+        if (selfLink != null) {
+            if (parent.getEntityType() == npDatastream.getEntityType()) {
+                gen.writeStringField(DATASTREAM_IOT_NAVIGATION_LINK, selfLink);
+            } else {
+                gen.writeStringField(MULTI_DATASTREAM_IOT_NAVIGATION_LINK, selfLink);
+            }
+        }
+        gen.writeObjectField("components", components);
+        gen.writeArrayFieldStart("dataArray");
+    }
+
+    private static void endDataArray(JsonGenerator gen, int count) throws IOException {
+        gen.writeEndArray();
+        gen.writeNumberField(DATAARRAY_IOT_COUNT, count);
+        gen.writeEndObject();
+    }
+
+}
@@ -17,19 +17,24 @@
  */
 package de.fraunhofer.iosb.ilt.frostserver.plugin.format.dataarray;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import de.fraunhofer.iosb.ilt.frostserver.formatter.FormatWriter;
 import de.fraunhofer.iosb.ilt.frostserver.formatter.FormatWriterGeneric;
 import de.fraunhofer.iosb.ilt.frostserver.formatter.ResultFormatter;
 import de.fraunhofer.iosb.ilt.frostserver.json.serialize.JsonWriter;
+import de.fraunhofer.iosb.ilt.frostserver.model.EntityType;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.EntitySet;
 import de.fraunhofer.iosb.ilt.frostserver.path.PathElement;
+import de.fraunhofer.iosb.ilt.frostserver.path.PathElementEntity;
 import de.fraunhofer.iosb.ilt.frostserver.path.PathElementEntitySet;
 import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
 import de.fraunhofer.iosb.ilt.frostserver.plugin.coremodel.PluginCoreModel;
 import de.fraunhofer.iosb.ilt.frostserver.property.NavigationPropertyMain.NavigationPropertyEntity;
 import de.fraunhofer.iosb.ilt.frostserver.property.Property;
 import de.fraunhofer.iosb.ilt.frostserver.query.Query;
+import de.fraunhofer.iosb.ilt.frostserver.query.expression.Expression;
+import de.fraunhofer.iosb.ilt.frostserver.query.expression.Path;
 import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
 import static de.fraunhofer.iosb.ilt.frostserver.util.Constants.CONTENT_TYPE_APPLICATION_JSON;
 import de.fraunhofer.iosb.ilt.frostserver.util.exception.IncorrectRequestException;
@@ -53,9 +58,11 @@ public class ResultFormatterDataArray implements ResultFormatter {
 
     private final PluginCoreModel pluginCoreModel;
     private NavigationPropertyEntity npMultiDatastream;
+    private final int flushInterval;
 
     public ResultFormatterDataArray(CoreSettings settings) {
         pluginCoreModel = settings.getPluginManager().getPlugin(PluginCoreModel.class);
+        flushInterval = settings.getHttpSettings().getInt(CoreSettings.TAG_RESPONSE_FLUSH_INTERVAL, CoreSettings.class);
         LOGGER.debug("Creating a new ResultFormaterDataArray.");
     }
 
@@ -84,9 +91,14 @@ public class ResultFormatterDataArray implements ResultFormatter {
         try {
             if (EntitySet.class.isAssignableFrom(result.getClass())) {
                 EntitySet entitySet = (EntitySet) result;
-                if (entitySet.getEntityType() == pluginCoreModel.etObservation) {
-                    return new FormatWriterGeneric(formatDataArray(path, query, entitySet));
+                if (entitySet.getEntityType() != pluginCoreModel.etObservation) {
+                    throw new IllegalArgumentException(OBSERVATIONS_ONLY);
                 }
+                if (isGroupedByDatastream(path, query)) {
+                    return new FormatWriterDataArray(path, query, entitySet, getVisibleComponents(query),
+                            pluginCoreModel.npDatastreamObservation, npMultiDatastream, flushInterval);
+                }
+                return new FormatWriterGeneric(formatDataArray(path, query, entitySet));
             }
             throw new IllegalArgumentException(OBSERVATIONS_ONLY);
         } catch (IOException ex) {
@@ -188,15 +200,78 @@ public class ResultFormatterDataArray implements ResultFormatter {
             }
             return value;
         }
+
+        /**
+         * Write the visible components of the given Observation as a JSON
+         * array, without collecting them in a List first.
+         *
+         * @param gen The generator to write to.
+         * @param o The Observation to write.
+         * @throws IOException If writing fails.
+         */
+        public void writeObservation(JsonGenerator gen, Entity o) throws IOException {
+            gen.writeStartArray();
+            if (id) {
+                gen.writeObject(o.getId().getValue());
+            }
+            if (phenomenonTime) {
+                gen.writeObject(o.getProperty(pluginCoreModel.epPhenomenonTime));
+            }
+            if (result) {
+                gen.writeObject(o.getProperty(pluginCoreModel.epResult));
+            }
+            if (resultTime) {
+                gen.writeObject(o.getProperty(pluginCoreModel.epResultTime));
+            }
+            if (resultQuality) {
+                gen.writeObject(o.getProperty(pluginCoreModel.epResultQuality));
+            }
+            if (validTime) {
+                gen.writeObject(o.getProperty(pluginCoreModel.epValidTime));
+            }
+            if (parameters) {
+                gen.writeObject(o.getProperty(pluginCoreModel.epParameters));
+            }
+            gen.writeEndArray();
+        }
     }
 
-    public String formatDataArray(ResourcePath path, Query query, EntitySet entitySet) throws IOException {
-        VisibleComponents visComps;
+    private VisibleComponents getVisibleComponents(Query query) {
         if (query == null || query.getSelect().isEmpty()) {
-            visComps = new VisibleComponents(pluginCoreModel, true);
-        } else {
-            visComps = new VisibleComponents(pluginCoreModel, query.getSelect());
+            return new VisibleComponents(pluginCoreModel, true);
         }
+        return new VisibleComponents(pluginCoreModel, query.getSelect());
+    }
+
+    /**
+     * Checks if the Observations of the request are guaranteed to arrive
+     * grouped by their (Multi)Datastream. This is the case if the request is
+     * for the Observations of a single (Multi)Datastream, or if the results
+     * are primarily ordered by the Datastream and there are no
+     * MultiDatastreams.
+     *
+     * @param path The path of the request.
+     * @param query The query of the request.
+     * @return true if the Observations arrive grouped by (Multi)Datastream.
+     */
+    public boolean isGroupedByDatastream(ResourcePath path, Query query) {
+        final PathElement parent = path.getLastElement().getParent();
+        if (parent instanceof PathElementEntity) {
+            final EntityType parentType = ((PathElementEntity) parent).getEntityType();
+            if (parentType == pluginCoreModel.etDatastream
+                    || (npMultiDatastream != null && parentType == npMultiDatastream.getEntityType())) {
+                return true;
+            }
+        }
+        if (npMultiDatastream != null || query == null || query.getOrderBy().isEmpty()) {
+            return false;
+        }
+        final Expression firstOrder = query.getOrderBy().get(0).getExpression();
+        return firstOrder.equals(new Path(pluginCoreModel.npDatastreamObservation, pluginCoreModel.etDatastream.getPrimaryKey()));
+    }
+
+    public String formatDataArray(ResourcePath path, Query query, EntitySet entitySet) throws IOException {
+        VisibleComponents visComps = getVisibleComponents(query);
         List<String> components = visComps.getComponents();
 
         Map<String, DataArrayValue> dataArraySet = new LinkedHashMap<>();
@@ -34,9 +34,7 @@ import de.fraunhofer.iosb.ilt.frostserver.service.Service;
 import de.fraunhofer.iosb.ilt.frostserver.service.ServiceRequest;
 import de.fraunhofer.iosb.ilt.frostserver.service.ServiceResponse;
 import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
-import de.fraunhofer.iosb.ilt.frostserver.util.exception.IncompleteEntityException;
 import de.fraunhofer.iosb.ilt.frostserver.util.exception.IncorrectRequestException;
-import de.fraunhofer.iosb.ilt.frostserver.util.exception.NoSuchEntityException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -101,8 +99,7 @@ public class ServiceDataArray {
             service.maybeCommitAndClose();
             ResultFormatter formatter = settings.getFormatter(version, FORMAT_NAME_DEFAULT);
             response.setContentType(formatter.getContentType());
-            formatter.format(null, query, selfLinks, settings.getQueryDefaults().useAbsoluteNavigationLinks())
-                    .writeFormatted(response.getWriter());
+            response.writeFormatted(formatter.format(null, query, selfLinks, settings.getQueryDefaults().useAbsoluteNavigationLinks()));
 
             return Service.successResponse(response, 201, "Created");
         } catch (IllegalArgumentException | IOException e) {
@@ -122,8 +119,12 @@ public class ServiceDataArray {
 
     private void handleDataArrayItems(Query query, Version version, List<ArrayValueHandlers.ArrayValueHandler> handlers, DataArrayValue daValue, Entity datastream, Entity multiDatastream, PersistenceManager pm, List<String> selfLinks) {
         final String serviceRootUrl = settings.getQueryDefaults().getServiceRootUrl();
-        int compCount = handlers.size();
-        for (List<Object> entry : daValue.getDataArray()) {
+        final int compCount = handlers.size();
+        final List<List<Object>> entries = daValue.getDataArray();
+        // Holds, for each entry, either the Observation or the error message.
+        final List<Object> results = new ArrayList<>(entries.size());
+        final List<Entity> observations = new ArrayList<>(entries.size());
+        for (List<Object> entry : entries) {
             try {
                 Entity observation = new DefaultEntity(pluginCoreModel.etObservation);
                 if (datastream != null) {
@@ -137,16 +138,31 @@ public class ServiceDataArray {
                 for (int i = 0; i < compCount; i++) {
                     handlers.get(i).handle(entry.get(i), observation);
                 }
-                pm.insert(observation);
-                if (query.getMetadata() == Metadata.OFF) {
-                    selfLinks.add("");
-                } else {
-                    String selfLink = UrlHelper.generateSelfLink(null, serviceRootUrl, version, observation);
-                    selfLinks.add(selfLink);
-                }
-            } catch (NoSuchEntityException | IncompleteEntityException | IllegalArgumentException exc) {
+                observations.add(observation);
+                results.add(observation);
+            } catch (IllegalArgumentException exc) {
+                LOGGER.debug("Failed to create entity", exc);
+                results.add("error " + exc.getMessage());
+            }
+        }
+
+        final List<Exception> errors = pm.insertAll(observations);
+        int obsIdx = 0;
+        for (Object result : results) {
+            if (!(result instanceof Entity)) {
+                selfLinks.add((String) result);
+                continue;
+            }
+            final Entity observation = (Entity) result;
+            final Exception exc = errors.get(obsIdx++);
+            if (exc != null) {
                 LOGGER.debug("Failed to create entity", exc);
                 selfLinks.add("error " + exc.getMessage());
+            } else if (query.getMetadata() == Metadata.OFF) {
+                selfLinks.add("");
+            } else {
+                String selfLink = UrlHelper.generateSelfLink(null, serviceRootUrl, version, observation);
+                selfLinks.add(selfLink);
             }
         }
     }
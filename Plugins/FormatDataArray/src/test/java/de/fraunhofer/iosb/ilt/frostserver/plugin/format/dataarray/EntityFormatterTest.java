@@ -19,17 +19,27 @@ package de.fraunhofer.iosb.ilt.frostserver.plugin.format.dataarray;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fraunhofer.iosb.ilt.frostserver.formatter.FormatWriter;
 import de.fraunhofer.iosb.ilt.frostserver.json.serialize.JsonWriter;
 import de.fraunhofer.iosb.ilt.frostserver.model.DefaultEntity;
 import de.fraunhofer.iosb.ilt.frostserver.model.EntityType;
 import de.fraunhofer.iosb.ilt.frostserver.model.ModelRegistry;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.EntitySet;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.EntitySetImpl;
+import de.fraunhofer.iosb.ilt.frostserver.model.core.IdLong;
+import de.fraunhofer.iosb.ilt.frostserver.path.PathElementEntity;
+import de.fraunhofer.iosb.ilt.frostserver.path.PathElementEntitySet;
+import de.fraunhofer.iosb.ilt.frostserver.path.ResourcePath;
+import de.fraunhofer.iosb.ilt.frostserver.path.Version;
 import de.fraunhofer.iosb.ilt.frostserver.plugin.coremodel.PluginCoreModel;
 import static de.fraunhofer.iosb.ilt.frostserver.plugin.multidatastream.MdsModelSettings.TAG_ENABLE_MDS_MODEL;
 import de.fraunhofer.iosb.ilt.frostserver.plugin.multidatastream.PluginMultiDatastream;
+import de.fraunhofer.iosb.ilt.frostserver.query.Query;
 import de.fraunhofer.iosb.ilt.frostserver.query.QueryDefaults;
 import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
 import de.fraunhofer.iosb.ilt.frostserver.util.SimpleJsonMapper;
+import de.fraunhofer.iosb.ilt.frostserver.util.exception.IncorrectRequestException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -112,6 +122,32 @@ class EntityFormatterTest {
         assertTrue(jsonEqual(expResult, JsonWriter.writeObject(source)));
     }
 
+    @Test
+    void writeObservationDataArrayStreaming() throws IOException, IncorrectRequestException {
+        Entity ds1 = new DefaultEntity(pluginCoreModel.etDatastream, new IdLong(1));
+        EntitySet observations = new EntitySetImpl(pluginCoreModel.etObservation);
+        for (int i = 0; i < 5; i++) {
+            observations.add(new DefaultEntity(pluginCoreModel.etObservation, new IdLong(100 + i))
+                    .setProperty(pluginCoreModel.epResult, i)
+                    .setProperty(pluginCoreModel.npDatastreamObservation, ds1));
+        }
+        observations.setCount(5);
+
+        ResourcePath path = new ResourcePath("http://example.org", Version.V_1_1, "/Datastreams(1)/Observations");
+        PathElementEntity dsElement = new PathElementEntity(new IdLong(1), pluginCoreModel.etDatastream, null);
+        path.addPathElement(dsElement, false, true);
+        path.addPathElement(new PathElementEntitySet(pluginCoreModel.npObservationsDatastream, dsElement), true, false);
+        Query query = new Query(modelRegistry, queryDefaults, path);
+
+        ResultFormatterDataArray formatter = new ResultFormatterDataArray(coreSettings);
+        formatter.preProcessRequest(path, query);
+        assertTrue(formatter.isGroupedByDatastream(path, query));
+        FormatWriter streaming = formatter.format(path, query, observations, false);
+        assertTrue(streaming instanceof FormatWriterDataArray);
+        String expResult = formatter.formatDataArray(path, query, observations);
+        assertTrue(jsonEqual(expResult, streaming.getFormatted()));
+    }
+
     private String createDataJson() {
         String expResult = "{\n"
                 + "    \"@iot.count\": 108,\n"
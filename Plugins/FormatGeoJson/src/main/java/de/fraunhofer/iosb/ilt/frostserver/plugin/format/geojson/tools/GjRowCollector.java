@@ -20,6 +20,7 @@ package de.fraunhofer.iosb.ilt.frostserver.plugin.format.geojson.tools;
 import de.fraunhofer.iosb.ilt.frostserver.model.core.Entity;
 import de.fraunhofer.iosb.ilt.frostserver.model.ext.TimeValue;
 import de.fraunhofer.iosb.ilt.frostserver.property.SpecialNames;
+import de.fraunhofer.iosb.ilt.frostserver.util.RawGeoJsonObject;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -82,12 +83,14 @@ public class GjRowCollector {
      * Collect a new value for the element with the given index.
      *
      * @param headerName The name of the element.
-     * @param value The value of the element for the current row.
+     * @param rawValue The value of the element for the current row.
      */
-    public void collectEntry(String headerName, Object value) {
-        if (value == null) {
+    public void collectEntry(String headerName, Object rawValue) {
+        if (rawValue == null) {
             return;
         }
+        // Stored GeoJSON may hold a Feature, that must be merged into the row.
+        final Object value = RawGeoJsonObject.materialise(rawValue);
         if (value instanceof Feature) {
             Feature featureValue = (Feature) value;
             feature.setGeometry(featureValue.getGeometry());
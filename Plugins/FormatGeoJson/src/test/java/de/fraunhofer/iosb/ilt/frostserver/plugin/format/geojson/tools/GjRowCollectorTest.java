@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2024 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.plugin.format.geojson.tools;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fraunhofer.iosb.ilt.frostserver.util.RawGeoJsonObject;
+import de.fraunhofer.iosb.ilt.frostserver.util.SimpleJsonMapper;
+import java.io.IOException;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for collecting locations into GeoJSON Features.
+ *
+ * @author scf
+ */
+class GjRowCollectorTest {
+
+    private static final String RAW_POINT = "{\"type\":\"Point\",\"coordinates\":[8.5,49.25]}";
+    private static final String RAW_FEATURE = "{\"type\":\"Feature\",\"geometry\":" + RAW_POINT + ",\"properties\":{\"room\":\"A 1.01\"}}";
+
+    @Test
+    void testGeometryLocation() throws IOException {
+        GjRowCollector collector = new GjRowCollector();
+        collector.collectEntry("name", "Thing 1");
+        collector.collectEntry("location", new RawGeoJsonObject(RAW_POINT));
+        collector.flush();
+
+        JsonNode feature = firstFeature(collector);
+        assertEquals("Feature", feature.get("type").textValue());
+        assertEquals("Point", feature.get("geometry").get("type").textValue());
+        assertEquals(49.25, feature.get("geometry").get("coordinates").get(1).doubleValue());
+        assertEquals("Thing 1", feature.get("properties").get("name").textValue());
+    }
+
+    @Test
+    void testFeatureLocation() throws IOException {
+        GjRowCollector collector = new GjRowCollector();
+        collector.collectEntry("name", "Thing 1");
+        collector.collectEntry("location", new RawGeoJsonObject(RAW_FEATURE));
+        collector.flush();
+
+        JsonNode feature = firstFeature(collector);
+        assertEquals("Feature", feature.get("type").textValue());
+        assertEquals("Point", feature.get("geometry").get("type").textValue(), "Feature location not unwrapped.");
+        assertEquals(8.5, feature.get("geometry").get("coordinates").get(0).doubleValue());
+        assertEquals("Thing 1", feature.get("properties").get("name").textValue());
+        assertEquals("A 1.01", feature.get("properties").get("room").textValue());
+    }
+
+    @Test
+    void testInvalidLocation() throws IOException {
+        final String invalid = "{\"type\":\"Point\",\"coordinates\":\"here\"}";
+        GjRowCollector collector = new GjRowCollector();
+        collector.collectEntry("location", new RawGeoJsonObject(invalid));
+        collector.flush();
+
+        JsonNode feature = firstFeature(collector);
+        assertTrue(feature.get("geometry") == null || feature.get("geometry").isNull());
+        assertEquals(invalid, feature.get("properties").get("location").textValue());
+    }
+
+    private static JsonNode firstFeature(GjRowCollector collector) throws IOException {
+        final ObjectMapper mapper = SimpleJsonMapper.getSimpleObjectMapper();
+        final JsonNode collection = mapper.readTree(mapper.writeValueAsString(collector.getCollection()));
+        assertEquals(1, collection.get("features").size());
+        return collection.get("features").get(0);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.loadtest;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The ids and extent of the generated data set.
+ *
+ * @author scf
+ */
+public class Dataset {
+
+    private final List<String> thingIds = new ArrayList<>();
+    private final List<String> datastreamIds = new ArrayList<>();
+    private Instant startTime;
+    private Instant endTime;
+    private long observationCount;
+    private double loadSeconds;
+
+    public List<String> getThingIds() {
+        return thingIds;
+    }
+
+    public List<String> getDatastreamIds() {
+        return datastreamIds;
+    }
+
+    /**
+     * The phenomenonTime of the first generated Observation.
+     *
+     * @return The phenomenonTime of the first generated Observation.
+     */
+    public Instant getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(Instant startTime) {
+        this.startTime = startTime;
+    }
+
+    /**
+     * The time after the phenomenonTime of the last generated Observation.
+     *
+     * @return The time after the last generated Observation.
+     */
+    public Instant getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(Instant endTime) {
+        this.endTime = endTime;
+    }
+
+    public long getObservationCount() {
+        return observationCount;
+    }
+
+    public void setObservationCount(long observationCount) {
+        this.observationCount = observationCount;
+    }
+
+    public double getLoadSeconds() {
+        return loadSeconds;
+    }
+
+    public void setLoadSeconds(double loadSeconds) {
+        this.loadSeconds = loadSeconds;
+    }
+
+    public Map<String, Object> describe() {
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("things", thingIds.size());
+        result.put("datastreams", datastreamIds.size());
+        result.put("observations", observationCount);
+        result.put("loadSeconds", loadSeconds);
+        result.put("loadThroughput", loadSeconds > 0 ? observationCount / loadSeconds : 0);
+        return result;
+    }
+}
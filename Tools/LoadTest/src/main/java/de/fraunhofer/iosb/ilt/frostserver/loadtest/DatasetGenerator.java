@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.loadtest;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates a synthetic sensor network: Things with a Location, each with a
+ * number of Datastreams, each with a history of Observations. All values are
+ * generated from the configured seed, so the same settings result in the same
+ * data set.
+ *
+ * @author scf
+ */
+public class DatasetGenerator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatasetGenerator.class.getName());
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+    private static final String NAME = "name";
+    private static final String DESCRIPTION = "description";
+    private static final String DEFINITION = "definition";
+    private static final String ENCODING_TYPE = "encodingType";
+    private static final long LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final LoadTestSettings settings;
+    private final StaClient client;
+
+    public DatasetGenerator(LoadTestSettings settings, StaClient client) {
+        this.settings = settings;
+        this.client = client;
+    }
+
+    public Dataset generate() throws IOException {
+        final Dataset dataset = new Dataset();
+        final long start = System.nanoTime();
+        final Random random = new Random(settings.getSeed());
+
+        final String sensorId = client.create("Sensors", createSensor());
+        final List<String> obsPropIds = new ArrayList<>();
+        for (int i = 0; i < settings.getDatastreamsPerThing(); i++) {
+            obsPropIds.add(client.create("ObservedProperties", createObservedProperty(i)));
+        }
+        for (int t = 0; t < settings.getThings(); t++) {
+            final String thingId = client.create("Things", createThing(t, random));
+            dataset.getThingIds().add(thingId);
+            for (int d = 0; d < obsPropIds.size(); d++) {
+                dataset.getDatastreamIds().add(client.create("Datastreams", createDatastream(t, d, thingId, sensorId, obsPropIds.get(d))));
+            }
+        }
+        LOGGER.info("Created {} Things with {} Datastreams.", dataset.getThingIds().size(), dataset.getDatastreamIds().size());
+
+        final Instant startTime = settings.getStartTime();
+        final long interval = settings.getObservationInterval();
+        final int perDatastream = settings.getObservationsPerDatastream();
+        dataset.setStartTime(startTime);
+        dataset.setEndTime(startTime.plusSeconds(interval * perDatastream));
+        dataset.setObservationCount(loadObservations(dataset, startTime, interval, perDatastream));
+        dataset.setLoadSeconds((System.nanoTime() - start) / 1e9);
+        LOGGER.info("Loaded {} Observations in {} s.", dataset.getObservationCount(), dataset.getLoadSeconds());
+        return dataset;
+    }
+
+    private long loadObservations(Dataset dataset, Instant startTime, long interval, int perDatastream) throws IOException {
+        final int chunkSize = Math.max(1, settings.getLoadChunkSize());
+        final AtomicLong loaded = new AtomicLong();
+        final AtomicLong lastLog = new AtomicLong(System.nanoTime());
+        final long total = (long) perDatastream * dataset.getDatastreamIds().size();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, settings.getLoadThreads()));
+        final List<Future<?>> futures = new ArrayList<>();
+        int dsIdx = 0;
+        for (String datastreamId : dataset.getDatastreamIds()) {
+            final int dsSeed = settings.getSeed() + dsIdx++;
+            for (int offset = 0; offset < perDatastream; offset += chunkSize) {
+                final int first = offset;
+                final int count = Math.min(chunkSize, perDatastream - offset);
+                futures.add(executor.submit(() -> {
+                    postChunk(datastreamId, dsSeed, startTime, interval, first, count);
+                    final long done = loaded.addAndGet(count);
+                    final long now = System.nanoTime();
+                    final long last = lastLog.get();
+                    if (now - last > LOG_INTERVAL_NANOS && lastLog.compareAndSet(last, now)) {
+                        LOGGER.info("Loaded {} of {} Observations.", done, total);
+                    }
+                    return null;
+                }));
+            }
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException ex) {
+            throw new IOException("Failed to load Observations.", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading Observations.", ex);
+        } finally {
+            executor.shutdownNow();
+        }
+        return loaded.get();
+    }
+
+    private void postChunk(String datastreamId, int dsSeed, Instant startTime, long interval, int first, int count) throws IOException {
+        // Seeded per chunk, so the values do not depend on thread scheduling.
+        final Random random = new Random(dsSeed * 31L + first);
+        final ArrayNode dataArray = NODES.arrayNode();
+        for (int i = first; i < first + count; i++) {
+            final Instant time = startTime.plusSeconds(interval * i);
+            dataArray.addArray()
+                    .add(time.toString())
+                    .add(generateResult(random, time.getEpochSecond()));
+        }
+        final ObjectNode item = NODES.objectNode();
+        item.set("Datastream", StaClient.reference(datastreamId));
+        item.set("components", NODES.arrayNode().add("phenomenonTime").add("result"));
+        item.set("dataArray", dataArray);
+        final HttpResponse<String> response = client.post("CreateObservations", NODES.arrayNode().add(item));
+        if (response.statusCode() != 201) {
+            throw new IOException("Failed to load Observations: " + response.statusCode() + " " + response.body());
+        }
+    }
+
+    /**
+     * Generate a result value: a daily cycle with noise.
+     *
+     * @param random The source of the noise.
+     * @param epochSecond The phenomenonTime of the Observation.
+     * @return the value.
+     */
+    public static double generateResult(Random random, long epochSecond) {
+        final double dayFraction = (epochSecond % 86400) / 86400.0;
+        final double value = 15 + 10 * Math.sin(dayFraction * 2 * Math.PI) + random.nextGaussian();
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private static ObjectNode createSensor() {
+        return NODES.objectNode()
+                .put(NAME, "LoadTest Sensor")
+                .put(DESCRIPTION, "A sensor generated by the load test.")
+                .put(ENCODING_TYPE, "text/html")
+                .put("metadata", "https://github.com/FraunhoferIOSB/FROST-Server");
+    }
+
+    private static ObjectNode createObservedProperty(int idx) {
+        return NODES.objectNode()
+                .put(NAME, "Property " + idx)
+                .put(DESCRIPTION, "Observed property " + idx + " of the load test.")
+                .put(DEFINITION, "https://example.org/loadtest/property" + idx);
+    }
+
+    private static ObjectNode createThing(int idx, Random random) {
+        final ObjectNode location = NODES.objectNode()
+                .put(NAME, "Location of Thing " + idx)
+                .put(DESCRIPTION, "Location of Thing " + idx)
+                .put(ENCODING_TYPE, "application/geo+json");
+        location.putObject("location")
+                .put("type", "Point")
+                .putArray("coordinates")
+                .add(Math.round((5 + 10 * random.nextDouble()) * 1e6) / 1e6)
+                .add(Math.round((45 + 10 * random.nextDouble()) * 1e6) / 1e6);
+        final ObjectNode thing = NODES.objectNode()
+                .put(NAME, "Thing " + idx)
+                .put(DESCRIPTION, "Thing " + idx + " of the load test.");
+        thing.putObject("properties")
+                .put("group", idx % 10)
+                .put("loadTest", true);
+        thing.putArray("Locations").add(location);
+        return thing;
+    }
+
+    private static ObjectNode createDatastream(int thingIdx, int dsIdx, String thingId, String sensorId, String obsPropId) {
+        final ObjectNode datastream = NODES.objectNode()
+                .put(NAME, "Datastream " + dsIdx + " of Thing " + thingIdx)
+                .put(DESCRIPTION, "Datastream " + dsIdx + " of Thing " + thingIdx)
+                .put("observationType", "http://www.opengis.net/def/observationType/OGC-OM/2.0/OM_Measurement");
+        datastream.putObject("unitOfMeasurement")
+                .put(NAME, "Degree Celsius")
+                .put("symbol", "degC")
+                .put(DEFINITION, "http://www.qudt.org/qudt/owl/1.0.0/unit/Instances.html#DegreeCelsius");
+        datastream.set("Thing", StaClient.reference(thingId));
+        datastream.set("Sensor", StaClient.reference(sensorId));
+        datastream.set("ObservedProperty", StaClient.reference(obsPropId));
+        return datastream;
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.loadtest;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the latencies of requests, by request type. Latencies are only
+ * recorded while recording is enabled, so the warm-up phase can be excluded.
+ *
+ * @author scf
+ */
+public class LatencyRecorder {
+
+    private final Map<RequestType, Stats> statsByType = new EnumMap<>(RequestType.class);
+    private volatile boolean recording = false;
+    private long recordStart;
+    private long recordEnd;
+
+    public LatencyRecorder() {
+        for (RequestType type : RequestType.values()) {
+            statsByType.put(type, new Stats());
+        }
+    }
+
+    public void startRecording() {
+        recordStart = System.nanoTime();
+        recording = true;
+    }
+
+    public void stopRecording() {
+        recording = false;
+        recordEnd = System.nanoTime();
+    }
+
+    /**
+     * Record a successful request.
+     *
+     * @param type The type of the request.
+     * @param latencyNanos The time the request took, in nanoseconds.
+     */
+    public void record(RequestType type, long latencyNanos) {
+        if (recording) {
+            statsByType.get(type).add(latencyNanos);
+        }
+    }
+
+    /**
+     * Record a failed request.
+     *
+     * @param type The type of the request.
+     */
+    public void recordError(RequestType type) {
+        if (recording) {
+            statsByType.get(type).addError();
+        }
+    }
+
+    /**
+     * Summarise the recorded latencies of each request type that had
+     * requests. Latencies are in milliseconds, throughput is in requests per
+     * second.
+     *
+     * @return The summary, by request type key.
+     */
+    public Map<String, Object> summarise() {
+        final double seconds = (double) (recordEnd - recordStart) / TimeUnit.SECONDS.toNanos(1);
+        final Map<String, Object> result = new LinkedHashMap<>();
+        for (Map.Entry<RequestType, Stats> entry : statsByType.entrySet()) {
+            final Stats stats = entry.getValue();
+            if (stats.count > 0 || stats.errors > 0) {
+                result.put(entry.getKey().getKey(), stats.summarise(seconds));
+            }
+        }
+        return result;
+    }
+
+    private static class Stats {
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private int errors;
+
+        public synchronized void add(long latency) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+        }
+
+        public synchronized void addError() {
+            errors++;
+        }
+
+        public synchronized Map<String, Object> summarise(double seconds) {
+            final long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            long total = 0;
+            for (long latency : sorted) {
+                total += latency;
+            }
+            final Map<String, Object> result = new LinkedHashMap<>();
+            result.put("count", count);
+            result.put("errors", errors);
+            result.put("throughput", seconds > 0 ? count / seconds : 0);
+            result.put("mean", count > 0 ? toMillis(total / count) : 0);
+            result.put("p50", toMillis(percentile(sorted, 0.50)));
+            result.put("p90", toMillis(percentile(sorted, 0.90)));
+            result.put("p99", toMillis(percentile(sorted, 0.99)));
+            result.put("max", count > 0 ? toMillis(sorted[count - 1]) : 0);
+            return result;
+        }
+
+        private static long percentile(long[] sorted, double fraction) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            final int idx = (int) Math.ceil(fraction * sorted.length) - 1;
+            return sorted[Math.max(0, idx)];
+        }
+
+        private static double toMillis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+}
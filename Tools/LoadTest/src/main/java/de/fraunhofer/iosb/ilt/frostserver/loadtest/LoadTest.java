@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.loadtest;
+
+import de.fraunhofer.iosb.ilt.frostserver.util.GitVersionInfo;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.bridge.SLF4JBridgeHandler;
+
+/**
+ * Starts a FROST-Server with a database, loads a synthetic data set, runs a
+ * mixed workload against it and writes the throughput and latencies of each
+ * request type to a JSON report.
+ *
+ * Usage: java -jar FROST-Server.Tools.LoadTest-shaded.jar [settings.properties]
+ *
+ * @author scf
+ */
+public class LoadTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadTest.class.getName());
+
+    private LoadTest() {
+        // Not to be instantiated.
+    }
+
+    /**
+     * @param args the command line arguments: the optional path to a
+     * properties file with the settings.
+     * @throws IOException If the settings can not be read, or the report can
+     * not be written.
+     */
+    public static void main(String[] args) throws IOException {
+        SLF4JBridgeHandler.removeHandlersForRootLogger();
+        SLF4JBridgeHandler.install();
+        GitVersionInfo.logGitInfo();
+
+        final Properties properties = new Properties();
+        if (args.length > 0) {
+            try (InputStream input = new FileInputStream(args[0])) {
+                properties.load(input);
+            }
+        }
+        final LoadTestSettings settings = new LoadTestSettings(properties);
+        final Map<String, Object> report = new LinkedHashMap<>();
+        report.put("version", GitVersionInfo.getGitDescription());
+        report.put("started", Instant.now().toString());
+        report.put("settings", settings.describe());
+
+        final LoadTestServer server = new LoadTestServer(settings);
+        try {
+            server.start();
+            final StaClient client = new StaClient(server.getServiceRootUrl());
+            final Dataset dataset = new DatasetGenerator(settings, client).generate();
+            report.put("dataset", dataset.describe());
+
+            final LatencyRecorder recorder = new LatencyRecorder();
+            final WorkloadRunner runner = new WorkloadRunner(settings, client, server.getMqttUrl(), dataset, recorder);
+            runner.run();
+            report.put("results", recorder.summarise());
+            report.put("mqttNotificationsReceived", runner.getNotificationsReceived());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Interrupted.", ex);
+        } catch (MqttException ex) {
+            LOGGER.error("MQTT failed.", ex);
+        } finally {
+            server.stop();
+        }
+
+        final File reportFile = new File(settings.getReportFile());
+        StaClient.MAPPER.writerWithDefaultPrettyPrinter().writeValue(reportFile, report);
+        LOGGER.info("Report written to {}:\n{}", reportFile.getAbsolutePath(), StaClient.MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(report));
+        System.exit(0);
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.loadtest;
+
+import de.fraunhofer.iosb.ilt.frostserver.http.common.DatabaseStatus;
+import de.fraunhofer.iosb.ilt.frostserver.http.common.ServletMain;
+import de.fraunhofer.iosb.ilt.frostserver.mqtt.moquette.MoquetteMqttServer;
+import de.fraunhofer.iosb.ilt.frostserver.settings.CoreSettings;
+import de.fraunhofer.iosb.ilt.frostserver.settings.MqttSettings;
+import de.fraunhofer.iosb.ilt.frostserver.settings.PersistenceSettings;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.util.Map;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.Container;
+import org.testcontainers.containers.GenericContainer;
+
+/**
+ * Starts a FROST-Server, with HTTP and MQTT, in the current JVM. If no
+ * database url is configured, a PostGIS container is started on the local
+ * machine.
+ *
+ * @author scf
+ */
+public class LoadTestServer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadTestServer.class.getName());
+
+    private static final String DB_NAME = "sensorthings";
+    private static final String PREFIX_MQTT = "mqtt.";
+    private static final String PREFIX_PERSISTENCE = "persistence.";
+
+    private final LoadTestSettings settings;
+
+    private GenericContainer<?> pgServer;
+    private Server httpServer;
+    private String serviceRootUrl;
+    private String mqttUrl;
+
+    public LoadTestServer(LoadTestSettings settings) {
+        this.settings = settings;
+    }
+
+    public void start() throws IOException, InterruptedException {
+        final String dbUrl = startDatabase();
+        startHttpServer(dbUrl);
+    }
+
+    private String startDatabase() throws IOException, InterruptedException {
+        if (!settings.getDbUrl().isEmpty()) {
+            LOGGER.info("Using database {}", settings.getDbUrl());
+            return settings.getDbUrl();
+        }
+        LOGGER.info("Starting database container {}", settings.getDbImage());
+        pgServer = new GenericContainer<>(settings.getDbImage())
+                .withEnv("POSTGRES_DB", DB_NAME)
+                .withEnv("POSTGRES_USER", settings.getDbUsername())
+                .withEnv("POSTGRES_PASSWORD", settings.getDbPassword())
+                .withExposedPorts(5432);
+        pgServer.start();
+        Container.ExecResult execResult = pgServer.execInContainer("psql", "-U" + settings.getDbUsername(), "-d" + DB_NAME, "-c CREATE EXTENSION IF NOT EXISTS \"uuid-ossp\";");
+        LOGGER.info("Installing extension uuid-ossp: {} {}", execResult.getStdout(), execResult.getStderr());
+        return "jdbc:postgresql://" + pgServer.getHost() + ":" + pgServer.getFirstMappedPort() + "/" + DB_NAME;
+    }
+
+    private void startHttpServer(String dbUrl) throws IOException {
+        LOGGER.info("Starting FROST-Server...");
+        httpServer = new Server(settings.getHttpPort());
+        final ServletContextHandler handler = new ServletContextHandler();
+        httpServer.setHandler(handler);
+        try {
+            httpServer.start();
+        } catch (Exception ex) {
+            throw new IllegalStateException("Failed to start HTTP server.", ex);
+        }
+        final int httpPort = ((ServerConnector) httpServer.getConnectors()[0]).getLocalPort();
+        serviceRootUrl = "http://localhost:" + httpPort + "/FROST-Server";
+
+        int mqttPort = settings.getMqttPort();
+        if (mqttPort == 0) {
+            mqttPort = findFreePort();
+        }
+        mqttUrl = "tcp://localhost:" + mqttPort;
+
+        handler.setContextPath("/FROST-Server");
+        handler.getServletContext().setExtendedListenerTypes(true);
+        handler.setInitParameter(CoreSettings.TAG_SERVICE_ROOT_URL, serviceRootUrl);
+        handler.setInitParameter(CoreSettings.TAG_TEMP_PATH, Files.createTempDirectory("FROST-LoadTest").toString());
+
+        handler.setInitParameter(PREFIX_PERSISTENCE + PersistenceSettings.TAG_IMPLEMENTATION_CLASS, "de.fraunhofer.iosb.ilt.frostserver.persistence.pgjooq.PostgresPersistenceManager");
+        handler.setInitParameter(PREFIX_PERSISTENCE + PersistenceSettings.TAG_AUTO_UPDATE_DATABASE, "true");
+        handler.setInitParameter(PREFIX_PERSISTENCE + "db.driver", "org.postgresql.Driver");
+        handler.setInitParameter(PREFIX_PERSISTENCE + "db.url", dbUrl);
+        handler.setInitParameter(PREFIX_PERSISTENCE + "db.username", settings.getDbUsername());
+        handler.setInitParameter(PREFIX_PERSISTENCE + "db.password", settings.getDbPassword());
+
+        handler.setInitParameter(PREFIX_MQTT + MqttSettings.TAG_IMPLEMENTATION_CLASS, MoquetteMqttServer.class.getName());
+        handler.setInitParameter(PREFIX_MQTT + MqttSettings.TAG_ENABLED, "true");
+        handler.setInitParameter(PREFIX_MQTT + MqttSettings.TAG_PORT, Integer.toString(mqttPort));
+        handler.setInitParameter(PREFIX_MQTT + MoquetteMqttServer.TAG_WEBSOCKET_PORT, Integer.toString(findFreePort()));
+
+        for (Map.Entry<String, String> entry : settings.getServerSettings().entrySet()) {
+            handler.setInitParameter(entry.getKey(), entry.getValue());
+        }
+
+        handler.addEventListener(new LoadTestContextListener());
+        handler.addServlet(DatabaseStatus.class, "/DatabaseStatus");
+        handler.addServlet(ServletMain.class, "/*");
+        try {
+            handler.start();
+        } catch (Exception ex) {
+            throw new IllegalStateException("Failed to start FROST-Server.", ex);
+        }
+        LOGGER.info("FROST-Server started on {}, MQTT on {}", serviceRootUrl, mqttUrl);
+    }
+
+    private static int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    public String getServiceRootUrl() {
+        return serviceRootUrl;
+    }
+
+    public String getMqttUrl() {
+        return mqttUrl;
+    }
+
+    public void stop() {
+        if (httpServer != null) {
+            try {
+                httpServer.stop();
+            } catch (Exception ex) {
+                LOGGER.error("Exception stopping server.", ex);
+            }
+        }
+        if (pgServer != null) {
+            pgServer.stop();
+        }
+    }
+
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.loadtest;
+
+import de.fraunhofer.iosb.ilt.frostserver.settings.ConfigDefaults;
+import de.fraunhofer.iosb.ilt.frostserver.settings.Settings;
+import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValue;
+import de.fraunhofer.iosb.ilt.frostserver.settings.annotation.DefaultValueInt;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The settings of a load test run. Settings are read from a properties file,
+ * and can be overridden by environment variables, the same way as the
+ * settings of FROST-Server itself.
+ *
+ * @author scf
+ */
+public class LoadTestSettings implements ConfigDefaults {
+
+    /**
+     * The prefix for settings that are passed on to FROST-Server, without the
+     * prefix.
+     */
+    public static final String PREFIX_SERVER = "server.";
+    /**
+     * The prefix for the relative weight of each request type in the mixed
+     * workload, followed by the key of the request type.
+     */
+    public static final String PREFIX_WEIGHT = "workload.weight.";
+
+    /**
+     * The JDBC url of the database. If empty, a PostGIS container is started.
+     */
+    @DefaultValue("")
+    public static final String TAG_DB_URL = "db.url";
+    @DefaultValue("sensorthings")
+    public static final String TAG_DB_USERNAME = "db.username";
+    @DefaultValue("ChangeMe")
+    public static final String TAG_DB_PASSWORD = "db.password";
+    @DefaultValue("postgis/postgis:14-3.2-alpine")
+    public static final String TAG_DB_IMAGE = "db.image";
+
+    @DefaultValueInt(0)
+    public static final String TAG_HTTP_PORT = "http.port";
+    @DefaultValueInt(0)
+    public static final String TAG_MQTT_PORT = "mqtt.port";
+
+    @DefaultValueInt(10)
+    public static final String TAG_THINGS = "dataset.things";
+    @DefaultValueInt(5)
+    public static final String TAG_DATASTREAMS_PER_THING = "dataset.datastreamsPerThing";
+    @DefaultValueInt(10000)
+    public static final String TAG_OBSERVATIONS_PER_DATASTREAM = "dataset.observationsPerDatastream";
+    @DefaultValueInt(60)
+    public static final String TAG_OBSERVATION_INTERVAL = "dataset.observationInterval";
+    @DefaultValue("2020-01-01T00:00:00Z")
+    public static final String TAG_START_TIME = "dataset.startTime";
+    @DefaultValueInt(1000)
+    public static final String TAG_LOAD_CHUNK_SIZE = "dataset.chunkSize";
+    @DefaultValueInt(4)
+    public static final String TAG_LOAD_THREADS = "dataset.threads";
+
+    @DefaultValueInt(8)
+    public static final String TAG_THREADS = "workload.threads";
+    @DefaultValueInt(10)
+    public static final String TAG_WARMUP = "workload.warmup";
+    @DefaultValueInt(60)
+    public static final String TAG_DURATION = "workload.duration";
+    @DefaultValueInt(42)
+    public static final String TAG_SEED = "workload.seed";
+    @DefaultValueInt(100)
+    public static final String TAG_DATA_ARRAY_SIZE = "workload.dataArraySize";
+    @DefaultValueInt(10)
+    public static final String TAG_MQTT_SUBSCRIBERS = "workload.mqttSubscribers";
+
+    @DefaultValue("loadtest-report.json")
+    public static final String TAG_REPORT_FILE = "report.file";
+
+    private final Settings settings;
+
+    private final String dbUrl;
+    private final String dbUsername;
+    private final String dbPassword;
+    private final String dbImage;
+    private final int httpPort;
+    private final int mqttPort;
+
+    private final int things;
+    private final int datastreamsPerThing;
+    private final int observationsPerDatastream;
+    private final int observationInterval;
+    private final Instant startTime;
+    private final int loadChunkSize;
+    private final int loadThreads;
+
+    private final int threads;
+    private final int warmup;
+    private final int duration;
+    private final int seed;
+    private final int dataArraySize;
+    private final int mqttSubscribers;
+    private final Map<RequestType, Integer> weights = new EnumMap<>(RequestType.class);
+
+    private final String reportFile;
+
+    public LoadTestSettings(Properties properties) {
+        settings = new Settings(properties);
+        final Class<LoadTestSettings> c = LoadTestSettings.class;
+        dbUrl = settings.get(TAG_DB_URL, c);
+        dbUsername = settings.get(TAG_DB_USERNAME, c);
+        dbPassword = settings.get(TAG_DB_PASSWORD, c);
+        dbImage = settings.get(TAG_DB_IMAGE, c);
+        httpPort = settings.getInt(TAG_HTTP_PORT, c);
+        mqttPort = settings.getInt(TAG_MQTT_PORT, c);
+
+        things = settings.getInt(TAG_THINGS, c);
+        datastreamsPerThing = settings.getInt(TAG_DATASTREAMS_PER_THING, c);
+        observationsPerDatastream = settings.getInt(TAG_OBSERVATIONS_PER_DATASTREAM, c);
+        observationInterval = settings.getInt(TAG_OBSERVATION_INTERVAL, c);
+        startTime = Instant.parse(settings.get(TAG_START_TIME, c));
+        loadChunkSize = settings.getInt(TAG_LOAD_CHUNK_SIZE, c);
+        loadThreads = settings.getInt(TAG_LOAD_THREADS, c);
+
+        threads = settings.getInt(TAG_THREADS, c);
+        warmup = settings.getInt(TAG_WARMUP, c);
+        duration = settings.getInt(TAG_DURATION, c);
+        seed = settings.getInt(TAG_SEED, c);
+        dataArraySize = settings.getInt(TAG_DATA_ARRAY_SIZE, c);
+        mqttSubscribers = settings.getInt(TAG_MQTT_SUBSCRIBERS, c);
+        for (RequestType type : RequestType.values()) {
+            if (type.isGenerated()) {
+                weights.put(type, settings.getInt(PREFIX_WEIGHT + type.getKey(), type.getDefaultWeight()));
+            }
+        }
+
+        reportFile = settings.get(TAG_REPORT_FILE, c);
+    }
+
+    /**
+     * Get the settings that must be passed on to FROST-Server. These are all
+     * settings that start with {@link #PREFIX_SERVER}, with the prefix
+     * removed.
+     *
+     * @return The settings for FROST-Server.
+     */
+    public Map<String, String> getServerSettings() {
+        final Map<String, String> result = new LinkedHashMap<>();
+        final Properties properties = settings.getProperties();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(PREFIX_SERVER)) {
+                result.put(name.substring(PREFIX_SERVER.length()), properties.getProperty(name));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Describe the settings that influence the results, for the report.
+     *
+     * @return the settings, by name.
+     */
+    public Map<String, Object> describe() {
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put(TAG_DB_URL, dbUrl.isEmpty() ? dbImage : "external");
+        result.put(TAG_THINGS, things);
+        result.put(TAG_DATASTREAMS_PER_THING, datastreamsPerThing);
+        result.put(TAG_OBSERVATIONS_PER_DATASTREAM, observationsPerDatastream);
+        result.put(TAG_THREADS, threads);
+        result.put(TAG_WARMUP, warmup);
+        result.put(TAG_DURATION, duration);
+        result.put(TAG_SEED, seed);
+        result.put(TAG_DATA_ARRAY_SIZE, dataArraySize);
+        result.put(TAG_MQTT_SUBSCRIBERS, mqttSubscribers);
+        for (Map.Entry<RequestType, Integer> entry : weights.entrySet()) {
+            result.put(PREFIX_WEIGHT + entry.getKey().getKey(), entry.getValue());
+        }
+        result.put("server", getServerSettings());
+        return result;
+    }
+
+    public String getDbUrl() {
+        return dbUrl;
+    }
+
+    public String getDbUsername() {
+        return dbUsername;
+    }
+
+    public String getDbPassword() {
+        return dbPassword;
+    }
+
+    public String getDbImage() {
+        return dbImage;
+    }
+
+    public int getHttpPort() {
+        return httpPort;
+    }
+
+    public int getMqttPort() {
+        return mqttPort;
+    }
+
+    public int getThings() {
+        return things;
+    }
+
+    public int getDatastreamsPerThing() {
+        return datastreamsPerThing;
+    }
+
+    public int getObservationsPerDatastream() {
+        return observationsPerDatastream;
+    }
+
+    public int getObservationInterval() {
+        return observationInterval;
+    }
+
+    public Instant getStartTime() {
+        return startTime;
+    }
+
+    public int getLoadChunkSize() {
+        return loadChunkSize;
+    }
+
+    public int getLoadThreads() {
+        return loadThreads;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getWarmup() {
+        return warmup;
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    public int getSeed() {
+        return seed;
+    }
+
+    public int getDataArraySize() {
+        return dataArraySize;
+    }
+
+    public int getMqttSubscribers() {
+        return mqttSubscribers;
+    }
+
+    public Map<RequestType, Integer> getWeights() {
+        return weights;
+    }
+
+    public String getReportFile() {
+        return reportFile;
+    }
+
+}
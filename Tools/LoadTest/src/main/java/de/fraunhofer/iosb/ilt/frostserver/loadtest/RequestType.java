@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.loadtest;
+
+/**
+ * The types of requests the load test measures.
+ *
+ * @author scf
+ */
+public enum RequestType {
+    /**
+     * Create an Observation by POSTing it to the Observations collection.
+     */
+    CREATE_HTTP("createHttp", 10),
+    /**
+     * Create a batch of Observations using the dataArray CreateObservations
+     * request.
+     */
+    CREATE_DATA_ARRAY("createDataArray", 1),
+    /**
+     * Create an Observation by publishing it over MQTT.
+     */
+    CREATE_MQTT("createMqtt", 10),
+    /**
+     * A dashboard style read of a Thing, with its Locations and Datastreams,
+     * and the latest Observation of each Datastream.
+     */
+    READ_EXPAND("readExpand", 5),
+    /**
+     * A read of the Observations of a Datastream in a time window.
+     */
+    READ_FILTER("readFilter", 5),
+    /**
+     * The time between sending an Observation and receiving it on an MQTT
+     * subscription. Not generated by the workload threads, but measured by the
+     * MQTT subscribers.
+     */
+    MQTT_NOTIFICATION("mqttNotification", -1);
+
+    private final String key;
+    private final int defaultWeight;
+
+    private RequestType(String key, int defaultWeight) {
+        this.key = key;
+        this.defaultWeight = defaultWeight;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public int getDefaultWeight() {
+        return defaultWeight;
+    }
+
+    /**
+     * Flag indicating the workload threads generate this type of request.
+     *
+     * @return true if the workload threads generate this type of request.
+     */
+    public boolean isGenerated() {
+        return defaultWeight >= 0;
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * A minimal SensorThings API client for generating load. Entity ids are kept
+ * in their URL form: numbers as they are, strings in single quotes.
+ *
+ * @author scf
+ */
+public class StaClient {
+
+    public static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String APPLICATION_JSON = "application/json";
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+
+    public StaClient(String serviceRootUrl) {
+        this.baseUrl = serviceRootUrl + "/v1.1/";
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    /**
+     * Execute a GET request.
+     *
+     * @param path The path and query, relative to the v1.1 base url. The
+     * query must already be url-encoded.
+     * @return The response.
+     * @throws IOException If the request fails.
+     */
+    public HttpResponse<String> get(String path) throws IOException {
+        final HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .GET()
+                .build();
+        return send(request);
+    }
+
+    /**
+     * Execute a POST request with a JSON body.
+     *
+     * @param path The path, relative to the v1.1 base url.
+     * @param body The JSON to post.
+     * @return The response.
+     * @throws IOException If the request fails.
+     */
+    public HttpResponse<String> post(String path, JsonNode body) throws IOException {
+        final HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header(CONTENT_TYPE, APPLICATION_JSON)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(body)))
+                .build();
+        return send(request);
+    }
+
+    /**
+     * Create an entity, and return the id of the created entity.
+     *
+     * @param path The path of the entity set to post to.
+     * @param entity The entity to create.
+     * @return The id of the created entity, in URL form.
+     * @throws IOException If the request fails, or the entity is not created.
+     */
+    public String create(String path, ObjectNode entity) throws IOException {
+        final HttpResponse<String> response = post(path, entity);
+        if (response.statusCode() != 201) {
+            throw new IOException("Failed to create entity in " + path + ": " + response.statusCode() + " " + response.body());
+        }
+        final String location = response.headers()
+                .firstValue("Location")
+                .orElseThrow(() -> new IOException("No Location header in response to " + path));
+        return location.substring(location.lastIndexOf('(') + 1, location.lastIndexOf(')'));
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException {
+        try {
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", ex);
+        }
+    }
+
+    /**
+     * Create a reference to an entity, for use in a JSON entity.
+     *
+     * @param id The id of the entity, in URL form.
+     * @return an object with only the id of the entity.
+     */
+    public static ObjectNode reference(String id) {
+        final ObjectNode result = JsonNodeFactory.instance.objectNode();
+        if (id.startsWith("'")) {
+            result.put("@iot.id", id.substring(1, id.length() - 1).replace("''", "'"));
+        } else {
+            result.put("@iot.id", Long.parseLong(id));
+        }
+        return result;
+    }
+
+    /**
+     * Encode a query parameter value.
+     *
+     * @param value The value to encode.
+     * @return The encoded value.
+     */
+    public static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+}
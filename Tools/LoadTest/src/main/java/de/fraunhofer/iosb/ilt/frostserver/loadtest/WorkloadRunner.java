@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2022 Fraunhofer Institut IOSB, Fraunhoferstr. 1, D 76131
+ * Karlsruhe, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.fraunhofer.iosb.ilt.frostserver.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the mixed workload: a number of threads that each pick a request type
+ * by weight, execute it and record its latency, while MQTT subscribers record
+ * the time it takes for new Observations to be delivered to them.
+ *
+ * @author scf
+ */
+public class WorkloadRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkloadRunner.class.getName());
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+    /**
+     * The parameter of generated Observations that holds the System.nanoTime
+     * at which the Observation was sent.
+     */
+    private static final String PARAM_SENT = "loadTestSent";
+    private static final String PARAMETERS = "parameters";
+    private static final String PHENOMENON_TIME = "phenomenonTime";
+    private static final String RESULT = "result";
+    private static final String DATASTREAMS = "Datastreams(";
+    private static final String TOPIC_VERSION = "v1.1/";
+    private static final String QUERY_EXPAND = "?$expand="
+            + StaClient.encode("Locations($select=name,location),Datastreams($select=id,name,unitOfMeasurement;"
+                    + "$expand=Observations($select=phenomenonTime,result;$orderby=phenomenonTime desc;$top=1))");
+    private static final int READ_FILTER_TOP = 100;
+
+    private final LoadTestSettings settings;
+    private final StaClient client;
+    private final String mqttUrl;
+    private final Dataset dataset;
+    private final LatencyRecorder recorder;
+    private final RequestType[] types;
+    private final int[] cumulativeWeights;
+    private final int totalWeight;
+    private final AtomicLong nextTime;
+    private final AtomicLong notificationsReceived = new AtomicLong();
+
+    private volatile boolean running;
+
+    public WorkloadRunner(LoadTestSettings settings, StaClient client, String mqttUrl, Dataset dataset, LatencyRecorder recorder) {
+        this.settings = settings;
+        this.client = client;
+        this.mqttUrl = mqttUrl;
+        this.dataset = dataset;
+        this.recorder = recorder;
+        this.nextTime = new AtomicLong(dataset.getEndTime().getEpochSecond());
+
+        final Map<RequestType, Integer> weights = settings.getWeights();
+        types = new RequestType[weights.size()];
+        cumulativeWeights = new int[weights.size()];
+        int total = 0;
+        int idx = 0;
+        for (Map.Entry<RequestType, Integer> entry : weights.entrySet()) {
+            total += Math.max(0, entry.getValue());
+            types[idx] = entry.getKey();
+            cumulativeWeights[idx] = total;
+            idx++;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("The sum of the request weights must be larger than 0.");
+        }
+        totalWeight = total;
+    }
+
+    public void run() throws MqttException, InterruptedException {
+        running = true;
+        final List<MqttClient> subscribers = startSubscribers();
+        final List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < settings.getThreads(); i++) {
+            final Thread worker = new Thread(new Worker(i), "LoadTest-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+        LOGGER.info("Warming up for {} s.", settings.getWarmup());
+        TimeUnit.SECONDS.sleep(settings.getWarmup());
+        LOGGER.info("Measuring for {} s.", settings.getDuration());
+        recorder.startRecording();
+        TimeUnit.SECONDS.sleep(settings.getDuration());
+        recorder.stopRecording();
+        running = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        for (MqttClient subscriber : subscribers) {
+            subscriber.disconnect();
+            subscriber.close();
+        }
+        LOGGER.info("Workload done.");
+    }
+
+    public long getNotificationsReceived() {
+        return notificationsReceived.get();
+    }
+
+    private List<MqttClient> startSubscribers() throws MqttException {
+        final List<String> datastreamIds = new ArrayList<>(dataset.getDatastreamIds());
+        Collections.shuffle(datastreamIds, new Random(settings.getSeed()));
+        final List<MqttClient> subscribers = new ArrayList<>();
+        for (int i = 0; i < settings.getMqttSubscribers(); i++) {
+            final MqttClient subscriber = new MqttClient(mqttUrl, "LoadTest-Sub-" + i, new MemoryPersistence());
+            subscriber.connect(connectOptions());
+            final String topic = TOPIC_VERSION + DATASTREAMS + datastreamIds.get(i % datastreamIds.size()) + ")/Observations";
+            subscriber.subscribe(topic, 0, (t, message) -> handleNotification(message.getPayload()));
+            subscribers.add(subscriber);
+        }
+        LOGGER.info("Started {} MQTT subscribers.", subscribers.size());
+        return subscribers;
+    }
+
+    private static MqttConnectOptions connectOptions() {
+        final MqttConnectOptions options = new MqttConnectOptions();
+        options.setCleanSession(true);
+        options.setMaxInflight(1000);
+        return options;
+    }
+
+    private void handleNotification(byte[] payload) {
+        final long now = System.nanoTime();
+        notificationsReceived.incrementAndGet();
+        try {
+            final JsonNode sent = StaClient.MAPPER.readTree(payload).path(PARAMETERS).path(PARAM_SENT);
+            if (sent.isNumber()) {
+                recorder.record(RequestType.MQTT_NOTIFICATION, now - sent.longValue());
+            }
+        } catch (IOException ex) {
+            recorder.recordError(RequestType.MQTT_NOTIFICATION);
+        }
+    }
+
+    private RequestType pick(Random random) {
+        final int value = random.nextInt(totalWeight);
+        for (int i = 0; i < types.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return types[i];
+            }
+        }
+        return types[types.length - 1];
+    }
+
+    private String randomDatastream(Random random) {
+        final List<String> ids = dataset.getDatastreamIds();
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    private ObjectNode createObservation(Random random) {
+        final long time = nextTime.getAndAdd(settings.getObservationInterval());
+        final ObjectNode observation = NODES.objectNode()
+                .put(PHENOMENON_TIME, Instant.ofEpochSecond(time).toString())
+                .put(RESULT, DatasetGenerator.generateResult(random, time));
+        observation.putObject(PARAMETERS)
+                .put(PARAM_SENT, System.nanoTime());
+        return observation;
+    }
+
+    private class Worker implements Runnable {
+
+        private final int idx;
+        private final Random random;
+        private MqttClient publisher;
+
+        public Worker(int idx) {
+            this.idx = idx;
+            this.random = new Random(settings.getSeed() + 1L + idx);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                final RequestType type = pick(random);
+                final long start = System.nanoTime();
+                boolean success;
+                try {
+                    success = execute(type);
+                } catch (IOException | MqttException | RuntimeException ex) {
+                    LOGGER.debug("Request {} failed.", type, ex);
+                    success = false;
+                }
+                if (success) {
+                    recorder.record(type, System.nanoTime() - start);
+                } else {
+                    recorder.recordError(type);
+                }
+            }
+            if (publisher != null) {
+                try {
+                    publisher.disconnect();
+                    publisher.close();
+                } catch (MqttException ex) {
+                    LOGGER.debug("Failed to close MQTT client.", ex);
+                }
+            }
+        }
+
+        private boolean execute(RequestType type) throws IOException, MqttException {
+            switch (type) {
+                case CREATE_HTTP:
+                    return createHttp();
+
+                case CREATE_DATA_ARRAY:
+                    return createDataArray();
+
+                case CREATE_MQTT:
+                    createMqtt();
+                    return true;
+
+                case READ_EXPAND:
+                    return readExpand();
+
+                case READ_FILTER:
+                    return readFilter();
+
+                default:
+                    throw new IllegalArgumentException("Request type can not be generated: " + type);
+            }
+        }
+
+        private boolean createHttp() throws IOException {
+            final ObjectNode observation = createObservation(random);
+            observation.set("Datastream", StaClient.reference(randomDatastream(random)));
+            return client.post("Observations", observation).statusCode() == 201;
+        }
+
+        private boolean createDataArray() throws IOException {
+            final ArrayNode dataArray = NODES.arrayNode();
+            for (int i = 0; i < settings.getDataArraySize(); i++) {
+                final ObjectNode observation = createObservation(random);
+                dataArray.addArray()
+                        .add(observation.get(PHENOMENON_TIME))
+                        .add(observation.get(RESULT))
+                        .add(observation.get(PARAMETERS));
+            }
+            final ObjectNode item = NODES.objectNode();
+            item.set("Datastream", StaClient.reference(randomDatastream(random)));
+            item.set("components", NODES.arrayNode().add(PHENOMENON_TIME).add(RESULT).add(PARAMETERS));
+            item.set("dataArray", dataArray);
+            final HttpResponse<String> response = client.post("CreateObservations", NODES.arrayNode().add(item));
+            return response.statusCode() == 201 && !response.body().contains("error");
+        }
+
+        private void createMqtt() throws IOException, MqttException {
+            if (publisher == null) {
+                publisher = new MqttClient(mqttUrl, "LoadTest-Pub-" + idx, new MemoryPersistence());
+                publisher.connect(connectOptions());
+            }
+            final String topic = TOPIC_VERSION + DATASTREAMS + randomDatastream(random) + ")/Observations";
+            publisher.publish(topic, StaClient.MAPPER.writeValueAsBytes(createObservation(random)), 1, false);
+        }
+
+        private boolean readExpand() throws IOException {
+            final List<String> ids = dataset.getThingIds();
+            final String thingId = ids.get(random.nextInt(ids.size()));
+            return client.get("Things(" + thingId + ")" + QUERY_EXPAND).statusCode() == 200;
+        }
+
+        private boolean readFilter() throws IOException {
+            final long startSecond = dataset.getStartTime().getEpochSecond();
+            final long span = Math.max(1, dataset.getEndTime().getEpochSecond() - startSecond);
+            final Instant from = Instant.ofEpochSecond(startSecond + (long) (random.nextDouble() * span));
+            final Instant to = from.plusSeconds((long) settings.getObservationInterval() * READ_FILTER_TOP);
+            final String filter = "phenomenonTime ge " + from + " and phenomenonTime lt " + to;
+            final String path = DATASTREAMS + randomDatastream(random) + ")/Observations"
+                    + "?$filter=" + StaClient.encode(filter)
+                    + "&$orderby=" + StaClient.encode("phenomenonTime asc")
+                    + "&$select=" + StaClient.encode("phenomenonTime,result")
+                    + "&$top=" + READ_FILTER_TOP;
+            return client.get(path).statusCode() == 200;
+        }
+    }
+}